@@ -0,0 +1,237 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * The {@code BatchIngester} class imports orders without any prompts, for example the phone and
+ * catering orders collected during the day.
+ * <p>
+ * Input is read from a file or standard input, one order per line:
+ * <pre>
+ * customerName|item1,item2,...
+ * </pre>
+ * Blank lines and lines starting with {@code #} are skipped. Item names are matched against the
+ * menu (case-insensitively, like {@link Menu#getItemByName(String)}), and the order's calories are
+ * taken from the menu. A line with a missing field or an unknown item is rejected and counted, and
+ * the import continues with the next line.
+ * <p>
+ * Accepted orders are written through {@link OrderHistory#storeRecords(List)} in batches of
+ * {@link #BATCH_SIZE}, so each batch is a single append to the history file. All orders of one run
+ * are stamped with the time they were read; the formatted time only changes once a minute, so it is
+ * formatted once per minute instead of once per order. Stored orders are published on the
+ * {@link OrderEventBus} like orders placed at the counter. Nothing is printed per order; only a
+ * final report (see {@link Report}).
+ * <p>
+ * Started from the console app with {@code Main --batch <file>} or {@code Main --batch -} for
+ * standard input.
+ */
+public class BatchIngester {
+    // Number of orders written per append to the history file.
+    static final int BATCH_SIZE = 4096;
+    // Number of rejected lines described in the report.
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private final OrderHistory orderHistory;
+    // Menu items by exact name, and by lowercase name for the case-insensitive fallback.
+    private final Map<String, MenuItem> itemsByName = new HashMap<>();
+    private final Map<String, MenuItem> itemsByLowerName = new HashMap<>();
+    // Formatted order time of the current minute.
+    private long cachedMinute = Long.MIN_VALUE;
+    private String cachedTime;
+
+    /**
+     * The outcome of an import.
+     */
+    public static class Report {
+        private long linesRead;
+        private long ordersStored;
+        private long linesRejected;
+        private long nanos;
+        private final List<String> errors = new ArrayList<>();
+
+        public long getLinesRead() { return linesRead; }
+        public long getOrdersStored() { return ordersStored; }
+        public long getLinesRejected() { return linesRejected; }
+        public List<String> getErrors() { return errors; }
+
+        /**
+         * Returns the report as printed at the end of an import.
+         *
+         * @return a few lines of text.
+         */
+        @Override
+        public String toString() {
+            double seconds = nanos / 1e9;
+            StringBuilder sb = new StringBuilder();
+            sb.append("Batch import finished: ").append(ordersStored).append(" orders stored, ")
+                    .append(linesRejected).append(" lines rejected, ").append(linesRead).append(" lines read in ")
+                    .append(String.format("%.2f", seconds)).append(" s");
+            if (seconds > 0) {
+                sb.append(" (").append(Math.round(ordersStored / seconds)).append(" orders/s)");
+            }
+            for (String error : errors) {
+                sb.append("\n  ").append(error);
+            }
+            if (linesRejected > errors.size()) {
+                sb.append("\n  ... and ").append(linesRejected - errors.size()).append(" more rejected lines");
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Creates an ingester that validates against a menu and stores into an order history.
+     *
+     * @param menu         the menu orders are validated against.
+     * @param orderHistory the history the orders are stored in.
+     */
+    public BatchIngester(Menu menu, OrderHistory orderHistory) {
+        this.orderHistory = orderHistory;
+        for (MenuItem item : menu.getItems()) {
+            itemsByName.put(item.getName(), item);
+            itemsByLowerName.put(item.getName().toLowerCase(), item);
+        }
+    }
+
+    /**
+     * Reads every order from a reader and stores the valid ones.
+     *
+     * @param reader the input; it is read to the end but not closed.
+     * @return the report of the import.
+     * @throws IOException if the input cannot be read or the history cannot be written.
+     */
+    public Report ingest(Reader reader) throws IOException {
+        Report report = new Report();
+        long start = System.nanoTime();
+        BufferedReader br = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+        List<HistoryRecord> batch = new ArrayList<>(BATCH_SIZE);
+        String line;
+        while ((line = br.readLine()) != null) {
+            report.linesRead++;
+            if (line.isBlank() || line.charAt(0) == '#') {
+                continue;
+            }
+            HistoryRecord record = parse(line, report);
+            if (record == null) {
+                continue;
+            }
+            batch.add(record);
+            if (batch.size() == BATCH_SIZE) {
+                orderHistory.storeRecords(batch);
+                report.ordersStored += batch.size();
+                batch.clear();
+            }
+        }
+        orderHistory.storeRecords(batch);
+        report.ordersStored += batch.size();
+        report.nanos = System.nanoTime() - start;
+        return report;
+    }
+
+    /**
+     * Parses and validates one line, or records why it was rejected.
+     *
+     * @param line   the input line.
+     * @param report the report that collects rejected lines.
+     * @return the record to store, or {@code null} if the line was rejected.
+     */
+    private HistoryRecord parse(String line, Report report) {
+        // Split with indexOf instead of a regular expression; this runs once per order.
+        int bar = line.indexOf('|');
+        if (bar < 0) {
+            reject(report, "missing '|' between customer and items");
+            return null;
+        }
+        String customerName = line.substring(0, bar).trim();
+        if (customerName.isEmpty()) {
+            reject(report, "missing customer name");
+            return null;
+        }
+        List<String> itemNames = new ArrayList<>();
+        double totalCalories = 0;
+        int from = bar + 1;
+        while (from <= line.length()) {
+            int comma = line.indexOf(',', from);
+            int to = comma < 0 ? line.length() : comma;
+            String name = line.substring(from, to).trim();
+            if (!name.isEmpty()) {
+                MenuItem item = lookup(name);
+                if (item == null) {
+                    reject(report, "unknown item \"" + name + "\"");
+                    return null;
+                }
+                itemNames.add(item.getName());
+                totalCalories += item.getCalories();
+            }
+            from = to + 1;
+        }
+        if (itemNames.isEmpty()) {
+            reject(report, "no items");
+            return null;
+        }
+        return new HistoryRecord(customerName, currentTime(), totalCalories, itemNames);
+    }
+
+    /**
+     * Finds a menu item by exact name, falling back to a case-insensitive match.
+     */
+    private MenuItem lookup(String name) {
+        MenuItem item = itemsByName.get(name);
+        return item != null ? item : itemsByLowerName.get(name.toLowerCase());
+    }
+
+    /**
+     * Returns the formatted current time, formatting it only when the minute changes.
+     */
+    private String currentTime() {
+        long minute = System.currentTimeMillis() / 60_000;
+        if (minute != cachedMinute) {
+            cachedMinute = minute;
+            cachedTime = HistoryRecord.formatTime(LocalDateTime.now());
+        }
+        return cachedTime;
+    }
+
+    /**
+     * Counts a rejected line and keeps the first few reasons for the report.
+     */
+    private void reject(Report report, String reason) {
+        report.linesRejected++;
+        if (report.errors.size() < MAX_REPORTED_ERRORS) {
+            report.errors.add("line " + report.linesRead + ": " + reason);
+        }
+    }
+
+    /**
+     * Runs a batch import from a file, or from standard input if the path is {@code -}, into the
+     * order history of the shared {@link NutritionService} and prints the report.
+     *
+     * @param path the input file path, or {@code -}.
+     */
+    public static void run(String path) {
+        run(path, NutritionService.shared());
+    }
+
+    /**
+     * Runs a batch import from a file, or from standard input if the path is {@code -}, into the
+     * order history of a service (for example a {@link Location}'s) and prints the report.
+     *
+     * @param path    the input file path, or {@code -}.
+     * @param service the service whose menu and order history are used.
+     */
+    public static void run(String path, NutritionService service) {
+        BatchIngester ingester = new BatchIngester(service.getMenu(), service.getOrderHistory());
+        try (Reader reader = path.equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8)) {
+            System.out.println(ingester.ingest(reader));
+        } catch (IOException e) {
+            System.out.println("Error during batch import: " + e.getMessage());
+        }
+    }
+}
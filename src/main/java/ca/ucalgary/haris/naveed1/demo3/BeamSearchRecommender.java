@@ -0,0 +1,200 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.util.*;
+
+/**
+ * The {@code BeamSearchRecommender} class finds the best distinct baskets of menu items that fit a
+ * calorie budget.
+ * <p>
+ * The old recommendations were three greedy passes over fixed item orderings. For a customer who has
+ * ordered everything on the menu, those orderings coincide and all three suggestions were the same.
+ * This recommender searches over baskets instead and returns the top {@code k} different ones.
+ * <p>
+ * A basket is a set of menu items (each item at most once) whose calories fit the budget. Its score is
+ * <pre>
+ * AFFINITY_WEIGHT * (sum of the items' affinities) + FIT_WEIGHT * (basket calories / budget)
+ * </pre>
+ * where the affinities of all menu items add up to 1 (for example each item's share of the
+ * customer's orders), so both parts lie between 0 and 1. Baskets that match the customer's habits and
+ * use most of the budget score highest.
+ * <p>
+ * The search grows baskets one item at a time. Each level keeps only the {@code beamWidth}
+ * best-scoring baskets to extend. Every basket ever generated is a candidate for the result. A basket
+ * can be reached in several orders ({A, B} from {A} or from {B}), so baskets are identified by their
+ * canonical form, the sorted array of item positions. A set of canonical baskets removes duplicates,
+ * and the result only holds distinct baskets.
+ * <p>
+ * The search stops early when {@code maxLatencyNanos} have passed and returns the best baskets found
+ * so far, so a large menu cannot stall a kiosk.
+ */
+public class BeamSearchRecommender {
+    // Defaults used by the RecommendationEngine.
+    public static final int DEFAULT_K = 3;
+    public static final int DEFAULT_BEAM_WIDTH = 32;
+    public static final long DEFAULT_MAX_LATENCY_NANOS = 20_000_000L;
+    // Weights of the two parts of a basket's score.
+    static final double AFFINITY_WEIGHT = 0.6;
+    static final double FIT_WEIGHT = 0.4;
+
+    private final int k;
+    private final int beamWidth;
+    private final long maxLatencyNanos;
+
+    /**
+     * A candidate basket: the sorted menu positions of its items, its calories and its score.
+     */
+    private static final class Basket {
+        final int[] positions;
+        final double calories;
+        final double affinity;
+        final double score;
+
+        Basket(int[] positions, double calories, double affinity, double budget) {
+            this.positions = positions;
+            this.calories = calories;
+            this.affinity = affinity;
+            this.score = AFFINITY_WEIGHT * affinity + FIT_WEIGHT * (calories / budget);
+        }
+
+        // Baskets are equal when they hold the same items, whatever order they were added in.
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Basket b && Arrays.equals(positions, b.positions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(positions);
+        }
+    }
+
+    // Best score first; ties go to the basket with more calories, then to the lower positions.
+    private static final Comparator<Basket> BEST_FIRST = Comparator.comparingDouble((Basket b) -> -b.score)
+            .thenComparingDouble(b -> -b.calories)
+            .thenComparing((a, b) -> Arrays.compare(a.positions, b.positions));
+
+    /**
+     * Creates a recommender.
+     *
+     * @param k               the number of distinct baskets to return.
+     * @param beamWidth       the number of baskets kept at each level of the search.
+     * @param maxLatencyNanos the time after which the search stops with what it has found.
+     */
+    public BeamSearchRecommender(int k, int beamWidth, long maxLatencyNanos) {
+        if (k < 1 || beamWidth < 1 || maxLatencyNanos < 1) {
+            throw new IllegalArgumentException("k, beam width and latency cap must be positive");
+        }
+        this.k = k;
+        this.beamWidth = beamWidth;
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    /**
+     * Creates a recommender with {@link #DEFAULT_K}, {@link #DEFAULT_BEAM_WIDTH} and
+     * {@link #DEFAULT_MAX_LATENCY_NANOS}.
+     */
+    public BeamSearchRecommender() {
+        this(DEFAULT_K, DEFAULT_BEAM_WIDTH, DEFAULT_MAX_LATENCY_NANOS);
+    }
+
+    public int getK() { return k; }
+    public int getBeamWidth() { return beamWidth; }
+    public long getMaxLatencyNanos() { return maxLatencyNanos; }
+
+    /**
+     * Finds the top baskets.
+     *
+     * @param items           the menu items.
+     * @param affinity        each item's affinity, by position in {@code items}; should add up to 1.
+     * @param desiredCalories the calorie budget.
+     * @return up to {@code k} distinct baskets, best first; the items of each basket are ordered by
+     *         affinity, highest first. Empty if no single item fits the budget.
+     */
+    public List<List<MenuItem>> recommend(List<MenuItem> items, double[] affinity, int desiredCalories) {
+        TrackerEvents.BeamSearch event = new TrackerEvents.BeamSearch();
+        event.begin();
+        long deadline = System.nanoTime() + maxLatencyNanos;
+        int n = items.size();
+        event.candidateItems = n;
+        double[] calories = new double[n];
+        for (int i = 0; i < n; i++) {
+            calories[i] = items.get(i).getCalories();
+        }
+        double budget = Math.max(1, desiredCalories);
+
+        // Keeps the k best distinct baskets; the worst of them is at the head.
+        PriorityQueue<Basket> best = new PriorityQueue<>(BEST_FIRST.reversed());
+        Set<Basket> seen = new HashSet<>();
+        List<Basket> beam = List.of(new Basket(new int[0], 0, 0, budget));
+
+        search:
+        while (!beam.isEmpty()) {
+            List<Basket> children = new ArrayList<>();
+            for (Basket parent : beam) {
+                if (System.nanoTime() > deadline) {
+                    event.stoppedEarly = true;
+                    break search;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (parent.calories + calories[i] > desiredCalories || contains(parent.positions, i)) {
+                        continue;
+                    }
+                    Basket child = new Basket(insertSorted(parent.positions, i), parent.calories + calories[i],
+                            parent.affinity + affinity[i], budget);
+                    event.basketsEvaluated++;
+                    if (seen.add(child)) {
+                        children.add(child);
+                        best.add(child);
+                        if (best.size() > k) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+            if (!children.isEmpty()) {
+                event.levels++;
+            }
+            children.sort(BEST_FIRST);
+            beam = children.size() > beamWidth ? children.subList(0, beamWidth) : children;
+        }
+
+        List<Basket> ranked = new ArrayList<>(best);
+        ranked.sort(BEST_FIRST);
+        List<List<MenuItem>> recommendations = new ArrayList<>();
+        for (Basket basket : ranked) {
+            Integer[] order = new Integer[basket.positions.length];
+            for (int j = 0; j < order.length; j++) {
+                order[j] = basket.positions[j];
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(affinity[b], affinity[a]));
+            List<MenuItem> recommendation = new ArrayList<>();
+            for (int position : order) {
+                recommendation.add(items.get(position));
+            }
+            recommendations.add(recommendation);
+        }
+        event.commit();
+        return recommendations;
+    }
+
+    /**
+     * Checks whether a sorted array contains a value.
+     */
+    private static boolean contains(int[] sorted, int value) {
+        return Arrays.binarySearch(sorted, value) >= 0;
+    }
+
+    /**
+     * Returns a copy of a sorted array with one value inserted in order: the canonical form of a basket.
+     */
+    private static int[] insertSorted(int[] sorted, int value) {
+        int[] result = new int[sorted.length + 1];
+        int at = -Arrays.binarySearch(sorted, value) - 1;
+        System.arraycopy(sorted, 0, result, 0, at);
+        result[at] = value;
+        System.arraycopy(sorted, at, result, at + 1, sorted.length - at);
+        return result;
+    }
+}
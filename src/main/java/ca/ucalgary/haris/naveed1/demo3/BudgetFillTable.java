@@ -0,0 +1,110 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code BudgetFillTable} class answers "what should I add to use up the rest of my calories?"
+ * for every remaining budget at once.
+ * <p>
+ * While a customer builds an order, the remaining calorie budget changes with every item added or
+ * removed. Instead of running a new search each time, the table is built once per customer and
+ * calorie goal with a 0/1 knapsack over all budgets from 0 to the goal. A fill is scored like a
+ * {@link BeamSearchRecommender} basket at the full goal,
+ * {@code AFFINITY_WEIGHT * (sum of the items' affinities) + FIT_WEIGHT * (fill calories / goal)},
+ * and like a basket it has every item at most once. (If items could repeat, every copy would add
+ * its affinity again and the cheapest item would win every budget: nine small fries.)
+ * <pre>
+ * best_i[b] = max(best_(i-1)[b], best_(i-1)[b - c_i] + value_i)   for c_i &lt;= b
+ * </pre>
+ * where {@code value_i = AFFINITY_WEIGHT * affinity_i + FIT_WEIGHT * c_i / goal}. Calories are
+ * rounded up to whole calories, so a fill never goes over the remaining budget.
+ * <p>
+ * For each item the table keeps one bit per budget telling whether the best fill of that budget
+ * takes the item, so {@link #fill(int)} rebuilds a suggestion by walking the items once.
+ */
+public class BudgetFillTable {
+    // Largest calorie goal a table is built for; larger goals are clamped to it.
+    public static final int MAX_GOAL = 10_000;
+
+    private final List<MenuItem> items;
+    private final int[] itemCalories;
+    private final int goal;
+    // Bit b of taken[i] is set if the best fill of budget b from items 0..i takes item i.
+    private final BitSet[] taken;
+
+    private BudgetFillTable(List<MenuItem> items, int[] itemCalories, int goal, BitSet[] taken) {
+        this.items = items;
+        this.itemCalories = itemCalories;
+        this.goal = goal;
+        this.taken = taken;
+    }
+
+    /**
+     * Builds the table for every budget from 0 to {@code goal}.
+     *
+     * @param items    the menu items.
+     * @param affinity each item's affinity, by position in {@code items}; should add up to 1.
+     * @param goal     the calorie goal, clamped to {@link #MAX_GOAL}.
+     * @return the table.
+     */
+    public static BudgetFillTable build(List<MenuItem> items, double[] affinity, int goal) {
+        goal = Math.max(0, Math.min(goal, MAX_GOAL));
+        int n = items.size();
+        int[] itemCalories = new int[n];
+        BitSet[] taken = new BitSet[n];
+        // Best score within each budget from the items seen so far; only needed while building.
+        double[] best = new double[goal + 1];
+        for (int i = 0; i < n; i++) {
+            // At least 1 calorie so a zero-calorie item still uses up part of the budget.
+            int c = Math.max(1, (int) Math.ceil(items.get(i).getCalories()));
+            double value = BeamSearchRecommender.AFFINITY_WEIGHT * affinity[i]
+                    + BeamSearchRecommender.FIT_WEIGHT * c / Math.max(1, goal);
+            itemCalories[i] = c;
+            taken[i] = new BitSet(goal + 1);
+            // Budgets from the top down, so best[b - c] does not include item i yet.
+            for (int b = goal; b >= c; b--) {
+                if (best[b - c] + value > best[b]) {
+                    best[b] = best[b - c] + value;
+                    taken[i].set(b);
+                }
+            }
+        }
+        return new BudgetFillTable(items, itemCalories, goal, taken);
+    }
+
+    /**
+     * Returns the calorie goal the table was built for.
+     *
+     * @return the goal, after clamping.
+     */
+    public int getGoal() {
+        return goal;
+    }
+
+    /**
+     * Returns the best items to add for a remaining budget.
+     *
+     * @param remainingCalories the calories left; values above the goal are treated as the goal.
+     * @return the suggested items in menu order, each at most once; empty if nothing fits.
+     */
+    public List<MenuItem> fill(int remainingCalories) {
+        List<MenuItem> suggestion = new ArrayList<>();
+        if (remainingCalories <= 0) {
+            return suggestion;
+        }
+        int b = Math.min(remainingCalories, goal);
+        for (int i = items.size() - 1; i >= 0; i--) {
+            if (taken[i].get(b)) {
+                suggestion.add(items.get(i));
+                b -= itemCalories[i];
+            }
+        }
+        Collections.reverse(suggestion);
+        return suggestion;
+    }
+}
@@ -0,0 +1,417 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code DemandForecaster} class predicts how many of each item will be ordered in a given
+ * hour, for kitchen prep planning.
+ * <p>
+ * Every item has its own Holt-Winters model (additive, with a damped trend) of its hourly order
+ * count: a level, a trend and one seasonal offset for each of the 168 hours of the week, so the
+ * Friday lunch peak and the quiet Monday morning are learned separately. The models are
+ * <ul>
+ *   <li>bootstrapped by {@link #bootstrap(OrderHistory, int)} in one pass over the history: the
+ *   chunks of the history are counted in parallel, then every item's hourly series is fitted in
+ *   parallel (items do not depend on each other);</li>
+ *   <li>kept current as orders are stored, as an {@link OrderEventBus} consumer: orders are counted
+ *   into the current hour, and when an order of a later hour arrives the finished hours (empty
+ *   ones included) are fed to every item's model;</li>
+ *   <li>read without a lock: each item's model is published as an immutable snapshot once its
+ *   hours are fed, so {@link #forecast(String, LocalDateTime)} is a map lookup and a few
+ *   multiplications, however long the history is.</li>
+ * </ul>
+ * Hours are wall-clock hours of the stored order times, the same times the history shows.
+ * <p>
+ * Usage: {@code DemandForecaster [hours] [parallelism]} prints the forecast of every item for the
+ * next hours (24 by default) from the default history.
+ */
+public class DemandForecaster implements OrderEventBus.EventHandler {
+    // Hours in a season: one week.
+    static final int SEASON = 168;
+    // Smoothing of the level, the trend and the seasonal offsets.
+    private static final double ALPHA = 0.2;
+    private static final double BETA = 0.01;
+    private static final double GAMMA = 0.1;
+    // Damping of the trend, so long horizons do not follow it forever.
+    private static final double PHI = 0.98;
+    // Most empty hours fed between two orders; after two weeks without orders the models have
+    // settled and more empty hours would not change them.
+    private static final int MAX_CATCH_UP = 2 * SEASON;
+    // Most hours of history fitted by the bootstrap: a year is plenty for a weekly season.
+    private static final long MAX_HISTORY_HOURS = 53L * SEASON;
+    private static final DateTimeFormatter HOUR_LABEL = DateTimeFormatter.ofPattern("EEE HH:00");
+
+    // The location whose bus events are counted.
+    private final String source;
+    private final Map<String, ItemModel> models = new ConcurrentHashMap<>();
+    // The hour orders are being counted for, and the counts so far; guarded by this.
+    private long currentHour = Long.MIN_VALUE;
+    private final Map<String, Integer> currentCounts = new HashMap<>();
+
+    /**
+     * Creates a forecaster without any history.
+     *
+     * @param source the location id whose orders it counts from the bus, or
+     *               {@link OrderEventBus#DEFAULT_SOURCE}.
+     */
+    public DemandForecaster(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Builds a forecaster from everything in a history, in one parallel pass.
+     * <p>
+     * The forecaster is not subscribed to the bus yet; see {@link #subscribe(OrderEventBus)}.
+     *
+     * @param orderHistory the history.
+     * @param parallelism  the number of threads counting chunks and fitting items.
+     * @return the forecaster, with the last hour of the history as its current hour.
+     * @throws IOException if the history cannot be read.
+     */
+    public static DemandForecaster bootstrap(OrderHistory orderHistory, int parallelism) throws IOException {
+        DemandForecaster forecaster = new DemandForecaster(orderHistory.getEventSource());
+        IdDictionary items = orderHistory.getItemDictionary();
+        PerfectHashDictionary itemIds = PerfectHashDictionary.of(items);
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            // Pass over the history: every chunk counts its orders per item and hour.
+            List<Future<Map<Long, Integer>>> counted = new ArrayList<>();
+            for (HistoryExporter.Chunk chunk : HistoryExporter.chunksOf(orderHistory)) {
+                counted.add(pool.submit(() -> countChunk(chunk, items, itemIds)));
+            }
+            // Merge the chunk counts into one hourly series per item.
+            Map<Integer, Map<Long, Integer>> byItem = new HashMap<>();
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (Future<Map<Long, Integer>> future : counted) {
+                for (Map.Entry<Long, Integer> entry : future.get().entrySet()) {
+                    long hour = entry.getKey() >> 20;
+                    int item = (int) (entry.getKey() & 0xFFFFF);
+                    byItem.computeIfAbsent(item, i -> new HashMap<>()).merge(hour, entry.getValue(), Integer::sum);
+                    first = Math.min(first, hour);
+                    last = Math.max(last, hour);
+                }
+            }
+            if (byItem.isEmpty()) {
+                return forecaster;
+            }
+            // Fit every item over the finished hours; the last hour stays open for live orders.
+            long start = Math.max(first, last - MAX_HISTORY_HOURS);
+            long end = last;
+            List<Future<?>> fitted = new ArrayList<>();
+            for (Map.Entry<Integer, Map<Long, Integer>> entry : byItem.entrySet()) {
+                String name = items.nameOf(entry.getKey());
+                Map<Long, Integer> series = entry.getValue();
+                ItemModel model = new ItemModel();
+                forecaster.models.put(name, model);
+                fitted.add(pool.submit(() -> {
+                    for (long hour = start; hour < end; hour++) {
+                        model.update(hour, series.getOrDefault(hour, 0));
+                    }
+                    model.publish();
+                }));
+                Integer open = series.get(end);
+                if (open != null) {
+                    forecaster.currentCounts.put(name, open);
+                }
+            }
+            for (Future<?> future : fitted) {
+                future.get();
+            }
+            forecaster.currentHour = end;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("forecast bootstrap interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return forecaster;
+    }
+
+    /**
+     * Counts the orders of one chunk per item and hour. Runs on a pool thread.
+     *
+     * @return counts keyed by {@code hour << 20 | itemId}.
+     */
+    private static Map<Long, Integer> countChunk(HistoryExporter.Chunk chunk, IdDictionary items,
+                                                 PerfectHashDictionary itemIds) throws IOException {
+        byte[] text = chunk.read();
+        Map<Long, Integer> counts = new HashMap<>();
+        HistoryLineParser parser = new HistoryLineParser();
+        int lineStart = 0;
+        for (int i = 0; i <= text.length; i++) {
+            if (i < text.length && text[i] != '\n') {
+                continue;
+            }
+            int lineEnd = i > lineStart && text[i - 1] == '\r' ? i - 1 : i;
+            boolean valid = lineEnd > lineStart && parser.parse(text, lineStart, lineEnd) && parser.checksumMatches();
+            lineStart = i + 1;
+            if (!valid || parser.timeKey() == HistoryLineParser.UNKNOWN_TIME) {
+                continue;
+            }
+            long hour = Math.floorDiv(parser.timeKey(), 60);
+            for (int item = 0; item < parser.itemCount(); item++) {
+                int itemId = parser.itemId(item, itemIds);
+                if (itemId < 0) {
+                    itemId = items.idFor(parser.itemName(item));
+                }
+                counts.merge((hour << 20) | itemId, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Starts updating the forecasts with the orders of this forecaster's location published on a bus.
+     * Orders stored between the bootstrap and this call are not counted.
+     *
+     * @param bus the bus.
+     * @return the subscription, to read the consumer's lag.
+     */
+    public OrderEventBus.Subscription subscribe(OrderEventBus bus) {
+        return bus.subscribe("forecast-" + source, this);
+    }
+
+    @Override
+    public void onEvent(HistoryRecord record, long timeMillis, long sequence, boolean endOfBatch) {
+        onEvent(record, OrderEventBus.DEFAULT_SOURCE, timeMillis, sequence, endOfBatch);
+    }
+
+    @Override
+    public void onEvent(HistoryRecord record, String source, long timeMillis, long sequence, boolean endOfBatch) {
+        if (this.source.equals(source)) {
+            record(record, timeMillis);
+        }
+    }
+
+    /**
+     * Counts a stored order into the hour it was placed in.
+     *
+     * @param record     the order.
+     * @param timeMillis when it was published, used if its stored time cannot be read.
+     */
+    public void record(HistoryRecord record, long timeMillis) {
+        LocalDateTime time = HistoryRecord.parseTime(record.getDateTime());
+        if (time == null) {
+            time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.systemDefault());
+        }
+        observe(hourOf(time), record.getItems());
+    }
+
+    /**
+     * Counts items ordered in an hour. Hours before the current one are counted into the current
+     * hour, since finished hours have already been fed to the models.
+     *
+     * @param hour  the hour, as returned by {@link #hourOf(LocalDateTime)}.
+     * @param items the ordered item names.
+     */
+    synchronized void observe(long hour, List<String> items) {
+        if (currentHour == Long.MIN_VALUE) {
+            currentHour = hour;
+        } else if (hour > currentHour) {
+            closeHoursUntil(hour);
+        }
+        for (String item : items) {
+            currentCounts.merge(item, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Feeds the current hour and the empty hours after it, up to {@code hour}, to every model and
+     * publishes the new snapshots.
+     */
+    private void closeHoursUntil(long hour) {
+        for (String item : currentCounts.keySet()) {
+            models.computeIfAbsent(item, i -> new ItemModel());
+        }
+        for (Map.Entry<String, ItemModel> entry : models.entrySet()) {
+            ItemModel model = entry.getValue();
+            model.update(currentHour, currentCounts.getOrDefault(entry.getKey(), 0));
+            for (long empty = Math.max(currentHour + 1, hour - MAX_CATCH_UP); empty < hour; empty++) {
+                model.update(empty, 0);
+            }
+            model.publish();
+        }
+        currentCounts.clear();
+        currentHour = hour;
+    }
+
+    /**
+     * Returns the expected number of orders of an item in the hour that contains a time.
+     *
+     * @param item the item name.
+     * @param time a time in the hour.
+     * @return the expected count (never negative), or 0 for an item that has not been ordered yet.
+     */
+    public double forecast(String item, LocalDateTime time) {
+        ItemModel model = models.get(item);
+        Snapshot snapshot = model == null ? null : model.snapshot;
+        return snapshot == null ? 0 : snapshot.forecast(hourOf(time));
+    }
+
+    /**
+     * Returns the expected number of orders of an item in each of the hours starting at a time.
+     *
+     * @param item  the item name.
+     * @param from  a time in the first hour.
+     * @param hours the number of hours.
+     * @return the expected counts, one per hour.
+     */
+    public double[] forecast(String item, LocalDateTime from, int hours) {
+        double[] expected = new double[hours];
+        for (int h = 0; h < hours; h++) {
+            expected[h] = forecast(item, from.plusHours(h));
+        }
+        return expected;
+    }
+
+    /**
+     * Returns the items that have a model.
+     *
+     * @return the item names.
+     */
+    public List<String> getItems() {
+        return new ArrayList<>(models.keySet());
+    }
+
+    /**
+     * Returns the hour of a wall-clock time, counted from the epoch.
+     */
+    static long hourOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    /**
+     * Returns the hour of the week (0 is Monday 00:00 to 01:00) of an hour from the epoch, which
+     * was a Thursday.
+     */
+    static int hourOfWeek(long hour) {
+        return (int) Math.floorMod(hour + 3 * 24, (long) SEASON);
+    }
+
+    /**
+     * The model of one item while it is being fed; only one thread feeds a model at a time.
+     * <p>
+     * The first season is the warm-up: the hourly counts are kept as they are, and at its end the
+     * level is set to their mean and the seasonal offsets to each hour's difference from it. After
+     * that every hour is a Holt-Winters update.
+     */
+    private static final class ItemModel {
+        private final double[] seasonal = new double[SEASON];
+        private double level;
+        private double trend;
+        private long lastHour = Long.MIN_VALUE;
+        private int hoursSeen;
+        private double warmUpSum;
+        // What readers see; replaced by publish().
+        private volatile Snapshot snapshot;
+
+        void update(long hour, int count) {
+            int slot = hourOfWeek(hour);
+            lastHour = hour;
+            if (hoursSeen < SEASON) {
+                seasonal[slot] = count;
+                warmUpSum += count;
+                if (++hoursSeen == SEASON) {
+                    level = warmUpSum / SEASON;
+                    for (int s = 0; s < SEASON; s++) {
+                        seasonal[s] -= level;
+                    }
+                }
+                return;
+            }
+            double previousLevel = level;
+            level = ALPHA * (count - seasonal[slot]) + (1 - ALPHA) * (level + PHI * trend);
+            trend = BETA * (level - previousLevel) + (1 - BETA) * PHI * trend;
+            seasonal[slot] = GAMMA * (count - level) + (1 - GAMMA) * seasonal[slot];
+            hoursSeen++;
+        }
+
+        void publish() {
+            if (hoursSeen == 0) {
+                return;
+            }
+            boolean warm = hoursSeen >= SEASON;
+            snapshot = new Snapshot(lastHour, warm ? level : warmUpSum / hoursSeen, warm ? trend : 0,
+                    warm ? seasonal.clone() : null);
+        }
+    }
+
+    /**
+     * An immutable copy of a model, read by the forecasts.
+     *
+     * @param lastHour the last hour fed to the model.
+     * @param level    the level after that hour (the mean count during the warm-up).
+     * @param trend    the trend per hour.
+     * @param seasonal the offset of each hour of the week, or {@code null} during the warm-up.
+     */
+    private record Snapshot(long lastHour, double level, double trend, double[] seasonal) {
+        double forecast(long hour) {
+            if (seasonal == null) {
+                return level;
+            }
+            // Sum of PHI^1..PHI^k: the damped trend k hours ahead.
+            long k = Math.max(1, hour - lastHour);
+            double damped = PHI * (1 - Math.pow(PHI, k)) / (1 - PHI);
+            return Math.max(0, level + damped * trend + seasonal[hourOfWeek(hour)]);
+        }
+    }
+
+    /**
+     * Command-line entry point: prints the forecast of every item for the next hours.
+     *
+     * @param args the number of hours (default 24) and the parallelism (default: every processor).
+     */
+    public static void main(String[] args) {
+        int hours = 24;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        try {
+            if (args.length > 0) {
+                hours = Integer.parseInt(args[0]);
+            }
+            if (args.length > 1) {
+                parallelism = Integer.parseInt(args[1]);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Usage: DemandForecaster [hours] [parallelism]");
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            DemandForecaster forecaster = bootstrap(OrderHistory.openDefault(), parallelism);
+            System.out.println("Fitted " + forecaster.getItems().size() + " items in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            LocalDateTime from = LocalDateTime.now().withMinute(0).withSecond(0).withNano(0).plusHours(1);
+            List<String> items = forecaster.getItems();
+            items.sort(null);
+            for (String item : items) {
+                StringBuilder line = new StringBuilder(item).append(':');
+                double[] expected = forecaster.forecast(item, from, hours);
+                for (int h = 0; h < hours; h++) {
+                    line.append(String.format(" %s=%.1f", from.plusHours(h).format(HOUR_LABEL), expected[h]));
+                }
+                System.out.println(line);
+            }
+        } catch (IOException e) {
+            System.out.println("Error forecasting demand: " + e.getMessage());
+        }
+    }
+}
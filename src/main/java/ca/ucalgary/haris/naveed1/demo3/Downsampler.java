@@ -0,0 +1,152 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+/**
+ * The {@code Downsampler} class reduces long time series to a number of points a chart can draw.
+ * <p>
+ * A chart cannot show more points than it has pixels, but JavaFX still creates a node per data point,
+ * so a customer with thousands of orders makes the chart slow and unreadable. Two reductions are offered:
+ * <ul>
+ *   <li>{@link #lttb(double[], double[], int)}: Largest-Triangle-Three-Buckets, which keeps the points
+ *   that shape the line (peaks and dips survive), for line charts.</li>
+ *   <li>{@link #bucketMeans(double[], double[][], int)}: averages over equal-width time buckets, for
+ *   bar charts.</li>
+ * </ul>
+ * Both run in a single pass over the input, so the work is linear in the history and the drawing
+ * cost depends only on the requested number of points.
+ */
+public class Downsampler {
+
+    private Downsampler() {
+    }
+
+    /**
+     * Picks at most {@code threshold} points of a series with Largest-Triangle-Three-Buckets.
+     * <p>
+     * The first and last points are always kept. The points in between are split into
+     * {@code threshold - 2} buckets, and from each bucket the point forming the largest triangle with
+     * the previously kept point and the average of the next bucket is kept.
+     *
+     * @param x         the x values, in ascending order.
+     * @param y         the y values, same length as {@code x}.
+     * @param threshold the maximum number of points to keep (at least 3 to downsample at all).
+     * @return the indexes of the kept points, in ascending order.
+     */
+    public static int[] lttb(double[] x, double[] y, int threshold) {
+        int n = x.length;
+        if (threshold >= n || threshold < 3) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] kept = new int[threshold];
+        int count = 0;
+        kept[count++] = 0;
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int previous = 0;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket (or the last point for the final bucket).
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(n, (int) Math.floor((bucket + 2) * bucketSize) + 1);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x[i];
+                averageY += y[i];
+            }
+            int nextLength = nextEnd - nextStart;
+            if (nextLength > 0) {
+                averageX /= nextLength;
+                averageY /= nextLength;
+            } else {
+                averageX = x[n - 1];
+                averageY = y[n - 1];
+            }
+
+            // Point of this bucket forming the largest triangle with the previous point and the average.
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = Math.min(n - 1, (int) Math.floor((bucket + 1) * bucketSize) + 1);
+            double largestArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((x[previous] - averageX) * (y[i] - y[previous])
+                        - (x[previous] - x[i]) * (averageY - y[previous]));
+                if (area > largestArea) {
+                    largestArea = area;
+                    chosen = i;
+                }
+            }
+            kept[count++] = chosen;
+            previous = chosen;
+        }
+        kept[count++] = n - 1;
+        return kept;
+    }
+
+    /**
+     * The result of {@link #bucketMeans}: bucket start times and the mean of every series per bucket.
+     * Buckets without any points are left out.
+     */
+    public static class Buckets {
+        private final double[] starts;
+        private final double[][] means;
+
+        Buckets(double[] starts, double[][] means) {
+            this.starts = starts;
+            this.means = means;
+        }
+
+        public int size() { return starts.length; }
+        public double getStart(int bucket) { return starts[bucket]; }
+        public double getMean(int series, int bucket) { return means[series][bucket]; }
+    }
+
+    /**
+     * Averages several series over equal-width buckets of x.
+     *
+     * @param x       the x values, in ascending order.
+     * @param series  the y series, each the same length as {@code x}.
+     * @param buckets the number of buckets to split the x range into.
+     * @return the non-empty buckets with the mean of every series.
+     */
+    public static Buckets bucketMeans(double[] x, double[][] series, int buckets) {
+        int n = x.length;
+        if (n == 0 || buckets < 1) {
+            return new Buckets(new double[0], new double[series.length][0]);
+        }
+        double min = x[0];
+        double width = Math.max(1e-9, (x[n - 1] - min) / buckets);
+        double[][] sums = new double[series.length][buckets];
+        int[] counts = new int[buckets];
+        for (int i = 0; i < n; i++) {
+            int bucket = Math.min(buckets - 1, (int) ((x[i] - min) / width));
+            counts[bucket]++;
+            for (int s = 0; s < series.length; s++) {
+                sums[s][bucket] += series[s][i];
+            }
+        }
+        int nonEmpty = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                nonEmpty++;
+            }
+        }
+        double[] starts = new double[nonEmpty];
+        double[][] means = new double[series.length][nonEmpty];
+        int b = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (counts[bucket] == 0) {
+                continue;
+            }
+            starts[b] = min + bucket * width;
+            for (int s = 0; s < series.length; s++) {
+                means[s][b] = sums[s][bucket] / counts[bucket];
+            }
+            b++;
+        }
+        return new Buckets(starts, means);
+    }
+}
@@ -7,9 +7,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Map;
 
 // TEST CASES FOR TRACKER FILE
 /**
@@ -244,4 +249,1058 @@ public class FXTest {
         assertEquals("Item1", recommendation.get(0).getName());
         assertEquals("Item2", recommendation.get(1).getName());
     }
-}
\ No newline at end of file
+
+    // TEST CASES FOR HISTORYRECORD FILE
+
+    // test that a framed record parses back to the same fields
+    @org.junit.Test
+    public void testFramedRecordRoundTrip() {
+        HistoryRecord record = new HistoryRecord("TestUser", "April 20, 2025 at 7:32pm", 790.0,
+                Arrays.asList("Big Mac", "Small Fries"));
+        HistoryRecord parsed = HistoryRecord.parse(HistoryRecord.frame(record.toPayload()));
+        assertNotNull(parsed);
+        assertEquals("TestUser", parsed.getCustomerName());
+        assertEquals(790.0, parsed.getTotalCalories(), 0.001);
+        assertEquals(2, parsed.getItems().size());
+    }
+
+    // test that a cut off framed record is rejected instead of being read as an order
+    @org.junit.Test
+    public void testTornFramedRecordRejected() {
+        String framed = HistoryRecord.frame("TestUser|April 20, 2025 at 7:32pm|790.0|Big Mac,Small Fries");
+        assertNull(HistoryRecord.parse(framed.substring(0, framed.length() - 5)));
+        // old unframed lines are still accepted
+        assertNotNull(HistoryRecord.parse("bob|April 20, 2025 at 7:32p.m.|1220.0|Big Mac,McFlurry Regular"));
+    }
+
+    // TEST CASES FOR HISTORYLOG FILE
+
+    // test that recovery cuts off a framed record that was only partly written
+    @org.junit.Test
+    public void testRecoverTruncatesTornFramedTail() throws IOException {
+        deleteTestFiles("test_recover_torn.txt");
+        try {
+            HistoryLog log = HistoryLog.forFile("test_recover_torn.txt");
+            String good = HistoryRecord.frame("Alice|April 20, 2025 at 7:32pm|540.0|Big Mac") + "\n";
+            String torn = HistoryRecord.frame("Bob|April 20, 2025 at 7:40pm|230.0|Small Fries");
+            torn = torn.substring(0, torn.length() - 6);
+            Files.writeString(Paths.get("test_recover_torn.txt"), good + torn);
+            assertEquals(torn.length(), log.recover());
+            assertEquals(good, Files.readString(Paths.get("test_recover_torn.txt")));
+        } finally {
+            deleteTestFiles("test_recover_torn.txt");
+        }
+    }
+
+    // test that recovery keeps a damaged line in the middle of the file for verify to report
+    @org.junit.Test
+    public void testRecoverKeepsDamagedMiddleLine() throws IOException {
+        deleteTestFiles("test_recover_middle.txt");
+        try {
+            HistoryLog log = HistoryLog.forFile("test_recover_middle.txt");
+            String damaged = HistoryRecord.frame("Bob|April 20, 2025 at 7:40pm|230.0|Small Fries").replace("Bob", "Rob");
+            String content = HistoryRecord.frame("Alice|April 20, 2025 at 7:32pm|540.0|Big Mac") + "\n"
+                    + damaged + "\n"
+                    + HistoryRecord.frame("Carol|April 20, 2025 at 7:45pm|390.0|McChicken") + "\n";
+            Files.writeString(Paths.get("test_recover_middle.txt"), content);
+            assertEquals(0, log.recover());
+            assertEquals(content, Files.readString(Paths.get("test_recover_middle.txt")));
+            assertEquals(List.of(2), HistoryLog.verify(new File("test_recover_middle.txt")).corruptLines);
+        } finally {
+            deleteTestFiles("test_recover_middle.txt");
+        }
+    }
+
+    // test that recovery keeps a valid old style last line that is missing its line break
+    @org.junit.Test
+    public void testRecoverKeepsUnterminatedLegacyLine() throws IOException {
+        deleteTestFiles("test_recover_legacy.txt");
+        try {
+            HistoryLog log = HistoryLog.forFile("test_recover_legacy.txt");
+            String legacy = "bob|April 20, 2025 at 7:32p.m.|1220.0|Big Mac,McFlurry Regular";
+            Files.writeString(Paths.get("test_recover_legacy.txt"), legacy);
+            assertEquals(0, log.recover());
+            assertEquals(legacy + System.lineSeparator(), Files.readString(Paths.get("test_recover_legacy.txt")));
+            HistoryLog.VerifyReport report = HistoryLog.verify(new File("test_recover_legacy.txt"));
+            assertTrue(report.isClean());
+            assertEquals(1, report.legacy);
+        } finally {
+            deleteTestFiles("test_recover_legacy.txt");
+        }
+    }
+
+    // test that a checkpoint that is unreadable or not on a line boundary falls back to a full scan
+    @org.junit.Test
+    public void testRecoverIgnoresBadCheckpoint() throws IOException {
+        deleteTestFiles("test_recover_ckpt.txt");
+        try {
+            HistoryLog log = HistoryLog.forFile("test_recover_ckpt.txt");
+            String good = HistoryRecord.frame("Alice|April 20, 2025 at 7:32pm|540.0|Big Mac") + "\n";
+            String torn = HistoryRecord.frame("Bob|April 20, 2025 at 7:40pm|230.0|Small Fries");
+            torn = torn.substring(0, torn.length() - 6);
+            for (String checkpoint : List.of("not a number", "5", "100000")) {
+                Files.writeString(Paths.get("test_recover_ckpt.txt"), good + torn);
+                Files.writeString(Paths.get("test_recover_ckpt.txt.ckpt"), checkpoint);
+                assertEquals(torn.length(), log.recover());
+                assertEquals(good, Files.readString(Paths.get("test_recover_ckpt.txt")));
+                // the checkpoint moves to the end of the good part
+                assertEquals(Long.toString(good.length()), Files.readString(Paths.get("test_recover_ckpt.txt.ckpt")));
+            }
+        } finally {
+            deleteTestFiles("test_recover_ckpt.txt");
+        }
+    }
+
+    // test that verify counts framed, legacy and corrupt lines and notices a torn tail
+    @org.junit.Test
+    public void testVerifyReportsEveryKindOfLine() throws IOException {
+        deleteTestFiles("test_verify.txt");
+        try {
+            String torn = HistoryRecord.frame("Bob|April 20, 2025 at 7:40pm|230.0|Small Fries");
+            Files.writeString(Paths.get("test_verify.txt"),
+                    HistoryRecord.frame("Alice|April 20, 2025 at 7:32pm|540.0|Big Mac") + "\n"
+                            + "bob|April 20, 2025 at 7:32p.m.|1220.0|Big Mac,McFlurry Regular\n"
+                            + "not a record\n"
+                            + torn.substring(0, torn.length() - 6));
+            HistoryLog.VerifyReport report = HistoryLog.verify(new File("test_verify.txt"));
+            assertEquals(4, report.lines);
+            assertEquals(1, report.framed);
+            assertEquals(1, report.legacy);
+            assertEquals(List.of(3, 4), report.corruptLines);
+            assertTrue(report.tornTail);
+            assertFalse(report.isClean());
+        } finally {
+            deleteTestFiles("test_verify.txt");
+        }
+    }
+
+    // TEST CASES FOR TRENDINGITEMS FILE
+
+    // test that recent orders outrank a larger number of old orders
+    @org.junit.Test
+    public void testTrendingFavoursRecentOrders() {
+        TrendingItems trending = new TrendingItems(4, 60 * 60 * 1000);
+        long now = System.currentTimeMillis();
+        // 100 orders ten half-lives ago weigh about as much as 0.1 orders now
+        for (int i = 0; i < 100; i++) {
+            trending.offer(List.of("Big Mac"), now - 10L * 60 * 60 * 1000);
+        }
+        trending.offer(List.of("McChicken", "McChicken"), now);
+        assertEquals("McChicken", trending.top(1).getFirst());
+        assertEquals(2.0, trending.estimate("McChicken", now), 0.001);
+    }
+
+    // TEST CASES FOR SHARDEDORDERHISTORY FILE
+
+    // test that every customer stays in one shard, through the OrderHistory type and after rebalancing
+    @org.junit.Test
+    public void testShardedHistoryRebalances() throws IOException {
+        deleteTestFiles("test_shards");
+        try {
+            OrderHistory history = ShardedOrderHistory.create("test_shards", 2);
+            List<HistoryRecord> records = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                records.add(new HistoryRecord("Customer" + (i % 8), "October 19, 2026 at 1:00pm", 570, List.of("Big Mac")));
+            }
+            history.storeRecords(records);
+            assertEquals(5, history.findCustomerRecords("Customer3").size());
+            assertEquals(5, history.buildFrequencyMap("Customer3").get("Big Mac").intValue());
+            assertEquals(40, history.query().list().size());
+
+            ShardedOrderHistory.rebalance("test_shards", 3);
+            ShardedOrderHistory rebalanced = ShardedOrderHistory.open("test_shards");
+            assertEquals(3, rebalanced.getShardCount());
+            assertEquals(40, rebalanced.query().list().size());
+            assertEquals(5, rebalanced.shardFor("Customer3").findCustomerRecords("Customer3").size());
+
+            // a switch that stopped after it was recorded is finished when the history is opened
+            ShardedOrderHistory.prepareRebalance(new File("test_shards"), 4);
+            ShardedOrderHistory reopened = ShardedOrderHistory.open("test_shards");
+            assertEquals(4, reopened.getShardCount());
+            assertFalse(new File("test_shards/rebalance.txt").exists());
+            assertEquals(40, reopened.query().list().size());
+            assertEquals(5, reopened.shardFor("Customer3").findCustomerRecords("Customer3").size());
+        } finally {
+            deleteTestFiles("test_shards");
+        }
+    }
+
+    // TEST CASES FOR SESSIONSTORE FILE
+
+    // test that idle sessions are dropped and the least recently used session is evicted when full
+    @org.junit.Test
+    public void testSessionStoreEviction() throws IOException {
+        deleteTestFiles("test_session.items");
+        try {
+            long[] now = {0};
+            IdDictionary items = IdDictionary.forFile("test_session.items");
+            SessionStore sessions = new SessionStore(items, 2, 1000, 1, () -> now[0]);
+            sessions.addItemNames("a", List.of("Big Mac", "Small Fries"));
+            sessions.addItemNames("b", List.of("McChicken"));
+            assertEquals(List.of("Big Mac", "Small Fries"), sessions.itemNames("a"));
+            // "b" is now the least recently used session, so adding "c" evicts it
+            sessions.addItemNames("c", List.of("Big Mac"));
+            assertTrue(sessions.itemNames("b").isEmpty());
+            // after the idle time-out every session is gone
+            now[0] = 5000;
+            assertTrue(sessions.itemNames("a").isEmpty());
+            assertEquals(0, sessions.size());
+        } finally {
+            deleteTestFiles("test_session.items");
+        }
+    }
+
+    // TEST CASES FOR IDDICTIONARY FILE
+
+    // test that a name keeps its id after a restart, even with a line break in it
+    @org.junit.Test
+    public void testIdDictionaryIdsSurviveReopen() throws IOException {
+        deleteTestFiles("test_ids.customers");
+        deleteTestFiles("test_ids_reopened.customers");
+        try {
+            IdDictionary ids = IdDictionary.forFile("test_ids.customers");
+            int ann = ids.idFor("Ann\nLee");
+            int bob = ids.idFor("Bob");
+            assertEquals(ann, ids.idFor("Ann Lee"));
+            assertEquals(ann, ids.lookup("Ann\rLee"));
+            assertEquals("Ann Lee", ids.nameOf(ann));
+
+            // a copy of the file is loaded fresh, as it would be by the next run
+            Files.copy(Paths.get("test_ids.customers"), Paths.get("test_ids_reopened.customers"));
+            IdDictionary reopened = IdDictionary.forFile("test_ids_reopened.customers");
+            assertEquals(2, reopened.size());
+            assertEquals(ann, reopened.lookup("Ann\nLee"));
+            assertEquals(bob, reopened.lookup("Bob"));
+            assertEquals(ann, reopened.idFor("Ann Lee"));
+            assertEquals(2, reopened.size());
+        } finally {
+            deleteTestFiles("test_ids.customers");
+            deleteTestFiles("test_ids_reopened.customers");
+        }
+    }
+
+    // test that a customer only gets an id once an order of theirs is stored
+    @org.junit.Test
+    public void testSessionsDoNotRegisterCustomers() throws IOException {
+        deleteTestFiles("test_ids.txt");
+        try {
+            Menu menu = new Menu();
+            NutritionService service = new NutritionService(menu, new OrderHistory("test_ids.txt"));
+            IdDictionary customers = service.getOrderHistory().getCustomerDictionary();
+            service.startSession("test_just_looking");
+            service.startSession("test_buyer");
+            Order order = new Order("test_buyer");
+            order.addItem(menu.getItemByName("Big Mac"));
+            assertTrue(service.placeOrder(order));
+            service.getOrderHistory().buildAllFrequencyMaps();
+            assertEquals(-1, customers.lookup("test_just_looking"));
+            assertTrue(customers.lookup("test_buyer") >= 0);
+        } finally {
+            deleteTestFiles("test_ids.txt");
+        }
+    }
+
+    // TEST CASES FOR BATCHINGESTER FILE
+
+    // test that bad lines are rejected and reported while the good ones are stored and published
+    @org.junit.Test
+    public void testBatchIngestRejectsBadLines() throws IOException, InterruptedException {
+        deleteTestFiles("test_batch.txt");
+        try {
+            OrderHistory history = new OrderHistory("test_batch.txt");
+            history.setEventSource("test-batch");
+            OrderRateCounters rates = OrderRateCounters.shared();
+            String input = String.join("\n",
+                    "# phone orders",
+                    "Ann|Big Mac, small fries",
+                    "",
+                    "Bob Big Mac",
+                    "Cy|Big Mac,Poutine",
+                    "Dee| , ",
+                    "|Big Mac",
+                    "Eve|McChicken");
+            BatchIngester.Report report = new BatchIngester(new Menu(), history).ingest(new java.io.StringReader(input));
+            assertEquals(8, report.getLinesRead());
+            assertEquals(2, report.getOrdersStored());
+            assertEquals(4, report.getLinesRejected());
+            assertEquals(List.of("line 4: missing '|' between customer and items",
+                    "line 5: unknown item \"Poutine\"",
+                    "line 6: no items",
+                    "line 7: missing customer name"), report.getErrors());
+            assertTrue(report.toString().startsWith("Batch import finished: 2 orders stored, 4 lines rejected, 8 lines read"));
+            // names are stored as they are on the menu, with the menu's calories
+            HistoryRecord ann = history.findCustomerRecords("Ann").getFirst();
+            assertEquals(List.of("Big Mac", "Small Fries"), ann.getItems());
+            assertEquals(790.0, ann.getTotalCalories(), 0.001);
+            // the stored orders reach the bus consumers like orders placed at the counter
+            for (int i = 0; i < 100 && rates.orders("test-batch", OrderRateCounters.Window.MINUTE) < 2; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, rates.orders("test-batch", OrderRateCounters.Window.MINUTE));
+        } finally {
+            deleteTestFiles("test_batch.txt");
+        }
+    }
+
+    // TEST CASES FOR DOWNSAMPLER FILE
+
+    // test that LTTB keeps the end points, stays within the limit and keeps a spike
+    @org.junit.Test
+    public void testLttbKeepsShapeWithinLimit() {
+        double[] x = new double[10000];
+        double[] y = new double[10000];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i;
+            y[i] = 500;
+        }
+        y[4321] = 3000;
+        int[] kept = Downsampler.lttb(x, y, 100);
+        assertEquals(100, kept.length);
+        assertEquals(0, kept[0]);
+        assertEquals(9999, kept[kept.length - 1]);
+        assertTrue(Arrays.stream(kept).anyMatch(i -> i == 4321));
+    }
+
+    // TEST CASES FOR BEAMSEARCHRECOMMENDER FILE
+
+    // test that the top baskets are distinct, fit the budget and the best one uses the favourite item
+    @org.junit.Test
+    public void testBeamSearchReturnsDistinctBaskets() {
+        List<MenuItem> items = List.of(
+                new MenuItem("Big Mac", 550, 25, 45, 9, 30),
+                new MenuItem("Small Fries", 230, 3, 29, 0, 11),
+                new MenuItem("McChicken", 400, 14, 39, 5, 21),
+                new MenuItem("Cheeseburger", 300, 15, 32, 7, 13));
+        double[] affinity = {0.7, 0.1, 0.1, 0.1};
+        List<List<MenuItem>> baskets = new BeamSearchRecommender(3, 8, 1_000_000_000L).recommend(items, affinity, 900);
+        assertEquals(3, baskets.size());
+        assertEquals(3, new HashSet<>(baskets.stream().map(HashSet::new).toList()).size());
+        for (List<MenuItem> basket : baskets) {
+            assertTrue(basket.stream().mapToDouble(MenuItem::getCalories).sum() <= 900);
+        }
+        assertEquals("Big Mac", baskets.getFirst().getFirst().getName());
+    }
+
+    // TEST CASES FOR BUDGETFILLTABLE FILE
+
+    // test that a fill never goes over the remaining calories and uses them fully when it can
+    @org.junit.Test
+    public void testBudgetFillStaysWithinRemaining() {
+        List<MenuItem> items = List.of(
+                new MenuItem("Cheeseburger", 300, 15, 32, 7, 13),
+                new MenuItem("Big Mac", 500, 25, 45, 9, 30));
+        BudgetFillTable table = BudgetFillTable.build(items, new double[]{0.5, 0.5}, 1000);
+        List<MenuItem> fill = table.fill(800);
+        assertEquals(800, fill.stream().mapToDouble(MenuItem::getCalories).sum(), 0.001);
+        assertTrue(table.fill(299).isEmpty());
+        for (int remaining = 0; remaining <= 1000; remaining += 37) {
+            assertTrue(table.fill(remaining).stream().mapToDouble(MenuItem::getCalories).sum() <= remaining);
+        }
+    }
+
+    // test that a fill from the real menu has no repeats and follows the customer's favourite item
+    @org.junit.Test
+    public void testBudgetFillScoresTheWholeFill() {
+        Menu menu = new Menu();
+        List<MenuItem> items = menu.getItems();
+        double[] uniform = new double[items.size()];
+        Arrays.fill(uniform, 1.0 / items.size());
+        BudgetFillTable table = BudgetFillTable.build(items, uniform, 2000);
+        for (int remaining : new int[]{700, 1200, 2000}) {
+            List<MenuItem> fill = table.fill(remaining);
+            // every item at most once, like a beam search basket
+            assertEquals(fill.size(), new HashSet<>(fill).size());
+            assertTrue(fill.stream().mapToDouble(MenuItem::getCalories).sum() <= remaining);
+        }
+        // a customer who mostly orders McFlurries gets one in the fill
+        double[] skewed = new double[items.size()];
+        Arrays.fill(skewed, 0.2 / (items.size() - 1));
+        skewed[items.indexOf(menu.getItemByName("McFlurry Regular"))] = 0.8;
+        List<String> names = BudgetFillTable.build(items, skewed, 2000).fill(900).stream()
+                .map(MenuItem::getName).toList();
+        assertTrue(names.contains("McFlurry Regular"));
+        assertFalse(BudgetFillTable.build(items, uniform, 2000).fill(900).stream()
+                .map(MenuItem::getName).toList().contains("McFlurry Regular"));
+    }
+
+    // TEST CASES FOR MENUINDEX FILE
+
+    // test that attribute and nutrient range filters combine with AND and OR
+    @org.junit.Test
+    public void testMenuIndexCompoundFilters() {
+        MenuIndex index = new MenuIndex(new Menu());
+        List<String> vegetarianNoDairy = index.query().with(ItemAttribute.VEGETARIAN)
+                .without(ItemAttribute.CONTAINS_DAIRY).items().stream().map(MenuItem::getName).toList();
+        assertEquals(List.of("Small Fries", "Medium Fries", "Large Fries"), vegetarianNoDairy);
+        // the range edges are exact, not rounded to whole buckets
+        List<String> between = index.query().between(MenuIndex.Nutrient.CALORIES, 290, 410)
+                .items().stream().map(MenuItem::getName).toList();
+        assertEquals(List.of("McChicken", "Filet-O-Fish", "Cheeseburger", "Medium Fries"), between);
+        assertEquals(6, index.query().with(ItemAttribute.VEGETARIAN).without(ItemAttribute.CONTAINS_DAIRY)
+                .or(index.query().atLeast(MenuIndex.Nutrient.PROTEIN, 15)).matches().cardinality());
+    }
+
+    // TEST CASES FOR FUZZYITEMMATCHER FILE
+
+    // test that case, unfinished names and typos are forgiven but ambiguous input is not guessed
+    @org.junit.Test
+    public void testFuzzyItemMatcher() {
+        FuzzyItemMatcher matcher = FuzzyItemMatcher.forMenu(new Menu());
+        assertEquals("Big Mac", matcher.bestMatch("big mac"));
+        assertEquals("Cheeseburger", matcher.bestMatch("cheesburger"));
+        assertEquals("Filet-O-Fish", matcher.bestMatch("filet"));
+        assertEquals("McFlurry Snack Size", matcher.bestMatch("mcflurry snak size"));
+        // "Mcflurry" starts two item names, so it is offered as a suggestion instead
+        assertNull(matcher.bestMatch("Mcflurry"));
+        assertEquals(List.of("McFlurry Regular", "McFlurry Snack Size"), matcher.suggestions("Mcflurry", 3));
+        assertNull(matcher.bestMatch("xyz"));
+    }
+
+    // TEST CASES FOR PRECOMPUTEDRECOMMENDATIONS FILE
+
+    // test that a written table reads back and is rejected once the history or the algorithm changed
+    @org.junit.Test
+    public void testPrecomputedRecommendationsRoundTrip() throws IOException {
+        deleteTestFiles("test_recommendations.dat");
+        try {
+            Menu menu = new Menu();
+            File file = new File("test_recommendations.dat");
+            List<MenuItem> items = menu.getItems();
+            MenuItem bigMac = menu.getItemByName("Big Mac");
+            MenuItem fries = menu.getItemByName("Small Fries");
+            Map<MenuItem, Integer> itemIndexes = new HashMap<>();
+            for (int i = 0; i < items.size(); i++) {
+                itemIndexes.put(items.get(i), i);
+            }
+            byte[] entry = PrecomputedRecommendations.encode(List.of(
+                    List.of(List.of(fries)),
+                    List.of(List.of(bigMac, fries), List.of(bigMac))), itemIndexes);
+            PrecomputedRecommendations.write(file, items, new int[]{500, 1000}, 4321, Map.of("Alice", entry));
+
+            PrecomputedRecommendations table = PrecomputedRecommendations.load(file, menu, 4321);
+            assertEquals(1, table.size());
+            assertEquals(List.of(List.of(fries)), table.lookup("Alice", 500));
+            assertEquals(List.of(List.of(bigMac, fries), List.of(bigMac)), table.lookup("Alice", 1000));
+            assertNull(table.lookup("Alice", 750));
+            assertNull(table.lookup("Bob", 500));
+            assertTrue(table.isCurrent(4321));
+            assertFalse(table.isCurrent(4400));
+
+            // One more order (a longer history) or a shorter, replaced history makes the file stale
+            assertThrows(IOException.class, () -> PrecomputedRecommendations.load(file, menu, 4400));
+            assertThrows(IOException.class, () -> PrecomputedRecommendations.load(file, menu, 100));
+            // So does a table built by another version of the algorithm (the short after magic and version)
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            bytes[7] = (byte) (RecommendationEngine.ALGORITHM_VERSION + 1);
+            Files.write(file.toPath(), bytes);
+            assertThrows(IOException.class, () -> PrecomputedRecommendations.load(file, menu, 4321));
+        } finally {
+            deleteTestFiles("test_recommendations.dat");
+        }
+    }
+
+    // test that an order stored for one customer only stops that customer's precomputed entry
+    @org.junit.Test
+    public void testPrecomputedRecommendationsStalePerCustomer() throws IOException {
+        deleteTestFiles("test_recommendations.dat");
+        deleteTestFiles("test_precomputed.txt");
+        try {
+            Menu menu = new Menu();
+            File file = new File("test_recommendations.dat");
+            OrderHistory history = new OrderHistory("test_precomputed.txt");
+            List<MenuItem> items = menu.getItems();
+            MenuItem fries = menu.getItemByName("Small Fries");
+            Map<MenuItem, Integer> itemIndexes = new HashMap<>();
+            for (int i = 0; i < items.size(); i++) {
+                itemIndexes.put(items.get(i), i);
+            }
+            byte[] entry = PrecomputedRecommendations.encode(List.of(List.of(List.of(fries))), itemIndexes);
+            PrecomputedRecommendations.write(file, items, new int[]{500}, history.getHistoryLength(),
+                    Map.of("Alice", entry, "Bob", entry));
+
+            PrecomputedRecommendations table = PrecomputedRecommendations.loadIfPresent(file, menu, history);
+            RecommendationEngine engine = new RecommendationEngine(menu, history);
+            engine.setPrecomputedRecommendations(table);
+            Order order = new Order("Alice");
+            order.addItem(menu.getItemByName("Big Mac"));
+            assertTrue(history.storeOrder(order));
+
+            assertNull(table.lookup("Alice", 500));
+            assertEquals(List.of(List.of(fries)), table.lookup("Bob", 500));
+            assertEquals(List.of(List.of(fries)), engine.generateRecommendations("Bob", 500, new ArrayList<>()));
+        } finally {
+            deleteTestFiles("test_recommendations.dat");
+            deleteTestFiles("test_precomputed.txt");
+        }
+    }
+
+    // TEST CASES FOR LOADGENERATOR FILE
+
+    // test that a stage row reports the throughput and the latency percentiles in microseconds
+    @org.junit.Test
+    public void testLoadGeneratorReportsPercentiles() {
+        LoadGenerator.LatencyList latencies = new LoadGenerator.LatencyList();
+        // 1 to 100 microseconds, added out of order
+        for (int i = 100; i >= 1; i--) {
+            latencies.add(i * 1000L);
+        }
+        assertEquals(50_000L, latencies.percentile(50));
+        assertEquals(99_000L, latencies.percentile(99));
+        assertEquals(0L, new LoadGenerator.LatencyList().percentile(50));
+
+        LoadGenerator.StageResult result = new LoadGenerator.StageResult(4, 2.0, latencies, new LoadGenerator.LatencyList());
+        String[] columns = result.row("storeOrder", result.orders).trim().split("\\s+");
+        assertEquals(List.of("4", "storeOrder", "100", "50.0", "50.0", "90.0", "99.0", "100.0"), Arrays.asList(columns));
+        assertEquals("0", result.row("recommendation", result.recommendations).trim().split("\\s+")[2]);
+    }
+
+    // test that the customer counts are parsed on their own and a stage without customers is refused
+    @org.junit.Test
+    public void testLoadGeneratorParsesCustomerCounts() {
+        assertArrayEquals(new int[]{1, 2, 8}, LoadGenerator.parseCustomerCounts("1, 2,8"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.parseCustomerCounts("1,0"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.parseCustomerCounts("1,many"));
+    }
+
+    // TEST CASES FOR NUTRITIONSERVICE FILE
+
+    // test that every front-end gets the same service and that it resolves names against one catalog
+    @org.junit.Test
+    public void testNutritionServiceIsShared() {
+        NutritionService service = NutritionService.shared();
+        assertSame(service, NutritionService.shared());
+        assertSame(service.getMenu().getItems().get(0), service.getItem("Big Mac"));
+        assertSame(service.getItem("Cheeseburger"), service.matchItem("cheesburger"));
+        // unknown names are skipped by conversions and count as 0 calories
+        assertEquals(2, service.toItems(List.of("Big Mac", "Nothing", "Small Fries")).size());
+        assertEquals(790.0, service.totalCalories(List.of("Big Mac", "Nothing", "Small Fries")), 0.001);
+        // once the applications use it, the shared service cannot be switched to a location
+        assertThrows(IllegalStateException.class, () -> NutritionService.useLocation("test_store"));
+        assertSame(service, NutritionService.shared());
+    }
+
+    // TEST CASES FOR ORDEREVENTBUS FILE
+
+    // test that a consumer sees every order in order, even when it is slower than the ring is long
+    @org.junit.Test
+    public void testOrderEventBusDeliversInOrder() throws InterruptedException {
+        OrderEventBus bus = new OrderEventBus(4);
+        List<Long> seen = new java.util.concurrent.CopyOnWriteArrayList<>();
+        java.util.concurrent.CountDownLatch done = new java.util.concurrent.CountDownLatch(20);
+        bus.subscribe("test", (record, time, sequence, endOfBatch) -> {
+            seen.add(sequence);
+            done.countDown();
+        });
+        HistoryRecord record = new HistoryRecord("BusUser", "now", 570.0, List.of("Big Mac"));
+        for (int i = 0; i < 20; i++) {
+            // the lag can never grow past the ring size, publish waits instead
+            assertTrue(bus.getLags().get("test") <= bus.getCapacity());
+            assertEquals(i, bus.publish(record));
+        }
+        assertTrue(done.await(5, java.util.concurrent.TimeUnit.SECONDS));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, seen.get(i));
+        }
+        bus.close();
+    }
+
+    // test that publish gives up on a stuck consumer after its maximum wait instead of blocking
+    @org.junit.Test
+    public void testOrderEventBusDropsWhenAConsumerIsStuck() throws InterruptedException {
+        OrderEventBus bus = new OrderEventBus(2, 50);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        List<Long> seen = new java.util.concurrent.CopyOnWriteArrayList<>();
+        bus.subscribe("stuck", (record, time, sequence, endOfBatch) -> {
+            seen.add(sequence);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        HistoryRecord record = new HistoryRecord("BusUser", "now", 570.0, List.of("Big Mac"));
+        assertEquals(0, bus.publish(record));
+        assertEquals(1, bus.publish(record));
+        // the consumer is stuck on event 0, so the ring is full
+        long start = System.nanoTime();
+        assertEquals(-1, bus.publish(record));
+        assertEquals(-1, bus.publish(record));
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+        assertEquals(2L, bus.getDropped());
+        // once the consumer moves on, publishing carries on with the next sequence
+        release.countDown();
+        assertEquals(2, bus.publish(record));
+        assertEquals(2L, bus.getDropped());
+        bus.close();
+    }
+
+    // TEST CASES FOR FREQUENCYSTORE FILE
+
+    // test that the counts survive growing the table and reopening the file
+    @org.junit.Test
+    public void testFrequencyStoreGrowsAndReopens() throws IOException {
+        deleteTestFiles("test_counts.freq");
+        try {
+            File file = new File("test_counts.freq");
+            FrequencyStore store = new FrequencyStore(file);
+            long initialLength = file.length();
+            // 5000 entries is more than 70% of the first table, so it has to grow once
+            for (int customer = 0; customer < 500; customer++) {
+                store.add(customer, FrequencyStore.ORDER_COUNT_ITEM, 1);
+                for (int item = 0; item < 9; item++) {
+                    store.add(customer, item, customer + item);
+                }
+            }
+            store.add(7, 3, 5);
+            store.setSyncPoint(1234, 500, 9);
+            assertTrue(file.length() > initialLength);
+            assertEquals(5000, store.size());
+            assertEquals(15, store.get(7, 3));
+
+            FrequencyStore reopened = new FrequencyStore(file);
+            assertEquals(5000, reopened.size());
+            assertEquals(1234L, reopened.getHistoryLength());
+            assertEquals(500, reopened.getCustomerCount());
+            assertEquals(9, reopened.getItemCount());
+            assertEquals(15, reopened.get(7, 3));
+            assertEquals(499 + 8, reopened.get(499, 8));
+            assertEquals(1, reopened.get(250, FrequencyStore.ORDER_COUNT_ITEM));
+            assertEquals(0, reopened.get(500, 0));
+        } finally {
+            deleteTestFiles("test_counts.freq");
+        }
+    }
+
+    // TEST CASES FOR HISTORYQUERY FILE
+
+    // test that paging with cursors returns every matching record once, in order
+    @org.junit.Test
+    public void testHistoryQueryPages() throws IOException {
+        deleteTestFiles("test_query.txt");
+        try {
+            OrderHistory history = new OrderHistory("test_query.txt");
+            List<HistoryRecord> records = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                records.add(new HistoryRecord(i % 2 == 0 ? "Even" : "Odd", "October 19, 2026 at 1:14pm", i, List.of("Big Mac")));
+            }
+            history.storeRecords(records);
+
+            List<Double> calories = new ArrayList<>();
+            HistoryQuery.Cursor cursor = null;
+            int pages = 0;
+            do {
+                HistoryQuery.Page page = history.query().customer("Even").limit(5).after(cursor).page();
+                page.getRecords().forEach(record -> calories.add(record.getTotalCalories()));
+                cursor = page.getNext();
+                pages++;
+            } while (cursor != null);
+            // 13 even records in pages of 5
+            assertEquals(3, pages);
+            assertEquals(13, calories.size());
+            for (int i = 0; i < calories.size(); i++) {
+                assertEquals(2.0 * i, calories.get(i), 0.001);
+            }
+            // offset and limit count matching records only
+            assertEquals(List.of(3.0, 5.0), history.query().customer("Odd").offset(1).limit(2).list()
+                    .stream().map(HistoryRecord::getTotalCalories).toList());
+        } finally {
+            deleteTestFiles("test_query.txt");
+        }
+    }
+
+    // TEST CASES FOR HISTORYSEGMENTS FILE
+
+    // test that sealing moves the lines into a segment without changing what the history returns
+    @org.junit.Test
+    public void testSealedHistoryKeepsRecords() throws IOException {
+        deleteTestFiles("test_segments.txt");
+        try {
+            OrderHistory history = new OrderHistory("test_segments.txt");
+            List<HistoryRecord> records = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                records.add(new HistoryRecord("Sam", "October 19, 2026 at " + (i % 12 + 1) + ":00pm", i, List.of("Fries")));
+            }
+            history.storeRecords(records);
+            long length = history.getHistoryLength();
+
+            HistorySegment segment = HistorySegments.forFile("test_segments.txt").seal();
+            assertEquals(30, segment.getLineCount());
+            assertEquals(0, new File("test_segments.txt").length());
+            // Sealing moves the lines, it does not change the history
+            assertEquals(length, history.getHistoryLength());
+            assertEquals(30, history.query().customer("Sam").list().size());
+            assertEquals(7.0, segment.record(7).getTotalCalories(), 0.001);
+            assertEquals(3, segment.recordsBetween(LocalDateTime.of(2026, 10, 19, 14, 0),
+                    LocalDateTime.of(2026, 10, 19, 15, 0)).size());
+            // New orders go to the active file after the sealed ones
+            history.storeRecords(List.of(new HistoryRecord("Sam", "October 19, 2026 at 1:00pm", 99, List.of("Fries"))));
+            assertEquals(31, HistoryIndex.forFile("test_segments.txt").frequencyMap("Sam").get("Fries").intValue());
+        } finally {
+            deleteTestFiles("test_segments.txt");
+        }
+    }
+
+    // TEST CASES FOR HISTORYEXPORTER FILE
+
+    // test that an export dumps back to the same orders, across a sealed segment and several chunks,
+    // without adding names it has not seen to the dictionary files
+    @org.junit.Test
+    public void testHistoryExportRoundTrip() throws Exception {
+        deleteTestFiles("test_export.txt");
+        deleteTestFiles("test_export.ntcx");
+        try {
+            OrderHistory history = new OrderHistory("test_export.txt");
+            // Sealed part: two readable times and one the parser cannot read
+            history.storeRecords(List.of(
+                    new HistoryRecord("Ann", "October 19, 2026 at 1:14pm", 570.0, List.of("Big Mac")),
+                    new HistoryRecord("Bob, Jr", "sometime on Monday", 220.5, List.of("Small Fries")),
+                    new HistoryRecord("Ann", "October 19, 2026 at 1:10pm", 790.0, List.of("Big Mac", "Small Fries"))));
+            assertNotNull(HistorySegments.forFile("test_export.txt").seal());
+            // Active part: more than one chunk, with times going back and forth so deltas change sign
+            List<String> items = List.of("Big Mac", "Small Fries", "McChicken", "Cheeseburger", "Medium Coke", "Apple Pie");
+            List<HistoryRecord> records = new ArrayList<>();
+            for (int i = 0; i < 40000; i++) {
+                String time = i % 2 == 0 ? "October 20, 2026 at 9:05am" : "October 19, 2026 at 11:59pm";
+                records.add(new HistoryRecord("Customer " + (i % 7), time, i, items));
+            }
+            history.storeRecords(records);
+            // The index gives every stored name an id; this last line is added behind its back
+            history.buildAllFrequencyMaps();
+            Files.writeString(Paths.get("test_export.txt"), "Zed|October 19, 2026 at 1:14pm|100.0|Mystery Burger\n",
+                    java.nio.file.StandardOpenOption.APPEND);
+            assertTrue(new File("test_export.txt").length() > HistoryExporter.CHUNK_BYTES);
+            assertTrue(HistoryExporter.chunksOf(history).size() >= 3);
+            byte[] customerFile = Files.readAllBytes(Paths.get("test_export.txt.customers"));
+            byte[] itemFile = Files.readAllBytes(Paths.get("test_export.txt.items"));
+
+            File export = new File("test_export.ntcx");
+            assertEquals(40004L, new HistoryExporter(history, java.time.ZoneOffset.UTC).export(export, 2));
+            assertArrayEquals(customerFile, Files.readAllBytes(Paths.get("test_export.txt.customers")));
+            assertArrayEquals(itemFile, Files.readAllBytes(Paths.get("test_export.txt.items")));
+            assertEquals(-1, history.getCustomerDictionary().lookup("Zed"));
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+            assertEquals(40004L, HistoryExporter.dump(export, new java.io.PrintStream(bytes, true, StandardCharsets.UTF_8)));
+            String[] lines = bytes.toString(StandardCharsets.UTF_8).split("\n");
+            assertEquals(40005, lines.length);
+            assertEquals("customer,time,epochSeconds,calories,items", lines[0]);
+
+            long monday = LocalDateTime.of(2026, 10, 19, 13, 14).toEpochSecond(java.time.ZoneOffset.UTC);
+            assertEquals("Ann,2026-10-19T13:14," + monday + ",570.0,Big Mac", lines[1]);
+            // The unreadable time is kept as an empty field, and names with commas are quoted
+            assertEquals("\"Bob, Jr\",,,220.5,Small Fries", lines[2]);
+            assertEquals("Ann,2026-10-19T13:10," + (monday - 240) + ",790.0,Big Mac;Small Fries", lines[3]);
+            long early = LocalDateTime.of(2026, 10, 20, 9, 5).toEpochSecond(java.time.ZoneOffset.UTC);
+            long late = LocalDateTime.of(2026, 10, 19, 23, 59).toEpochSecond(java.time.ZoneOffset.UTC);
+            for (int i = 0; i < 40000; i++) {
+                String expected = "Customer " + (i % 7) + ","
+                        + (i % 2 == 0 ? "2026-10-20T09:05," + early : "2026-10-19T23:59," + late)
+                        + "," + (double) i + "," + String.join(";", items);
+                assertEquals(expected, lines[4 + i]);
+            }
+            assertEquals("Zed,2026-10-19T13:14," + monday + ",100.0,Mystery Burger", lines[40004]);
+        } finally {
+            deleteTestFiles("test_export.txt");
+            deleteTestFiles("test_export.ntcx");
+        }
+    }
+
+    // TEST CASES FOR HISTORYLINEPARSER FILE
+
+    // test that parsing the bytes of a line gives the same fields as HistoryRecord.parse
+    @org.junit.Test
+    public void testLineParserMatchesRecordParse() {
+        HistoryLineParser parser = new HistoryLineParser();
+        String framed = HistoryRecord.frame("bob|April 20, 2025 at 7:32p.m.|1220.0|Big Mac,McFlurry Regular");
+        byte[] bytes = framed.getBytes(StandardCharsets.UTF_8);
+        assertTrue(parser.parse(bytes, 0, bytes.length));
+        assertTrue(parser.checksumMatches());
+        HistoryRecord expected = HistoryRecord.parse(framed);
+        HistoryRecord record = parser.toRecord();
+        assertEquals(expected.getCustomerName(), record.getCustomerName());
+        assertEquals(expected.getItems(), record.getItems());
+        assertEquals(1220.0, parser.totalCalories(), 0.001);
+        // "p.m." and "pm" give the same time
+        assertEquals(HistorySegment.timeKey(LocalDateTime.of(2025, 4, 20, 19, 32)), parser.timeKey());
+        // Item ids come straight from the bytes
+        PerfectHashDictionary dictionary = new PerfectHashDictionary(List.of("Fries", "McFlurry Regular", "Big Mac"));
+        assertEquals(2, parser.itemId(0, dictionary));
+        assertEquals(1, parser.itemId(1, dictionary));
+        // A damaged frame is rejected like HistoryRecord.parse does
+        bytes[bytes.length - 1] = 'x';
+        assertFalse(parser.parse(bytes, 0, bytes.length) && parser.checksumMatches());
+    }
+
+    // TEST CASES FOR LOCATIONREGISTRY FILE
+
+    // test that every location has its own menu and history and the report adds them up
+    @org.junit.Test
+    public void testLocationsKeepTheirOwnMenuAndHistory() throws IOException {
+        deleteTestFiles("test_locations");
+        try {
+            File root = new File("test_locations");
+            new File(root, "north").mkdirs();
+            Files.write(new File(root, "north/menu.txt").toPath(),
+                    List.of("# regional menu", "-McChicken", "Poutine|740|14|71|2|42|VEGETARIAN"));
+            LocationRegistry registry = LocationRegistry.forDirectory("test_locations");
+            Location north = registry.get("north");
+            Location south = registry.get("south");
+            assertThrows(IllegalArgumentException.class, () -> registry.get("../south"));
+
+            // The regional menu drops one item and adds one; the other location keeps the default menu
+            assertNull(north.getMenu().getItemByName("McChicken"));
+            assertEquals(740.0, north.getMenu().getItemByName("Poutine").getCalories(), 0.001);
+            assertNotNull(south.getMenu().getItemByName("McChicken"));
+
+            north.getOrderHistory().storeRecords(List.of(
+                    new HistoryRecord("Ann", "October 19, 2026 at 1:00pm", 740, List.of("Poutine")),
+                    new HistoryRecord("Ann", "October 19, 2026 at 2:00pm", 570, List.of("Big Mac"))));
+            south.getOrderHistory().storeRecords(List.of(
+                    new HistoryRecord("Ann", "October 19, 2026 at 3:00pm", 570, List.of("Big Mac"))));
+            assertEquals(2, north.getOrderHistory().findCustomerRecords("Ann").size());
+            assertEquals(1, south.getOrderHistory().findCustomerRecords("Ann").size());
+
+            // The report of all locations adds up the reports of each
+            LocationReport report = registry.report(2);
+            assertEquals(3, report.getOrders());
+            assertEquals(List.of("north", "south"), new ArrayList<>(report.getOrdersByLocation().keySet()));
+            assertEquals(List.of("Big Mac", "Poutine"), report.topItems(2));
+        } finally {
+            deleteTestFiles("test_locations");
+        }
+    }
+
+    // TEST CASES FOR INVENTORY FILE
+
+    // test that an order gets all of its items or none of them
+    @org.junit.Test
+    public void testInventoryReservesWholeOrdersOnly() {
+        Menu menu = new Menu();
+        MenuItem bigMac = menu.getItemByName("Big Mac");
+        MenuItem fries = menu.getItemByName("Small Fries");
+        Inventory inventory = new Inventory(menu);
+        List<String> soldOut = new ArrayList<>();
+        inventory.addSoldOutListener(item -> soldOut.add(item.getName()));
+        inventory.setStock("Big Mac", 2);
+        inventory.setStock("Small Fries", 1);
+
+        assertTrue(inventory.tryReserve(List.of(bigMac, fries)));
+        assertEquals(List.of("Small Fries"), soldOut);
+        // Fries are gone, so the whole order fails and the Big Mac is given back
+        assertFalse(inventory.tryReserve(List.of(bigMac, fries)));
+        assertEquals(1, inventory.getStock("Big Mac"));
+        assertFalse(inventory.isAvailable(fries));
+        assertFalse(inventory.availableItems().get(menu.getItems().indexOf(fries)));
+        // Items without a stock count never run out
+        assertEquals(Inventory.UNLIMITED, inventory.getStock("McChicken"));
+        assertTrue(inventory.tryReserve(List.of(menu.getItemByName("McChicken"))));
+        inventory.restock("Small Fries", 3);
+        assertTrue(inventory.isAvailable(fries));
+    }
+
+    // test that an order that cannot be written gives its stock back and stays out of the session
+    @org.junit.Test
+    public void testPlaceOrderReleasesStockWhenTheWriteFails() throws IOException {
+        deleteTestFiles("test_failing.txt");
+        try {
+            Menu menu = new Menu();
+            OrderHistory failing = new OrderHistory("test_failing.txt") {
+                @Override
+                public boolean storeOrder(Order order) {
+                    return false;
+                }
+            };
+            NutritionService service = new NutritionService(menu, failing);
+            service.getInventory().setStock("Big Mac", 1);
+            Order order = new Order("test_failing_customer");
+            order.addItem(menu.getItemByName("Big Mac"));
+
+            assertFalse(service.placeOrder(order));
+            assertEquals(1, service.getInventory().getStock("Big Mac"));
+            assertTrue(service.getSessions().itemNames("test_failing_customer").isEmpty());
+        } finally {
+            deleteTestFiles("test_failing.txt");
+        }
+    }
+
+    // TEST CASES FOR ORDERRATECOUNTERS FILE
+
+    // test that orders leave each window once they are older than it
+    @org.junit.Test
+    public void testOrderRatesSlideOutOfTheirWindow() {
+        OrderRateCounters rates = new OrderRateCounters();
+        HistoryRecord order = new HistoryRecord("Sam", "October 19, 2026 at 12:00pm", 790, List.of("Big Mac", "Small Fries"));
+        long noon = 1_760_000_000_000L;
+        rates.record("north", order, noon);
+        rates.record("north", order, noon + 30_000);
+        rates.record("south", order, noon + 59_000);
+
+        assertEquals(2, rates.orders("north", OrderRateCounters.Window.MINUTE, noon + 59_999));
+        assertEquals(3, rates.orders(null, OrderRateCounters.Window.MINUTE, noon + 59_999));
+        // A minute later the first order has left the minute window but not the hour
+        assertEquals(2, rates.orders(null, OrderRateCounters.Window.MINUTE, noon + 60_500));
+        assertEquals(3, rates.orders(null, OrderRateCounters.Window.HOUR, noon + 60_500));
+        assertEquals(3, rates.items(null, "Big Mac", OrderRateCounters.Window.DAY, noon + 3_000_000));
+        assertEquals(List.of("Big Mac", "Small Fries"), rates.topItems("south", OrderRateCounters.Window.HOUR, 5, noon + 61_000));
+        // After a day nothing is left
+        assertEquals(0, rates.orders(null, OrderRateCounters.Window.DAY, noon + 25L * 3_600_000));
+    }
+
+    // TEST CASES FOR DEMANDFORECASTER FILE
+
+    // test that the forecast learns the lunch peak of every weekday from the history
+    @org.junit.Test
+    public void testForecastLearnsTheWeeklyPattern() throws IOException {
+        deleteTestFiles("test_forecast.txt");
+        try {
+            OrderHistory history = new OrderHistory("test_forecast.txt");
+            List<HistoryRecord> records = new ArrayList<>();
+            LocalDateTime monday = LocalDateTime.of(2026, 9, 7, 0, 0);
+            // Four weeks: ten Big Macs every lunch hour, twenty on Fridays
+            for (int day = 0; day < 28; day++) {
+                LocalDateTime date = monday.plusDays(day);
+                int lunch = day % 7 == 4 ? 20 : 10;
+                for (int i = 0; i < lunch; i++) {
+                    records.add(new HistoryRecord("Sam", HistoryRecord.formatTime(date.withHour(12).withMinute(i)),
+                            570, List.of("Big Mac")));
+                }
+            }
+            history.storeRecords(records);
+
+            DemandForecaster forecaster = DemandForecaster.bootstrap(history, 2);
+            LocalDateTime nextMonday = monday.plusDays(28);
+            assertEquals(10.0, forecaster.forecast("Big Mac", nextMonday.withHour(12)), 0.5);
+            assertEquals(20.0, forecaster.forecast("Big Mac", nextMonday.plusDays(4).withHour(12)), 0.5);
+            assertEquals(0.0, forecaster.forecast("Big Mac", nextMonday.withHour(3)), 0.5);
+            assertEquals(0.0, forecaster.forecast("McChicken", nextMonday.withHour(12)), 0.001);
+
+            // Live orders are counted into their hour and fed to the models when a later hour starts
+            for (int i = 0; i < 10; i++) {
+                forecaster.record(new HistoryRecord("Sam", HistoryRecord.formatTime(nextMonday.withHour(12).withMinute(i)),
+                        570, List.of("Big Mac")), 0);
+            }
+            for (int i = 0; i < 3; i++) {
+                forecaster.record(new HistoryRecord("Sam", HistoryRecord.formatTime(nextMonday.withHour(13).withMinute(i)),
+                        400, List.of("McChicken")), 0);
+            }
+            // The McChicken hour is still open, so it has no forecast yet
+            assertEquals(0.0, forecaster.forecast("McChicken", nextMonday.withHour(13)), 0.001);
+            forecaster.record(new HistoryRecord("Sam", HistoryRecord.formatTime(nextMonday.withHour(14)),
+                    570, List.of("Big Mac")), 0);
+            // One hour seen: its count is the forecast until a week has been seen
+            assertEquals(3.0, forecaster.forecast("McChicken", nextMonday.plusDays(1).withHour(9)), 0.001);
+            assertEquals(10.0, forecaster.forecast("Big Mac", nextMonday.plusDays(7).withHour(12)), 0.5);
+
+            // After three quiet weeks only the last two are fed as empty hours, and the Friday peak fades
+            double friday = forecaster.forecast("Big Mac", nextMonday.plusDays(4).withHour(12));
+            forecaster.record(new HistoryRecord("Sam", HistoryRecord.formatTime(nextMonday.plusDays(21).withHour(14)),
+                    570, List.of("Big Mac")), 0);
+            assertEquals(20.0, friday, 0.5);
+            // Two weeks of empty hours bring it to about 15 (three weeks would be below 14)
+            assertEquals(15.0, forecaster.forecast("Big Mac", nextMonday.plusDays(25).withHour(12)), 0.5);
+        } finally {
+            deleteTestFiles("test_forecast.txt");
+        }
+    }
+
+    // TEST CASES FOR TRACKEREVENTS FILE
+
+    // test that a flight recording gets the history and recommendation events with their fields filled in
+    @org.junit.Test
+    public void testTrackerEventsCarryTheirFields() throws Exception {
+        deleteTestFiles("test_events.txt");
+        deleteTestFiles("test_events.jfr");
+        try (jdk.jfr.Recording recording = new jdk.jfr.Recording()) {
+            // Two good lines around a corrupt one, written before the history is opened so the index rebuilds
+            String lines = HistoryRecord.frame(new HistoryRecord("Ann", "October 19, 2026 at 1:14pm", 570.0, List.of("Big Mac")).toPayload()) + "\n"
+                    + "@99:00000000|Ann|corrupt\n"
+                    + HistoryRecord.frame(new HistoryRecord("Ann", "October 19, 2026 at 1:15pm", 220.0, List.of("Small Fries")).toPayload()) + "\n";
+            Files.write(Paths.get("test_events.txt"), lines.getBytes(StandardCharsets.UTF_8));
+            for (String name : List.of("HistoryRead", "HistoryWrite", "Recommendation", "BeamSearch")) {
+                recording.enable("ca.ucalgary.haris.naveed1.demo3." + name).withThreshold(java.time.Duration.ZERO);
+            }
+            recording.start();
+
+            Menu menu = new Menu();
+            OrderHistory history = new OrderHistory("test_events.txt");
+            assertEquals(2, history.buildFrequencyMap("Ann").size());
+            Order order = new Order("Bea");
+            order.addItem(menu.getItemByName("McChicken"));
+            history.storeOrder(order);
+            history.storeRecords(List.of(new HistoryRecord("Cal", "October 19, 2026 at 1:16pm", 570.0, List.of("Big Mac")),
+                    new HistoryRecord("Cal", "October 19, 2026 at 1:17pm", 570.0, List.of("Big Mac"))));
+            new RecommendationEngine(menu, history).generateRecommendations("Ann", 1000, List.of());
+            recording.stop();
+            recording.dump(Paths.get("test_events.jfr"));
+
+            List<jdk.jfr.consumer.RecordedEvent> events = jdk.jfr.consumer.RecordingFile.readAllEvents(Paths.get("test_events.jfr"));
+            List<jdk.jfr.consumer.RecordedEvent> rebuilds = new ArrayList<>();
+            List<jdk.jfr.consumer.RecordedEvent> writes = new ArrayList<>();
+            jdk.jfr.consumer.RecordedEvent recommendation = null;
+            jdk.jfr.consumer.RecordedEvent beamSearch = null;
+            for (jdk.jfr.consumer.RecordedEvent event : events) {
+                String type = event.getEventType().getName();
+                if (type.endsWith(".HistoryRead") && "rebuildIndex".equals(event.getString("operation"))
+                        && event.getString("historyFile").endsWith("test_events.txt")) {
+                    rebuilds.add(event);
+                } else if (type.endsWith(".HistoryWrite") && event.getString("historyFile").endsWith("test_events.txt")) {
+                    writes.add(event);
+                } else if (type.endsWith(".Recommendation") && "Ann".equals(event.getString("customer"))) {
+                    recommendation = event;
+                } else if (type.endsWith(".BeamSearch")) {
+                    beamSearch = event;
+                }
+            }
+
+            assertEquals(1, rebuilds.size());
+            assertEquals(3L, rebuilds.get(0).getLong("linesScanned"));
+            assertEquals(1L, rebuilds.get(0).getLong("linesSkipped"));
+            assertEquals(2L, rebuilds.get(0).getLong("recordsMatched"));
+            assertEquals((long) lines.length(), rebuilds.get(0).getLong("bytesRead"));
+
+            assertEquals(2, writes.size());
+            assertEquals("Bea", writes.get(0).getString("customer"));
+            assertEquals(1, writes.get(0).getInt("records"));
+            assertTrue(writes.get(0).getLong("bytesWritten") > 0);
+            assertNull(writes.get(1).getString("customer"));
+            assertEquals(2, writes.get(1).getInt("records"));
+
+            assertNotNull(recommendation);
+            assertEquals("recommend", recommendation.getString("operation"));
+            assertEquals(1000, recommendation.getInt("calories"));
+            assertFalse(recommendation.getBoolean("precomputed"));
+            assertEquals(menu.getItems().size(), recommendation.getInt("candidateItems"));
+            assertTrue(recommendation.getInt("results") > 0);
+            assertNotNull(beamSearch);
+            assertTrue(beamSearch.getLong("basketsEvaluated") > 0);
+            assertTrue(beamSearch.getInt("levels") > 0);
+        } finally {
+            deleteTestFiles("test_events.txt");
+            deleteTestFiles("test_events.jfr");
+        }
+    }
+
+    /**
+     * Deletes a file a test works on together with the files kept next to it (checkpoint,
+     * dictionaries, counts and sealed segments), or a whole directory. Tests call it before they
+     * start, in case an earlier run stopped half way, and again in {@code finally}.
+     *
+     * @param path the history file or directory.
+     */
+    private static void deleteTestFiles(String path) throws IOException {
+        File file = new File(path);
+        if (file.isDirectory()) {
+            try (java.util.stream.Stream<java.nio.file.Path> paths = Files.walk(file.toPath())) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+            return;
+        }
+        File directory = file.getAbsoluteFile().getParentFile();
+        File[] related = directory.listFiles((dir, name) -> name.equals(file.getName())
+                || name.startsWith(file.getName() + "."));
+        if (related != null) {
+            for (File f : related) {
+                f.delete();
+            }
+        }
+    }
+}
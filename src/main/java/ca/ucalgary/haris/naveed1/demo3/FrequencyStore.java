@@ -0,0 +1,346 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The {@code FrequencyStore} class is an off-heap, memory-mapped hash table of
+ * (customer id, item id) to {@code int} counters.
+ * <p>
+ * Keeping a {@code HashMap<String, Integer>} per customer costs well over a hundred bytes per entry
+ * on the heap and puts millions of objects in front of the garbage collector. This table instead
+ * stores each entry in a 16-byte slot of a memory-mapped file, so the data lives outside the heap,
+ * survives restarts, and is paged in by the operating system as needed.
+ * <p>
+ * The table uses open addressing with linear probing. File layout:
+ * <pre>
+ * header (64 bytes): int magic, int version, int capacity log2, int size, long historyLength,
+ *                    int customerCount, int itemCount, rest reserved
+ * slot i at 64 + 16 * i: long key + 1 (0 = empty slot), int count, int unused
+ * </pre>
+ * The key packs the customer id into the upper and the item id into the lower 32 bits. The header
+ * also remembers how much of the history file and how many dictionary ids the counts reflect, so
+ * the owner can tell whether the table is still current after a restart.
+ * <p>
+ * The file is mapped in segments of {@link #SEGMENT_BYTES} because a single mapping is limited to
+ * 2 GB. When the table is 70% full it is rehashed into a file twice the size.
+ * <p>
+ * The table does no locking of its own: the mapped buffers give no ordering between threads, so
+ * every read and write must be serialized by the caller ({@link HistoryIndex} holds the history
+ * log's lock for both). Reads ({@link #get(int, int)}) allocate nothing.
+ */
+public class FrequencyStore {
+    // Item id used for the per-customer order count entry.
+    public static final int ORDER_COUNT_ITEM = -1;
+
+    private static final int MAGIC = 0x46524551; // "FREQ"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;
+    // Size of one mapped region; a multiple of the slot size so no slot straddles two regions.
+    static final long SEGMENT_BYTES = 1L << 28;
+    private static final int INITIAL_CAPACITY_LOG2 = 12;
+    private static final int MAX_CAPACITY_LOG2 = 30;
+
+    private final File file;
+    // Current mapping; replaced as a whole when the table grows or is cleared.
+    private volatile Table table;
+
+    /**
+     * A mapped table: the segments plus the capacity they were mapped for.
+     */
+    private static final class Table {
+        final MappedByteBuffer[] segments;
+        final int capacityLog2;
+        final int mask;
+
+        Table(MappedByteBuffer[] segments, int capacityLog2) {
+            this.segments = segments;
+            this.capacityLog2 = capacityLog2;
+            this.mask = (1 << capacityLog2) - 1;
+        }
+
+        long getLong(long position) {
+            return segments[(int) (position / SEGMENT_BYTES)].getLong((int) (position % SEGMENT_BYTES));
+        }
+
+        int getInt(long position) {
+            return segments[(int) (position / SEGMENT_BYTES)].getInt((int) (position % SEGMENT_BYTES));
+        }
+
+        void putLong(long position, long value) {
+            segments[(int) (position / SEGMENT_BYTES)].putLong((int) (position % SEGMENT_BYTES), value);
+        }
+
+        void putInt(long position, int value) {
+            segments[(int) (position / SEGMENT_BYTES)].putInt((int) (position % SEGMENT_BYTES), value);
+        }
+    }
+
+    /**
+     * Opens (or creates) a frequency store file.
+     *
+     * @param file the store file.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public FrequencyStore(File file) throws IOException {
+        this.file = file;
+        Table existing = file.exists() && file.length() >= HEADER_BYTES ? map(file) : null;
+        if (existing == null || existing.getInt(0) != MAGIC || existing.getInt(4) != VERSION) {
+            existing = create(file, INITIAL_CAPACITY_LOG2);
+        }
+        this.table = existing;
+    }
+
+    /**
+     * Maps an existing file using the capacity stored in its header.
+     */
+    private static Table map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            MappedByteBuffer header = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            int capacityLog2 = header.getInt(8);
+            if (header.getInt(0) != MAGIC || capacityLog2 < 1 || capacityLog2 > MAX_CAPACITY_LOG2
+                    || raf.length() != HEADER_BYTES + ((long) SLOT_BYTES << capacityLog2)) {
+                return null;
+            }
+            return new Table(mapSegments(raf.getChannel(), raf.length()), capacityLog2);
+        }
+    }
+
+    /**
+     * Creates an empty table file with {@code 2^capacityLog2} slots.
+     */
+    private static Table create(File file, int capacityLog2) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = HEADER_BYTES + ((long) SLOT_BYTES << capacityLog2);
+            // Truncating first guarantees that every slot of the new file reads as empty (zero).
+            raf.setLength(0);
+            raf.setLength(length);
+            Table table = new Table(mapSegments(raf.getChannel(), length), capacityLog2);
+            table.putInt(0, MAGIC);
+            table.putInt(4, VERSION);
+            table.putInt(8, capacityLog2);
+            return table;
+        }
+    }
+
+    /**
+     * Maps a file in {@link #SEGMENT_BYTES} regions. The mappings stay valid after the channel is closed.
+     */
+    private static MappedByteBuffer[] mapSegments(FileChannel channel, long length) throws IOException {
+        int count = (int) ((length + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+        MappedByteBuffer[] segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * SEGMENT_BYTES;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(SEGMENT_BYTES, length - start));
+        }
+        return segments;
+    }
+
+    /**
+     * Packs a customer id and an item id into a key.
+     */
+    private static long key(int customerId, int itemId) {
+        return ((long) customerId << 32) | (itemId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Spreads a key over the slots (64-bit finalizer of MurmurHash3).
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Returns the counter of a (customer, item) pair without allocating. Callers must not run it
+     * concurrently with a write.
+     *
+     * @param customerId the customer id.
+     * @param itemId     the item id, or {@link #ORDER_COUNT_ITEM} for the customer's order count.
+     * @return the counter, 0 if the pair has never been counted.
+     */
+    public int get(int customerId, int itemId) {
+        Table t = table;
+        long stored = key(customerId, itemId) + 1;
+        int slot = hash(stored - 1) & t.mask;
+        while (true) {
+            long position = HEADER_BYTES + (long) slot * SLOT_BYTES;
+            long found = t.getLong(position);
+            if (found == stored) {
+                return t.getInt(position + 8);
+            }
+            if (found == 0) {
+                return 0;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+    }
+
+    /**
+     * Adds to the counter of a (customer, item) pair. Callers must serialize writes.
+     *
+     * @param customerId the customer id.
+     * @param itemId     the item id, or {@link #ORDER_COUNT_ITEM} for the customer's order count.
+     * @param delta      the amount to add.
+     * @throws IOException if the table has to grow and the larger file cannot be created.
+     */
+    public void add(int customerId, int itemId, int delta) throws IOException {
+        Table t = table;
+        long stored = key(customerId, itemId) + 1;
+        int slot = hash(stored - 1) & t.mask;
+        while (true) {
+            long position = HEADER_BYTES + (long) slot * SLOT_BYTES;
+            long found = t.getLong(position);
+            if (found == stored) {
+                t.putInt(position + 8, t.getInt(position + 8) + delta);
+                return;
+            }
+            if (found == 0) {
+                t.putInt(position + 8, delta);
+                t.putLong(position, stored);
+                int size = t.getInt(12) + 1;
+                t.putInt(12, size);
+                if (size > (long) (t.mask + 1) * 7 / 10) {
+                    grow();
+                }
+                return;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+    }
+
+    /**
+     * Rehashes every entry into a new file with twice the capacity and swaps it in.
+     */
+    private void grow() throws IOException {
+        Table old = table;
+        if (old.capacityLog2 >= MAX_CAPACITY_LOG2) {
+            throw new IOException("frequency store is full");
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        Table bigger = create(temp, old.capacityLog2 + 1);
+        int size = 0;
+        for (long slot = 0; slot <= old.mask; slot++) {
+            long position = HEADER_BYTES + slot * SLOT_BYTES;
+            long stored = old.getLong(position);
+            if (stored == 0) {
+                continue;
+            }
+            int target = hash(stored - 1) & bigger.mask;
+            while (bigger.getLong(HEADER_BYTES + (long) target * SLOT_BYTES) != 0) {
+                target = (target + 1) & bigger.mask;
+            }
+            long targetPosition = HEADER_BYTES + (long) target * SLOT_BYTES;
+            bigger.putInt(targetPosition + 8, old.getInt(position + 8));
+            bigger.putLong(targetPosition, stored);
+            size++;
+        }
+        bigger.putInt(12, size);
+        bigger.putLong(16, old.getLong(16));
+        bigger.putInt(24, old.getInt(24));
+        bigger.putInt(28, old.getInt(28));
+        for (MappedByteBuffer segment : bigger.segments) {
+            segment.force();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        table = bigger;
+    }
+
+    /**
+     * Visits every non-empty entry.
+     *
+     * @param visitor called with the customer id, item id and count of every entry.
+     */
+    public void forEach(EntryVisitor visitor) {
+        Table t = table;
+        for (long slot = 0; slot <= t.mask; slot++) {
+            long position = HEADER_BYTES + slot * SLOT_BYTES;
+            long stored = t.getLong(position);
+            if (stored != 0) {
+                long key = stored - 1;
+                visitor.visit((int) (key >>> 32), (int) key, t.getInt(position + 8));
+            }
+        }
+    }
+
+    /**
+     * Receives the entries of {@link #forEach(EntryVisitor)}.
+     */
+    public interface EntryVisitor {
+        void visit(int customerId, int itemId, int count);
+    }
+
+    /**
+     * Removes every entry, shrinking the file back to its initial size. Callers must serialize writes.
+     *
+     * @throws IOException if the file cannot be recreated.
+     */
+    public void clear() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        Table empty = create(temp, INITIAL_CAPACITY_LOG2);
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        table = empty;
+    }
+
+    /**
+     * Returns the number of entries in the table.
+     *
+     * @return the entry count.
+     */
+    public int size() {
+        return table.getInt(12);
+    }
+
+    /**
+     * Returns the history file length the counts reflect, as recorded by {@link #setSyncPoint}.
+     *
+     * @return the recorded history length.
+     */
+    public long getHistoryLength() {
+        return table.getLong(16);
+    }
+
+    /**
+     * Returns the customer dictionary size recorded by {@link #setSyncPoint}.
+     *
+     * @return the recorded customer count.
+     */
+    public int getCustomerCount() {
+        return table.getInt(24);
+    }
+
+    /**
+     * Returns the item dictionary size recorded by {@link #setSyncPoint}.
+     *
+     * @return the recorded item count.
+     */
+    public int getItemCount() {
+        return table.getInt(28);
+    }
+
+    /**
+     * Records how much of the history and of the id dictionaries the counts reflect.
+     *
+     * @param historyLength the history file length.
+     * @param customerCount the customer dictionary size.
+     * @param itemCount     the item dictionary size.
+     */
+    public void setSyncPoint(long historyLength, int customerCount, int itemCount) {
+        Table t = table;
+        t.putLong(16, historyLength);
+        t.putInt(24, customerCount);
+        t.putInt(28, itemCount);
+    }
+}
@@ -0,0 +1,357 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.util.*;
+
+/**
+ * The {@code FuzzyItemMatcher} class turns what a cashier typed into a menu item name, forgiving
+ * case, unfinished names and small typos ("big mac", "cheesburger", "filet").
+ * <p>
+ * {@link #bestMatch(String)} tries, in order:
+ * <ol>
+ *   <li>the exact name, ignoring case (a hash lookup);</li>
+ *   <li>a unique name starting with the input, ignoring case, for inputs of at least
+ *   {@link #MIN_PREFIX_LENGTH} characters (a binary search in the sorted names);</li>
+ *   <li>the closest name by Levenshtein edit distance, if it is within the threshold of
+ *   {@link #maxDistance(String)} and no other name is equally close.</li>
+ * </ol>
+ * Computing the edit distance to every name would be too slow for a catalog of tens of thousands
+ * of names, so the last step goes through an n-gram index. Every name is split into its trigrams
+ * (runs of three neighbouring characters, with two markers at both ends), and the index lists the
+ * names containing each trigram. One edit changes at most three trigrams, so a name within
+ * {@code t} edits of the input shares at least {@code (distinct input trigrams) - 3t} of them.
+ * That bound leaves a handful of candidates (see {@link #search(String, int)}), and only those get
+ * the edit distance computed, with an early exit once the threshold is passed.
+ * <p>
+ * The matcher is read-only after construction and can be shared between threads.
+ */
+public class FuzzyItemMatcher {
+    // Shortest input accepted as the start of a name.
+    static final int MIN_PREFIX_LENGTH = 3;
+    // Largest number of typos forgiven, however long the input.
+    static final int MAX_DISTANCE = 2;
+    // Marks the start and end of a name, so the first and last characters form full trigrams too.
+    private static final char EDGE = '\u0000';
+
+    // Original names by lowercase name.
+    private final Map<String, String> namesByKey = new HashMap<>();
+    // Lowercase names, sorted; a name's id is its position here.
+    private final String[] sortedKeys;
+    // Length of each name by id, kept apart so the length filter does not touch the strings.
+    private final int[] keyLengths;
+    // Ids of the names containing each trigram, ascending.
+    private final Map<Integer, int[]> postings = new HashMap<>();
+
+    /**
+     * Builds the matcher over a list of names.
+     *
+     * @param names the item names; names that only differ in case are kept once.
+     */
+    public FuzzyItemMatcher(Collection<String> names) {
+        for (String name : names) {
+            namesByKey.putIfAbsent(name.toLowerCase(), name);
+        }
+        sortedKeys = namesByKey.keySet().toArray(new String[0]);
+        Arrays.sort(sortedKeys);
+        keyLengths = new int[sortedKeys.length];
+        for (int id = 0; id < sortedKeys.length; id++) {
+            keyLengths[id] = sortedKeys[id].length();
+        }
+
+        // Collect the ids per trigram; ids are added in ascending order.
+        Map<Integer, List<Integer>> lists = new HashMap<>();
+        for (int id = 0; id < sortedKeys.length; id++) {
+            for (int gram : trigrams(sortedKeys[id])) {
+                lists.computeIfAbsent(gram, g -> new ArrayList<>()).add(id);
+            }
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : lists.entrySet()) {
+            List<Integer> ids = entry.getValue();
+            int[] array = new int[ids.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = ids.get(i);
+            }
+            postings.put(entry.getKey(), array);
+        }
+    }
+
+    /**
+     * Builds the matcher over the names of a menu's items.
+     *
+     * @param menu the menu.
+     * @return the matcher.
+     */
+    public static FuzzyItemMatcher forMenu(Menu menu) {
+        List<String> names = new ArrayList<>();
+        for (MenuItem item : menu.getItems()) {
+            names.add(item.getName());
+        }
+        return new FuzzyItemMatcher(names);
+    }
+
+    /**
+     * Returns the number of names in the matcher.
+     *
+     * @return the name count.
+     */
+    public int size() {
+        return sortedKeys.length;
+    }
+
+    /**
+     * Returns the distinct trigrams of a lowercase name, each packed into an int.
+     * <p>
+     * Characters below 1024 (all Latin letters, digits and punctuation) get 10 bits each, so those
+     * trigrams are exact. Others are hashed; two different trigrams sharing a code only adds
+     * candidates, which the edit distance then rejects, so no match is lost.
+     */
+    private static int[] trigrams(String key) {
+        Set<Integer> grams = new LinkedHashSet<>();
+        char first = EDGE;
+        char second = EDGE;
+        for (int i = 0; i < key.length() + 2; i++) {
+            char third = i < key.length() ? key.charAt(i) : EDGE;
+            if (first < 1024 && second < 1024 && third < 1024) {
+                grams.add(first << 20 | second << 10 | third);
+            } else {
+                grams.add(1 << 30 | ((first * 31 + second) * 31 + third) & 0x3FFF_FFFF);
+            }
+            first = second;
+            second = third;
+        }
+        int[] result = new int[grams.size()];
+        int i = 0;
+        for (int gram : grams) {
+            result[i++] = gram;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of typos forgiven for an input: none below three characters, one up to five
+     * characters and {@link #MAX_DISTANCE} after that, so short inputs do not match unrelated short names.
+     *
+     * @param input the typed text.
+     * @return the largest accepted edit distance.
+     */
+    static int maxDistance(String input) {
+        int length = input.length();
+        return length < 3 ? 0 : length < 6 ? 1 : MAX_DISTANCE;
+    }
+
+    /**
+     * Finds the item name meant by the input.
+     *
+     * @param input the typed text.
+     * @return the item name with its original spelling, or {@code null} if there is no match or
+     *         the input is ambiguous (see {@link #suggestions(String, int)} for what to offer instead).
+     */
+    public String bestMatch(String input) {
+        String key = input.trim().toLowerCase();
+        if (key.isEmpty()) {
+            return null;
+        }
+        String exact = namesByKey.get(key);
+        if (exact != null) {
+            return exact;
+        }
+        if (key.length() >= MIN_PREFIX_LENGTH) {
+            int first = firstWithPrefix(key);
+            if (first < sortedKeys.length && sortedKeys[first].startsWith(key)) {
+                boolean unique = first + 1 == sortedKeys.length || !sortedKeys[first + 1].startsWith(key);
+                // A prefix shared by several names is ambiguous; don't guess by edit distance either.
+                return unique ? namesByKey.get(sortedKeys[first]) : null;
+            }
+        }
+        int threshold = maxDistance(key);
+        if (threshold == 0) {
+            return null;
+        }
+        List<Candidate> close = search(key, threshold);
+        if (close.isEmpty()) {
+            return null;
+        }
+        close.sort(Candidate.CLOSEST_FIRST);
+        if (close.size() > 1 && close.get(1).distance == close.get(0).distance) {
+            return null;
+        }
+        return namesByKey.get(close.get(0).key);
+    }
+
+    /**
+     * Lists names the input may have meant, for a "did you mean" message: names starting with the
+     * input first, then names within one more typo than {@link #bestMatch(String)} accepts, closest first.
+     *
+     * @param input the typed text.
+     * @param limit the most names to return.
+     * @return the names with their original spelling.
+     */
+    public List<String> suggestions(String input, int limit) {
+        String key = input.trim().toLowerCase();
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        if (key.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (key.length() >= MIN_PREFIX_LENGTH) {
+            for (int i = firstWithPrefix(key); i < sortedKeys.length && sortedKeys[i].startsWith(key)
+                    && result.size() < limit; i++) {
+                result.add(namesByKey.get(sortedKeys[i]));
+            }
+        }
+        List<Candidate> close = search(key, maxDistance(key) + 1);
+        close.sort(Candidate.CLOSEST_FIRST);
+        for (Candidate candidate : close) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(namesByKey.get(candidate.key));
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Returns the position of the first sorted name that is not less than the prefix.
+     */
+    private int firstWithPrefix(String prefix) {
+        int at = Arrays.binarySearch(sortedKeys, prefix);
+        return at >= 0 ? at : -at - 1;
+    }
+
+    /**
+     * A name found by the n-gram search and its distance from the input.
+     */
+    private record Candidate(String key, int distance) {
+        static final Comparator<Candidate> CLOSEST_FIRST =
+                Comparator.comparingInt(Candidate::distance).thenComparing(Candidate::key);
+    }
+
+    /**
+     * Collects every name within {@code threshold} edits of the key.
+     * <p>
+     * A name within the threshold shares at least {@code needed} of the key's {@code g} trigrams, so it
+     * must appear in at least one of any {@code g - needed + 1} of their posting lists. Candidates are
+     * taken from the shortest lists only; the longer lists are then checked per candidate with a
+     * binary search, and candidates that can no longer reach {@code needed} are dropped early.
+     */
+    private List<Candidate> search(String key, int threshold) {
+        List<Candidate> found = new ArrayList<>();
+        int[] grams = trigrams(key);
+        int needed = grams.length - 3 * threshold;
+        if (needed <= 0) {
+            // Too short to filter by trigrams; check every name of a close enough length.
+            for (String candidate : sortedKeys) {
+                addIfClose(found, key, candidate, threshold);
+            }
+            return found;
+        }
+        // Posting lists of the key's trigrams, shortest first (an unknown trigram has an empty list).
+        int[][] lists = new int[grams.length][];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.getOrDefault(grams[i], new int[0]);
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+
+        // Candidates: every id in the shortest g - needed + 1 lists, with how many of them it is in.
+        int probeLists = grams.length - needed + 1;
+        int total = 0;
+        for (int i = 0; i < probeLists; i++) {
+            total += lists[i].length;
+        }
+        int[] ids = new int[total];
+        int at = 0;
+        for (int i = 0; i < probeLists; i++) {
+            System.arraycopy(lists[i], 0, ids, at, lists[i].length);
+            at += lists[i].length;
+        }
+        Arrays.sort(ids);
+        for (int start = 0; start < ids.length; ) {
+            int id = ids[start];
+            int end = start;
+            while (end < ids.length && ids[end] == id) {
+                end++;
+            }
+            int shared = end - start;
+            start = end;
+            if (Math.abs(keyLengths[id] - key.length()) > threshold) {
+                continue;
+            }
+            // Count the remaining lists, stopping once the candidate cannot reach the bound.
+            for (int i = probeLists; i < lists.length && shared + (lists.length - i) >= needed && shared < needed; i++) {
+                if (Arrays.binarySearch(lists[i], id) >= 0) {
+                    shared++;
+                }
+            }
+            if (shared >= needed) {
+                addIfClose(found, key, sortedKeys[id], threshold);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds a name to the results if it is within {@code threshold} edits of the key.
+     */
+    private static void addIfClose(List<Candidate> found, String key, String candidate, int threshold) {
+        if (Math.abs(candidate.length() - key.length()) > threshold) {
+            return;
+        }
+        int d = distance(key, candidate, threshold);
+        if (d <= threshold) {
+            found.add(new Candidate(candidate, d));
+        }
+    }
+
+    /**
+     * Returns the Levenshtein distance between two strings: the fewest single-character insertions,
+     * deletions and substitutions that turn one into the other.
+     *
+     * @param a the first string.
+     * @param b the second string.
+     * @return the edit distance.
+     */
+    static int distance(String a, String b) {
+        return distance(a, b, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Returns the Levenshtein distance between two strings, or {@code limit + 1} as soon as it is
+     * clear that the distance is larger than {@code limit}.
+     *
+     * @param a     the first string.
+     * @param b     the second string.
+     * @param limit the largest distance of interest.
+     * @return the edit distance, or {@code limit + 1} if it exceeds the limit.
+     */
+    static int distance(String a, String b, int limit) {
+        if (a.length() < b.length()) {
+            String swap = a;
+            a = b;
+            b = swap;
+        }
+        // Two rows of the dynamic programming table, over the shorter string.
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            // Distances never shrink from one row to the next, so stop once the whole row is too far.
+            if (rowMinimum > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], limit + 1);
+    }
+}
@@ -0,0 +1,511 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The {@code HistoryExporter} class exports an order history into a compact columnar file for
+ * offline analysis, and can dump such a file back out as CSV.
+ * <p>
+ * The text history stores times like "April 20, 2025 at 7:32p.m.", which depend on the locale and
+ * have changed spelling over time. The export stores every order time as epoch seconds instead, and
+ * stores customers and items as ids, with the names written once in the footer. The ids are the ones
+ * in the history's {@link IdDictionary} files; a name the dictionaries do not know yet gets an id
+ * after them that is only used inside the export, so exporting never changes the dictionary files.
+ * <p>
+ * File layout (all numbers big-endian, as written by {@link DataOutputStream}):
+ * <pre>
+ * header    int magic "NTCX", int version, UTF time zone id the times were read in
+ * row group int rowCount, then 5 columns, each: int rawLength, int compressedLength, deflated bytes
+ *             customer  varint customer id per row
+ *             time      zigzag varint delta of (epoch seconds + 1) per row; 0 means the time was unreadable
+ *             calories  zigzag varint of the total calories in tenths per row
+ *             itemCount varint number of items per row
+ *             items     varint item id per item, all rows concatenated
+ * footer    int groupCount, (long offset, int rowCount) per group,
+ *           int customerCount, UTF name per customer id, int itemCount, UTF name per item id
+ * trailer   long footer offset, int magic "NTCX"
+ * </pre>
+ * The history files are cut into chunks of about {@link #CHUNK_BYTES} at line boundaries. Chunks are
+ * parsed and encoded in parallel, one row group each, and written in file order. At most two
+ * chunks per thread are in flight at a time, so memory stays bounded no matter how long the history is.
+ * The sealed {@link HistorySegments} of a file come before it, one chunk per compressed block.
+ * <p>
+ * Usage: {@code HistoryExporter export <output file> [parallelism]} or
+ * {@code HistoryExporter dump <export file>}.
+ */
+public class HistoryExporter {
+    private static final int MAGIC = 0x4E544358; // "NTCX"
+    private static final int VERSION = 1;
+    // Target size of the text chunk behind one row group.
+    static final int CHUNK_BYTES = 4 << 20;
+    private static final int COLUMNS = 5;
+
+    private final OrderHistory orderHistory;
+    private final ZoneId zone;
+
+    /**
+     * Creates an exporter for an order history.
+     *
+     * @param orderHistory the history to export (single file or sharded).
+     * @param zone         the time zone the stored local times are interpreted in.
+     */
+    public HistoryExporter(OrderHistory orderHistory, ZoneId zone) {
+        this.orderHistory = orderHistory;
+        this.zone = zone;
+    }
+
+    /**
+     * A part of a history file, from one line start to another, or one block of a sealed segment.
+     * Chunks can be read and parsed independently, so a pass over the history can run on many threads.
+     */
+    record Chunk(File file, long start, long end, HistorySegment segment, int block) {
+        Chunk(File file, long start, long end) {
+            this(file, start, end, null, -1);
+        }
+
+        /**
+         * Reads the chunk's lines.
+         *
+         * @return the raw bytes of the lines.
+         * @throws IOException if the file or segment cannot be read.
+         */
+        byte[] read() throws IOException {
+            if (segment != null) {
+                return segment.readBlock(block);
+            }
+            byte[] text = new byte[(int) (end - start)];
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                raf.seek(start);
+                raf.readFully(text);
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Cuts a whole history, sealed segments first and then the active files, into chunks.
+     *
+     * @param orderHistory the history.
+     * @return the chunks, in file order.
+     * @throws IOException if a history file cannot be read.
+     */
+    static List<Chunk> chunksOf(OrderHistory orderHistory) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        for (File file : orderHistory.getHistoryFiles()) {
+            for (HistorySegment segment : HistorySegments.forFile(file.getPath()).getSegments()) {
+                for (int block = 0; block < segment.getBlockCount(); block++) {
+                    chunks.add(new Chunk(segment.getFile(), 0, 0, segment, block));
+                }
+            }
+            splitIntoChunks(file, chunks);
+        }
+        return chunks;
+    }
+
+    /**
+     * One encoded row group, ready to be written.
+     */
+    private record RowGroup(int rows, int[] rawLengths, byte[][] columns) {
+    }
+
+    /**
+     * A growable byte array with the variable-length integer encoding used by the columns.
+     */
+    private static final class ColumnBuffer {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        void writeVarLong(long value) {
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+    }
+
+    /**
+     * The names of one export: the names of a dictionary when the export started, followed by the
+     * names the dictionary did not have yet, which are numbered here instead of in the dictionary.
+     */
+    private static final class ExportNames {
+        private final IdDictionary dictionary;
+        // Names in id order; guarded by this once the export has started.
+        private final List<String> names = new ArrayList<>();
+        // Number of names taken from the dictionary.
+        private final int known;
+        // Names the dictionary did not have -> their export-only id; guarded by this.
+        private final Map<String, Integer> added = new HashMap<>();
+
+        ExportNames(IdDictionary dictionary) {
+            this.dictionary = dictionary;
+            this.known = dictionary.size();
+            for (int id = 0; id < known; id++) {
+                names.add(dictionary.nameOf(id));
+            }
+        }
+
+        /**
+         * Returns the id of a name in this export, without adding it to the dictionary.
+         */
+        int idOf(String name) {
+            int id = dictionary.lookup(name);
+            if (id >= 0 && id < known) {
+                return id;
+            }
+            synchronized (this) {
+                return added.computeIfAbsent(name, n -> {
+                    names.add(n);
+                    return names.size() - 1;
+                });
+            }
+        }
+
+        synchronized List<String> getNames() {
+            return new ArrayList<>(names);
+        }
+    }
+
+    /**
+     * Exports the whole history into a file.
+     *
+     * @param output      the file to write.
+     * @param parallelism the number of threads parsing and compressing chunks.
+     * @return the number of orders exported.
+     * @throws IOException if the history cannot be read or the export cannot be written.
+     */
+    public long export(File output, int parallelism) throws IOException {
+        List<Chunk> chunks = chunksOf(orderHistory);
+        ExportNames customers = new ExportNames(orderHistory.getCustomerDictionary());
+        ExportNames items = new ExportNames(orderHistory.getItemDictionary());
+        // Item ids looked up from the line bytes; names the dictionary did not have fall back to the export's own ids.
+        PerfectHashDictionary itemIds = new PerfectHashDictionary(items.getNames());
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        List<long[]> groupIndex = new ArrayList<>();
+        long rowsWritten = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(zone.getId());
+            // Tracked by hand because DataOutputStream.size() stops counting at 2 GB.
+            long position = out.size();
+
+            // Keep a bounded window of chunks in flight; results are written in submission order.
+            Deque<Future<RowGroup>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            while (next < chunks.size() || !inFlight.isEmpty()) {
+                while (next < chunks.size() && inFlight.size() < parallelism * 2) {
+                    Chunk chunk = chunks.get(next++);
+                    inFlight.add(pool.submit(() -> encode(chunk, customers, items, itemIds)));
+                }
+                RowGroup group = inFlight.poll().get();
+                if (group.rows() == 0) {
+                    continue;
+                }
+                groupIndex.add(new long[]{position, group.rows()});
+                out.writeInt(group.rows());
+                position += 4;
+                for (int c = 0; c < COLUMNS; c++) {
+                    out.writeInt(group.rawLengths()[c]);
+                    out.writeInt(group.columns()[c].length);
+                    out.write(group.columns()[c]);
+                    position += 8 + group.columns()[c].length;
+                }
+                rowsWritten += group.rows();
+            }
+
+            long footerOffset = position;
+            out.writeInt(groupIndex.size());
+            for (long[] entry : groupIndex) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+            }
+            writeDictionary(out, customers.getNames());
+            writeDictionary(out, items.getNames());
+            out.writeLong(footerOffset);
+            out.writeInt(MAGIC);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("export interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return rowsWritten;
+    }
+
+    /**
+     * Cuts a file into chunks of about {@link #CHUNK_BYTES}, each ending right after a line break.
+     */
+    private static void splitIntoChunks(File file, List<Chunk> chunks) throws IOException {
+        long length = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long start = 0;
+            while (start < length) {
+                long end = Math.min(length, start + CHUNK_BYTES);
+                if (end < length) {
+                    // Move the cut forward to just after the next line break.
+                    raf.seek(end);
+                    int b;
+                    while ((b = raf.read()) != -1 && b != '\n') {
+                        end++;
+                    }
+                    end = Math.min(length, end + 1);
+                }
+                chunks.add(new Chunk(file, start, end));
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * Parses the records of one chunk and encodes them as a row group. Runs on a pool thread.
+     */
+    private RowGroup encode(Chunk chunk, ExportNames customers, ExportNames items, PerfectHashDictionary itemIds)
+            throws IOException {
+        byte[] text = chunk.read();
+        ColumnBuffer customerColumn = new ColumnBuffer();
+        ColumnBuffer timeColumn = new ColumnBuffer();
+        ColumnBuffer calorieColumn = new ColumnBuffer();
+        ColumnBuffer countColumn = new ColumnBuffer();
+        ColumnBuffer itemColumn = new ColumnBuffer();
+        int rows = 0;
+        long previousTime = 0;
+        // Orders are stored in time order, so consecutive records usually share their minute.
+        long lastKey = HistoryLineParser.UNKNOWN_TIME;
+        long lastTime = 0;
+        HistoryLineParser parser = new HistoryLineParser();
+
+        int lineStart = 0;
+        for (int i = 0; i <= text.length; i++) {
+            if (i < text.length && text[i] != '\n') {
+                continue;
+            }
+            int lineEnd = i > lineStart && text[i - 1] == '\r' ? i - 1 : i;
+            boolean valid = lineEnd > lineStart && parser.parse(text, lineStart, lineEnd) && parser.checksumMatches();
+            lineStart = i + 1;
+            if (!valid) {
+                continue;
+            }
+            long key = parser.timeKey();
+            if (key != lastKey) {
+                lastKey = key;
+                lastTime = key == HistoryLineParser.UNKNOWN_TIME ? 0
+                        : LocalDateTime.ofEpochSecond(key * 60, 0, ZoneOffset.UTC).atZone(zone).toEpochSecond() + 1;
+            }
+            customerColumn.writeVarLong(customers.idOf(parser.customerName()));
+            timeColumn.writeZigZag(lastTime - previousTime);
+            previousTime = lastTime;
+            calorieColumn.writeZigZag(Math.round(parser.totalCalories() * 10));
+            countColumn.writeVarLong(parser.itemCount());
+            for (int item = 0; item < parser.itemCount(); item++) {
+                int itemId = parser.itemId(item, itemIds);
+                itemColumn.writeVarLong(itemId >= 0 ? itemId : items.idOf(parser.itemName(item)));
+            }
+            rows++;
+        }
+
+        ColumnBuffer[] columns = {customerColumn, timeColumn, calorieColumn, countColumn, itemColumn};
+        int[] rawLengths = new int[COLUMNS];
+        byte[][] compressed = new byte[COLUMNS][];
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            for (int c = 0; c < COLUMNS; c++) {
+                rawLengths[c] = columns[c].size;
+                compressed[c] = deflate(deflater, columns[c].bytes, columns[c].size);
+            }
+        } finally {
+            deflater.end();
+        }
+        return new RowGroup(rows, rawLengths, compressed);
+    }
+
+    /**
+     * Compresses one column block.
+     */
+    private static byte[] deflate(Deflater deflater, byte[] data, int length) {
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the names of an export in id order.
+     */
+    private static void writeDictionary(DataOutputStream out, List<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    /**
+     * Prints an export file as CSV: customer, local time (ISO-8601), epoch seconds, calories, items
+     * separated by semicolons.
+     *
+     * @param file the export file.
+     * @param out  where to print the rows.
+     * @return the number of rows printed.
+     * @throws IOException if the file is not a valid export.
+     */
+    public static long dump(File file, PrintStream out) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < 12 || raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                throw new IOException(file + " is not a history export");
+            }
+            ZoneId zone = ZoneId.of(raf.readUTF());
+            raf.seek(raf.length() - 12);
+            long footerOffset = raf.readLong();
+            if (raf.readInt() != MAGIC) {
+                throw new IOException(file + " has no footer; the export did not finish");
+            }
+            raf.seek(footerOffset);
+            long[] offsets = new long[raf.readInt()];
+            for (int g = 0; g < offsets.length; g++) {
+                offsets[g] = raf.readLong();
+                raf.readInt();
+            }
+            String[] customers = readDictionary(raf);
+            String[] items = readDictionary(raf);
+
+            long rows = 0;
+            out.println("customer,time,epochSeconds,calories,items");
+            for (long offset : offsets) {
+                raf.seek(offset);
+                int rowCount = raf.readInt();
+                DataInputStream[] columns = new DataInputStream[COLUMNS];
+                for (int c = 0; c < COLUMNS; c++) {
+                    byte[] raw = new byte[raf.readInt()];
+                    byte[] packed = new byte[raf.readInt()];
+                    raf.readFully(packed);
+                    inflate(packed, raw);
+                    columns[c] = new DataInputStream(new ByteArrayInputStream(raw));
+                }
+                long time = 0;
+                for (int r = 0; r < rowCount; r++) {
+                    String customer = customers[(int) readVarLong(columns[0])];
+                    time += readZigZag(columns[1]);
+                    double calories = readZigZag(columns[2]) / 10.0;
+                    int count = (int) readVarLong(columns[3]);
+                    StringJoiner names = new StringJoiner(";");
+                    for (int k = 0; k < count; k++) {
+                        names.add(items[(int) readVarLong(columns[4])]);
+                    }
+                    String localTime = time == 0 ? "" : LocalDateTime.ofInstant(Instant.ofEpochSecond(time - 1), zone).toString();
+                    out.println(csv(customer) + "," + localTime + "," + (time == 0 ? "" : String.valueOf(time - 1))
+                            + "," + calories + "," + csv(names.toString()));
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Reads a dictionary written by {@link #writeDictionary}.
+     */
+    private static String[] readDictionary(DataInput in) throws IOException {
+        String[] names = new String[in.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF();
+        }
+        return names;
+    }
+
+    /**
+     * Decompresses one column block into a buffer of its raw length.
+     */
+    private static void inflate(byte[] packed, byte[] raw) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(packed);
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                n += inflater.inflate(raw, n, raw.length - n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt column block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long readZigZag(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Quotes a CSV field if it contains a comma or a quote.
+     */
+    private static String csv(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0) {
+            return field;
+        }
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Entry point of the export tool.
+     *
+     * @param args {@code export <output file> [parallelism]} or {@code dump <export file>}.
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length >= 2 && args[0].equals("export")) {
+                int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+                HistoryExporter exporter = new HistoryExporter(OrderHistory.openDefault(), ZoneId.systemDefault());
+                long start = System.nanoTime();
+                long rows = exporter.export(new File(args[1]), parallelism);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.println("Exported " + rows + " orders to " + args[1] + " in " + millis + " ms.");
+            } else if (args.length >= 2 && args[0].equals("dump")) {
+                dump(new File(args[1]), System.out);
+            } else {
+                System.out.println("Usage: HistoryExporter export <output file> [parallelism]");
+                System.out.println("       HistoryExporter dump <export file>");
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,376 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code HistoryIndex} class keeps per-customer aggregates of an order history file in memory,
+ * keyed by dense integer ids instead of customer and item name strings.
+ * <p>
+ * Customer and item names are mapped to ids by two {@link IdDictionary} files stored next to the
+ * history file ({@code <history file>.customers} and {@code <history file>.items}), or next to the
+ * root of a sharded history so that all shards share the same ids. The item counts and order
+ * counts of every customer are kept in an off-heap {@link FrequencyStore} keyed by
+ * (customer id, item id), stored in {@code <history file>.freq}. Looking up a customer's frequencies
+ * is a few hash probes into mapped memory instead of a full scan of the history file, and millions
+ * of customers do not put millions of maps on the Java heap.
+ * <p>
+ * The store is persistent: it records the history length and dictionary sizes it reflects, and if
+ * they still match when the index is opened, no scan is needed after a restart. Otherwise the index
+ * is rebuilt with one scan the first time it is used. After that it is kept up to date by listening
+ * to appends on the file's {@link HistoryLog}. If the file is changed behind the log's back (for
+ * example truncated or replaced), the index notices the length difference and rebuilds itself.
+ * The length is that of the whole history: the sealed {@link HistorySegments} at their raw size
+ * plus the active file, so sealing the file does not count as a change.
+ * Counts reach the disk when the operating system writes back the mapped pages, so after a power
+ * loss (not just a process crash) the store can lag the history; {@code HistoryLog recover} followed
+ * by deleting the {@code .freq} file forces a clean rebuild.
+ * All access happens under the log's lock, so the index always matches the records written so far.
+ * Every read also compares the history length with the indexed one (a length lookup of the active
+ * file), which is how a change made behind the log's back is noticed.
+ */
+public class HistoryIndex implements HistoryLog.AppendListener {
+    // One index per history file, keyed by absolute path.
+    private static final Map<String, HistoryIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final HistoryLog log;
+    private final HistorySegments segments;
+    private final IdDictionary customers;
+    private final IdDictionary items;
+    // (customerId, itemId) -> number of times the customer ordered the item, plus
+    // (customerId, ORDER_COUNT_ITEM) -> number of orders of the customer. Null if the store cannot be opened.
+    private final FrequencyStore store;
+    // Length of the history (sealed segments plus the file) the index reflects, or -1 before the first build.
+    private long indexedLength = -1;
+
+    /**
+     * Creates the index of a history file. Use {@link #forFile(String)} to get the shared instance.
+     *
+     * @param file           the history file.
+     * @param dictionaryBase the path the dictionary file names are derived from.
+     */
+    private HistoryIndex(File file, String dictionaryBase) {
+        this.file = file;
+        this.log = HistoryLog.forFile(file.getPath());
+        this.segments = HistorySegments.forFile(file.getPath());
+        this.customers = IdDictionary.forFile(dictionaryBase + ".customers");
+        this.items = IdDictionary.forFile(dictionaryBase + ".items");
+        FrequencyStore opened = null;
+        try {
+            opened = new FrequencyStore(new File(file.getPath() + ".freq"));
+        } catch (IOException e) {
+            System.out.println("Error opening frequency store: " + e.getMessage());
+        }
+        this.store = opened;
+        synchronized (log) {
+            // Reuse the counts of a previous run if they still describe this file and these dictionaries.
+            if (store != null && store.getHistoryLength() == historyLength()
+                    && store.getCustomerCount() <= customers.size() && store.getItemCount() <= items.size()) {
+                indexedLength = store.getHistoryLength();
+            }
+        }
+    }
+
+    /**
+     * Returns the shared index of a history file.
+     *
+     * @param historyFile the path of the history file.
+     * @return the index of that file.
+     */
+    public static HistoryIndex forFile(String historyFile) {
+        return forFile(historyFile, historyFile);
+    }
+
+    /**
+     * Returns the shared index of a history file whose dictionaries are shared with other files.
+     *
+     * @param historyFile    the path of the history file.
+     * @param dictionaryBase the path the dictionary file names are derived from.
+     * @return the index of that file.
+     */
+    static HistoryIndex forFile(String historyFile, String dictionaryBase) {
+        return INDEXES.computeIfAbsent(new File(historyFile).getAbsolutePath(), path -> {
+            HistoryIndex index = new HistoryIndex(new File(path), dictionaryBase);
+            index.log.addAppendListener(index);
+            return index;
+        });
+    }
+
+    /**
+     * Returns the dictionary of customer ids.
+     *
+     * @return the customer dictionary.
+     */
+    public IdDictionary getCustomers() {
+        return customers;
+    }
+
+    /**
+     * Returns the dictionary of item ids.
+     *
+     * @return the item dictionary.
+     */
+    public IdDictionary getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the frequency map of a customer, built from the customer's row of counts.
+     *
+     * @param customerName the customer's name.
+     * @return a map from item name to the number of times it was ordered (empty if the customer has no orders).
+     */
+    public Map<String, Integer> frequencyMap(String customerName) {
+        synchronized (log) {
+            ensureCurrent();
+            Map<String, Integer> frequency = new HashMap<>();
+            int customerId = customers.lookup(customerName);
+            if (customerId >= 0 && store != null) {
+                int itemCount = items.size();
+                for (int itemId = 0; itemId < itemCount; itemId++) {
+                    int count = store.get(customerId, itemId);
+                    if (count > 0) {
+                        frequency.put(items.nameOf(itemId), count);
+                    }
+                }
+            }
+            return frequency;
+        }
+    }
+
+    /**
+     * Copies a customer's counts of the given items into an array, without allocating.
+     * <p>
+     * This is the lookup used by the {@link RecommendationEngine} on every request: the caller
+     * resolves the item ids once and reuses the arrays, so no map or boxed value is created.
+     *
+     * @param customerName the customer's name.
+     * @param itemIds      item ids to look up; negative ids (items never ordered) get a count of 0.
+     * @param counts       receives the count of {@code itemIds[i]} at position {@code i}.
+     */
+    public void fillCounts(String customerName, int[] itemIds, int[] counts) {
+        synchronized (log) {
+            ensureCurrent();
+            int customerId = customers.lookup(customerName);
+            for (int i = 0; i < itemIds.length; i++) {
+                counts[i] = customerId >= 0 && itemIds[i] >= 0 && store != null ? store.get(customerId, itemIds[i]) : 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the frequency maps of every customer that has orders.
+     *
+     * @return a map from customer name to that customer's frequency map.
+     */
+    public Map<String, Map<String, Integer>> allFrequencyMaps() {
+        synchronized (log) {
+            ensureCurrent();
+            Map<String, Map<String, Integer>> frequencies = new HashMap<>();
+            if (store != null) {
+                // One pass over the table; entries come in slot order, not grouped by customer.
+                store.forEach((customerId, itemId, count) -> {
+                    if (itemId != FrequencyStore.ORDER_COUNT_ITEM && count > 0) {
+                        frequencies.computeIfAbsent(customers.nameOf(customerId), name -> new HashMap<>())
+                                .put(items.nameOf(itemId), count);
+                    }
+                });
+            }
+            return frequencies;
+        }
+    }
+
+    /**
+     * Returns a copy of a customer's item counts, indexed by item id.
+     *
+     * @param customerId the customer id.
+     * @return the counts; an empty array if the customer has no orders.
+     */
+    public int[] itemCounts(int customerId) {
+        synchronized (log) {
+            ensureCurrent();
+            if (customerId < 0 || store == null || store.get(customerId, FrequencyStore.ORDER_COUNT_ITEM) == 0) {
+                return new int[0];
+            }
+            int[] row = new int[items.size()];
+            for (int itemId = 0; itemId < row.length; itemId++) {
+                row[itemId] = store.get(customerId, itemId);
+            }
+            return row;
+        }
+    }
+
+    /**
+     * Returns the number of orders a customer has placed.
+     *
+     * @param customerId the customer id.
+     * @return the order count, 0 for unknown customers.
+     */
+    public int orderCount(int customerId) {
+        synchronized (log) {
+            ensureCurrent();
+            return customerId >= 0 && store != null ? store.get(customerId, FrequencyStore.ORDER_COUNT_ITEM) : 0;
+        }
+    }
+
+    /**
+     * Updates the index with a record that has just been appended. Called by the log under its lock.
+     *
+     * @param record     the appended record.
+     * @param fileLength the file length after the append.
+     */
+    @Override
+    public void recordAppended(HistoryRecord record, long fileLength) {
+        // Before the first build there is nothing to update; the build will scan the record.
+        if (indexedLength < 0 || store == null) {
+            return;
+        }
+        try {
+            add(record);
+            indexedLength = segments.getSealedLength() + fileLength;
+            store.setSyncPoint(indexedLength, customers.size(), items.size());
+        } catch (IOException e) {
+            // Force a rebuild on the next read rather than serve counts that miss this record.
+            System.out.println("Error updating frequency store: " + e.getMessage());
+            indexedLength = -1;
+            store.setSyncPoint(-1, 0, 0);
+        }
+    }
+
+    /**
+     * Builds (or rebuilds) the index if the file no longer has the length the index reflects.
+     * Must be called while holding the log's lock.
+     */
+    private void ensureCurrent() {
+        long length = historyLength();
+        if (length == indexedLength || store == null) {
+            return;
+        }
+        TrackerEvents.HistoryRead event = new TrackerEvents.HistoryRead("rebuildIndex", file.getPath(), null);
+        event.begin();
+        try {
+            store.clear();
+            Rebuild rebuild = new Rebuild(event);
+            // The sealed segments first, block by block, then the active file.
+            for (HistorySegment segment : segments.getSegments()) {
+                for (int block = 0; block < segment.getBlockCount(); block++) {
+                    byte[] raw = segment.readBlock(block);
+                    rebuild.addLines(raw, raw.length);
+                }
+            }
+            if (file.exists()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    byte[] buffer = new byte[64 * 1024];
+                    int filled = 0;
+                    int n;
+                    while ((n = in.read(buffer, filled, buffer.length - filled)) > 0) {
+                        filled += n;
+                        // Keep the unfinished last line for the next read.
+                        int used = rebuild.addLines(buffer, filled);
+                        System.arraycopy(buffer, used, buffer, 0, filled - used);
+                        filled -= used;
+                        if (filled == buffer.length) {
+                            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        }
+                    }
+                    if (filled > 0) {
+                        // A last line without a line break still counts, as it did with readLine().
+                        rebuild.addLine(buffer, 0, filled);
+                    }
+                }
+            }
+            store.setSyncPoint(length, customers.size(), items.size());
+            indexedLength = length;
+            event.bytesRead = length;
+            event.commit();
+        } catch (IOException e) {
+            // Leave the index unbuilt so the next read tries again instead of serving partial counts.
+            System.out.println("Error reading order history for index: " + e.getMessage());
+            indexedLength = -1;
+            store.setSyncPoint(-1, 0, 0);
+        }
+    }
+
+    /**
+     * Returns the length of the whole history: the raw length of the sealed segments plus the file.
+     */
+    private long historyLength() {
+        return segments.getSealedLength() + file.length();
+    }
+
+    /**
+     * One rebuild scan: reads lines with a {@link HistoryLineParser} and looks up item ids through a
+     * {@link PerfectHashDictionary}, so the only string made per line is the customer name.
+     */
+    private final class Rebuild {
+        private final HistoryLineParser parser = new HistoryLineParser();
+        private final TrackerEvents.HistoryRead event;
+        private PerfectHashDictionary itemIds = PerfectHashDictionary.of(items);
+
+        Rebuild(TrackerEvents.HistoryRead event) {
+            this.event = event;
+        }
+
+        /**
+         * Adds every complete line of {@code bytes[0, end)}.
+         *
+         * @return the position just after the last line break.
+         */
+        int addLines(byte[] bytes, int end) throws IOException {
+            int start = 0;
+            for (int i = 0; i < end; i++) {
+                if (bytes[i] == '\n') {
+                    addLine(bytes, start, i > start && bytes[i - 1] == '\r' ? i - 1 : i);
+                    start = i + 1;
+                }
+            }
+            return start;
+        }
+
+        /**
+         * Adds the record of one line, if it is a valid record.
+         */
+        void addLine(byte[] bytes, int start, int end) throws IOException {
+            event.linesScanned++;
+            if (!parser.parse(bytes, start, end) || !parser.checksumMatches()) {
+                event.linesSkipped++;
+                return;
+            }
+            int customerId = customers.idFor(parser.customerName());
+            store.add(customerId, FrequencyStore.ORDER_COUNT_ITEM, 1);
+            for (int i = 0; i < parser.itemCount(); i++) {
+                int itemId = parser.itemId(i, itemIds);
+                if (itemId < 0) {
+                    // A name the snapshot did not have yet: give it an id and take a new snapshot.
+                    itemId = items.idFor(parser.itemName(i));
+                    itemIds = PerfectHashDictionary.of(items);
+                }
+                store.add(customerId, itemId, 1);
+            }
+            event.recordsMatched++;
+        }
+    }
+
+    /**
+     * Adds one record to the counts, assigning ids to new customers and items.
+     *
+     * @param record the record to add.
+     * @throws IOException if the frequency store has to grow and cannot.
+     */
+    private void add(HistoryRecord record) throws IOException {
+        int customerId = customers.idFor(record.getCustomerName());
+        store.add(customerId, FrequencyStore.ORDER_COUNT_ITEM, 1);
+        for (String item : record.getItems()) {
+            store.add(customerId, items.idFor(item), 1);
+        }
+    }
+}
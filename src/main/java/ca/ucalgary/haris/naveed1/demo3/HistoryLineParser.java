@@ -0,0 +1,445 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code HistoryLineParser} class reads history lines straight from their bytes, without the
+ * regular expressions, arrays and strings that {@link HistoryRecord#parse(String)} creates for
+ * every line.
+ * <p>
+ * {@link #parse(byte[], int, int)} only finds where the fields of a line start and end. The fields
+ * are then read in place: a scan can compare the customer name with
+ * {@link #customerEquals(byte[])}, turn the order time into a number with {@link #timeKey()} and
+ * item names into ids with {@link #itemId(int, PerfectHashDictionary)}, and only call
+ * {@link #toRecord()} (which creates the strings) for the lines it keeps. The frame checksum is
+ * also only computed when asked for, with {@link #checksumMatches()}, so lines that a scan rejects
+ * on their customer or time are never checksummed.
+ * <p>
+ * A line passes both {@link #parse(byte[], int, int)} and {@link #checksumMatches()} exactly when
+ * {@link HistoryRecord#parse(String)} accepts it, and gives the same fields. Times in the usual "March 3, 2025 at 4:43pm" or "April 20, 2025 at 7:32p.m." form
+ * are read from the bytes; anything else falls back to {@link HistoryRecord#parseTime(String)}.
+ * <p>
+ * A parser keeps the state of the last line, so each thread needs its own; reuse it for every line.
+ */
+public final class HistoryLineParser {
+    // What timeKey() returns when the line's time cannot be read.
+    public static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    private static final byte[][] MONTHS = new byte[12][];
+    static {
+        String[] names = {"January", "February", "March", "April", "May", "June", "July", "August",
+                "September", "October", "November", "December"};
+        for (int i = 0; i < names.length; i++) {
+            MONTHS[i] = names[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+    // HistoryRecord's formatter reads month names in the default locale, so the bytes are only read
+    // here if that locale spells them in English; otherwise every time goes to the formatter.
+    private static final boolean ENGLISH_TIMES = HistoryRecord.parseTime("January 1, 2000 at 1:00am") != null
+            && HistoryRecord.parseTime("December 1, 2000 at 1:00pm") != null;
+    // Powers of ten that a double holds exactly, for reading the calories.
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final CRC32 crc = new CRC32();
+    private byte[] bytes;
+    private int payloadStart;
+    private int payloadEnd;
+    // CRC-32 the frame expects, or -1 for an unframed line.
+    private long expectedCrc;
+    private int customerStart;
+    private int customerEnd;
+    private int timeStart;
+    private int timeEnd;
+    private double totalCalories;
+    private int[] itemStarts = new int[8];
+    private int[] itemEnds = new int[8];
+    private int itemCount;
+
+    /**
+     * Finds the fields of one line.
+     *
+     * @param bytes the bytes holding the line.
+     * @param start the first byte of the line.
+     * @param end   the position just after the line, without its line terminator.
+     * @return true if the line has the shape of a record and a frame of the right length; the
+     *         checksum is checked separately by {@link #checksumMatches()}.
+     */
+    public boolean parse(byte[] bytes, int start, int end) {
+        this.bytes = bytes;
+        payloadStart = start;
+        payloadEnd = end;
+        expectedCrc = -1;
+        if (!unframe(start, end)) {
+            return false;
+        }
+        // customer|time|calories|items; split() drops trailing empty fields, so trailing bars are allowed.
+        int bar1 = indexOf('|', payloadStart, payloadEnd);
+        int bar2 = bar1 < 0 ? -1 : indexOf('|', bar1 + 1, payloadEnd);
+        int bar3 = bar2 < 0 ? -1 : indexOf('|', bar2 + 1, payloadEnd);
+        if (bar3 < 0) {
+            return false;
+        }
+        int bar4 = indexOf('|', bar3 + 1, payloadEnd);
+        int itemsEnd = bar4 < 0 ? payloadEnd : bar4;
+        if (itemsEnd == bar3 + 1) {
+            return false;
+        }
+        for (int i = itemsEnd; i < payloadEnd; i++) {
+            if (bytes[i] != '|') {
+                return false;
+            }
+        }
+        customerStart = payloadStart;
+        customerEnd = bar1;
+        timeStart = bar1 + 1;
+        timeEnd = bar2;
+        if (!parseCalories(bar2 + 1, bar3)) {
+            return false;
+        }
+        splitItems(bar3 + 1, itemsEnd);
+        return true;
+    }
+
+    /**
+     * Tells whether the payload matches the CRC-32 of its frame. Unframed lines always match.
+     *
+     * @return true if the line is not damaged.
+     */
+    public boolean checksumMatches() {
+        if (expectedCrc < 0) {
+            return true;
+        }
+        crc.reset();
+        crc.update(bytes, payloadStart, payloadEnd - payloadStart);
+        return crc.getValue() == expectedCrc;
+    }
+
+    /**
+     * Tells whether the customer name is the given name, without creating a string.
+     *
+     * @param name the UTF-8 bytes of the name.
+     * @return true if the names are equal.
+     */
+    public boolean customerEquals(byte[] name) {
+        return Arrays.equals(bytes, customerStart, customerEnd, name, 0, name.length);
+    }
+
+    /**
+     * Returns the customer name.
+     *
+     * @return the customer name.
+     */
+    public String customerName() {
+        return new String(bytes, customerStart, customerEnd - customerStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the order time as it is written in the line.
+     *
+     * @return the formatted order time.
+     */
+    public String dateTime() {
+        return new String(bytes, timeStart, timeEnd - timeStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the total calories.
+     *
+     * @return the total calories.
+     */
+    public double totalCalories() {
+        return totalCalories;
+    }
+
+    /**
+     * Returns the number of items.
+     *
+     * @return the item count.
+     */
+    public int itemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Returns the name of an item.
+     *
+     * @param i the item's position in the order.
+     * @return the item name.
+     */
+    public String itemName(int i) {
+        return new String(bytes, itemStarts[i], itemEnds[i] - itemStarts[i], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Looks up the id of an item without creating a string.
+     *
+     * @param i          the item's position in the order.
+     * @param dictionary the item names and their ids.
+     * @return the id, or -1 if the name is not in the dictionary (use {@link #itemName(int)} then).
+     */
+    public int itemId(int i, PerfectHashDictionary dictionary) {
+        return dictionary.lookup(bytes, itemStarts[i], itemEnds[i]);
+    }
+
+    /**
+     * Returns the order time as minutes since 1970 of its local date and time (the key of
+     * {@link HistorySegment#timeKey(LocalDateTime)}).
+     *
+     * @return the key, or {@link #UNKNOWN_TIME} if the time cannot be read.
+     */
+    public long timeKey() {
+        long key = fastTimeKey();
+        if (key != UNKNOWN_TIME) {
+            return key;
+        }
+        // An unusual spelling: let the formatter decide.
+        LocalDateTime time = HistoryRecord.parseTime(dateTime());
+        return time == null ? UNKNOWN_TIME : HistorySegment.timeKey(time);
+    }
+
+    /**
+     * Builds the record of the line, creating its strings.
+     *
+     * @return the record.
+     */
+    public HistoryRecord toRecord() {
+        String[] items = new String[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            items[i] = itemName(i);
+        }
+        return new HistoryRecord(customerName(), dateTime(), totalCalories, Arrays.asList(items));
+    }
+
+    /**
+     * Checks the frame header, if the line has one, and narrows the payload to what follows it.
+     *
+     * @return false if the line is framed but its payload does not have the framed length.
+     */
+    private boolean unframe(int start, int end) {
+        // @digits:8hex| with 1 to 10 digits, like HistoryRecord.isFramed().
+        if (end - start < 12 || bytes[start] != '@') {
+            return true;
+        }
+        int colon = indexOf(':', start + 1, Math.min(end, start + 12));
+        if (colon < start + 2 || end < colon + 10 || bytes[colon + 9] != '|') {
+            return true;
+        }
+        long length = 0;
+        for (int i = start + 1; i < colon; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return true;
+            }
+            length = length * 10 + digit;
+        }
+        long crcValue = 0;
+        for (int i = colon + 1; i < colon + 9; i++) {
+            int digit = Character.digit(bytes[i], 16);
+            if (digit < 0) {
+                return true;
+            }
+            crcValue = crcValue << 4 | digit;
+        }
+        payloadStart = colon + 10;
+        expectedCrc = crcValue;
+        return end - payloadStart == length;
+    }
+
+    /**
+     * Reads the calories; plain decimals are read from the bytes, other forms by {@link Double}.
+     */
+    private boolean parseCalories(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        // Exact when the digits fit in a double's 53 bits and the power of ten is exact too.
+        if (i == end && digits > 0 && digits <= 15 && fractionDigits <= 22) {
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            totalCalories = negative ? -value : value;
+            return true;
+        }
+        try {
+            totalCalories = Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Splits the items at commas; like split(), trailing empty names are dropped.
+     */
+    private void splitItems(int start, int end) {
+        itemCount = 0;
+        int itemStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || bytes[i] == ',') {
+                if (itemCount == itemStarts.length) {
+                    itemStarts = Arrays.copyOf(itemStarts, itemCount * 2);
+                    itemEnds = Arrays.copyOf(itemEnds, itemCount * 2);
+                }
+                itemStarts[itemCount] = itemStart;
+                itemEnds[itemCount] = i;
+                itemCount++;
+                itemStart = i + 1;
+            }
+        }
+        while (itemCount > 0 && itemEnds[itemCount - 1] == itemStarts[itemCount - 1]) {
+            itemCount--;
+        }
+    }
+
+    /**
+     * Reads a time like "March 3, 2025 at 4:43pm" or "...4:43p.m." from the bytes.
+     *
+     * @return the key, or {@link #UNKNOWN_TIME} if the time is written any other way.
+     */
+    private long fastTimeKey() {
+        if (!ENGLISH_TIMES) {
+            return UNKNOWN_TIME;
+        }
+        int i = timeStart;
+        int end = timeEnd;
+        int month = -1;
+        for (int m = 0; m < MONTHS.length; m++) {
+            byte[] name = MONTHS[m];
+            if (i + name.length < end && bytes[i + name.length] == ' '
+                    && Arrays.equals(bytes, i, i + name.length, name, 0, name.length)) {
+                month = m + 1;
+                i += name.length + 1;
+                break;
+            }
+        }
+        if (month < 0) {
+            return UNKNOWN_TIME;
+        }
+        int dayEnd = digitsEnd(i, end, 2);
+        if (dayEnd < 0 || dayEnd + 2 > end || bytes[dayEnd] != ',' || bytes[dayEnd + 1] != ' ') {
+            return UNKNOWN_TIME;
+        }
+        int day = number(i, dayEnd);
+        i = dayEnd + 2;
+        int yearEnd = digitsEnd(i, end, 4);
+        if (yearEnd != i + 4 || yearEnd + 4 > end || bytes[yearEnd] != ' ' || bytes[yearEnd + 1] != 'a'
+                || bytes[yearEnd + 2] != 't' || bytes[yearEnd + 3] != ' ') {
+            return UNKNOWN_TIME;
+        }
+        int year = number(i, yearEnd);
+        i = yearEnd + 4;
+        int hourEnd = digitsEnd(i, end, 2);
+        if (hourEnd < 0 || hourEnd + 3 > end || bytes[hourEnd] != ':') {
+            return UNKNOWN_TIME;
+        }
+        int hour = number(i, hourEnd);
+        i = hourEnd + 1;
+        if (digitsEnd(i, end, 2) != i + 2) {
+            return UNKNOWN_TIME;
+        }
+        int minute = number(i, i + 2);
+        i += 2;
+        boolean pm;
+        if (end - i == 2 && bytes[i + 1] == 'm') {
+            pm = bytes[i] == 'p';
+            if (!pm && bytes[i] != 'a') {
+                return UNKNOWN_TIME;
+            }
+        } else if (end - i == 4 && bytes[i + 1] == '.' && bytes[i + 2] == 'm' && bytes[i + 3] == '.') {
+            pm = bytes[i] == 'p';
+            if (!pm && bytes[i] != 'a') {
+                return UNKNOWN_TIME;
+            }
+        } else {
+            return UNKNOWN_TIME;
+        }
+        if (year == 0 || day < 1 || day > daysInMonth(year, month) || hour < 1 || hour > 12 || minute > 59) {
+            return UNKNOWN_TIME;
+        }
+        int hourOfDay = hour % 12 + (pm ? 12 : 0);
+        return epochDay(year, month, day) * 1440 + hourOfDay * 60 + minute;
+    }
+
+    /**
+     * Returns the end of a run of 1 to {@code max} digits starting at {@code start}, or -1 if there
+     * is no digit there or the run is longer.
+     */
+    private int digitsEnd(int start, int end, int max) {
+        int i = start;
+        while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+            i++;
+        }
+        return i == start || i - start > max ? -1 : i;
+    }
+
+    /**
+     * Reads the decimal number in {@code bytes[start, end)}.
+     */
+    private int number(int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Returns the index of a byte in a range, or -1.
+     */
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of days in a month of the proleptic Gregorian calendar.
+     */
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Returns the days since 1970-01-01 of a date, without creating a {@link java.time.LocalDate}.
+     */
+    private static long epochDay(int year, int month, int day) {
+        // Count years from March so the leap day is the last day of the year.
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,461 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The {@code HistoryLog} class appends framed records to an order history file and keeps the file
+ * consistent across crashes.
+ * <p>
+ * Every record is written as one framed line (see {@link HistoryRecord}) in a single write call.
+ * If the process dies in the middle of a write, the file can end with a torn line. When a history
+ * file is opened for the first time in a process, a recovery pass truncates such a torn tail.
+ * <p>
+ * To keep recovery fast on large files, the log stores a checkpoint next to the history file
+ * ({@code <history file>.ckpt}) holding the byte offset up to which the file is known to be good.
+ * Recovery only checks the tail after that offset. The checkpoint moves forward after recovery and
+ * every {@link #CHECKPOINT_INTERVAL} appends.
+ * <p>
+ * There is one {@code HistoryLog} per file in a process (see {@link #forFile(String)}), so all
+ * writers of the same file share its lock. Across processes, every process that has the file open
+ * holds a shared lock on {@code <history file>.lock}; {@link #lockAlone()} uses it to find out whether
+ * another process has the file open, because the in-memory state built on the file
+ * ({@link HistorySegments}, {@link HistoryIndex}) is only kept current within one process. Running {@code HistoryLog verify <file>} checks a whole
+ * history file and reports framed, legacy and corrupt lines.
+ */
+public class HistoryLog {
+    // Number of appends after which the checkpoint is moved to the end of the file.
+    static final int CHECKPOINT_INTERVAL = 1000;
+
+    // One log per history file, keyed by absolute path.
+    private static final Map<String, HistoryLog> LOGS = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final File checkpointFile;
+    // Lock file shared by the processes that have the history open, or null if it cannot be locked.
+    private FileChannel lockChannel;
+    // Shared lock on byte 0 while this process has the file open; exclusive between lockAlone() and
+    // unlockAlone().
+    private FileLock openLock;
+    // Appends since the checkpoint was last written; guarded by this.
+    private int appendsSinceCheckpoint;
+    // Listeners told about every appended record, for example the in-memory HistoryIndex.
+    private final List<AppendListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Receives every record appended to a log.
+     * <p>
+     * Listeners are called while the log's lock is held, right after the record has been written,
+     * so a listener sees records in exactly the order they appear in the file.
+     */
+    public interface AppendListener {
+        /**
+         * Called after a record has been appended.
+         *
+         * @param record     the appended record.
+         * @param fileLength the length of the history file after the append.
+         */
+        void recordAppended(HistoryRecord record, long fileLength);
+    }
+
+    /**
+     * Creates a log for a file. Use {@link #forFile(String)} to get the shared instance.
+     *
+     * @param file the history file.
+     */
+    private HistoryLog(File file) {
+        this.file = file;
+        this.checkpointFile = new File(file.getPath() + ".ckpt");
+    }
+
+    /**
+     * Returns the shared log of a history file, running crash recovery the first time the file is opened.
+     *
+     * @param historyFile the path of the history file.
+     * @return the log of that file.
+     */
+    public static HistoryLog forFile(String historyFile) {
+        return LOGS.computeIfAbsent(new File(historyFile).getAbsolutePath(), path -> {
+            HistoryLog log = new HistoryLog(new File(path));
+            try {
+                log.lockOpen();
+                log.recover();
+            } catch (IOException e) {
+                System.out.println("Error recovering order history: " + e.getMessage());
+            }
+            return log;
+        });
+    }
+
+    /**
+     * Appends one record as a framed line.
+     *
+     * @param record the record to append.
+     * @throws IOException if the record cannot be written.
+     */
+    public synchronized void append(HistoryRecord record) throws IOException {
+        TrackerEvents.HistoryWrite event = new TrackerEvents.HistoryWrite(file.getPath(), record.getCustomerName());
+        event.begin();
+        byte[] line = (HistoryRecord.frame(record.toPayload()) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        // A single write call in append mode, so the record is never interleaved with other writers.
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(line);
+        }
+        event.records = 1;
+        event.bytesWritten = line.length;
+        event.commit();
+        long length = file.length();
+        for (AppendListener listener : listeners) {
+            listener.recordAppended(record, length);
+        }
+        if (++appendsSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+            writeCheckpoint(length);
+        }
+    }
+
+    /**
+     * Appends several records with a single write.
+     * <p>
+     * The records are framed into one buffer and written in one call, so a large import costs one
+     * system call per batch instead of one per order. Listeners are still told about every record,
+     * each with the file length right after that record. A crash during the write can leave a torn
+     * final record, which {@link #recover()} removes like any other torn tail; the records before it
+     * in the batch are kept.
+     *
+     * @param records the records to append, in order.
+     * @throws IOException if the records cannot be written.
+     */
+    public synchronized void appendAll(List<HistoryRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        TrackerEvents.HistoryWrite event = new TrackerEvents.HistoryWrite(file.getPath(), null);
+        event.begin();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(records.size() * 96);
+        long[] ends = new long[records.size()];
+        long start = file.length();
+        byte[] separator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < records.size(); i++) {
+            buffer.write(HistoryRecord.frame(records.get(i).toPayload()).getBytes(StandardCharsets.UTF_8));
+            buffer.write(separator);
+            ends[i] = start + buffer.size();
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            buffer.writeTo(out);
+        }
+        event.records = records.size();
+        event.bytesWritten = buffer.size();
+        event.commit();
+        for (int i = 0; i < records.size(); i++) {
+            for (AppendListener listener : listeners) {
+                listener.recordAppended(records.get(i), ends[i]);
+            }
+        }
+        appendsSinceCheckpoint += records.size();
+        if (appendsSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+            writeCheckpoint(ends[ends.length - 1]);
+        }
+    }
+
+    /**
+     * Registers a listener for appended records.
+     *
+     * @param listener the listener.
+     */
+    public void addAppendListener(AppendListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Checks the part of the file after the last checkpoint and truncates a torn tail.
+     * <p>
+     * Only the final line can be torn. It is removed if it carries a frame whose length or checksum
+     * does not match, or if it has no line terminator and is not a valid record. A valid last line
+     * that only lost its terminator (for example one added by hand) is kept and the terminator is
+     * appended. Corrupt lines in the middle of the file are left in place for {@link #verify(File)}
+     * to report; readers skip them.
+     *
+     * @return the number of bytes truncated.
+     * @throws IOException if the file cannot be read or truncated.
+     */
+    public synchronized long recover() throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        long length = file.length();
+        long start = readCheckpoint(length);
+        long goodEnd = start;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(start);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(raf.getChannel()));
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = start;
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                // A complete line: keep it unless it is a framed record that fails its check.
+                String text = stripCarriageReturn(line.toString(StandardCharsets.UTF_8));
+                if (!HistoryRecord.isFramed(text) || HistoryRecord.unframe(text) != null) {
+                    goodEnd = position;
+                } else if (position == length) {
+                    line.reset();
+                    break; // The last line is a damaged frame: treat it as torn.
+                } else {
+                    goodEnd = position; // Damaged line in the middle: leave it for verify to report.
+                }
+                line.reset();
+            }
+            if (line.size() > 0) {
+                // An unterminated last line: keep it if it is a whole record that only lost its line break.
+                String text = stripCarriageReturn(line.toString(StandardCharsets.UTF_8));
+                if (HistoryRecord.parse(text) != null) {
+                    raf.seek(length);
+                    raf.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+                    length = raf.length();
+                    goodEnd = length;
+                }
+            }
+            if (goodEnd < length) {
+                raf.getChannel().truncate(goodEnd);
+                System.out.println("Recovered order history: truncated " + (length - goodEnd) + " bytes of torn tail.");
+            }
+        }
+        writeCheckpoint(goodEnd);
+        return length - goodEnd;
+    }
+
+    /**
+     * Reads the checkpoint offset, falling back to 0 if it is missing, unreadable, or does not fall
+     * on a line boundary of the current file (for example because the file was replaced).
+     *
+     * @param length the current file length.
+     * @return the offset to start recovery from.
+     */
+    private long readCheckpoint(long length) {
+        if (!checkpointFile.exists()) {
+            return 0;
+        }
+        try {
+            long offset = Long.parseLong(Files.readString(checkpointFile.toPath()).trim());
+            if (offset <= 0 || offset > length) {
+                return 0;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                raf.seek(offset - 1);
+                return raf.read() == '\n' ? offset : 0;
+            }
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Takes the shared lock that tells other processes this one has the file open. Waits while
+     * another process has the file to itself (see {@link #lockAlone()}), so the file is never opened
+     * half way through a seal.
+     */
+    private void lockOpen() throws IOException {
+        try {
+            lockChannel = FileChannel.open(new File(file.getPath() + ".lock").toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            openLock = lockChannel.lock(0, 1, true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Without the lock file, other processes simply are not noticed.
+            System.out.println("Error locking order history: " + e.getMessage());
+            lockChannel = null;
+        }
+    }
+
+    /**
+     * Takes the file for this process alone, if no other process has it open. Until
+     * {@link #unlockAlone()} other processes wait before opening the file. Must be called while
+     * holding this log's lock.
+     * <p>
+     * This process's shared lock has to be let go of before the exclusive one can be tried, so
+     * the switch is done while holding a second lock (on byte 1): two processes can never both have
+     * let go of their shared lock at the same time, and neither mistakes the other for being gone.
+     *
+     * @return true if the file is now this process's alone, false if another process has it open.
+     * @throws IOException if the lock file cannot be locked.
+     */
+    boolean lockAlone() throws IOException {
+        if (lockChannel == null) {
+            return true;
+        }
+        FileLock gate = lockChannel.lock(1, 1, false);
+        try {
+            openLock.release();
+            openLock = lockChannel.tryLock(0, 1, false);
+            if (openLock == null) {
+                openLock = lockChannel.lock(0, 1, true);
+                return false;
+            }
+            return true;
+        } finally {
+            gate.release();
+        }
+    }
+
+    /**
+     * Shares the file with other processes again after {@link #lockAlone()}. Must be called while
+     * holding this log's lock.
+     *
+     * @throws IOException if the lock file cannot be locked.
+     */
+    void unlockAlone() throws IOException {
+        if (lockChannel == null) {
+            return;
+        }
+        openLock.release();
+        openLock = lockChannel.lock(0, 1, true);
+    }
+
+    /**
+     * Moves the checkpoint back to the start of the file, after {@link HistorySegments} moved its
+     * lines into a segment. Must be called while holding this log's lock.
+     */
+    void resetCheckpoint() {
+        writeCheckpoint(0);
+    }
+
+    /**
+     * Writes the checkpoint and forces both the history file and the checkpoint to disk.
+     *
+     * @param offset the offset up to which the history file is known to be good.
+     */
+    private void writeCheckpoint(long offset) {
+        try {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+            Path path = checkpointFile.toPath();
+            Files.writeString(path, Long.toString(offset));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+            appendsSinceCheckpoint = 0;
+        } catch (IOException e) {
+            System.out.println("Error writing order history checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks every line of a history file.
+     *
+     * @param file the history file.
+     * @return the verification report.
+     * @throws IOException if the file cannot be read.
+     */
+    public static VerifyReport verify(File file) throws IOException {
+        VerifyReport report = new VerifyReport();
+        try (BufferedReader br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                report.lines++;
+                if (HistoryRecord.parse(line) == null) {
+                    report.corruptLines.add(report.lines);
+                } else if (HistoryRecord.isFramed(line)) {
+                    report.framed++;
+                } else {
+                    report.legacy++;
+                }
+            }
+        }
+        // A file that does not end with a line terminator has a torn final record.
+        if (file.length() > 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                raf.seek(file.length() - 1);
+                report.tornTail = raf.read() != '\n';
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Removes a trailing carriage return left by Windows line separators.
+     */
+    private static String stripCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * The result of {@link #verify(File)}.
+     */
+    public static class VerifyReport {
+        int lines;
+        int framed;
+        int legacy;
+        final List<Integer> corruptLines = new ArrayList<>();
+        boolean tornTail;
+
+        /**
+         * Tells whether every line is a valid record and the file is not torn.
+         *
+         * @return {@code true} if the file is clean.
+         */
+        public boolean isClean() {
+            return corruptLines.isEmpty() && !tornTail;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Lines: ").append(lines)
+                    .append(", framed: ").append(framed)
+                    .append(", legacy: ").append(legacy)
+                    .append(", corrupt: ").append(corruptLines.size())
+                    .append(", torn tail: ").append(tornTail ? "yes" : "no");
+            // List the first few corrupt lines so they can be inspected by hand.
+            for (int i = 0; i < Math.min(20, corruptLines.size()); i++) {
+                sb.append("\n  corrupt line ").append(corruptLines.get(i));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Command line tool: {@code HistoryLog verify [file]} checks a history file,
+     * {@code HistoryLog recover [file]} runs the recovery pass on it.
+     *
+     * @param args the command and an optional file (defaults to order_history.txt).
+     */
+    public static void main(String[] args) {
+        String command = args.length > 0 ? args[0] : "verify";
+        String path = args.length > 1 ? args[1] : "order_history.txt";
+        try {
+            if (command.equals("verify")) {
+                VerifyReport report = verify(Paths.get(path).toFile());
+                System.out.println(report);
+                if (!report.isClean()) {
+                    System.exit(1);
+                }
+            } else if (command.equals("recover")) {
+                long truncated = forFile(path).recover();
+                System.out.println("Recovery complete, " + truncated + " bytes truncated.");
+            } else {
+                System.out.println("Usage: HistoryLog verify|recover [file]");
+            }
+        } catch (IOException e) {
+            System.out.println("Error checking order history: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,620 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The {@code HistoryQuery} class reads order history records lazily, one line at a time, instead
+ * of loading the whole history into a list.
+ * <p>
+ * A query is built from an {@link OrderHistory} (see {@link OrderHistory#query()}) and narrowed with
+ * filters, then read in one of three ways:
+ * <ul>
+ *   <li>{@link #stream()}: a lazy {@link Stream} that reads only as far as the caller consumes.
+ *   It holds an open file, so use it in a try-with-resources block.</li>
+ *   <li>{@link #list()}: every matching record, for callers that really need them all.</li>
+ *   <li>{@link #page()}: one page of at most {@link #limit(long)} records plus a {@link Cursor} to
+ *   the next page.</li>
+ * </ul>
+ * The history is append-only, so a cursor is simply the byte position just after the last record
+ * of a page. The next page seeks straight there instead of reading and skipping every earlier record
+ * again, so paging through a long history costs one pass over it in total. An unfinished last line
+ * (a write in progress or a torn tail) is never read past, so a cursor always points at the start of
+ * a line.
+ * <p>
+ * A file that has been sealed into compressed {@link HistorySegments} is read as its segments
+ * followed by the file, and positions count the sealed lines at their uncompressed size, so a cursor
+ * stays valid when the file is sealed between two pages. Only the blocks of a segment that the read
+ * reaches are decompressed, and with {@link #placedBetween(LocalDateTime, LocalDateTime)} blocks
+ * whose order times are all outside the range are passed over without decompressing them.
+ * <p>
+ * Lines are read with a {@link HistoryLineParser}: the customer and time filters are checked on
+ * the raw bytes, and a record (with its strings) is only built for lines that pass them.
+ * <p>
+ * For example, the second page of a customer's Big Mac orders:
+ * <pre>
+ * HistoryQuery.Page first = history.query().customer("Sam").containing("Big Mac").limit(20).page();
+ * HistoryQuery.Page second = history.query().customer("Sam").containing("Big Mac").limit(20)
+ *         .after(first.getNext()).page();
+ * </pre>
+ */
+public class HistoryQuery {
+    // Page size used when no limit was set.
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final OrderHistory history;
+    private String customerName;
+    private Predicate<HistoryRecord> filter = record -> true;
+    private long offset;
+    private long limit = -1;
+    private Cursor after;
+    // Range of segment time keys that can match, narrowed by placedBetween().
+    private long fromKey = Long.MIN_VALUE;
+    private long toKey = Long.MAX_VALUE;
+    // Operation name of the HistoryRead event of the read.
+    private String operation = "query";
+
+    /**
+     * Starts a query that matches every record of a history.
+     *
+     * @param history the history to read.
+     */
+    HistoryQuery(OrderHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Keeps only the records of one customer. On a sharded history only that customer's shard is read.
+     *
+     * @param customerName the customer's name.
+     * @return this query.
+     */
+    public HistoryQuery customer(String customerName) {
+        this.customerName = customerName;
+        return where(record -> record.getCustomerName().equals(customerName));
+    }
+
+    /**
+     * Keeps only the records accepted by a condition.
+     *
+     * @param condition the condition.
+     * @return this query.
+     */
+    public HistoryQuery where(Predicate<HistoryRecord> condition) {
+        filter = filter.and(condition);
+        return this;
+    }
+
+    /**
+     * Keeps only the orders that contain an item.
+     *
+     * @param itemName the item name.
+     * @return this query.
+     */
+    public HistoryQuery containing(String itemName) {
+        return where(record -> record.getItems().contains(itemName));
+    }
+
+    /**
+     * Keeps only the orders placed in {@code [from, to)}. Records whose time cannot be read are dropped.
+     *
+     * @param from the earliest time, inclusive.
+     * @param to   the latest time, exclusive.
+     * @return this query.
+     */
+    public HistoryQuery placedBetween(LocalDateTime from, LocalDateTime to) {
+        fromKey = Math.max(fromKey, HistorySegment.timeKey(from));
+        // Keys are whole minutes; the exact check below trims the edge.
+        toKey = Math.min(toKey, HistorySegment.timeKey(to) + 1);
+        return where(record -> {
+            LocalDateTime time = HistoryRecord.parseTime(record.getDateTime());
+            return time != null && !time.isBefore(from) && time.isBefore(to);
+        });
+    }
+
+    /**
+     * Skips the first matching records (after the cursor, if one is set).
+     *
+     * @param offset the number of matching records to skip.
+     * @return this query.
+     */
+    public HistoryQuery offset(long offset) {
+        this.offset = Math.max(0, offset);
+        return this;
+    }
+
+    /**
+     * Returns at most this many records; also the page size of {@link #page()}.
+     *
+     * @param limit the most records to return.
+     * @return this query.
+     */
+    public HistoryQuery limit(long limit) {
+        this.limit = Math.max(0, limit);
+        return this;
+    }
+
+    /**
+     * Starts reading at a cursor from an earlier {@link Page}, built with the same customer and filters.
+     *
+     * @param cursor the cursor, or {@code null} to start at the beginning.
+     * @return this query.
+     */
+    public HistoryQuery after(Cursor cursor) {
+        this.after = cursor;
+        return this;
+    }
+
+    /**
+     * Names the read in its {@link TrackerEvents.HistoryRead} event.
+     */
+    HistoryQuery named(String operation) {
+        this.operation = operation;
+        return this;
+    }
+
+    /**
+     * Returns the matching records as a lazy stream. Close the stream when done with it.
+     *
+     * @return the records, in file order.
+     */
+    public Stream<HistoryRecord> stream() {
+        Scan scan = new Scan();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(scan,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(scan::close);
+    }
+
+    /**
+     * Returns every matching record.
+     *
+     * @return the records, in file order.
+     */
+    public List<HistoryRecord> list() {
+        List<HistoryRecord> records = new ArrayList<>();
+        try (Scan scan = new Scan()) {
+            scan.forEachRemaining(records::add);
+        }
+        return records;
+    }
+
+    /**
+     * Returns one page of matching records: at most {@link #limit(long)} records (or
+     * {@link #DEFAULT_PAGE_SIZE} if no limit was set), starting after the cursor.
+     *
+     * @return the page.
+     */
+    public Page page() {
+        long size = limit < 0 ? DEFAULT_PAGE_SIZE : limit;
+        List<HistoryRecord> records = new ArrayList<>();
+        Cursor next = null;
+        // Read without the limit so that one more record tells whether there is a next page.
+        try (Scan scan = new Scan(false)) {
+            while (records.size() < size && scan.hasNext()) {
+                records.add(scan.next());
+            }
+            if (scan.hasNext()) {
+                next = scan.cursorAfterReturned();
+            }
+        }
+        return new Page(records, next);
+    }
+
+    /**
+     * A position in the history: the file (by position in the list of files the query reads) and
+     * the byte offset in that file's history, counting its sealed segments first.
+     */
+    public static final class Cursor {
+        private final int fileIndex;
+        private final long offset;
+
+        Cursor(int fileIndex, long offset) {
+            this.fileIndex = fileIndex;
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the position of the file in the files the query reads.
+         *
+         * @return the file index.
+         */
+        public int getFileIndex() {
+            return fileIndex;
+        }
+
+        /**
+         * Returns the byte offset in the file's history (sealed lines first, uncompressed).
+         *
+         * @return the offset.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public String toString() {
+            return fileIndex + ":" + offset;
+        }
+    }
+
+    /**
+     * One page of records and the cursor to the next page.
+     */
+    public static final class Page {
+        private final List<HistoryRecord> records;
+        private final Cursor next;
+
+        Page(List<HistoryRecord> records, Cursor next) {
+            this.records = List.copyOf(records);
+            this.next = next;
+        }
+
+        /**
+         * Returns the records of the page.
+         *
+         * @return the records, in file order.
+         */
+        public List<HistoryRecord> getRecords() {
+            return records;
+        }
+
+        /**
+         * Returns the cursor to the next page.
+         *
+         * @return the cursor, or {@code null} if this is the last page.
+         */
+        public Cursor getNext() {
+            return next;
+        }
+
+        /**
+         * Returns whether there is a next page.
+         *
+         * @return true if {@link #getNext()} is not {@code null}.
+         */
+        public boolean hasNext() {
+            return next != null;
+        }
+    }
+
+    /**
+     * The lazy read behind every query: reads lines from the files in order (each
+     * file's segments, block by block, then the file itself), keeping track of the byte position so
+     * the end of any returned record can be turned into a cursor.
+     */
+    private final class Scan implements Iterator<HistoryRecord>, Closeable {
+        private final List<File> files;
+        private final boolean applyLimit;
+        private final TrackerEvents.HistoryRead event;
+        private final HistoryLineParser parser = new HistoryLineParser();
+        // UTF-8 bytes of the customer name, to reject other customers' lines without decoding them.
+        private final byte[] customerBytes = customerName == null ? null : customerName.getBytes(StandardCharsets.UTF_8);
+        private int fileIndex;
+        // Position in the current file's history: raw bytes of its segments, then of the file.
+        private long position;
+        private boolean opened;
+        // Segments of the current file, the one being read (segments.size() once in the file) and its block.
+        private List<HistorySegment> segments;
+        private int segmentIndex;
+        private int block;
+        // Decompressed current block, or null before it is read, and the read position in it.
+        private byte[] raw;
+        private int rawPosition;
+        // Raw length of the segments, where the file itself starts.
+        private long sealedLength;
+        private InputStream in;
+        // Bytes read from the file; buffer[bufferStart, bufferEnd) is not handed out as a line yet.
+        private byte[] buffer;
+        private int bufferStart;
+        private int bufferEnd;
+        // Where readLine() left the current line: in the buffer or in the decompressed block.
+        private byte[] lineBytes;
+        private int lineStart;
+        // Matching records still to skip, and records returned so far.
+        private long toSkip = offset;
+        private long returned;
+        // The next record to return, and the position just after its line.
+        private HistoryRecord next;
+        private int nextFileIndex;
+        private long nextEnd;
+        // The position just after the line of the last returned record.
+        private int returnedFileIndex;
+        private long returnedEnd;
+        private boolean done;
+
+        Scan() {
+            this(true);
+        }
+
+        Scan(boolean applyLimit) {
+            this.applyLimit = applyLimit;
+            files = customerName == null ? history.getHistoryFiles() : history.getHistoryFilesFor(customerName);
+            event = new TrackerEvents.HistoryRead(operation, history.getHistoryFile(), customerName);
+            event.begin();
+            if (after != null) {
+                fileIndex = after.fileIndex;
+                position = after.offset;
+            }
+            returnedFileIndex = fileIndex;
+            returnedEnd = position;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                next = advance();
+                if (next == null) {
+                    close();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public HistoryRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            HistoryRecord record = next;
+            next = null;
+            returned++;
+            returnedFileIndex = nextFileIndex;
+            returnedEnd = nextEnd;
+            return record;
+        }
+
+        /**
+         * Returns the cursor just after the last record returned by {@link #next()}.
+         */
+        Cursor cursorAfterReturned() {
+            return new Cursor(returnedFileIndex, returnedEnd);
+        }
+
+        /**
+         * Reads lines until the next matching record that is not skipped.
+         */
+        private HistoryRecord advance() {
+            if (applyLimit && limit >= 0 && returned >= limit) {
+                return null;
+            }
+            try {
+                while (fileIndex < files.size()) {
+                    if (!opened && !open()) {
+                        continue;
+                    }
+                    int length = readLine();
+                    if (length < 0) {
+                        // End of this file (an unfinished last line is left for a later read).
+                        closeFile();
+                        fileIndex++;
+                        position = 0;
+                        continue;
+                    }
+                    event.linesScanned++;
+                    if (!parser.parse(lineBytes, lineStart, lineStart + length)) {
+                        event.linesSkipped++;
+                        continue;
+                    }
+                    // Cheap checks on the bytes first; the filter below still checks them exactly.
+                    if (customerBytes != null && !parser.customerEquals(customerBytes)) {
+                        continue;
+                    }
+                    if (fromKey != Long.MIN_VALUE || toKey != Long.MAX_VALUE) {
+                        long key = parser.timeKey();
+                        if (key < fromKey || key >= toKey) {
+                            continue;
+                        }
+                    }
+                    if (!parser.checksumMatches()) {
+                        event.linesSkipped++;
+                        continue;
+                    }
+                    HistoryRecord record = parser.toRecord();
+                    if (filter.test(record)) {
+                        if (toSkip > 0) {
+                            toSkip--;
+                        } else {
+                            event.recordsMatched++;
+                            nextFileIndex = fileIndex;
+                            nextEnd = position;
+                            return record;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // Like the other history readers, report the error and end the read.
+                System.out.println("Error reading order history: " + e.getMessage());
+            }
+            return null;
+        }
+
+        /**
+         * Opens the current file's history at the current position: finds the segment and block
+         * holding it, or opens the file itself past its segments. A missing file without segments
+         * is passed over.
+         */
+        private boolean open() throws IOException {
+            File file = files.get(fileIndex);
+            segments = List.copyOf(HistorySegments.forFile(file.getPath()).getSegments());
+            if (segments.isEmpty() && !file.exists()) {
+                fileIndex++;
+                position = 0;
+                return false;
+            }
+            opened = true;
+            sealedLength = 0;
+            for (HistorySegment segment : segments) {
+                sealedLength += segment.getRawLength();
+            }
+            long base = 0;
+            segmentIndex = 0;
+            while (segmentIndex < segments.size() && position >= base + segments.get(segmentIndex).getRawLength()) {
+                base += segments.get(segmentIndex).getRawLength();
+                segmentIndex++;
+            }
+            if (segmentIndex < segments.size()) {
+                // Start inside a segment: find the block, and the offset in it once it is decompressed.
+                HistorySegment segment = segments.get(segmentIndex);
+                block = 0;
+                while (position - base >= segment.getRawLength(block)) {
+                    base += segment.getRawLength(block);
+                    block++;
+                }
+                raw = null;
+                rawPosition = (int) (position - base);
+            } else {
+                openFile();
+            }
+            return true;
+        }
+
+        /**
+         * Opens the file itself at the current position, once its segments have been read.
+         */
+        private void openFile() throws IOException {
+            File file = files.get(fileIndex);
+            if (file.exists()) {
+                FileInputStream stream = new FileInputStream(file);
+                stream.getChannel().position(position - sealedLength);
+                in = stream;
+                if (buffer == null) {
+                    buffer = new byte[64 * 1024];
+                }
+                bufferStart = 0;
+                bufferEnd = 0;
+            }
+        }
+
+        /**
+         * Finds the next complete line, leaving it in {@code lineBytes} at {@code lineStart},
+         * without the line break. The line is not copied.
+         *
+         * @return the line length, or -1 at the end of the file or of its last complete line.
+         */
+        private int readLine() throws IOException {
+            while (segmentIndex < segments.size()) {
+                HistorySegment segment = segments.get(segmentIndex);
+                if (raw == null) {
+                    if (block == segment.getBlockCount()) {
+                        segmentIndex++;
+                        block = 0;
+                        rawPosition = 0;
+                        if (segmentIndex == segments.size()) {
+                            openFile();
+                        }
+                        continue;
+                    }
+                    if (!segment.mayOverlap(block, fromKey, toKey)) {
+                        // No order in this block can be in the time range: skip it undecompressed.
+                        position += segment.getRawLength(block) - rawPosition;
+                        block++;
+                        rawPosition = 0;
+                        continue;
+                    }
+                    raw = segment.readBlock(block);
+                    event.bytesRead += segment.getCompressedLength(block);
+                }
+                if (rawPosition < raw.length) {
+                    return readBlockLine();
+                }
+                raw = null;
+                block++;
+                rawPosition = 0;
+            }
+            if (in == null) {
+                return -1;
+            }
+            int searched = bufferStart;
+            while (true) {
+                for (int i = searched; i < bufferEnd; i++) {
+                    if (buffer[i] == '\n') {
+                        int length = i - bufferStart;
+                        lineBytes = buffer;
+                        lineStart = bufferStart;
+                        bufferStart = i + 1;
+                        position += length + 1;
+                        event.bytesRead += length + 1;
+                        // Drop a Windows line ending.
+                        return length > 0 && buffer[i - 1] == '\r' ? length - 1 : length;
+                    }
+                }
+                // No line break in what is left: move it to the front (or grow for a very long line) and read more.
+                int left = bufferEnd - bufferStart;
+                if (left == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                } else if (bufferStart > 0) {
+                    System.arraycopy(buffer, bufferStart, buffer, 0, left);
+                }
+                bufferStart = 0;
+                bufferEnd = left;
+                searched = left;
+                int n = in.read(buffer, bufferEnd, buffer.length - bufferEnd);
+                if (n < 0) {
+                    return -1;
+                }
+                bufferEnd += n;
+            }
+        }
+
+        /**
+         * Finds the next line of the decompressed block. Blocks hold complete lines only, so the
+         * line break is always there.
+         */
+        private int readBlockLine() {
+            int start = rawPosition;
+            int end = start;
+            while (raw[end] != '\n') {
+                end++;
+            }
+            int length = end - start;
+            lineBytes = raw;
+            lineStart = start;
+            rawPosition = end + 1;
+            position += length + 1;
+            return length > 0 && raw[end - 1] == '\r' ? length - 1 : length;
+        }
+
+        /**
+         * Closes the current file, if it is open, and drops its segments.
+         */
+        private void closeFile() {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    System.out.println("Error closing order history: " + e.getMessage());
+                }
+                in = null;
+            }
+            opened = false;
+            segments = null;
+            raw = null;
+        }
+
+        @Override
+        public void close() {
+            if (done) {
+                return;
+            }
+            done = true;
+            closeFile();
+            event.commit();
+        }
+    }
+}
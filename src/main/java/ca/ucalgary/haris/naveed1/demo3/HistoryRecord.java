@@ -0,0 +1,216 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code HistoryRecord} class is one order as it is stored in the order history file.
+ * <p>
+ * A record consists of the customer name, the human-friendly order time, the total calories and
+ * the ordered item names. Its payload is written as
+ * {@code customerName|formattedDateTime|orderTotalCalories|item1,item2,...}.
+ * <p>
+ * New records are written inside a frame that holds the payload length and a CRC-32 checksum:
+ * {@code @length:crc|payload}, where {@code length} is the number of UTF-8 bytes of the payload in
+ * decimal and {@code crc} is the CRC-32 of those bytes as 8 hex digits. The frame lets a reader tell
+ * a complete record apart from one that was cut off when the process died mid-write. Older unframed
+ * lines are still accepted so existing history files keep working.
+ */
+public class HistoryRecord {
+    // Formatter used for the order time, e.g. "March 3, 2025 at 4:43pm".
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("MMMM d, yyyy 'at' h:mma");
+
+    private final String customerName;
+    private final String dateTime;
+    private final double totalCalories;
+    private final List<String> items;
+
+    /**
+     * Creates a record.
+     *
+     * @param customerName  the customer who placed the order.
+     * @param dateTime      the formatted order time.
+     * @param totalCalories the total calories of the order.
+     * @param items         the ordered item names.
+     */
+    public HistoryRecord(String customerName, String dateTime, double totalCalories, List<String> items) {
+        this.customerName = customerName;
+        this.dateTime = dateTime;
+        this.totalCalories = totalCalories;
+        this.items = Collections.unmodifiableList(items);
+    }
+
+    /**
+     * Creates the record of an order, formatting its time the way the history file stores it.
+     *
+     * @param order the order.
+     * @return the record of that order.
+     */
+    public static HistoryRecord of(Order order) {
+        List<String> itemNames = new ArrayList<>();
+        for (MenuItem item : order.getItems()) {
+            itemNames.add(item.getName());
+        }
+        return new HistoryRecord(order.getCustomerName(), formatTime(order.getOrderTime()),
+                order.getTotalCalories(), itemNames);
+    }
+
+    /**
+     * Formats an order time the way the history file stores it, with a lowercase am/pm marker.
+     *
+     * @param time the time to format.
+     * @return the formatted time, e.g. "March 3, 2025 at 4:43pm".
+     */
+    public static String formatTime(LocalDateTime time) {
+        return time.format(FORMATTER)
+                .replace("AM", "am")
+                .replace("PM", "pm");
+    }
+
+    /**
+     * Parses an order time written by {@link #formatTime(LocalDateTime)}.
+     * <p>
+     * Older history files spell the marker as "a.m."/"p.m." ("April 20, 2025 at 7:32p.m."), so both
+     * spellings are accepted.
+     *
+     * @param text the formatted time.
+     * @return the time, or {@code null} if the text is not a formatted order time.
+     */
+    public static LocalDateTime parseTime(String text) {
+        String time = text.trim();
+        if (time.endsWith("a.m.") || time.endsWith("p.m.")) {
+            time = time.substring(0, time.length() - 4) + (time.charAt(time.length() - 4) == 'a' ? "AM" : "PM");
+        } else if (time.endsWith("am") || time.endsWith("pm")) {
+            time = time.substring(0, time.length() - 2) + (time.charAt(time.length() - 2) == 'a' ? "AM" : "PM");
+        }
+        try {
+            return LocalDateTime.parse(time, FORMATTER);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses one line of the history file.
+     * <p>
+     * Framed lines must have a matching length and checksum; legacy lines must have four fields.
+     *
+     * @param line the line without its line terminator.
+     * @return the record, or {@code null} if the line is not a complete, valid record.
+     */
+    public static HistoryRecord parse(String line) {
+        String payload = unframe(line);
+        if (payload == null) {
+            return null;
+        }
+        String[] parts = payload.split("\\|");
+        if (parts.length != 4) {
+            return null;
+        }
+        double totalCalories;
+        try {
+            totalCalories = Double.parseDouble(parts[2]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new HistoryRecord(parts[0], parts[1], totalCalories, Arrays.asList(parts[3].split(",")));
+    }
+
+    /**
+     * Strips and checks the frame of a line.
+     *
+     * @param line the line without its line terminator.
+     * @return the payload of a framed line whose frame checks out, the line itself if it is not
+     *         framed, or {@code null} if the line is framed but its length or checksum does not match.
+     */
+    static String unframe(String line) {
+        if (!isFramed(line)) {
+            return line;
+        }
+        int colon = line.indexOf(':');
+        int bar = line.indexOf('|', colon);
+        String payload = line.substring(bar + 1);
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        long expectedLength = Long.parseLong(line.substring(1, colon));
+        long expectedCrc = Long.parseLong(line.substring(colon + 1, bar), 16);
+        if (bytes.length != expectedLength || crc(bytes) != expectedCrc) {
+            return null;
+        }
+        return payload;
+    }
+
+    /**
+     * Tells whether a line starts with a well-formed frame header ({@code @digits:8hex|}).
+     *
+     * @param line the line to check.
+     * @return {@code true} if the line carries a frame header.
+     */
+    static boolean isFramed(String line) {
+        if (line.isEmpty() || line.charAt(0) != '@') {
+            return false;
+        }
+        int colon = line.indexOf(':');
+        if (colon < 2 || colon > 11 || line.length() < colon + 10 || line.charAt(colon + 9) != '|') {
+            return false;
+        }
+        for (int i = 1; i < colon; i++) {
+            if (!Character.isDigit(line.charAt(i))) {
+                return false;
+            }
+        }
+        for (int i = colon + 1; i < colon + 9; i++) {
+            if (Character.digit(line.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wraps a payload in a frame holding its length and CRC-32.
+     *
+     * @param payload the record payload.
+     * @return the framed line, without a line terminator.
+     */
+    static String frame(String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return "@" + bytes.length + ":" + String.format("%08x", crc(bytes)) + "|" + payload;
+    }
+
+    /**
+     * Computes the CRC-32 of a byte array.
+     */
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the record payload in the history file format.
+     *
+     * @return {@code customerName|formattedDateTime|orderTotalCalories|item1,item2,...}
+     */
+    public String toPayload() {
+        return customerName + "|" + dateTime + "|" + totalCalories + "|" + String.join(",", items);
+    }
+
+    public String getCustomerName() { return customerName; }
+    public String getDateTime() { return dateTime; }
+    public double getTotalCalories() { return totalCalories; }
+    public List<String> getItems() { return items; }
+
+    @Override
+    public String toString() {
+        return toPayload();
+    }
+}
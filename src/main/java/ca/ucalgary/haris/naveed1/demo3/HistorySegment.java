@@ -0,0 +1,587 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The {@code HistorySegment} class is one sealed, compressed part of an order history file.
+ * <p>
+ * When a history file is sealed (see {@link HistorySegments}), its lines are moved into a segment
+ * file. The lines are cut into blocks of about {@link #BLOCK_SIZE} bytes and every block is
+ * compressed on its own with {@link Deflater}, so one block can be read without the others. All
+ * blocks start from the same preset dictionary, stored once in the segment: the customer names,
+ * item names and date words that appear most often in the sealed lines. A block of 64 KB then
+ * compresses almost as well as the whole file would, because the first occurrence of "Big Mac" in
+ * a block already refers back into the dictionary.
+ * <p>
+ * The block index at the end of the file keeps, for every block, its place in the file, its first
+ * line number and line count, and the earliest and latest order time in it. A point query (line
+ * {@code n}) decompresses one block, and a time range query only the blocks whose times overlap
+ * the range.
+ * <p>
+ * The lines are stored exactly as they were in the history file, frame and checksum included, so
+ * they are parsed and checked like any other history line.
+ * <p>
+ * File layout (all numbers big-endian, as written by {@link DataOutputStream}):
+ * <pre>
+ * header  int magic "HSEG", short version, long raw length, long CRC32 of the raw lines,
+ *         int dictionary length, dictionary bytes
+ * blocks  deflated bytes of each block
+ * index   int block count, then per block: long offset, int compressed length, int raw length,
+ *         long first line, int line count, long earliest time, long latest time
+ * footer  long offset of the index
+ * </pre>
+ * Times are minutes since 1970 of the order's local date and time; blocks with an unreadable time
+ * use the widest possible range, so a range query always reads them.
+ */
+public class HistorySegment {
+    // Raw bytes per block before compression; blocks end on a line break.
+    public static final int BLOCK_SIZE = 64 * 1024;
+    // Deflate can only refer back 32 KB, so a larger dictionary would not help.
+    static final int MAX_DICTIONARY = 32 * 1024;
+    static final int MAGIC = 0x48534547;
+    static final short VERSION = 1;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long rawLength;
+    private final long rawChecksum;
+    private final byte[] dictionary;
+    // Block index, by block number.
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final long[] firstLines;
+    private final int[] lineCounts;
+    private final long[] earliest;
+    private final long[] latest;
+
+    private HistorySegment(File file, FileChannel channel, long rawLength, long rawChecksum, byte[] dictionary,
+                           long[] offsets, int[] compressedLengths, int[] rawLengths, long[] firstLines,
+                           int[] lineCounts, long[] earliest, long[] latest) {
+        this.file = file;
+        this.channel = channel;
+        this.rawLength = rawLength;
+        this.rawChecksum = rawChecksum;
+        this.dictionary = dictionary;
+        this.offsets = offsets;
+        this.compressedLengths = compressedLengths;
+        this.rawLengths = rawLengths;
+        this.firstLines = firstLines;
+        this.lineCounts = lineCounts;
+        this.earliest = earliest;
+        this.latest = latest;
+    }
+
+    /**
+     * Opens a segment file and reads its header and block index.
+     *
+     * @param file the segment file.
+     * @return the segment; it keeps the file open for reading.
+     * @throws IOException if the file cannot be read or is not a segment.
+     */
+    public static HistorySegment open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            DataInputStream header = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel.position(0))));
+            if (header.readInt() != MAGIC || header.readShort() != VERSION) {
+                throw new IOException("not a history segment: " + file);
+            }
+            long rawLength = header.readLong();
+            long rawChecksum = header.readLong();
+            byte[] dictionary = new byte[header.readInt()];
+            header.readFully(dictionary);
+
+            ByteBuffer footer = ByteBuffer.allocate(8);
+            readFully(channel, footer, size - 8);
+            long indexOffset = footer.getLong(0);
+            ByteBuffer index = ByteBuffer.allocate((int) (size - 8 - indexOffset));
+            readFully(channel, index, indexOffset);
+            index.flip();
+            int blocks = index.getInt();
+            long[] offsets = new long[blocks];
+            int[] compressedLengths = new int[blocks];
+            int[] rawLengths = new int[blocks];
+            long[] firstLines = new long[blocks];
+            int[] lineCounts = new int[blocks];
+            long[] earliest = new long[blocks];
+            long[] latest = new long[blocks];
+            for (int b = 0; b < blocks; b++) {
+                offsets[b] = index.getLong();
+                compressedLengths[b] = index.getInt();
+                rawLengths[b] = index.getInt();
+                firstLines[b] = index.getLong();
+                lineCounts[b] = index.getInt();
+                earliest[b] = index.getLong();
+                latest[b] = index.getLong();
+            }
+            return new HistorySegment(file, channel, rawLength, rawChecksum, dictionary, offsets,
+                    compressedLengths, rawLengths, firstLines, lineCounts, earliest, latest);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException io ? io : new IOException("corrupt history segment " + file + ": " + e, e);
+        }
+    }
+
+    /**
+     * Compresses the first {@code end} bytes of a history file into a new segment file.
+     *
+     * @param source the history file; {@code end} must be just after a line break.
+     * @param end    the number of bytes to seal.
+     * @param target the segment file to write.
+     * @throws IOException if the history cannot be read or the segment cannot be written.
+     */
+    static void write(File source, long end, File target) throws IOException {
+        byte[] dictionary = buildDictionary(source, end);
+        CRC32 checksum = new CRC32();
+        List<long[]> index = new ArrayList<>();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(source), BLOCK_SIZE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), BLOCK_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(end);
+            out.writeLong(0); // checksum, filled in below
+            out.writeInt(dictionary.length);
+            out.write(dictionary);
+            long position = 4 + 2 + 8 + 8 + 4 + dictionary.length;
+
+            byte[] block = new byte[BLOCK_SIZE * 2];
+            byte[] compressed = new byte[BLOCK_SIZE * 2 + 1024];
+            long read = 0;
+            long line = 0;
+            HistoryLineParser parser = new HistoryLineParser();
+            while (read < end) {
+                // Fill a block with whole lines: at least one line, and stop at the first line break past BLOCK_SIZE.
+                int size = 0;
+                int lines = 0;
+                long minTime = Long.MAX_VALUE;
+                long maxTime = Long.MIN_VALUE;
+                int lineStart = 0;
+                int b;
+                while (read < end && (b = in.read()) >= 0) {
+                    read++;
+                    if (size == block.length) {
+                        block = Arrays.copyOf(block, block.length * 2);
+                    }
+                    block[size++] = (byte) b;
+                    if (b == '\n') {
+                        int lineEnd = size - 1 > lineStart && block[size - 2] == '\r' ? size - 2 : size - 1;
+                        long time = parser.parse(block, lineStart, lineEnd) && parser.checksumMatches()
+                                ? parser.timeKey() : HistoryLineParser.UNKNOWN_TIME;
+                        if (time == Long.MIN_VALUE) {
+                            // Unknown time: the block must be read by every range query.
+                            minTime = Long.MIN_VALUE;
+                            maxTime = Long.MAX_VALUE;
+                        } else {
+                            minTime = Math.min(minTime, time);
+                            maxTime = Math.max(maxTime, time);
+                        }
+                        lines++;
+                        lineStart = size;
+                        if (size >= BLOCK_SIZE) {
+                            break;
+                        }
+                    }
+                }
+                checksum.update(block, 0, size);
+                deflater.reset();
+                deflater.setDictionary(dictionary);
+                deflater.setInput(block, 0, size);
+                deflater.finish();
+                if (compressed.length < size + 1024) {
+                    compressed = new byte[size + 1024];
+                }
+                int length = 0;
+                while (!deflater.finished()) {
+                    length += deflater.deflate(compressed, length, compressed.length - length);
+                    if (length == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                }
+                out.write(compressed, 0, length);
+                index.add(new long[]{position, length, size, line, lines, minTime, maxTime});
+                position += length;
+                line += lines;
+            }
+
+            out.writeInt(index.size());
+            for (long[] entry : index) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+                out.writeLong(entry[3]);
+                out.writeInt((int) entry[4]);
+                out.writeLong(entry[5]);
+                out.writeLong(entry[6]);
+            }
+            out.writeLong(position);
+        } finally {
+            deflater.end();
+        }
+        // Fill in the checksum of the raw lines and force the segment to disk.
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(8).putLong(0, checksum.getValue());
+            channel.write(value, 4 + 2 + 8);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Builds the preset dictionary: the customer names, item names and date words of the sealed
+     * lines, least frequent first, so the most common strings sit closest to the data.
+     */
+    private static byte[] buildDictionary(File source, long end) throws IOException {
+        Map<String, Integer> counts = new HashMap<>();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(source), BLOCK_SIZE)) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new BoundedInputStream(in, end), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                HistoryRecord record = HistoryRecord.parse(line);
+                if (record == null) {
+                    continue;
+                }
+                counts.merge(record.getCustomerName() + "|", 1, Integer::sum);
+                // The date without the day number and time, for example "October " and ", 2026 at ".
+                String time = record.getDateTime();
+                int space = time.indexOf(' ');
+                int comma = time.indexOf(',');
+                int at = time.indexOf(" at ");
+                if (space > 0 && comma > space && at > comma) {
+                    counts.merge(time.substring(0, space + 1), 1, Integer::sum);
+                    counts.merge(time.substring(comma, at + 4), 1, Integer::sum);
+                }
+                for (String item : record.getItems()) {
+                    counts.merge(item + ",", 1, Integer::sum);
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+        // Most frequent first while choosing what fits, then reversed so they end up last.
+        entries.sort((a, b) -> b.getValue() - a.getValue());
+        List<byte[]> chosen = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> entry : entries) {
+            byte[] bytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            if (entry.getValue() < 2 || size + bytes.length > MAX_DICTIONARY) {
+                continue;
+            }
+            chosen.add(bytes);
+            size += bytes.length;
+        }
+        Collections.reverse(chosen);
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size + 8);
+        for (byte[] bytes : chosen) {
+            dictionary.write(bytes);
+        }
+        // Deflate needs a non-empty dictionary once one is set.
+        if (dictionary.size() == 0) {
+            dictionary.write('\n');
+        }
+        return dictionary.toByteArray();
+    }
+
+    /**
+     * Returns the time key of a date and time: minutes since 1970 of the local date and time.
+     *
+     * @param time the date and time.
+     * @return the key.
+     */
+    static long timeKey(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    /**
+     * Returns the segment file.
+     *
+     * @return the file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of bytes of history lines in the segment, before compression.
+     *
+     * @return the raw length.
+     */
+    public long getRawLength() {
+        return rawLength;
+    }
+
+    /**
+     * Returns the CRC32 of the history lines in the segment.
+     *
+     * @return the checksum.
+     */
+    long getRawChecksum() {
+        return rawChecksum;
+    }
+
+    /**
+     * Returns the size of the segment file.
+     *
+     * @return the compressed length.
+     */
+    public long getCompressedLength() {
+        return file.length();
+    }
+
+    /**
+     * Returns the number of blocks.
+     *
+     * @return the block count.
+     */
+    public int getBlockCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the number of lines in the segment.
+     *
+     * @return the line count.
+     */
+    public long getLineCount() {
+        int last = offsets.length - 1;
+        return last < 0 ? 0 : firstLines[last] + lineCounts[last];
+    }
+
+    /**
+     * Returns the number of the first line of a block.
+     */
+    long getFirstLine(int block) {
+        return firstLines[block];
+    }
+
+    /**
+     * Returns the uncompressed size of a block.
+     */
+    int getRawLength(int block) {
+        return rawLengths[block];
+    }
+
+    /**
+     * Returns the compressed size of a block, for reporting bytes read.
+     */
+    int getCompressedLength(int block) {
+        return compressedLengths[block];
+    }
+
+    /**
+     * Returns the block holding a line, with a binary search over the first lines of the blocks.
+     *
+     * @param line the line number.
+     * @return the block number, or -1 if the line is not in the segment.
+     */
+    int blockOf(long line) {
+        if (line < 0 || line >= getLineCount()) {
+            return -1;
+        }
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firstLines[middle] <= line) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns whether a block can hold orders with time keys in {@code [from, to)}.
+     */
+    boolean mayOverlap(int block, long from, long to) {
+        return earliest[block] < to && latest[block] >= from;
+    }
+
+    /**
+     * Reads and decompresses one block.
+     *
+     * @param block the block number.
+     * @return the raw lines of the block, each ending with a line break.
+     * @throws IOException if the block cannot be read or decompressed.
+     */
+    byte[] readBlock(int block) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(compressedLengths[block]);
+        readFully(channel, compressed, offsets[block]);
+        byte[] raw = new byte[rawLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int length = 0;
+            while (length < raw.length) {
+                int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(dictionary);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IOException("truncated block " + block + " in " + file);
+                    }
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt block " + block + " in " + file + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    /**
+     * Returns the records of one block; torn or corrupt lines are skipped.
+     *
+     * @param block the block number.
+     * @return the records, in file order.
+     * @throws IOException if the block cannot be read.
+     */
+    public List<HistoryRecord> records(int block) throws IOException {
+        byte[] raw = readBlock(block);
+        List<HistoryRecord> records = new ArrayList<>(lineCounts[block]);
+        HistoryLineParser parser = new HistoryLineParser();
+        int start = 0;
+        for (int i = 0; i < raw.length; i++) {
+            if (raw[i] == '\n') {
+                int end = i > start && raw[i - 1] == '\r' ? i - 1 : i;
+                if (parser.parse(raw, start, end) && parser.checksumMatches()) {
+                    records.add(parser.toRecord());
+                }
+                start = i + 1;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Returns one line of the segment as a record, decompressing only its block.
+     *
+     * @param line the line number, from 0.
+     * @return the record, or {@code null} if there is no such line or it is corrupt.
+     * @throws IOException if the block cannot be read.
+     */
+    public HistoryRecord record(long line) throws IOException {
+        int block = blockOf(line);
+        if (block < 0) {
+            return null;
+        }
+        byte[] raw = readBlock(block);
+        long skip = line - firstLines[block];
+        int start = 0;
+        for (int i = 0; i < raw.length; i++) {
+            if (raw[i] == '\n') {
+                if (skip-- == 0) {
+                    int end = i > start && raw[i - 1] == '\r' ? i - 1 : i;
+                    HistoryLineParser parser = new HistoryLineParser();
+                    return parser.parse(raw, start, end) && parser.checksumMatches() ? parser.toRecord() : null;
+                }
+                start = i + 1;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the orders placed in {@code [from, to)}, decompressing only the blocks whose times
+     * overlap the range.
+     *
+     * @param from the earliest time, inclusive.
+     * @param to   the latest time, exclusive.
+     * @return the records, in file order.
+     * @throws IOException if a block cannot be read.
+     */
+    public List<HistoryRecord> recordsBetween(LocalDateTime from, LocalDateTime to) throws IOException {
+        long fromKey = timeKey(from);
+        long toKey = timeKey(to) + 1; // keys are whole minutes; the exact check below trims the edge
+        List<HistoryRecord> records = new ArrayList<>();
+        for (int b = 0; b < offsets.length; b++) {
+            if (!mayOverlap(b, fromKey, toKey)) {
+                continue;
+            }
+            for (HistoryRecord record : records(b)) {
+                LocalDateTime time = HistoryRecord.parseTime(record.getDateTime());
+                if (time != null && !time.isBefore(from) && time.isBefore(to)) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Closes the segment file.
+     */
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing history segment: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads exactly {@code buffer.remaining()} bytes at a position, without moving the channel.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("unexpected end of history segment");
+            }
+        }
+    }
+
+    /**
+     * An input stream that ends after a fixed number of bytes.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code HistorySegments} class keeps track of the sealed, compressed segments of an order
+ * history file and seals the file into a new segment.
+ * <p>
+ * The history file itself stays a plain text log that new orders are appended to (the "active
+ * log"). Sealing moves everything in it into the next {@link HistorySegment}, named
+ * {@code <history file>.seg-00001}, {@code .seg-00002} and so on, and empties the active log. The
+ * history is then the segments in order followed by the active log, and every reader
+ * ({@link HistoryQuery}, {@link HistoryIndex}, {@link HistoryExporter}) reads it that way.
+ * <p>
+ * A seal holds the log's lock, so no order is appended while the lines are moved. It writes the
+ * segment to a temporary file, renames it into place and only then empties the active log, again by
+ * writing the unsealed tail to a temporary file and renaming it over the log. Every step is a whole
+ * file replaced at once, so a crash never leaves a half-moved log. If the process dies between the
+ * two renames, the active log still starts with the sealed lines; the next time the segments are
+ * loaded this is noticed (the segment keeps the length and CRC32 of the lines it holds) and the
+ * seal is finished.
+ * <p>
+ * The segment list, the {@link HistoryIndex} and the query cursors of a process only follow seals
+ * made by that same process. So a seal is refused while another process has the history open
+ * (see {@link HistoryLog#lockAlone()}): stop the kiosk, or any other app using the history, before
+ * running {@code HistorySegments seal}.
+ * <p>
+ * {@link #getSealedLength()} counts the sealed lines at their uncompressed size, so the sealed length
+ * plus the active log's length does not change when a file is sealed. The {@link HistoryIndex} and
+ * the precomputed recommendations use that total to tell whether the history has changed, so a seal
+ * does not force them to be rebuilt.
+ * <p>
+ * Running {@code HistorySegments seal} seals every file of the default history;
+ * {@code HistorySegments info} lists the segments and how well they compress.
+ */
+public class HistorySegments {
+    // One set of segments per history file, keyed by absolute path.
+    private static final Map<String, HistorySegments> SEGMENTS = new ConcurrentHashMap<>();
+
+    private final File historyFile;
+    private final HistoryLog log;
+    private final List<HistorySegment> segments = new CopyOnWriteArrayList<>();
+    // Sum of the raw lengths of the segments.
+    private volatile long sealedLength;
+
+    private HistorySegments(File historyFile, HistoryLog log) {
+        this.historyFile = historyFile;
+        this.log = log;
+    }
+
+    /**
+     * Returns the segments of a history file, loading them the first time.
+     * <p>
+     * Must not be called while holding the file's {@link HistoryLog} lock for the first time, since
+     * loading takes that lock to finish an interrupted seal.
+     *
+     * @param historyFile the path of the history file.
+     * @return the segments of that file.
+     */
+    public static HistorySegments forFile(String historyFile) {
+        String path = new File(historyFile).getAbsolutePath();
+        HistorySegments existing = SEGMENTS.get(path);
+        if (existing != null) {
+            return existing;
+        }
+        // Open the log outside the map so its recovery does not run inside computeIfAbsent.
+        HistoryLog log = HistoryLog.forFile(path);
+        return SEGMENTS.computeIfAbsent(path, p -> {
+            HistorySegments loaded = new HistorySegments(new File(p), log);
+            loaded.load();
+            return loaded;
+        });
+    }
+
+    /**
+     * Returns the segments, oldest first.
+     *
+     * @return the segments.
+     */
+    public List<HistorySegment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Returns the number of bytes of history lines in all segments, before compression.
+     *
+     * @return the sealed length.
+     */
+    public long getSealedLength() {
+        return sealedLength;
+    }
+
+    /**
+     * Seals the active log into a new segment and empties it.
+     *
+     * @return the new segment, or {@code null} if the active log had no complete line to seal.
+     * @throws IOException if another process has the history open, or the segment cannot be
+     *                     written or the active log cannot be emptied.
+     */
+    public HistorySegment seal() throws IOException {
+        synchronized (log) {
+            if (!log.lockAlone()) {
+                throw new IOException(historyFile.getName() + " is open in another process; close it before sealing");
+            }
+            try {
+                long end = lastLineEnd();
+                if (end == 0) {
+                    return null;
+                }
+                File target = segmentFile(segments.size() + 1);
+                File temporary = new File(target.getPath() + ".tmp");
+                HistorySegment.write(historyFile, end, temporary);
+                Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                HistorySegment segment = HistorySegment.open(target);
+                segments.add(segment);
+                sealedLength += segment.getRawLength();
+                removePrefix(end);
+                return segment;
+            } finally {
+                log.unlockAlone();
+            }
+        }
+    }
+
+    /**
+     * Opens the existing segments and finishes a seal that was interrupted before the active log
+     * was emptied.
+     */
+    private void load() {
+        for (int n = 1; segmentFile(n).exists(); n++) {
+            try {
+                HistorySegment segment = HistorySegment.open(segmentFile(n));
+                segments.add(segment);
+                sealedLength += segment.getRawLength();
+            } catch (IOException e) {
+                System.out.println("Error opening history segment: " + e.getMessage());
+                break;
+            }
+        }
+        if (segments.isEmpty()) {
+            return;
+        }
+        HistorySegment last = segments.get(segments.size() - 1);
+        synchronized (log) {
+            try {
+                // A process that has the history open already finished the seal when it opened it.
+                if (!log.lockAlone()) {
+                    return;
+                }
+                try {
+                    if (historyFile.length() >= last.getRawLength() && prefixChecksum(last.getRawLength()) == last.getRawChecksum()) {
+                        removePrefix(last.getRawLength());
+                        System.out.println("Finished an interrupted seal of " + historyFile.getName() + ".");
+                    }
+                } finally {
+                    log.unlockAlone();
+                }
+            } catch (IOException e) {
+                System.out.println("Error finishing order history seal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the file of segment {@code n}.
+     */
+    private File segmentFile(int n) {
+        return new File(historyFile.getPath() + String.format(".seg-%05d", n));
+    }
+
+    /**
+     * Returns the position just after the last line break of the active log.
+     */
+    private long lastLineEnd() throws IOException {
+        if (!historyFile.exists()) {
+            return 0;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(historyFile, "r")) {
+            for (long position = raf.length(); position > 0; position--) {
+                raf.seek(position - 1);
+                if (raf.read() == '\n') {
+                    return position;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the CRC32 of the first {@code length} bytes of the active log.
+     */
+    private long prefixChecksum(long length) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (FileChannel channel = FileChannel.open(historyFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HistorySegment.BLOCK_SIZE);
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                int n = channel.read(buffer);
+                if (n < 0) {
+                    break;
+                }
+                checksum.update(buffer.array(), 0, n);
+                remaining -= n;
+            }
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Removes the first {@code end} bytes of the active log, keeping anything after them, and moves
+     * the log's checkpoint back to the start. Must be called while holding the log's lock.
+     * <p>
+     * The tail is copied to a temporary file that is renamed over the log, so the log is either
+     * still whole or already without the sealed lines, never a mix of the two.
+     */
+    private void removePrefix(long end) throws IOException {
+        File temporary = new File(historyFile.getPath() + ".tmp");
+        try (FileChannel in = FileChannel.open(historyFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long length = in.size();
+            for (long position = end; position < length; ) {
+                position += in.transferTo(position, length - position, out);
+            }
+            out.force(true);
+        }
+        // Checkpoint 0 is right for both the old and the new log, so it goes first.
+        log.resetCheckpoint();
+        Files.move(temporary.toPath(), historyFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Command-line entry point: {@code seal [file]} or {@code info [file]}. Without a file, every
+     * file of the default (single file or sharded) history is used.
+     *
+     * @param args the command and optional file.
+     */
+    public static void main(String[] args) {
+        String command = args.length > 0 ? args[0] : "info";
+        List<File> files = new ArrayList<>();
+        if (args.length > 1) {
+            files.add(new File(args[1]));
+        } else {
+            files.addAll(OrderHistory.openDefault().getHistoryFiles());
+        }
+        try {
+            for (File file : files) {
+                HistorySegments history = forFile(file.getPath());
+                if (command.equals("seal")) {
+                    HistorySegment segment = history.seal();
+                    System.out.println(segment == null
+                            ? file.getName() + ": nothing to seal."
+                            : file.getName() + ": sealed " + segment.getRawLength() + " bytes into "
+                            + segment.getCompressedLength() + " bytes (" + segment.getBlockCount() + " blocks).");
+                } else if (command.equals("info")) {
+                    for (HistorySegment segment : history.getSegments()) {
+                        System.out.println(segment.getFile().getName() + ": " + segment.getLineCount() + " lines, "
+                                + segment.getRawLength() + " -> " + segment.getCompressedLength() + " bytes, "
+                                + segment.getBlockCount() + " blocks");
+                    }
+                    System.out.println(file.getName() + ": " + file.length() + " bytes in the active log");
+                } else {
+                    System.out.println("Usage: HistorySegments seal|info [file]");
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error sealing order history: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code IdDictionary} class maps names (customer names or item names) to dense integer ids.
+ * <p>
+ * Ids are handed out in the order names are first seen: 0, 1, 2, ... so per-name data can be kept
+ * in plain arrays indexed by id instead of hash maps keyed by strings. An id is never reused or
+ * reassigned, so ids can be stored in other files.
+ * <p>
+ * The dictionary is persisted as a text file with one name per line; the line number is the id.
+ * New names are appended as they are assigned. A line cut off by a crash is dropped on load, which
+ * only loses a name that no other file can refer to yet.
+ * <p>
+ * There is one dictionary per file in a process (see {@link #forFile(String)}).
+ */
+public class IdDictionary {
+    // One dictionary per file, keyed by absolute path.
+    private static final Map<String, IdDictionary> DICTIONARIES = new ConcurrentHashMap<>();
+
+    private final File file;
+    // Name -> id, readable without locking.
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Id -> name; appended to under the dictionary lock.
+    private final List<String> names = new ArrayList<>();
+    // Append stream of the file, opened on the first new name and kept open so that assigning many
+    // new ids (as a batch import does) is one write each instead of an open, write and close.
+    private OutputStream out;
+
+    /**
+     * Creates a dictionary backed by a file. Use {@link #forFile(String)} to get the shared instance.
+     *
+     * @param file the dictionary file.
+     */
+    private IdDictionary(File file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Returns the shared dictionary stored in a file, loading it the first time.
+     *
+     * @param path the dictionary file path.
+     * @return the dictionary.
+     */
+    public static IdDictionary forFile(String path) {
+        return DICTIONARIES.computeIfAbsent(new File(path).getAbsolutePath(), p -> new IdDictionary(new File(p)));
+    }
+
+    /**
+     * Loads the names from the file, ignoring an unterminated final line.
+     */
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long goodEnd = 0;
+            long position = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n') {
+                    String name = line.toString(StandardCharsets.UTF_8);
+                    ids.put(name, names.size());
+                    names.add(name);
+                    line.reset();
+                    goodEnd = position;
+                } else {
+                    line.write(b);
+                }
+            }
+            if (goodEnd < position) {
+                // Drop the torn name so the next append starts on a fresh line.
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(goodEnd);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading id dictionary " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a name as the dictionary keeps it: line breaks are replaced by spaces, since the file
+     * stores one name per line. The same form is used in memory and on disk, so a name gets the same
+     * id before and after a restart.
+     */
+    private static String normalize(String name) {
+        return name.replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * Returns the id of a name, assigning and persisting a new id if the name has not been seen.
+     * <p>
+     * Line breaks in the name are replaced by spaces since the file stores one name per line, so
+     * names that only differ there share an id.
+     *
+     * @param name the name.
+     * @return the dense id of the name.
+     */
+    public int idFor(String name) {
+        name = normalize(name);
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            try {
+                if (out == null) {
+                    out = new FileOutputStream(file, true);
+                }
+                out.write((name + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                // The id still works for this process; it is just not remembered across restarts.
+                System.out.println("Error writing id dictionary " + file + ": " + e.getMessage());
+            }
+            id = names.size();
+            names.add(name);
+            ids.put(name, id);
+            return id;
+        }
+    }
+
+    /**
+     * Returns the id of a name without assigning one.
+     *
+     * @param name the name.
+     * @return the id, or -1 if the name is unknown.
+     */
+    public int lookup(String name) {
+        Integer id = ids.get(normalize(name));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the name of an id.
+     *
+     * @param id the id.
+     * @return the name.
+     * @throws IndexOutOfBoundsException if the id was never assigned.
+     */
+    public synchronized String nameOf(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Returns the number of ids assigned so far; valid ids are {@code 0 .. size() - 1}.
+     *
+     * @return the dictionary size.
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+}
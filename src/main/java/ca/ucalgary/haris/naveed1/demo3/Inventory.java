@@ -0,0 +1,332 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * The {@code Inventory} class keeps how many of each menu item are left, so sold-out items are
+ * not recommended or sold.
+ * <p>
+ * Every menu item has its own counter in an {@link AtomicIntegerArray}. The counters are spread
+ * {@link #STRIDE} ints apart, so each one sits on its own cache line and orders of different items
+ * never slow each other down by writing to the same line. Counters are only changed with
+ * compare-and-set, so nothing here takes a lock:
+ * <ul>
+ *   <li>{@link #tryReserve(Collection)} takes the items of a whole order, or none of them if one is
+ *   short (what it already took is given back);</li>
+ *   <li>{@link #isAvailable(MenuItem)} and {@link #availableItems()} are plain reads of the counters,
+ *   which is what the recommendation and menu views call on every request.</li>
+ * </ul>
+ * An item's stock is {@link #UNLIMITED} until it is set, so a menu without stock counts behaves as
+ * before. Starting counts are read from {@code inventory.txt} ({@code Item Name|count} per line); the
+ * counts are kept in memory while the app runs.
+ * <p>
+ * Listeners added with {@link #addSoldOutListener(Consumer)} are told when an item's last unit is
+ * taken or its stock is set to 0.
+ */
+public class Inventory {
+    // File with the starting stock counts.
+    public static final String INVENTORY_FILE = "inventory.txt";
+    // Stock of an item that is not counted; it never sells out.
+    public static final int UNLIMITED = -1;
+    // Ints from one counter to the next: 16 ints are 64 bytes, one cache line.
+    private static final int STRIDE = 16;
+    // Returned by take() when an item does not have enough units left.
+    private static final int SHORT = -2;
+
+    private final List<MenuItem> items;
+    // Item name to menu position.
+    private final Map<String, Integer> positions = new HashMap<>();
+    // The counter of the item at menu position p is at index p * STRIDE.
+    private final AtomicIntegerArray stock;
+    private final List<Consumer<MenuItem>> soldOutListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates the inventory of a menu with every item unlimited.
+     *
+     * @param menu the menu; bit {@code i} of {@link #availableItems()} stands for its item {@code i}.
+     */
+    public Inventory(Menu menu) {
+        items = List.copyOf(menu.getItems());
+        for (int i = 0; i < items.size(); i++) {
+            positions.putIfAbsent(items.get(i).getName(), i);
+        }
+        stock = new AtomicIntegerArray(Math.max(1, items.size()) * STRIDE);
+        for (int i = 0; i < items.size(); i++) {
+            stock.set(i * STRIDE, UNLIMITED);
+        }
+    }
+
+    /**
+     * Creates the inventory of a menu with the starting counts of a file. Items the file does not
+     * list are unlimited; lines for items that are not on the menu are reported and skipped.
+     *
+     * @param menu the menu.
+     * @param file the inventory file; if it does not exist every item is unlimited.
+     * @return the inventory.
+     */
+    public static Inventory load(Menu menu, File file) {
+        Inventory inventory = new Inventory(menu);
+        if (!file.exists()) {
+            return inventory;
+        }
+        try (BufferedReader br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = br.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int bar = line.lastIndexOf('|');
+                try {
+                    inventory.setStock(line.substring(0, Math.max(0, bar)).trim(),
+                            Integer.parseInt(line.substring(bar + 1).trim()));
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Error reading inventory " + file + ": line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading inventory " + file + ": " + e.getMessage());
+        }
+        return inventory;
+    }
+
+    /**
+     * Returns how many of an item are left.
+     *
+     * @param name the item name.
+     * @return the count, {@link #UNLIMITED} if the item is not counted, or 0 if it is not on the menu.
+     */
+    public int getStock(String name) {
+        Integer position = positions.get(name);
+        return position == null ? 0 : stock.get(position * STRIDE);
+    }
+
+    /**
+     * Sets how many of an item are left, for example after a delivery or when a machine goes down.
+     *
+     * @param name  the item name.
+     * @param count the new count, or {@link #UNLIMITED} to stop counting the item.
+     * @throws IllegalArgumentException if the item is not on the menu or the count is negative.
+     */
+    public void setStock(String name, int count) {
+        if (count < 0 && count != UNLIMITED) {
+            throw new IllegalArgumentException("Invalid stock for " + name + ": " + count);
+        }
+        int position = positionOf(name);
+        int previous = stock.getAndSet(position * STRIDE, count);
+        if (count == 0 && previous != 0) {
+            notifySoldOut(items.get(position));
+        }
+    }
+
+    /**
+     * Adds units to a counted item. Unlimited items stay unlimited.
+     *
+     * @param name   the item name.
+     * @param amount the units to add.
+     * @throws IllegalArgumentException if the item is not on the menu or the amount is negative.
+     */
+    public void restock(String name, int amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Invalid restock amount for " + name + ": " + amount);
+        }
+        add(positionOf(name), amount);
+    }
+
+    /**
+     * Tells whether at least one of an item is left.
+     *
+     * @param item the menu item.
+     * @return true if the item can be ordered; items that are not on the menu are not counted, so
+     *         they are available.
+     */
+    public boolean isAvailable(MenuItem item) {
+        Integer position = positions.get(item.getName());
+        return position == null || stock.get(position * STRIDE) != 0;
+    }
+
+    /**
+     * Returns the menu positions of the items that can be ordered right now, to narrow a
+     * {@link MenuIndex} filter or a recommendation search.
+     *
+     * @return the available positions.
+     */
+    public BitSet availableItems() {
+        BitSet available = new BitSet(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            if (stock.get(i * STRIDE) != 0) {
+                available.set(i);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * Tells whether any item is sold out right now.
+     *
+     * @return true if at least one item has a stock of 0.
+     */
+    public boolean hasSoldOutItems() {
+        for (int i = 0; i < items.size(); i++) {
+            if (stock.get(i * STRIDE) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes the items of an order out of stock, all or nothing.
+     * <p>
+     * Each counter is lowered with compare-and-set by the number of units the order has of that
+     * item. If an item does not have enough left, the units already taken for the order are given
+     * back and nothing is reserved. Sold-out listeners are only told once the whole order got its
+     * units, so a failed order does not report items as sold out.
+     *
+     * @param order the ordered items; an item can appear more than once.
+     * @return true if every item was reserved, false if one of them is short.
+     */
+    public boolean tryReserve(Collection<MenuItem> order) {
+        int[] needed = unitsByPosition(order);
+        List<MenuItem> soldOut = new ArrayList<>();
+        for (int p = 0; p < needed.length; p++) {
+            if (needed[p] == 0) {
+                continue;
+            }
+            int left = take(p, needed[p]);
+            if (left == SHORT) {
+                // Give back what this order already took.
+                for (int q = 0; q < p; q++) {
+                    if (needed[q] > 0) {
+                        add(q, needed[q]);
+                    }
+                }
+                return false;
+            }
+            if (left == 0) {
+                soldOut.add(items.get(p));
+            }
+        }
+        for (MenuItem item : soldOut) {
+            notifySoldOut(item);
+        }
+        return true;
+    }
+
+    /**
+     * Gives back the units of an order that was reserved but could not be placed.
+     *
+     * @param order the items passed to {@link #tryReserve(Collection)}.
+     */
+    public void release(Collection<MenuItem> order) {
+        int[] units = unitsByPosition(order);
+        for (int p = 0; p < units.length; p++) {
+            if (units[p] > 0) {
+                add(p, units[p]);
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that is called with an item whenever it sells out. Listeners are called on
+     * the thread that took the last unit, so they should return quickly.
+     *
+     * @param listener the listener.
+     */
+    public void addSoldOutListener(Consumer<MenuItem> listener) {
+        soldOutListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addSoldOutListener(Consumer)}.
+     *
+     * @param listener the listener.
+     */
+    public void removeSoldOutListener(Consumer<MenuItem> listener) {
+        soldOutListeners.remove(listener);
+    }
+
+    /**
+     * Lowers a counter by some units if it has that many.
+     *
+     * @return the units left afterwards ({@link #UNLIMITED} for an uncounted item), or
+     *         {@link #SHORT} if the item is short.
+     */
+    private int take(int position, int units) {
+        int index = position * STRIDE;
+        while (true) {
+            int left = stock.get(index);
+            if (left == UNLIMITED) {
+                return UNLIMITED;
+            }
+            if (left < units) {
+                return SHORT;
+            }
+            if (stock.compareAndSet(index, left, left - units)) {
+                return left - units;
+            }
+        }
+    }
+
+    /**
+     * Raises a counter by some units, leaving uncounted items alone.
+     */
+    private void add(int position, int units) {
+        int index = position * STRIDE;
+        while (true) {
+            int left = stock.get(index);
+            if (left == UNLIMITED || stock.compareAndSet(index, left, left + units)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Counts the units of each menu item in an order; items not on the menu are skipped.
+     */
+    private int[] unitsByPosition(Collection<MenuItem> order) {
+        int[] units = new int[items.size()];
+        for (MenuItem item : order) {
+            Integer position = positions.get(item.getName());
+            if (position != null) {
+                units[position]++;
+            }
+        }
+        return units;
+    }
+
+    private int positionOf(String name) {
+        Integer position = positions.get(name);
+        if (position == null) {
+            throw new IllegalArgumentException("Not on the menu: " + name);
+        }
+        return position;
+    }
+
+    private void notifySoldOut(MenuItem item) {
+        for (Consumer<MenuItem> listener : soldOutListeners) {
+            try {
+                listener.accept(item);
+            } catch (RuntimeException e) {
+                System.out.println("Error in sold-out listener: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+/**
+ * The {@code ItemAttribute} enum lists the dietary facts a customer may filter the menu by.
+ * <p>
+ * Attributes are yes/no facts about an item (what it contains or what diet it suits). Nutrient
+ * amounts such as "high protein" or "low sugar" are not attributes; they are ranges over the
+ * nutrient values, see {@link MenuIndex.Nutrient}.
+ */
+public enum ItemAttribute {
+    VEGETARIAN("Vegetarian"),
+    CONTAINS_GLUTEN("Contains gluten"),
+    CONTAINS_DAIRY("Contains dairy"),
+    CONTAINS_EGG("Contains egg"),
+    CONTAINS_FISH("Contains fish"),
+    CONTAINS_SOY("Contains soy");
+
+    // Text shown to customers.
+    private final String label;
+
+    ItemAttribute(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the text shown to customers for this attribute.
+     *
+     * @return the label, for example "Contains dairy".
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,344 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code LoadGenerator} simulates many customers using the system at the same time so the
+ * storage and recommendation paths can be measured without the console or the JavaFX UI.
+ * <p>
+ * Each simulated customer runs on its own thread and repeatedly either places an order through
+ * {@link OrderHistory#storeOrder(Order)} or asks the {@link RecommendationEngine} for recommendations.
+ * Items are picked according to a configurable popularity distribution, and customers either run
+ * as fast as possible (closed loop) or arrive at a configurable rate (open loop, with exponentially
+ * distributed gaps between operations).
+ * <p>
+ * In open-loop mode latency is measured from the time an operation was <em>scheduled</em> to start,
+ * not from when the thread got around to it, so queueing delay caused by a saturated system shows up
+ * in the percentiles instead of being hidden.
+ * <p>
+ * Orders are written to a separate scratch history file so synthetic data never mixes with real orders.
+ * <p>
+ * Usage: {@code LoadGenerator [--customers=1,2,4,8] [--seconds=10] [--rate=0] [--recommendRatio=0.3]
+ * [--popularity=zipf:1.0 | --popularity=Big Mac=5;Small Fries=2] [--maxItems=4] [--calories=1200]
+ * [--file=loadtest_history.txt]}
+ * <p>
+ * When several customer counts are given, one stage is run per count so the saturation point can be
+ * read off the printed table.
+ */
+public class LoadGenerator {
+    // Default scratch file that receives the synthetic orders.
+    static final String DEFAULT_FILE = "loadtest_history.txt";
+
+    private final Menu menu;
+    private final OrderHistory orderHistory;
+    private final RecommendationEngine engine;
+    // Cumulative popularity weights, one per menu item, used to pick items.
+    private final double[] cumulativeWeights;
+    private final double recommendRatio;
+    private final double ratePerCustomer;
+    private final int maxItems;
+    private final int desiredCalories;
+
+    /**
+     * Creates a load generator.
+     *
+     * @param menu            the menu to order from.
+     * @param orderHistory    the (scratch) order history to write to.
+     * @param weights         the popularity weight of each menu item, in menu order.
+     * @param recommendRatio  the fraction of operations that are recommendation requests.
+     * @param ratePerCustomer operations per second per customer, or 0 to run as fast as possible.
+     * @param maxItems        the maximum number of items per generated order.
+     * @param desiredCalories the calorie budget used for recommendation requests.
+     */
+    public LoadGenerator(Menu menu, OrderHistory orderHistory, double[] weights, double recommendRatio,
+                         double ratePerCustomer, int maxItems, int desiredCalories) {
+        this.menu = menu;
+        this.orderHistory = orderHistory;
+        this.engine = new RecommendationEngine(menu, orderHistory);
+        this.cumulativeWeights = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cumulativeWeights[i] = total;
+        }
+        this.recommendRatio = recommendRatio;
+        this.ratePerCustomer = ratePerCustomer;
+        this.maxItems = maxItems;
+        this.desiredCalories = desiredCalories;
+    }
+
+    /**
+     * Runs one stage with the given number of concurrent customers.
+     *
+     * @param customers the number of simulated customers (threads).
+     * @param seconds   how long the stage runs.
+     * @return the latencies recorded during the stage.
+     * @throws InterruptedException if the caller is interrupted while waiting for the stage.
+     */
+    StageResult runStage(int customers, int seconds) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(customers);
+        List<Future<Recorder>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (int c = 0; c < customers; c++) {
+            String customerName = "loadtest-" + c;
+            long seed = 31L * c + start;
+            futures.add(pool.submit(() -> simulateCustomer(customerName, new SplittableRandom(seed), end)));
+        }
+        pool.shutdown();
+
+        // Merge the per-thread recorders once all customers have finished.
+        LatencyList orders = new LatencyList();
+        LatencyList recommendations = new LatencyList();
+        for (Future<Recorder> future : futures) {
+            try {
+                Recorder recorder = future.get();
+                orders.addAll(recorder.orders);
+                recommendations.addAll(recorder.recommendations);
+            } catch (ExecutionException e) {
+                System.out.println("Simulated customer failed: " + e.getCause());
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        return new StageResult(customers, elapsedSeconds, orders, recommendations);
+    }
+
+    /**
+     * The body of one simulated customer: performs operations until the stage ends.
+     *
+     * @param customerName the name the customer orders under.
+     * @param random       this customer's random source (not shared between threads).
+     * @param end          the {@link System#nanoTime()} at which the stage ends.
+     * @return the latencies this customer recorded.
+     */
+    private Recorder simulateCustomer(String customerName, SplittableRandom random, long end) {
+        Recorder recorder = new Recorder();
+        List<MenuItem> noSessionOrders = Collections.emptyList();
+        long scheduled = System.nanoTime();
+        while (true) {
+            if (ratePerCustomer > 0) {
+                // Open loop: the next operation is due after an exponentially distributed gap.
+                scheduled += (long) (-Math.log(1.0 - random.nextDouble()) / ratePerCustomer * 1e9);
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                scheduled = System.nanoTime();
+            }
+            if (scheduled >= end) {
+                return recorder;
+            }
+            if (random.nextDouble() < recommendRatio) {
+                engine.generateRecommendations(customerName, desiredCalories, noSessionOrders);
+                recorder.recommendations.add(System.nanoTime() - scheduled);
+            } else {
+                Order order = new Order(customerName);
+                int itemCount = 1 + random.nextInt(maxItems);
+                for (int i = 0; i < itemCount; i++) {
+                    order.addItem(pickItem(random));
+                }
+                orderHistory.storeOrder(order);
+                recorder.orders.add(System.nanoTime() - scheduled);
+            }
+        }
+    }
+
+    /**
+     * Picks a menu item according to the popularity weights.
+     *
+     * @param random the random source of the calling customer.
+     * @return the chosen item.
+     */
+    private MenuItem pickItem(SplittableRandom random) {
+        double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        int index = Arrays.binarySearch(cumulativeWeights, target);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return menu.getItems().get(Math.min(index, cumulativeWeights.length - 1));
+    }
+
+    /**
+     * Builds the popularity weights of the menu items from a specification.
+     * <p>
+     * {@code zipf:s} gives the i-th menu item weight {@code 1 / i^s}; otherwise the specification is a
+     * semicolon-separated list of {@code name=weight} pairs, and unlisted items get weight 0.
+     *
+     * @param menu the menu.
+     * @param spec the popularity specification.
+     * @return the weight of each item, in menu order.
+     * @throws IllegalArgumentException if the specification names an unknown item or has no positive weight.
+     */
+    static double[] parsePopularity(Menu menu, String spec) {
+        List<MenuItem> items = menu.getItems();
+        double[] weights = new double[items.size()];
+        if (spec.startsWith("zipf:")) {
+            double exponent = Double.parseDouble(spec.substring(5));
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = 1.0 / Math.pow(i + 1, exponent);
+            }
+            return weights;
+        }
+        double total = 0;
+        for (String pair : spec.split(";")) {
+            String[] parts = pair.split("=");
+            MenuItem item = parts.length == 2 ? menu.getItemByName(parts[0].trim()) : null;
+            if (item == null) {
+                throw new IllegalArgumentException("Unknown popularity entry: " + pair);
+            }
+            double weight = Double.parseDouble(parts[1].trim());
+            weights[items.indexOf(item)] = weight;
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one item needs a positive weight.");
+        }
+        return weights;
+    }
+
+    /**
+     * Parses a comma-separated list of customer counts, one stage per count.
+     *
+     * @param text the list, for example {@code "1,2,4,8"}.
+     * @return the customer counts.
+     * @throws IllegalArgumentException if an entry is not a number or is less than 1.
+     */
+    static int[] parseCustomerCounts(String text) {
+        String[] parts = text.split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Integer.parseInt(parts[i].trim());
+            if (counts[i] < 1) {
+                throw new IllegalArgumentException("A stage needs at least one customer: " + parts[i].trim());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Collects the latencies (in nanoseconds) recorded by one simulated customer.
+     */
+    static class Recorder {
+        final LatencyList orders = new LatencyList();
+        final LatencyList recommendations = new LatencyList();
+    }
+
+    /**
+     * A growable list of primitive {@code long} latencies, so recording does not box every sample.
+     */
+    static class LatencyList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LatencyList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Sorts the samples and returns the value at the given percentile.
+         *
+         * @param percentile a percentile between 0 and 100.
+         * @return the latency in nanoseconds, or 0 if there are no samples.
+         */
+        long percentile(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            Arrays.sort(values, 0, size);
+            int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+            return values[Math.max(0, Math.min(index, size - 1))];
+        }
+    }
+
+    /**
+     * The outcome of one stage: throughput and latency percentiles per operation type.
+     */
+    static class StageResult {
+        final int customers;
+        final double elapsedSeconds;
+        final LatencyList orders;
+        final LatencyList recommendations;
+
+        StageResult(int customers, double elapsedSeconds, LatencyList orders, LatencyList recommendations) {
+            this.customers = customers;
+            this.elapsedSeconds = elapsedSeconds;
+            this.orders = orders;
+            this.recommendations = recommendations;
+        }
+
+        /**
+         * Formats one table row for an operation type.
+         */
+        String row(String operation, LatencyList latencies) {
+            return String.format("%9d %-15s %10d %12.1f %10.1f %10.1f %10.1f %10.1f",
+                    customers, operation, latencies.size(), latencies.size() / elapsedSeconds,
+                    latencies.percentile(50) / 1e3, latencies.percentile(90) / 1e3,
+                    latencies.percentile(99) / 1e3, latencies.percentile(100) / 1e3);
+        }
+    }
+
+    /**
+     * Entry point of the load generator.
+     *
+     * @param args {@code --name=value} options as described in the class documentation.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                System.out.println("Ignoring argument " + arg + " (expected --name=value).");
+                continue;
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        Tracker.initializeMenu();
+        Menu menu = new Menu();
+        LoadGenerator generator;
+        int[] customerCounts;
+        int seconds;
+        String file = options.getOrDefault("file", DEFAULT_FILE);
+        try {
+            customerCounts = parseCustomerCounts(options.getOrDefault("customers", "1,2,4,8,16"));
+            seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+            generator = new LoadGenerator(menu, new OrderHistory(file),
+                    parsePopularity(menu, options.getOrDefault("popularity", "zipf:1.0")),
+                    Double.parseDouble(options.getOrDefault("recommendRatio", "0.3")),
+                    Double.parseDouble(options.getOrDefault("rate", "0")),
+                    Integer.parseInt(options.getOrDefault("maxItems", "4")),
+                    Integer.parseInt(options.getOrDefault("calories", "1200")));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid option: " + e.getMessage());
+            return;
+        }
+
+        System.out.println("Writing synthetic orders to " + new File(file).getAbsolutePath());
+        System.out.println(String.format("%9s %-15s %10s %12s %10s %10s %10s %10s",
+                "customers", "operation", "count", "ops/s", "p50 us", "p90 us", "p99 us", "max us"));
+        for (int customers : customerCounts) {
+            StageResult result = generator.runStage(customers, seconds);
+            System.out.println(result.row("storeOrder", result.orders));
+            System.out.println(result.row("recommendation", result.recommendations));
+        }
+    }
+}
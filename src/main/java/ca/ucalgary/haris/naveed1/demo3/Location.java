@@ -0,0 +1,188 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@code Location} class is one restaurant: its own menu, its own order history and its own
+ * {@link NutritionService} over them.
+ * <p>
+ * Everything of a location lives in its directory, {@code locations/<id>/}:
+ * <ul>
+ *   <li>{@code menu.txt} (optional): the regional differences from the default {@link Menu}. A line
+ *   {@code -Item Name} takes an item off the menu, and a line
+ *   {@code Name|calories|protein|carbs|sugars|fat|ATTRIBUTE,ATTRIBUTE} adds a regional item (or
+ *   replaces the default item of that name). Lines starting with {@code #} are comments.</li>
+ *   <li>{@code order_history.txt} with its log, index, dictionaries and segments, or a sharded
+ *   history in {@code order_history_shards/} if one has been set up there.</li>
+ *   <li>{@code recommendations.dat} (optional): the location's precomputed recommendations.</li>
+ *   <li>{@code inventory.txt} (optional): the location's starting stock (see {@link Inventory}).</li>
+ * </ul>
+ * Because the history files are the location's own, so are the locks and caches built on them:
+ * appends lock the location's {@link HistoryLog}, and the index, trending items, recommendation
+ * engine and sessions belong to the location's service. A busy location never waits on another.
+ * <p>
+ * Locations are opened through a {@link LocationRegistry}.
+ */
+public class Location {
+    // File of the regional menu differences inside a location's directory.
+    static final String MENU_FILE = "menu.txt";
+
+    private final String id;
+    private final File directory;
+    private final Menu menu;
+    private final NutritionService service;
+
+    /**
+     * Opens a location, creating its directory and empty history the first time.
+     *
+     * @param id        the location id.
+     * @param directory the location's directory.
+     */
+    Location(String id, File directory) {
+        this.id = id;
+        this.directory = directory;
+        directory.mkdirs();
+        this.menu = loadMenu(new File(directory, MENU_FILE));
+        String shards = new File(directory, ShardedOrderHistory.DEFAULT_DIRECTORY).getPath();
+        OrderHistory history = ShardedOrderHistory.exists(shards)
+                ? ShardedOrderHistory.open(shards)
+                : new OrderHistory(new File(directory, OrderHistory.ORDER_HISTORY_FILE).getPath());
+        // Orders of this location are published on the event bus under its id.
+        history.setEventSource(id);
+        this.service = new NutritionService(menu, history,
+                new File(directory, PrecomputedRecommendations.RECOMMENDATIONS_FILE),
+                new File(directory, Inventory.INVENTORY_FILE));
+    }
+
+    /**
+     * Returns the location id.
+     *
+     * @return the id.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the directory the location's files are kept in.
+     *
+     * @return the directory.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the location's menu: the default menu with its regional differences.
+     *
+     * @return the menu.
+     */
+    public Menu getMenu() {
+        return menu;
+    }
+
+    /**
+     * Returns the location's order history.
+     *
+     * @return the order history.
+     */
+    public OrderHistory getOrderHistory() {
+        return service.getOrderHistory();
+    }
+
+    /**
+     * Returns the service that front-ends use for this location.
+     *
+     * @return the location's service.
+     */
+    public NutritionService getService() {
+        return service;
+    }
+
+    /**
+     * Builds the location's menu from the default menu and the regional differences in a file.
+     * Bad lines are reported and skipped.
+     *
+     * @param file the menu file; if it does not exist the default menu is used as is.
+     * @return the menu.
+     */
+    static Menu loadMenu(File file) {
+        Map<String, MenuItem> items = new LinkedHashMap<>();
+        for (MenuItem item : new Menu().getItems()) {
+            items.put(item.getName(), item);
+        }
+        if (file.exists()) {
+            try (BufferedReader br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = br.readLine()) != null) {
+                    lineNumber++;
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    if (line.startsWith("-")) {
+                        items.remove(line.substring(1).trim());
+                        continue;
+                    }
+                    MenuItem item = parseItem(line);
+                    if (item == null) {
+                        System.out.println("Error reading menu " + file + ": line " + lineNumber + " is not an item");
+                    } else {
+                        items.put(item.getName(), item);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading menu " + file + ": " + e.getMessage());
+            }
+        }
+        return new Menu(new ArrayList<>(items.values()));
+    }
+
+    /**
+     * Parses {@code Name|calories|protein|carbs|sugars|fat[|ATTRIBUTE,ATTRIBUTE]}.
+     *
+     * @return the item, or {@code null} if the line is malformed.
+     */
+    private static MenuItem parseItem(String line) {
+        String[] parts = line.split("\\|");
+        if (parts.length < 6 || parts.length > 7 || parts[0].trim().isEmpty()) {
+            return null;
+        }
+        double[] values = new double[5];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Double.parseDouble(parts[i + 1].trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        EnumSet<ItemAttribute> attributes = EnumSet.noneOf(ItemAttribute.class);
+        if (parts.length == 7 && !parts[6].trim().isEmpty()) {
+            for (String attribute : parts[6].split(",")) {
+                try {
+                    attributes.add(ItemAttribute.valueOf(attribute.trim()));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return new MenuItem(parts[0].trim(), values[0], values[1], values[2], values[3], values[4],
+                attributes.toArray(new ItemAttribute[0]));
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
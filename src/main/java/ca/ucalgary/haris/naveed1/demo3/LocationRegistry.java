@@ -0,0 +1,197 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code LocationRegistry} class holds the restaurants (see {@link Location}) of one process,
+ * each in its own directory under a root directory ({@code locations/} by default).
+ * <p>
+ * A location is opened the first time it is asked for with {@link #get(String)} and then kept
+ * open; opening one location does not wait for others to open. Every location has its own menu,
+ * history files and {@link NutritionService}, so nothing a location does at run time locks another
+ * location.
+ * <p>
+ * Reports across locations ({@link #report(int)}) scan every location's history on a fork-join
+ * pool and merge the per-location {@link LocationReport}s pairwise as the scans finish.
+ * <p>
+ * Usage: {@code LocationRegistry list} or {@code LocationRegistry report [parallelism]}.
+ */
+public class LocationRegistry {
+    // Root directory of the locations the applications use.
+    public static final String DEFAULT_DIRECTORY = "locations";
+
+    // One registry per root directory, keyed by absolute path.
+    private static final Map<String, LocationRegistry> REGISTRIES = new ConcurrentHashMap<>();
+
+    private final File root;
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+
+    private LocationRegistry(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the registry of the locations under a root directory.
+     *
+     * @param directory the root directory.
+     * @return the registry.
+     */
+    public static LocationRegistry forDirectory(String directory) {
+        return REGISTRIES.computeIfAbsent(new File(directory).getAbsolutePath(), p -> new LocationRegistry(new File(p)));
+    }
+
+    /**
+     * Returns the registry of the default root directory.
+     *
+     * @return the shared registry.
+     */
+    public static LocationRegistry shared() {
+        return forDirectory(DEFAULT_DIRECTORY);
+    }
+
+    /**
+     * Tells whether a string can be used as a location id: letters, digits, '-' and '_', so that it
+     * is also a safe directory name.
+     *
+     * @param id the id to check.
+     * @return true if it is a valid id.
+     */
+    public static boolean isValidId(String id) {
+        return id != null && id.matches("[A-Za-z0-9_-]{1,64}");
+    }
+
+    /**
+     * Returns a location, opening it (and creating its directory) on first use.
+     *
+     * @param id the location id.
+     * @return the location.
+     * @throws IllegalArgumentException if the id is not valid.
+     */
+    public Location get(String id) {
+        if (!isValidId(id)) {
+            throw new IllegalArgumentException("Invalid location id: " + id);
+        }
+        // computeIfAbsent only locks the id's bin, so other locations can open at the same time.
+        return locations.computeIfAbsent(id, key -> new Location(key, new File(root, key)));
+    }
+
+    /**
+     * Returns the ids of every location that has a directory or is open.
+     *
+     * @return the ids, sorted.
+     */
+    public List<String> getLocationIds() {
+        TreeSet<String> ids = new TreeSet<>(locations.keySet());
+        File[] directories = root.listFiles(File::isDirectory);
+        if (directories != null) {
+            for (File directory : directories) {
+                if (isValidId(directory.getName())) {
+                    ids.add(directory.getName());
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Returns every location, opening the ones that are not open yet.
+     *
+     * @return the locations, sorted by id.
+     */
+    public List<Location> getLocations() {
+        List<Location> all = new ArrayList<>();
+        for (String id : getLocationIds()) {
+            all.add(get(id));
+        }
+        return all;
+    }
+
+    /**
+     * Builds the report of every location, scanning the locations in parallel.
+     *
+     * @param parallelism the number of worker threads.
+     * @return the merged report.
+     */
+    public LocationReport report(int parallelism) {
+        List<Location> all = getLocations();
+        if (all.isEmpty()) {
+            return LocationReport.empty();
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new ReportTask(all, 0, all.size()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A fork-join task that reports a slice of the locations: one location is scanned directly, a
+     * larger slice is split in half and the two halves' reports are merged.
+     */
+    private static class ReportTask extends RecursiveTask<LocationReport> {
+        private static final long serialVersionUID = 1L;
+
+        // Tasks only run inside one pool and are never serialized.
+        private final transient List<Location> locations;
+        private final int from;
+        private final int to;
+
+        ReportTask(List<Location> locations, int from, int to) {
+            this.locations = locations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LocationReport compute() {
+            if (to - from == 1) {
+                return LocationReport.of(locations.get(from));
+            }
+            int middle = (from + to) >>> 1;
+            ReportTask left = new ReportTask(locations, from, middle);
+            left.fork();
+            LocationReport right = new ReportTask(locations, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Command-line entry point: {@code list} prints the location ids, {@code report [parallelism]}
+     * prints the report of every location.
+     *
+     * @param args the command and optional parallelism.
+     */
+    public static void main(String[] args) {
+        String command = args.length > 0 ? args[0] : "report";
+        LocationRegistry registry = shared();
+        if (command.equals("list")) {
+            registry.getLocationIds().forEach(System.out::println);
+        } else if (command.equals("report")) {
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            try {
+                if (args.length > 1) {
+                    parallelism = Integer.parseInt(args[1]);
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Usage: LocationRegistry list|report [parallelism]");
+                return;
+            }
+            long start = System.nanoTime();
+            LocationReport report = registry.report(parallelism);
+            System.out.println(report);
+            System.out.println("Reported in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        } else {
+            System.out.println("Usage: LocationRegistry list|report [parallelism]");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * The {@code LocationReport} class sums up the orders of one or more locations: how many orders
+ * each location had, the calories ordered and how often every item was ordered.
+ * <p>
+ * A report of one location is built from one scan of its history ({@link #of(Location)}), and
+ * reports are combined with {@link #merge(LocationReport)}. Merging only adds counts, so the order
+ * in which partial reports are merged does not matter; {@link LocationRegistry#report(int)} uses
+ * that to scan the locations in parallel and merge their reports pairwise.
+ * <p>
+ * Reports are immutable.
+ */
+public class LocationReport {
+    private final Map<String, Long> ordersByLocation;
+    private final long orders;
+    private final double totalCalories;
+    private final Map<String, Long> itemCounts;
+
+    private LocationReport(Map<String, Long> ordersByLocation, long orders, double totalCalories,
+                           Map<String, Long> itemCounts) {
+        this.ordersByLocation = Collections.unmodifiableMap(ordersByLocation);
+        this.orders = orders;
+        this.totalCalories = totalCalories;
+        this.itemCounts = Collections.unmodifiableMap(itemCounts);
+    }
+
+    /**
+     * Returns the report of no locations.
+     *
+     * @return an empty report.
+     */
+    public static LocationReport empty() {
+        return new LocationReport(new TreeMap<>(), 0, 0, new HashMap<>());
+    }
+
+    /**
+     * Builds the report of one location with one scan of its order history.
+     *
+     * @param location the location.
+     * @return the location's report.
+     */
+    public static LocationReport of(Location location) {
+        long orders = 0;
+        double calories = 0;
+        Map<String, Long> items = new HashMap<>();
+        try (Stream<HistoryRecord> records = location.getOrderHistory().query().named("locationReport").stream()) {
+            for (HistoryRecord record : (Iterable<HistoryRecord>) records::iterator) {
+                orders++;
+                calories += record.getTotalCalories();
+                for (String item : record.getItems()) {
+                    items.merge(item, 1L, Long::sum);
+                }
+            }
+        }
+        Map<String, Long> byLocation = new TreeMap<>();
+        byLocation.put(location.getId(), orders);
+        return new LocationReport(byLocation, orders, calories, items);
+    }
+
+    /**
+     * Combines this report with another one.
+     *
+     * @param other the other report.
+     * @return a report with the counts of both.
+     */
+    public LocationReport merge(LocationReport other) {
+        Map<String, Long> byLocation = new TreeMap<>(ordersByLocation);
+        other.ordersByLocation.forEach((location, count) -> byLocation.merge(location, count, Long::sum));
+        Map<String, Long> items = new HashMap<>(itemCounts);
+        other.itemCounts.forEach((item, count) -> items.merge(item, count, Long::sum));
+        return new LocationReport(byLocation, orders + other.orders, totalCalories + other.totalCalories, items);
+    }
+
+    /**
+     * Returns the number of orders of each location.
+     *
+     * @return location id to order count, sorted by id.
+     */
+    public Map<String, Long> getOrdersByLocation() {
+        return ordersByLocation;
+    }
+
+    /**
+     * Returns the number of orders.
+     *
+     * @return the order count.
+     */
+    public long getOrders() {
+        return orders;
+    }
+
+    /**
+     * Returns the calories of all orders.
+     *
+     * @return the total calories.
+     */
+    public double getTotalCalories() {
+        return totalCalories;
+    }
+
+    /**
+     * Returns the average calories of an order.
+     *
+     * @return the average, or 0 if there are no orders.
+     */
+    public double getAverageCalories() {
+        return orders == 0 ? 0 : totalCalories / orders;
+    }
+
+    /**
+     * Returns how often each item was ordered.
+     *
+     * @return item name to count.
+     */
+    public Map<String, Long> getItemCounts() {
+        return itemCounts;
+    }
+
+    /**
+     * Returns the most ordered items.
+     *
+     * @param n the number of items.
+     * @return the item names, most ordered first (ties by name).
+     */
+    public List<String> topItems(int n) {
+        List<String> names = new ArrayList<>(itemCounts.keySet());
+        names.sort((a, b) -> {
+            int byCount = Long.compare(itemCounts.get(b), itemCounts.get(a));
+            return byCount != 0 ? byCount : a.compareTo(b);
+        });
+        return names.subList(0, Math.min(n, names.size()));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ordersByLocation.size()).append(" locations, ").append(orders).append(" orders, ")
+                .append(String.format("%.1f", getAverageCalories())).append(" calories per order\n");
+        ordersByLocation.forEach((location, count) -> sb.append("  ").append(location).append(": ")
+                .append(count).append(" orders\n"));
+        sb.append("Top items: ").append(topItems(5));
+        return sb.toString();
+    }
+}
@@ -8,6 +8,30 @@ import java.util.Scanner;
 
 public class Main {
     public static void main(String[] args) {
+        // Batch mode: import orders from a file (or "-" for standard input) without any prompts.
+        if (args.length == 2 && args[0].equals("--batch")) {
+            BatchIngester.run(args[1]);
+            return;
+        }
+        // Batch mode for one location: --batch <file> --location <id>.
+        if (args.length == 4 && args[0].equals("--batch") && args[2].equals("--location")) {
+            try {
+                BatchIngester.run(args[1], LocationRegistry.shared().get(args[3]).getService());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error during batch import: " + e.getMessage());
+            }
+            return;
+        }
+        // Serve one location instead of the default history: --location <id>.
+        if (args.length == 2 && args[0].equals("--location")) {
+            try {
+                NutritionService.useLocation(args[1]);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error opening location: " + e.getMessage());
+                return;
+            }
+        }
+
         // Create a Scanner object to read user input from the console.
         Scanner scanner = new Scanner(System.in);
 
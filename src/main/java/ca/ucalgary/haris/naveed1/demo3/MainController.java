@@ -2,19 +2,26 @@
 
 package ca.ucalgary.haris.naveed1.demo3;
 
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.chart.*;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import javafx.util.StringConverter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,7 +34,7 @@ import java.util.List;
  * - Placing orders using clickable item images and pop-up details.
  * - Viewing order history from a persistent file.
  * - Generating recommendations and allowing double-click ordering.
- * - Managing the order summary on the right-side panel.
+ * - Managing the order summary on the right-side panel, with live suggestions to fill the calorie goal.
  * <p>
  * It interacts with other classes such as Tracker, Menu, RecommendationEngine, and OrderHistory.
  */
@@ -35,15 +42,29 @@ public class MainController {
     // FXML-injected UI components
     @FXML private StackPane contentPane;            // Central content area where views are loaded.
     @FXML private Label statusLabel;                  // Status bar to display feedback messages.
+    @FXML private Label rateLabel;                    // Status bar order rates of the last minute, hour and day.
     @FXML private TextField nameField;                // Text field for user to input their name.
     @FXML private ListView<String> orderSummaryView;  // Right panel order summary list.
+    @FXML private TextField calorieGoalField;         // Calorie goal for the whole order.
+    @FXML private Label remainingLabel;               // Calories left before the goal is reached.
+    @FXML private ListView<String> fillSuggestionsView; // Items suggested to fill the remaining calories.
 
     // Application data
+    private NutritionService service;                 // Core service shared with the console and batch front-ends.
     private Menu menu;                                // The menu containing available items.
-    private RecommendationEngine recommendationEngine; // Engine for generating order recommendations.
+    private OrderHistory orderHistory;                // Persistent order history (single file or sharded).
     private List<MenuItem> currentOrder;              // Stores items that have been added but not submitted.
-    private List<MenuItem> sessionOrders;             // Stores all items ordered during this session.
     private List<List<MenuItem>> currentRecommendations; // Holds the most recent set of generated recommendations.
+    private BudgetFillTable fillTable;                // Fill suggestions for every remaining budget, built once per customer and goal.
+    private String fillTableCustomer;                 // Customer the fill table was built for.
+    private List<MenuItem> fillSuggestions;           // Items currently shown in the fill suggestions list.
+
+    // Orders shown per page of the order history view.
+    private static final int HISTORY_PAGE_SIZE = 20;
+    // Chart settings: width of one bar group in pixels, and the date formats of the time axes.
+    private static final int PIXELS_PER_BAR = 40;
+    private static final DateTimeFormatter DAY_LABEL = DateTimeFormatter.ofPattern("MMM d, yyyy");
+    private static final DateTimeFormatter TIME_LABEL = DateTimeFormatter.ofPattern("MMM d HH:mm");
 
     /**
      * Initializes the controller.
@@ -53,21 +74,52 @@ public class MainController {
      */
     @FXML
     public void initialize() {
-        // Initialize the nutritional tracking data.
-        Tracker.initializeMenu();
-        // Create a new Menu instance.
-        menu = new Menu();
-        // Initialize the order lists.
-        currentOrder = new ArrayList<>();
-        sessionOrders = new ArrayList<>();
-        currentRecommendations = new ArrayList<>();
-        // Instantiate the RecommendationEngine with the current menu and OrderHistory instance.
-        recommendationEngine = new RecommendationEngine(menu, new OrderHistory());
-
-        // Set a default welcome message in the center content pane.
-        Label defaultLabel = new Label("Welcome! Please use the dashboard on the left to navigate.");
-        contentPane.getChildren().clear();
-        contentPane.getChildren().add(defaultLabel);
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("initialize", nameField.getText());
+        action.begin();
+        try {
+            // Initialize the nutritional tracking data.
+            Tracker.initializeMenu();
+            // The menu, order history, sessions and recommendation engine come from the shared service.
+            service = NutritionService.shared();
+            menu = service.getMenu();
+            orderHistory = service.getOrderHistory();
+            // Initialize the order lists.
+            currentOrder = new ArrayList<>();
+            currentRecommendations = new ArrayList<>();
+            fillSuggestions = new ArrayList<>();
+            // Fit the demand forecast in the background; the status bar shows it once it is ready.
+            service.startDemandForecaster();
+            // Refresh the order rates in the status bar every second.
+            Timeline rateRefresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> updateRates()));
+            rateRefresh.setCycleCount(Timeline.INDEFINITE);
+            rateRefresh.play();
+            updateRates();
+
+            // When an item sells out, rebuild the fill suggestions right away so they leave it out.
+            service.getInventory().addSoldOutListener(item -> Platform.runLater(() -> {
+                fillTable = null;
+                updateFillSuggestions();
+                statusLabel.setText(item.getName() + " just sold out.");
+            }));
+
+            // Double-clicking a fill suggestion adds that item to the current order.
+            fillSuggestionsView.setOnMouseClicked(event -> {
+                int index = fillSuggestionsView.getSelectionModel().getSelectedIndex();
+                if (event.getClickCount() == 2 && index >= 0 && index < fillSuggestions.size()) {
+                    MenuItem item = fillSuggestions.get(index);
+                    currentOrder.add(item);
+                    updateOrderSummary();
+                    statusLabel.setText(item.getName() + " added to order.");
+                }
+            });
+
+            // Set a default welcome message in the center content pane.
+            Label defaultLabel = new Label("Welcome! Please use the dashboard on the left to navigate.");
+            contentPane.getChildren().clear();
+            contentPane.getChildren().add(defaultLabel);
+        } finally {
+            action.commit();
+        }
     }
 
     /**
@@ -77,17 +129,28 @@ public class MainController {
      */
     @FXML
     public void handleSubmitName() {
-        String name = nameField.getText();
-        if (name == null || name.trim().isEmpty()) {
-            // Show a warning if the name is empty.
-            showAlert(Alert.AlertType.WARNING, "Name Required", "Please enter your name.");
-        } else {
-            // Update the status and display a greeting message.
-            statusLabel.setText("Welcome, " + name + "!");
-            Label greeting = new Label("Hello " + name + ", please use the dashboard on the left to navigate.");
-            greeting.setStyle("-fx-font-size: 18px;");
-            contentPane.getChildren().clear();
-            contentPane.getChildren().add(greeting);
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("handleSubmitName", nameField.getText());
+        action.begin();
+        try {
+            String name = nameField.getText();
+            if (name == null || name.trim().isEmpty()) {
+                // Show a warning if the name is empty.
+                showAlert(Alert.AlertType.WARNING, "Name Required", "Please enter your name.");
+            } else {
+                // Register the customer and start a fresh session for them now using the kiosk.
+                service.startSession(name);
+                // Suggestions depend on the customer, so rebuild them for the new name.
+                fillTable = null;
+                updateFillSuggestions();
+                // Update the status and display a greeting message.
+                statusLabel.setText("Welcome, " + name + "!");
+                Label greeting = new Label("Hello " + name + ", please use the dashboard on the left to navigate.");
+                greeting.setStyle("-fx-font-size: 18px;");
+                contentPane.getChildren().clear();
+                contentPane.getChildren().add(greeting);
+            }
+        } finally {
+            action.commit();
         }
     }
 
@@ -98,18 +161,24 @@ public class MainController {
      */
     @FXML
     public void handleViewMenu() {
-        ListView<String> menuList = new ListView<>();
-        // Loop through each item in the menu and display its nutritional details.
-        for (MenuItem item : menu.getItems()) {
-            List<Double> nutrition = Tracker.itemNutrition.get(item.getName());
-            String info = String.format("%s - %.0f cal, %.1fg protein, %.1fg carbs, %.1fg sugars, %.1fg fat",
-                    item.getName(), nutrition.get(0), nutrition.get(1), nutrition.get(2), nutrition.get(3), nutrition.get(4));
-            menuList.getItems().add(info);
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("handleViewMenu", nameField.getText());
+        action.begin();
+        try {
+            ListView<String> menuList = new ListView<>();
+            // Loop through each item in the menu and display its nutritional details.
+            // The values come from the item itself, so a location's regional items show their own.
+            for (MenuItem item : menu.getItems()) {
+                String info = String.format("%s - %.0f cal, %.1fg protein, %.1fg carbs, %.1fg sugars, %.1fg fat",
+                        item.getName(), item.getCalories(), item.getProtein(), item.getCarbs(), item.getSugars(), item.getFat());
+                menuList.getItems().add(service.isAvailable(item) ? info : info + " (sold out)");
+            }
+            menuList.setPrefHeight(400);
+            statusLabel.setText("Viewing Menu");
+            contentPane.getChildren().clear();
+            contentPane.getChildren().add(menuList);
+        } finally {
+            action.commit();
         }
-        menuList.setPrefHeight(400);
-        statusLabel.setText("Viewing Menu");
-        contentPane.getChildren().clear();
-        contentPane.getChildren().add(menuList);
     }
 
     /**
@@ -120,118 +189,250 @@ public class MainController {
      */
     @FXML
     public void handlePlaceOrder() {
-        HBox orderInterface = new HBox(20);
-        orderInterface.setPadding(new Insets(10));
-
-        // Create a FlowPane to hold the clickable item images.
-        FlowPane itemsFlowPane = new FlowPane();
-        itemsFlowPane.setHgap(15);
-        itemsFlowPane.setVgap(15);
-        itemsFlowPane.setPrefWidth(500);
-
-        // Loop through each item in the menu to create its corresponding UI box.
-        for (MenuItem item : menu.getItems()) {
-            VBox itemBox = new VBox(5);
-            itemBox.setAlignment(Pos.CENTER);
-            // Retrieve the image path for the item.
-            String imagePath = getImagePath(item.getName());
-            ImageView imageView;
-            try {
-                imageView = new ImageView(new Image(getClass().getResourceAsStream(imagePath)));
-            } catch (Exception ex) {
-                // Fallback: Create an empty ImageView if image is not found.
-                imageView = new ImageView();
-            }
-            imageView.setFitWidth(100);
-            imageView.setFitHeight(100);
-            imageView.setPreserveRatio(true);
-
-            // Display basic nutritional info (calories and protein).
-            List<Double> nutrition = Tracker.itemNutrition.get(item.getName());
-            String info = String.format("%.0f cal\n%.1fg protein", nutrition.get(0), nutrition.get(1));
-            Label nameLabel = new Label(item.getName());
-            Label infoLabel = new Label(info);
-            itemBox.getChildren().addAll(imageView, nameLabel, infoLabel);
-
-            // Set an on-click event to open a detailed pop-up window.
-            itemBox.setOnMouseClicked(e -> {
-                // Create the pop-up stage.
-                Stage popupStage = new Stage();
-                VBox popupBox = new VBox(10);
-                popupBox.setAlignment(Pos.CENTER);
-                popupBox.setPadding(new Insets(10));
-                popupBox.getStyleClass().add("content-pane");
-                // Create an enlarged image for a better view.
-                ImageView enlargedImage = new ImageView(new Image(getClass().getResourceAsStream(getImagePath(item.getName()))));
-                enlargedImage.setFitWidth(300);
-                enlargedImage.setFitHeight(300);
-                enlargedImage.setPreserveRatio(true);
-                // Prepare detailed nutritional info.
-                String detailedInfo = String.format("%s\n%.0f cal, %.1fg protein, %.1fg carbs, %.1fg sugars, %.1fg fat",
-                        item.getName(), nutrition.get(0), nutrition.get(1), nutrition.get(2), nutrition.get(3), nutrition.get(4));
-                Label detailedInfoLabel = new Label(detailedInfo);
-                // "Add to Order" button in the pop-up.
-                Button addButton = new Button("Add to Order");
-                addButton.setOnAction(ev -> {
-                    // Add the item to the current order and update the summary.
-                    currentOrder.add(item);
-                    updateOrderSummary();
-                    statusLabel.setText(item.getName() + " added to order.");
-                    popupStage.close();
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("handlePlaceOrder", nameField.getText());
+        action.begin();
+        try {
+            HBox orderInterface = new HBox(20);
+            orderInterface.setPadding(new Insets(10));
+
+            // Create a FlowPane to hold the clickable item images.
+            FlowPane itemsFlowPane = new FlowPane();
+            itemsFlowPane.setHgap(15);
+            itemsFlowPane.setVgap(15);
+            itemsFlowPane.setPrefWidth(500);
+
+            // Loop through each item in the menu to create its corresponding UI box.
+            for (MenuItem item : menu.getItems()) {
+                VBox itemBox = new VBox(5);
+                itemBox.setAlignment(Pos.CENTER);
+                // Retrieve the image path for the item.
+                String imagePath = getImagePath(item.getName());
+                ImageView imageView;
+                try {
+                    imageView = new ImageView(new Image(getClass().getResourceAsStream(imagePath)));
+                } catch (Exception ex) {
+                    // Fallback: Create an empty ImageView if image is not found.
+                    imageView = new ImageView();
+                }
+                imageView.setFitWidth(100);
+                imageView.setFitHeight(100);
+                imageView.setPreserveRatio(true);
+
+                // Display basic nutritional info (calories and protein).
+                String info = String.format("%.0f cal\n%.1fg protein", item.getCalories(), item.getProtein());
+                if (!service.isAvailable(item)) {
+                    info += "\nSold out";
+                }
+                Label nameLabel = new Label(item.getName());
+                Label infoLabel = new Label(info);
+                itemBox.getChildren().addAll(imageView, nameLabel, infoLabel);
+
+                // Set an on-click event to open a detailed pop-up window.
+                itemBox.setOnMouseClicked(e -> {
+                    // Create the pop-up stage.
+                    Stage popupStage = new Stage();
+                    VBox popupBox = new VBox(10);
+                    popupBox.setAlignment(Pos.CENTER);
+                    popupBox.setPadding(new Insets(10));
+                    popupBox.getStyleClass().add("content-pane");
+                    // Create an enlarged image for a better view.
+                    ImageView enlargedImage = new ImageView(new Image(getClass().getResourceAsStream(getImagePath(item.getName()))));
+                    enlargedImage.setFitWidth(300);
+                    enlargedImage.setFitHeight(300);
+                    enlargedImage.setPreserveRatio(true);
+                    // Prepare detailed nutritional info.
+                    String detailedInfo = String.format("%s\n%.0f cal, %.1fg protein, %.1fg carbs, %.1fg sugars, %.1fg fat",
+                            item.getName(), item.getCalories(), item.getProtein(), item.getCarbs(), item.getSugars(), item.getFat());
+                    Label detailedInfoLabel = new Label(detailedInfo);
+                    // "Add to Order" button in the pop-up.
+                    Button addButton = new Button("Add to Order");
+                    // Sold-out items can be looked at but not added.
+                    addButton.setDisable(!service.isAvailable(item));
+                    addButton.setOnAction(ev -> {
+                        // Add the item to the current order and update the summary.
+                        currentOrder.add(item);
+                        updateOrderSummary();
+                        statusLabel.setText(item.getName() + " added to order.");
+                        popupStage.close();
+                    });
+                    popupBox.getChildren().addAll(enlargedImage, detailedInfoLabel, addButton);
+                    Scene popupScene = new Scene(popupBox);
+                    popupStage.setScene(popupScene);
+                    popupStage.setTitle(item.getName());
+                    popupStage.show();
                 });
-                popupBox.getChildren().addAll(enlargedImage, detailedInfoLabel, addButton);
-                Scene popupScene = new Scene(popupBox);
-                popupStage.setScene(popupScene);
-                popupStage.setTitle(item.getName());
-                popupStage.show();
-            });
-            itemsFlowPane.getChildren().add(itemBox);
+                itemsFlowPane.getChildren().add(itemBox);
+            }
+            orderInterface.getChildren().addAll(itemsFlowPane);
+            statusLabel.setText("Place your order by clicking on items.");
+            contentPane.getChildren().clear();
+            contentPane.getChildren().add(orderInterface);
+        } finally {
+            action.commit();
         }
-        orderInterface.getChildren().addAll(itemsFlowPane);
-        statusLabel.setText("Place your order by clicking on items.");
-        contentPane.getChildren().clear();
-        contentPane.getChildren().add(orderInterface);
     }
 
     /**
      * Displays the order history for the current user.
      * <p>
-     * Reads the order history from a file ("order_history.txt") and shows only entries for the entered customer name.
+     * Reads the order history (a single file or the customer's shard) and shows only entries for the entered customer name.
+     * Only one page of {@link #HISTORY_PAGE_SIZE} orders is read at a time; the Next button continues
+     * reading from the cursor of the shown page instead of reading the history from the start.
      */
     @FXML
     public void handleViewOrderHistory() {
-        String customerName = nameField.getText();
-        if (customerName == null || customerName.trim().isEmpty()) {
-            statusLabel.setText("Please enter your name at the top to view order history.");
-            return;
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("handleViewOrderHistory", nameField.getText());
+        action.begin();
+        try {
+            String customerName = nameField.getText();
+            if (customerName == null || customerName.trim().isEmpty()) {
+                statusLabel.setText("Please enter your name at the top to view order history.");
+                return;
+            }
+            VBox historyBox = new VBox(10);
+            historyBox.setPadding(new Insets(10));
+            Label historyLabel = new Label("Order History for: " + customerName);
+            ListView<String> historyList = new ListView<>();
+            historyList.setPrefHeight(300);
+            Label pageLabel = new Label();
+            Button previousButton = new Button("Previous");
+            Button nextButton = new Button("Next");
+            // Start cursor of every page shown so far; the last one is the current page.
+            List<HistoryQuery.Cursor> pageStarts = new ArrayList<>();
+            pageStarts.add(null);
+            Runnable showPage = () -> {
+                HistoryQuery.Cursor start = pageStarts.get(pageStarts.size() - 1);
+                // Only the customer's own records are read (a single shard when the history is sharded).
+                HistoryQuery.Page page = service.queryHistory().customer(customerName)
+                        .limit(HISTORY_PAGE_SIZE).after(start).page();
+                historyList.getItems().clear();
+                for (HistoryRecord record : page.getRecords()) {
+                    historyList.getItems().add("Date: " + record.getDateTime()
+                            + " - Calories: " + record.getTotalCalories()
+                            + " - Items: " + String.join(",", record.getItems()));
+                }
+                if (page.getRecords().isEmpty()) {
+                    historyList.getItems().add("No order history found for " + customerName);
+                }
+                pageLabel.setText("Page " + pageStarts.size());
+                previousButton.setDisable(pageStarts.size() == 1);
+                nextButton.setDisable(!page.hasNext());
+                nextButton.setUserData(page.getNext());
+            };
+            previousButton.setOnAction(event -> {
+                pageStarts.remove(pageStarts.size() - 1);
+                showPage.run();
+            });
+            nextButton.setOnAction(event -> {
+                pageStarts.add((HistoryQuery.Cursor) nextButton.getUserData());
+                showPage.run();
+            });
+            showPage.run();
+            HBox pageButtons = new HBox(10, previousButton, pageLabel, nextButton);
+            pageButtons.setAlignment(Pos.CENTER_LEFT);
+            historyBox.getChildren().addAll(historyLabel, historyList, pageButtons);
+            statusLabel.setText("Viewing Order History");
+            contentPane.getChildren().clear();
+            contentPane.getChildren().add(historyBox);
+        } finally {
+            action.commit();
         }
-        OrderHistory orderHistory = new OrderHistory();
-        VBox historyBox = new VBox(10);
-        historyBox.setPadding(new Insets(10));
-        Label historyLabel = new Label("Order History for: " + customerName);
-        TextArea historyArea = new TextArea();
-        historyArea.setEditable(false);
-        historyArea.setPrefHeight(300);
-        StringBuilder historyContent = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new FileReader("order_history.txt"))) {
-            String line;
-            // Parse each line to filter by customer name.
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length == 4 && parts[0].equals(customerName)) {
-                    historyContent.append("Date: ").append(parts[1])
-                            .append(" - Calories: ").append(parts[2])
-                            .append(" - Items: ").append(parts[3]).append("\n");
+    }
+
+    /**
+     * Displays charts of the customer's calories and macros over time.
+     * <p>
+     * The calorie line is reduced with {@link Downsampler#lttb} to at most one point per pixel of the
+     * content pane, and the macro bars are averaged into one bar group per {@link #PIXELS_PER_BAR}
+     * pixels, so the drawing cost depends on the window size rather than on the number of orders.
+     */
+    @FXML
+    public void handleViewTrends() {
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("handleViewTrends", nameField.getText());
+        action.begin();
+        try {
+            String customerName = nameField.getText();
+            if (customerName == null || customerName.trim().isEmpty()) {
+                statusLabel.setText("Please enter your name at the top to view your trends.");
+                return;
+            }
+            ZoneId zone = ZoneId.systemDefault();
+            NutritionTrend trend = NutritionTrend.load(orderHistory, menu, customerName, zone);
+            if (trend.size() == 0) {
+                statusLabel.setText("No orders to chart for " + customerName + ".");
+                return;
+            }
+            double width = Math.max(300, contentPane.getWidth());
+            double[] times = trend.getTimes();
+            double[] calories = trend.getSeries(NutritionTrend.CALORIES);
+
+            // Line chart of calories per order; the x axis is epoch seconds shown as dates.
+            NumberAxis timeAxis = new NumberAxis();
+            timeAxis.setForceZeroInRange(false);
+            timeAxis.setLabel("Date");
+            timeAxis.setTickLabelFormatter(new StringConverter<Number>() {
+                @Override
+                public String toString(Number seconds) {
+                    return DAY_LABEL.format(Instant.ofEpochSecond(seconds.longValue()).atZone(zone));
+                }
+
+                @Override
+                public Number fromString(String text) {
+                    return null;
+                }
+            });
+            NumberAxis calorieAxis = new NumberAxis();
+            calorieAxis.setLabel("Calories");
+            LineChart<Number, Number> calorieChart = new LineChart<>(timeAxis, calorieAxis);
+            calorieChart.setTitle("Calories per Order");
+            calorieChart.setCreateSymbols(false);
+            calorieChart.setAnimated(false);
+            calorieChart.setLegendVisible(false);
+            XYChart.Series<Number, Number> calorieSeries = new XYChart.Series<>();
+            for (int i : Downsampler.lttb(times, calories, (int) width)) {
+                calorieSeries.getData().add(new XYChart.Data<>(times[i], calories[i]));
+            }
+            calorieChart.getData().add(calorieSeries);
+
+            // Bar chart of the average protein, carbs and fat per order over time buckets.
+            int bucketCount = Math.max(1, (int) (width / PIXELS_PER_BAR));
+            Downsampler.Buckets buckets = Downsampler.bucketMeans(times, new double[][]{
+                    trend.getSeries(NutritionTrend.PROTEIN),
+                    trend.getSeries(NutritionTrend.CARBS),
+                    trend.getSeries(NutritionTrend.FAT)}, bucketCount);
+            boolean shortBuckets = (times[times.length - 1] - times[0]) / bucketCount < 24 * 60 * 60;
+            DateTimeFormatter bucketLabel = shortBuckets ? TIME_LABEL : DAY_LABEL;
+            List<String> categories = new ArrayList<>();
+            for (int b = 0; b < buckets.size(); b++) {
+                String label = bucketLabel.format(Instant.ofEpochSecond((long) buckets.getStart(b)).atZone(zone));
+                // Categories must be unique; number repeats of the same label.
+                categories.add(categories.contains(label) ? label + " (" + (b + 1) + ")" : label);
+            }
+            CategoryAxis bucketAxis = new CategoryAxis();
+            NumberAxis gramsAxis = new NumberAxis();
+            gramsAxis.setLabel("Grams per order");
+            BarChart<String, Number> macroChart = new BarChart<>(bucketAxis, gramsAxis);
+            macroChart.setTitle("Average Macros per Order");
+            macroChart.setAnimated(false);
+            String[] macroNames = {"Protein", "Carbs", "Fat"};
+            for (int s = 0; s < macroNames.length; s++) {
+                XYChart.Series<String, Number> macroSeries = new XYChart.Series<>();
+                macroSeries.setName(macroNames[s]);
+                for (int b = 0; b < buckets.size(); b++) {
+                    macroSeries.getData().add(new XYChart.Data<>(categories.get(b), buckets.getMean(s, b)));
                 }
+                macroChart.getData().add(macroSeries);
             }
-        } catch (Exception ex) {
-            historyContent.append("Error reading order history.");
+
+            VBox trendBox = new VBox(10);
+            trendBox.setPadding(new Insets(10));
+            trendBox.getChildren().addAll(new Label("Nutrition Trends for: " + customerName), calorieChart, macroChart);
+            statusLabel.setText("Viewing Trends (" + trend.size() + " orders)");
+            contentPane.getChildren().clear();
+            contentPane.getChildren().add(trendBox);
+        } finally {
+            action.commit();
         }
-        historyArea.setText(historyContent.toString());
-        historyBox.getChildren().addAll(historyLabel, historyArea);
-        statusLabel.setText("Viewing Order History");
-        contentPane.getChildren().clear();
-        contentPane.getChildren().add(historyBox);
     }
 
     /**
@@ -239,17 +440,23 @@ public class MainController {
      */
     @FXML
     public void handleAbout() {
-        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-        alert.setTitle("About This Program");
-        alert.setHeaderText("McDonald's Nutrition Tracker");
-        alert.setContentText(
-                "Version: 1.0\n" +
-                        "Creators: Shayan Shaikh, Arash Ajdari, Haris Naveed\n\n" +
-                        "Contact: shayan.shaikh@ucalgary.ca\n\n" +
-                        "This app helps you view, build, and track McDonald's orders\n" +
-                        "based on nutritional goals. Designed for CPSC 233 Demo 3."
-        );
-        alert.showAndWait();
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("handleAbout", nameField.getText());
+        action.begin();
+        try {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("About This Program");
+            alert.setHeaderText("McDonald's Nutrition Tracker");
+            alert.setContentText(
+                    "Version: 1.0\n" +
+                            "Creators: Shayan Shaikh, Arash Ajdari, Haris Naveed\n\n" +
+                            "Contact: shayan.shaikh@ucalgary.ca\n\n" +
+                            "This app helps you view, build, and track McDonald's orders\n" +
+                            "based on nutritional goals. Designed for CPSC 233 Demo 3."
+            );
+            alert.showAndWait();
+        } finally {
+            action.commit();
+        }
     }
 
 
@@ -258,72 +465,109 @@ public class MainController {
      * <p>
      * Allows the user to input desired calories, generates multiple recommendations via RecommendationEngine,
      * and displays them in a list. Double-clicking on a recommendation will add that recommended set to the current order.
+     * Dietary filters (vegetarian, no gluten, no dairy, high protein, low sugar) restrict the items used.
      */
     @FXML
     public void handleRecommendOrder() {
-        VBox recommendBox = new VBox(10);
-        recommendBox.setPadding(new Insets(10));
-        Label titleLabel = new Label("Order Recommendations");
-        HBox inputBox = new HBox(10);
-        inputBox.setAlignment(Pos.CENTER_LEFT);
-        Label caloriesLabel = new Label("Desired Calories:");
-        TextField caloriesField = new TextField();
-        Button generateButton = new Button("Generate");
-        inputBox.getChildren().addAll(caloriesLabel, caloriesField, generateButton);
-        ListView<String> recommendationListView = new ListView<>();
-        recommendationListView.setPrefHeight(200);
-
-        // Handle recommendation generation on button click.
-        generateButton.setOnAction(e -> {
-            int desiredCalories;
-            try {
-                desiredCalories = Integer.parseInt(caloriesField.getText());
-            } catch (NumberFormatException ex) {
-                statusLabel.setText("Please enter a valid calorie amount.");
-                return;
-            }
-            String customerName = nameField.getText();
-            if (customerName == null || customerName.trim().isEmpty()) {
-                statusLabel.setText("Please enter your name at the top.");
-                return;
-            }
-            // Generate recommendations using the RecommendationEngine.
-            currentRecommendations = recommendationEngine.generateRecommendations(customerName, desiredCalories, sessionOrders);
-            recommendationListView.getItems().clear();
-            int option = 1;
-            // Format each recommendation option for display.
-            for (List<MenuItem> rec : currentRecommendations) {
-                double totalCals = 0;
-                StringBuilder recString = new StringBuilder("Option " + option + ": ");
-                for (MenuItem item : rec) {
-                    List<Double> nut = Tracker.itemNutrition.get(item.getName());
-                    totalCals += nut.get(0);
-                    recString.append(item.getName())
-                            .append(" (").append(nut.get(0).intValue()).append(" cal), ");
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("handleRecommendOrder", nameField.getText());
+        action.begin();
+        try {
+            VBox recommendBox = new VBox(10);
+            recommendBox.setPadding(new Insets(10));
+            Label titleLabel = new Label("Order Recommendations");
+            HBox inputBox = new HBox(10);
+            inputBox.setAlignment(Pos.CENTER_LEFT);
+            Label caloriesLabel = new Label("Desired Calories:");
+            TextField caloriesField = new TextField();
+            Button generateButton = new Button("Generate");
+            inputBox.getChildren().addAll(caloriesLabel, caloriesField, generateButton);
+            // Dietary filters, resolved through the menu's attribute index.
+            HBox filterBox = new HBox(10);
+            filterBox.setAlignment(Pos.CENTER_LEFT);
+            CheckBox vegetarianBox = new CheckBox("Vegetarian");
+            CheckBox noGlutenBox = new CheckBox("No gluten");
+            CheckBox noDairyBox = new CheckBox("No dairy");
+            CheckBox highProteinBox = new CheckBox("High protein");
+            CheckBox lowSugarBox = new CheckBox("Low sugar");
+            filterBox.getChildren().addAll(vegetarianBox, noGlutenBox, noDairyBox, highProteinBox, lowSugarBox);
+            ListView<String> recommendationListView = new ListView<>();
+            recommendationListView.setPrefHeight(200);
+
+            // Handle recommendation generation on button click.
+            generateButton.setOnAction(e -> {
+                TrackerEvents.UiAction generate = new TrackerEvents.UiAction("generateRecommendations", nameField.getText());
+                generate.begin();
+                try {
+                    int desiredCalories;
+                    try {
+                        desiredCalories = Integer.parseInt(caloriesField.getText());
+                    } catch (NumberFormatException ex) {
+                        statusLabel.setText("Please enter a valid calorie amount.");
+                        return;
+                    }
+                    String customerName = nameField.getText();
+                    if (customerName == null || customerName.trim().isEmpty()) {
+                        statusLabel.setText("Please enter your name at the top.");
+                        return;
+                    }
+                    // Build the dietary filter from the ticked boxes.
+                    MenuIndex.Query filter = service.getMenuIndex().query();
+                    if (vegetarianBox.isSelected()) filter.with(ItemAttribute.VEGETARIAN);
+                    if (noGlutenBox.isSelected()) filter.without(ItemAttribute.CONTAINS_GLUTEN);
+                    if (noDairyBox.isSelected()) filter.without(ItemAttribute.CONTAINS_DAIRY);
+                    if (highProteinBox.isSelected()) filter.atLeast(MenuIndex.Nutrient.PROTEIN, MenuIndex.HIGH_PROTEIN_GRAMS);
+                    if (lowSugarBox.isSelected()) filter.atMost(MenuIndex.Nutrient.SUGARS, MenuIndex.LOW_SUGAR_GRAMS);
+                    boolean filtered = vegetarianBox.isSelected() || noGlutenBox.isSelected() || noDairyBox.isSelected()
+                            || highProteinBox.isSelected() || lowSugarBox.isSelected();
+                    // Generate recommendations using the shared service's RecommendationEngine.
+                    currentRecommendations = service.recommend(customerName, desiredCalories,
+                            filtered ? filter.matches() : null);
+                    recommendationListView.getItems().clear();
+                    int option = 1;
+                    // Format each recommendation option for display.
+                    for (List<MenuItem> rec : currentRecommendations) {
+                        double totalCals = 0;
+                        StringBuilder recString = new StringBuilder("Option " + option + ": ");
+                        for (MenuItem item : rec) {
+                            totalCals += item.getCalories();
+                            recString.append(item.getName())
+                                    .append(" (").append((int) item.getCalories()).append(" cal), ");
+                        }
+                        recString.append("Total: ").append((int) totalCals).append(" cal");
+                        recommendationListView.getItems().add(recString.toString());
+                        option++;
+                    }
+                    if (currentRecommendations.isEmpty()) {
+                        statusLabel.setText(filtered
+                                ? "No menu item matches the filters within " + desiredCalories + " calories."
+                                : "No menu item fits within " + desiredCalories + " calories.");
+                        return;
+                    }
+                    statusLabel.setText("Recommendations generated. Double-click an option to add it to your order.");
+                } finally {
+                    generate.commit();
                 }
-                recString.append("Total: ").append((int) totalCals).append(" cal");
-                recommendationListView.getItems().add(recString.toString());
-                option++;
-            }
-            statusLabel.setText("Recommendations generated. Double-click an option to add it to your order.");
-        });
-
-        // Double-click listener: add selected recommended order to the current order.
-        recommendationListView.setOnMouseClicked(event -> {
-            if (event.getClickCount() == 2) {
-                int index = recommendationListView.getSelectionModel().getSelectedIndex();
-                if (index >= 0 && index < currentRecommendations.size()) {
-                    List<MenuItem> selectedRec = currentRecommendations.get(index);
-                    currentOrder.addAll(selectedRec);
-                    updateOrderSummary();
-                    statusLabel.setText("Recommended order added to your current order.");
+            });
+
+            // Double-click listener: add selected recommended order to the current order.
+            recommendationListView.setOnMouseClicked(event -> {
+                if (event.getClickCount() == 2) {
+                    int index = recommendationListView.getSelectionModel().getSelectedIndex();
+                    if (index >= 0 && index < currentRecommendations.size()) {
+                        List<MenuItem> selectedRec = currentRecommendations.get(index);
+                        currentOrder.addAll(selectedRec);
+                        updateOrderSummary();
+                        statusLabel.setText("Recommended order added to your current order.");
+                    }
                 }
-            }
-        });
+            });
 
-        recommendBox.getChildren().addAll(titleLabel, inputBox, recommendationListView);
-        contentPane.getChildren().clear();
-        contentPane.getChildren().add(recommendBox);
+            recommendBox.getChildren().addAll(titleLabel, inputBox, filterBox, recommendationListView);
+            contentPane.getChildren().clear();
+            contentPane.getChildren().add(recommendBox);
+        } finally {
+            action.commit();
+        }
     }
 
     /**
@@ -334,27 +578,38 @@ public class MainController {
      */
     @FXML
     public void handleSubmitCurrentOrder() {
-        String customerName = nameField.getText();
-        if (customerName == null || customerName.trim().isEmpty()) {
-            showAlert(Alert.AlertType.WARNING, "Name Required", "Please enter your name at the top.");
-            return;
-        }
-        if (currentOrder.isEmpty()) {
-            showAlert(Alert.AlertType.WARNING, "Empty Order", "Your order is empty.");
-            return;
-        }
-        // Create and store the order.
-        Order order = new Order(customerName);
-        for (MenuItem item : currentOrder) {
-            order.addItem(item);
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("handleSubmitCurrentOrder", nameField.getText());
+        action.begin();
+        try {
+            String customerName = nameField.getText();
+            if (customerName == null || customerName.trim().isEmpty()) {
+                showAlert(Alert.AlertType.WARNING, "Name Required", "Please enter your name at the top.");
+                return;
+            }
+            if (currentOrder.isEmpty()) {
+                showAlert(Alert.AlertType.WARNING, "Empty Order", "Your order is empty.");
+                return;
+            }
+            // Create and store the order.
+            Order order = new Order(customerName);
+            for (MenuItem item : currentOrder) {
+                order.addItem(item);
+            }
+            // Stored through the shared service; the history also publishes it on the order event bus.
+            if (!service.placeOrder(order)) {
+                showAlert(Alert.AlertType.WARNING, "Order Not Placed",
+                        "Sorry, an item in your order just sold out or the order could not be saved. Please check your order and submit again.");
+                return;
+            }
+            currentOrder.clear();
+            // The customer's habits just changed, so the fill table is rebuilt with the new order counted.
+            fillTable = null;
+            updateOrderSummary();
+            statusLabel.setText("Order submitted and saved.");
+            showAlert(Alert.AlertType.INFORMATION, "Order Submitted", "Your order has been submitted successfully!");
+        } finally {
+            action.commit();
         }
-        OrderHistory oh = new OrderHistory();
-        oh.storeOrder(order);
-        sessionOrders.addAll(currentOrder);
-        currentOrder.clear();
-        updateOrderSummary();
-        statusLabel.setText("Order submitted and saved.");
-        showAlert(Alert.AlertType.INFORMATION, "Order Submitted", "Your order has been submitted successfully!");
     }
 
     /**
@@ -362,9 +617,15 @@ public class MainController {
      */
     @FXML
     public void handleClearOrder() {
-        currentOrder.clear();
-        updateOrderSummary();
-        statusLabel.setText("Order cleared.");
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("handleClearOrder", nameField.getText());
+        action.begin();
+        try {
+            currentOrder.clear();
+            updateOrderSummary();
+            statusLabel.setText("Order cleared.");
+        } finally {
+            action.commit();
+        }
     }
 
     /**
@@ -375,11 +636,114 @@ public class MainController {
     private void updateOrderSummary() {
         orderSummaryView.getItems().clear();
         for (MenuItem orderItem : currentOrder) {
-            List<Double> nut = Tracker.itemNutrition.get(orderItem.getName());
             String summary = String.format("%s - %.0f cal, %.1fg protein",
-                    orderItem.getName(), nut.get(0), nut.get(1));
+                    orderItem.getName(), orderItem.getCalories(), orderItem.getProtein());
             orderSummaryView.getItems().add(summary);
         }
+        updateFillSuggestions();
+    }
+
+    /**
+     * Sets the calorie goal used for the fill suggestions.
+     * <p>
+     * Called when Enter is pressed in the calorie goal field. The fill table is rebuilt for the new goal.
+     */
+    @FXML
+    public void handleSetCalorieGoal() {
+        TrackerEvents.UiAction action = new TrackerEvents.UiAction("handleSetCalorieGoal", nameField.getText());
+        action.begin();
+        try {
+            fillTable = null;
+            updateFillSuggestions();
+            if (fillTable != null) {
+                statusLabel.setText("Calorie goal set to " + fillTable.getGoal() + " cal.");
+            }
+        } finally {
+            action.commit();
+        }
+    }
+
+    /**
+     * Shows the orders of the last minute, hour and day of this service's location in the status
+     * bar, with the item sold most in the last hour and, once the {@link DemandForecaster} is
+     * fitted, the item expected to sell most in the next hour. The counts come from the shared
+     * {@link OrderRateCounters} and the forecasts from the forecaster's snapshots, so reading them
+     * does not touch the history.
+     */
+    private void updateRates() {
+        OrderRateCounters rates = OrderRateCounters.shared();
+        String source = orderHistory.getEventSource();
+        List<String> top = rates.topItems(source, OrderRateCounters.Window.HOUR, 1);
+        String text = String.format("Orders: %d last minute, %d last hour, %d last day",
+                rates.orders(source, OrderRateCounters.Window.MINUTE),
+                rates.orders(source, OrderRateCounters.Window.HOUR),
+                rates.orders(source, OrderRateCounters.Window.DAY));
+        if (!top.isEmpty()) {
+            text += String.format(" | Top item: %s (%d/h)", top.get(0),
+                    rates.items(source, top.get(0), OrderRateCounters.Window.HOUR));
+        }
+        DemandForecaster forecaster = service.getDemandForecasterIfReady();
+        if (forecaster != null) {
+            LocalDateTime nextHour = LocalDateTime.now().plusHours(1);
+            String busiest = null;
+            double expected = 0;
+            for (String item : forecaster.getItems()) {
+                double forecast = forecaster.forecast(item, nextHour);
+                if (forecast > expected) {
+                    busiest = item;
+                    expected = forecast;
+                }
+            }
+            if (busiest != null) {
+                text += String.format(" | Next hour: %s (about %.0f)", busiest, expected);
+            }
+        }
+        rateLabel.setText(text);
+    }
+
+    /**
+     * Updates the fill suggestions below the order summary.
+     * <p>
+     * The suggestions fill the calories left between the calorie goal and the current order.
+     * The {@link BudgetFillTable} is only built when the customer or the goal changes; every other
+     * update (each item added or removed) is a lookup in the table.
+     */
+    private void updateFillSuggestions() {
+        fillSuggestionsView.getItems().clear();
+        fillSuggestions = new ArrayList<>();
+        String customerName = nameField.getText();
+        int goal;
+        try {
+            goal = Integer.parseInt(calorieGoalField.getText().trim());
+        } catch (NumberFormatException ex) {
+            remainingLabel.setText("Set a calorie goal for suggestions.");
+            return;
+        }
+        if (customerName == null || customerName.trim().isEmpty() || goal <= 0) {
+            remainingLabel.setText("Set your name and a calorie goal for suggestions.");
+            return;
+        }
+        // Rebuild the table only when the customer or the goal changed.
+        if (fillTable == null || !customerName.equals(fillTableCustomer)
+                || fillTable.getGoal() != Math.min(goal, BudgetFillTable.MAX_GOAL)) {
+            fillTable = service.buildFillTable(customerName, goal);
+            fillTableCustomer = customerName;
+        }
+
+        double orderCalories = 0;
+        for (MenuItem item : currentOrder) {
+            orderCalories += item.getCalories();
+        }
+        int remaining = (int) Math.floor(goal - orderCalories);
+        if (remaining <= 0) {
+            remainingLabel.setText("Calorie goal reached (" + (int) orderCalories + " cal).");
+            return;
+        }
+        fillSuggestions = fillTable.fill(remaining);
+        remainingLabel.setText(remaining + " cal left. Double-click to add:");
+        for (MenuItem item : fillSuggestions) {
+            fillSuggestionsView.getItems().add(String.format("%s - %.0f cal", item.getName(), item.getCalories()));
+        }
     }
 
     /**
@@ -21,6 +21,15 @@ public class MainGUI extends Application {
     }
 
     public static void main(String[] args) {
+        // Serve one location instead of the default history: --location <id>.
+        if (args.length == 2 && args[0].equals("--location")) {
+            try {
+                NutritionService.useLocation(args[1]);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error opening location: " + e.getMessage());
+                return;
+            }
+        }
         launch();
     }
 }
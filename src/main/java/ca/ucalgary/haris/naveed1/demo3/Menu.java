@@ -17,18 +17,33 @@ import java.util.List;
             initializeDefaultMenu();
         }
 
-        // Private method to create default menu items.
+        // Constructor for a menu with its own items, for example a location's regional menu.
+        public Menu(List<MenuItem> items) {
+            this.items = new ArrayList<>(items);
+        }
+
+        // Private method to create default menu items, with their dietary attributes.
         // Abstraction is used here to hide the details of how items are added to the menu.
         private void initializeDefaultMenu() {
-            items.add(new MenuItem("Big Mac", 570.0, 24.0, 46.0, 8.0, 32.0));
-            items.add(new MenuItem("McChicken", 400.0, 14.0, 44.0, 5.0, 22.0));
-            items.add(new MenuItem("Filet-O-Fish", 410.0, 15.0, 44.0, 5.0, 20.0));
-            items.add(new MenuItem("Cheeseburger", 290.0, 15.0, 32.0, 7.0, 11.0));
-            items.add(new MenuItem("Small Fries", 220.0, 3.0, 29.0, 0.0, 10.0));
-            items.add(new MenuItem("Medium Fries", 340.0, 5.0, 45.0, 0.0, 17.0));
-            items.add(new MenuItem("Large Fries", 450.0, 6.0, 63.0, 0.0, 22.0));
-            items.add(new MenuItem("McFlurry Regular", 650.0, 13.0, 101.0, 83.0, 22.0));
-            items.add(new MenuItem("McFlurry Snack Size", 430.0, 9.0, 66.0, 54.0, 15.0));
+            items.add(new MenuItem("Big Mac", 570.0, 24.0, 46.0, 8.0, 32.0,
+                    ItemAttribute.CONTAINS_GLUTEN, ItemAttribute.CONTAINS_DAIRY, ItemAttribute.CONTAINS_EGG, ItemAttribute.CONTAINS_SOY));
+            items.add(new MenuItem("McChicken", 400.0, 14.0, 44.0, 5.0, 22.0,
+                    ItemAttribute.CONTAINS_GLUTEN, ItemAttribute.CONTAINS_EGG, ItemAttribute.CONTAINS_SOY));
+            items.add(new MenuItem("Filet-O-Fish", 410.0, 15.0, 44.0, 5.0, 20.0,
+                    ItemAttribute.CONTAINS_GLUTEN, ItemAttribute.CONTAINS_DAIRY, ItemAttribute.CONTAINS_EGG,
+                    ItemAttribute.CONTAINS_FISH, ItemAttribute.CONTAINS_SOY));
+            items.add(new MenuItem("Cheeseburger", 290.0, 15.0, 32.0, 7.0, 11.0,
+                    ItemAttribute.CONTAINS_GLUTEN, ItemAttribute.CONTAINS_DAIRY, ItemAttribute.CONTAINS_SOY));
+            items.add(new MenuItem("Small Fries", 220.0, 3.0, 29.0, 0.0, 10.0,
+                    ItemAttribute.VEGETARIAN));
+            items.add(new MenuItem("Medium Fries", 340.0, 5.0, 45.0, 0.0, 17.0,
+                    ItemAttribute.VEGETARIAN));
+            items.add(new MenuItem("Large Fries", 450.0, 6.0, 63.0, 0.0, 22.0,
+                    ItemAttribute.VEGETARIAN));
+            items.add(new MenuItem("McFlurry Regular", 650.0, 13.0, 101.0, 83.0, 22.0,
+                    ItemAttribute.VEGETARIAN, ItemAttribute.CONTAINS_GLUTEN, ItemAttribute.CONTAINS_DAIRY, ItemAttribute.CONTAINS_SOY));
+            items.add(new MenuItem("McFlurry Snack Size", 430.0, 9.0, 66.0, 54.0, 15.0,
+                    ItemAttribute.VEGETARIAN, ItemAttribute.CONTAINS_GLUTEN, ItemAttribute.CONTAINS_DAIRY, ItemAttribute.CONTAINS_SOY));
         }
 
         // Provides access to the list of items.
@@ -0,0 +1,286 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The {@code MenuIndex} class answers dietary filters over a menu ("vegetarian, no dairy, at least
+ * 15 g of protein") with bit operations instead of checking every item against every condition.
+ * <p>
+ * Bit {@code i} of every set stands for the item at position {@code i} of the menu. The index keeps
+ * <ul>
+ *   <li>one {@link BitSet} per {@link ItemAttribute}: the items that have the attribute, and</li>
+ *   <li>for each {@link Nutrient}, one {@link BitSet} per range bucket of fixed width (for example
+ *   100 calories): the items whose amount falls in that bucket.</li>
+ * </ul>
+ * A {@link Query} starts with all items and narrows them with {@code and}/{@code andNot} of those
+ * sets, and queries can be combined with {@code or}. {@link BitSet} does this a 64-bit word at a
+ * time, so a compound filter costs a few word operations per 64 items. Only the items in the two
+ * edge buckets of a nutrient range have their actual amount checked.
+ * <p>
+ * The index is built once from a menu and is read-only afterwards, so it can be shared between threads.
+ */
+public class MenuIndex {
+    // Suggested thresholds for the "high protein" and "low sugar" filters, in grams per item.
+    public static final double HIGH_PROTEIN_GRAMS = 15;
+    public static final double LOW_SUGAR_GRAMS = 5;
+    // Amounts above the last bucket all go into the last bucket.
+    private static final int MAX_BUCKETS = 64;
+
+    /**
+     * The nutrients the index keeps range buckets for, with the bucket width of each.
+     */
+    public enum Nutrient {
+        CALORIES(100, MenuItem::getCalories),
+        PROTEIN(5, MenuItem::getProtein),
+        CARBS(10, MenuItem::getCarbs),
+        SUGARS(5, MenuItem::getSugars),
+        FAT(5, MenuItem::getFat);
+
+        private final double bucketWidth;
+        private final ToDoubleFunction<MenuItem> amount;
+
+        Nutrient(double bucketWidth, ToDoubleFunction<MenuItem> amount) {
+            this.bucketWidth = bucketWidth;
+            this.amount = amount;
+        }
+
+        /**
+         * Returns this nutrient's amount in an item.
+         *
+         * @param item the menu item.
+         * @return the amount (calories or grams).
+         */
+        public double of(MenuItem item) {
+            return amount.applyAsDouble(item);
+        }
+
+        // Bucket of an amount; negative amounts go into the first bucket, large ones into the last.
+        private int bucket(double value) {
+            return (int) Math.max(0, Math.min(MAX_BUCKETS - 1, Math.floor(value / bucketWidth)));
+        }
+    }
+
+    private final List<MenuItem> items;
+    // Items with each attribute, by attribute ordinal.
+    private final BitSet[] byAttribute;
+    // Items in each bucket, by nutrient ordinal and bucket.
+    private final BitSet[][] byBucket;
+
+    /**
+     * Builds the index of a menu.
+     *
+     * @param menu the menu; later changes to it are not seen by the index.
+     */
+    public MenuIndex(Menu menu) {
+        this(menu.getItems());
+    }
+
+    /**
+     * Builds the index of a list of items.
+     *
+     * @param items the items; bit {@code i} of every set stands for {@code items.get(i)}.
+     */
+    public MenuIndex(List<MenuItem> items) {
+        this.items = List.copyOf(items);
+        byAttribute = new BitSet[ItemAttribute.values().length];
+        for (int a = 0; a < byAttribute.length; a++) {
+            byAttribute[a] = new BitSet(this.items.size());
+        }
+        byBucket = new BitSet[Nutrient.values().length][MAX_BUCKETS];
+        for (BitSet[] buckets : byBucket) {
+            for (int b = 0; b < buckets.length; b++) {
+                buckets[b] = new BitSet(this.items.size());
+            }
+        }
+        for (int i = 0; i < this.items.size(); i++) {
+            MenuItem item = this.items.get(i);
+            for (ItemAttribute attribute : item.getAttributes()) {
+                byAttribute[attribute.ordinal()].set(i);
+            }
+            for (Nutrient nutrient : Nutrient.values()) {
+                byBucket[nutrient.ordinal()][nutrient.bucket(nutrient.of(item))].set(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of items in the index.
+     *
+     * @return the item count.
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Returns the items with an attribute.
+     *
+     * @param attribute the attribute.
+     * @return a new set of item positions.
+     */
+    public BitSet withAttribute(ItemAttribute attribute) {
+        return (BitSet) byAttribute[attribute.ordinal()].clone();
+    }
+
+    /**
+     * Returns the items whose amount of a nutrient lies in {@code [min, max]}.
+     * <p>
+     * The buckets between the bucket of {@code min} and the bucket of {@code max} are OR-ed
+     * together; only the items in those two edge buckets are checked against their actual amount.
+     *
+     * @param nutrient the nutrient.
+     * @param min      the smallest allowed amount.
+     * @param max      the largest allowed amount.
+     * @return a new set of item positions.
+     */
+    public BitSet inRange(Nutrient nutrient, double min, double max) {
+        BitSet result = new BitSet(items.size());
+        if (min > max) {
+            return result;
+        }
+        BitSet[] buckets = byBucket[nutrient.ordinal()];
+        int first = nutrient.bucket(min);
+        int last = nutrient.bucket(max);
+        for (int b = first; b <= last; b++) {
+            result.or(buckets[b]);
+        }
+        // Edge buckets may hold items just outside the range.
+        removeOutside(result, buckets[first], nutrient, min, max);
+        if (last != first) {
+            removeOutside(result, buckets[last], nutrient, min, max);
+        }
+        return result;
+    }
+
+    /**
+     * Clears the items of one bucket whose amount lies outside {@code [min, max]}.
+     */
+    private void removeOutside(BitSet result, BitSet bucket, Nutrient nutrient, double min, double max) {
+        for (int i = bucket.nextSetBit(0); i >= 0; i = bucket.nextSetBit(i + 1)) {
+            double value = nutrient.of(items.get(i));
+            if (value < min || value > max) {
+                result.clear(i);
+            }
+        }
+    }
+
+    /**
+     * Returns every item.
+     *
+     * @return a new set with all item positions.
+     */
+    public BitSet all() {
+        BitSet result = new BitSet(items.size());
+        result.set(0, items.size());
+        return result;
+    }
+
+    /**
+     * Returns the items at the positions of a set.
+     *
+     * @param positions the item positions.
+     * @return the items, in menu order.
+     */
+    public List<MenuItem> items(BitSet positions) {
+        List<MenuItem> result = new ArrayList<>(positions.cardinality());
+        for (int i = positions.nextSetBit(0); i >= 0 && i < items.size(); i = positions.nextSetBit(i + 1)) {
+            result.add(items.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Starts a query that matches every item.
+     *
+     * @return a new query.
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * A compound filter. Every condition narrows the current matches with an AND; {@link #or(Query)}
+     * widens them with the matches of another query. For example, vegetarian items without dairy,
+     * or any high-protein item:
+     * <pre>
+     * index.query().with(VEGETARIAN).without(CONTAINS_DAIRY)
+     *      .or(index.query().atLeast(Nutrient.PROTEIN, MenuIndex.HIGH_PROTEIN_GRAMS))
+     *      .matches();
+     * </pre>
+     */
+    public class Query {
+        private final BitSet matches = all();
+
+        private Query() {
+        }
+
+        /**
+         * Keeps only the items with an attribute.
+         */
+        public Query with(ItemAttribute attribute) {
+            matches.and(byAttribute[attribute.ordinal()]);
+            return this;
+        }
+
+        /**
+         * Keeps only the items without an attribute, for example without an allergen.
+         */
+        public Query without(ItemAttribute attribute) {
+            matches.andNot(byAttribute[attribute.ordinal()]);
+            return this;
+        }
+
+        /**
+         * Keeps only the items whose amount of a nutrient lies in {@code [min, max]}.
+         */
+        public Query between(Nutrient nutrient, double min, double max) {
+            matches.and(inRange(nutrient, min, max));
+            return this;
+        }
+
+        /**
+         * Keeps only the items with at least {@code min} of a nutrient.
+         */
+        public Query atLeast(Nutrient nutrient, double min) {
+            return between(nutrient, min, Double.MAX_VALUE);
+        }
+
+        /**
+         * Keeps only the items with at most {@code max} of a nutrient.
+         */
+        public Query atMost(Nutrient nutrient, double max) {
+            return between(nutrient, -Double.MAX_VALUE, max);
+        }
+
+        /**
+         * Adds the matches of another query.
+         */
+        public Query or(Query other) {
+            matches.or(other.matches);
+            return this;
+        }
+
+        /**
+         * Returns the positions of the matching items.
+         *
+         * @return a new set of item positions.
+         */
+        public BitSet matches() {
+            return (BitSet) matches.clone();
+        }
+
+        /**
+         * Returns the matching items.
+         *
+         * @return the items, in menu order.
+         */
+        public List<MenuItem> items() {
+            return MenuIndex.this.items(matches);
+        }
+    }
+}
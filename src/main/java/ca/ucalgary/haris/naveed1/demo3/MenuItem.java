@@ -5,6 +5,9 @@
 // It employs encapsulation to protect its fields and provides getters for accessing its data.
 package ca.ucalgary.haris.naveed1.demo3;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 public class MenuItem {
     // Private fields ensure that the properties are hidden from external modification.
@@ -14,6 +17,8 @@ public class MenuItem {
     private double carbs;
     private double sugars;
     private double fat;
+    // Dietary attributes such as vegetarian or the allergens the item contains.
+    private Set<ItemAttribute> attributes;
 
     // Constructor to initialize all properties of a MenuItem.
     // This is an example of abstraction, where the details of item creation are hidden behind the constructor.
@@ -24,6 +29,18 @@ public class MenuItem {
         this.carbs = carbs;
         this.sugars = sugars;
         this.fat = fat;
+        this.attributes = Collections.emptySet();
+    }
+
+    // Constructor that also records the item's dietary attributes.
+    public MenuItem(String name, double calories, double protein, double carbs, double sugars, double fat,
+                    ItemAttribute... attributes) {
+        this(name, calories, protein, carbs, sugars, fat);
+        if (attributes.length > 0) {
+            EnumSet<ItemAttribute> set = EnumSet.noneOf(ItemAttribute.class);
+            Collections.addAll(set, attributes);
+            this.attributes = Collections.unmodifiableSet(set);
+        }
     }
 
     // Getter methods provide read-only access to private fields (encapsulation).
@@ -33,6 +50,8 @@ public class MenuItem {
     public double getCarbs() { return carbs; }
     public double getSugars() { return sugars; }
     public double getFat() { return fat; }
+    public Set<ItemAttribute> getAttributes() { return attributes; }
+    public boolean hasAttribute(ItemAttribute attribute) { return attributes.contains(attribute); }
 
     // Override of the toString() method to provide a meaningful representation.
     // This is an example of polymorphism via method overriding.
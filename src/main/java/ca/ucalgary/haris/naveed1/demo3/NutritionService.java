@@ -0,0 +1,453 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code NutritionService} class is the one core layer behind every front-end: the console
+ * ({@link inputs} and {@link NutritionTrackerApp}), the batch import ({@link BatchIngester}) and the
+ * JavaFX GUI ({@link MainController}).
+ * <p>
+ * It owns, once per process,
+ * <ul>
+ *   <li>the warm catalog: the {@link Menu}, a name-to-item map and the {@link FuzzyItemMatcher},</li>
+ *   <li>the {@link OrderHistory} with its {@link HistoryIndex} (the per-customer item counts),</li>
+ *   <li>the {@link RecommendationEngine} with its precomputed table, trending items and menu index,</li>
+ *   <li>the {@link Inventory} of items left, checked when orders are placed and when recommending,</li>
+ *   <li>the {@link DemandForecaster} of expected orders per item and hour, and</li>
+ *   <li>the {@link SessionStore} of the items each customer ordered in their current session.</li>
+ * </ul>
+ * Because every front-end goes through the same instance, a cache built for one (the history index,
+ * the trending counts, the menu index) is used by all of them, and there is only one implementation
+ * of storing orders, item lookups, recommendations and calorie totals.
+ * <p>
+ * The recommendation engine is set up on first use, so a batch import that only stores records does
+ * not pay for the trending scan of the whole history.
+ */
+public class NutritionService {
+    // The service the applications share; created on first use.
+    private static NutritionService shared;
+
+    private final Menu menu;
+    // Exact item name to item, so lookups of known names do not scan the menu.
+    private final Map<String, MenuItem> itemsByName;
+    private final FuzzyItemMatcher itemMatcher;
+    private final OrderHistory orderHistory;
+    private final SessionStore sessions;
+    // Table of precomputed recommendations to serve first, if it exists.
+    private final File precomputedFile;
+    private final Inventory inventory;
+    // Created by getRecommendationEngine() on first use.
+    private volatile RecommendationEngine recommendationEngine;
+    // Created by getDemandForecaster() on first use.
+    private volatile DemandForecaster demandForecaster;
+
+    /**
+     * Creates a service over an order history, with the default menu.
+     *
+     * @param orderHistory the order history to read and store orders in.
+     */
+    public NutritionService(OrderHistory orderHistory) {
+        this(new Menu(), orderHistory);
+    }
+
+    /**
+     * Creates a service over a menu and an order history.
+     *
+     * @param menu         the menu (catalog) of items.
+     * @param orderHistory the order history to read and store orders in.
+     */
+    public NutritionService(Menu menu, OrderHistory orderHistory) {
+        this(menu, orderHistory, new File(PrecomputedRecommendations.RECOMMENDATIONS_FILE),
+                new File(Inventory.INVENTORY_FILE));
+    }
+
+    /**
+     * Creates a service over a menu and an order history whose precomputed recommendations and
+     * starting stock are kept in their own files, as a {@link Location}'s are.
+     *
+     * @param menu            the menu (catalog) of items.
+     * @param orderHistory    the order history to read and store orders in.
+     * @param precomputedFile the precomputed recommendations file.
+     * @param inventoryFile   the file with the starting stock counts.
+     */
+    NutritionService(Menu menu, OrderHistory orderHistory, File precomputedFile, File inventoryFile) {
+        this.menu = menu;
+        this.precomputedFile = precomputedFile;
+        this.inventory = Inventory.load(menu, inventoryFile);
+        this.orderHistory = orderHistory;
+        itemsByName = new HashMap<>();
+        for (MenuItem item : menu.getItems()) {
+            itemsByName.put(item.getName(), item);
+        }
+        itemMatcher = FuzzyItemMatcher.forMenu(menu);
+        sessions = SessionStore.forItems(orderHistory.getItemDictionary());
+        // Count order rates from the first stored order on; one consumer covers every location.
+        OrderRateCounters.shared();
+    }
+
+    /**
+     * Makes the applications of this process serve one {@link Location} instead of the default
+     * history: the shared service becomes that location's service. Call it at start-up, before
+     * anything uses {@link #shared()}.
+     *
+     * @param locationId the id of the location.
+     * @throws IllegalArgumentException if the id is not a valid location id.
+     * @throws IllegalStateException    if the shared service is already in use.
+     */
+    public static synchronized void useLocation(String locationId) {
+        if (shared != null) {
+            throw new IllegalStateException("The shared service is already open");
+        }
+        shared = LocationRegistry.shared().get(locationId).getService();
+    }
+
+    /**
+     * Returns the service the applications share, opening the default order history on first use
+     * unless a location was chosen with {@link #useLocation(String)}.
+     *
+     * @return the shared service.
+     */
+    public static synchronized NutritionService shared() {
+        if (shared == null) {
+            shared = new NutritionService(OrderHistory.openDefault());
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the menu.
+     *
+     * @return the menu.
+     */
+    public Menu getMenu() {
+        return menu;
+    }
+
+    /**
+     * Returns the order history.
+     *
+     * @return the order history.
+     */
+    public OrderHistory getOrderHistory() {
+        return orderHistory;
+    }
+
+    /**
+     * Returns the inventory of items left.
+     *
+     * @return the inventory.
+     */
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * Tells whether an item can be ordered right now.
+     *
+     * @param item the menu item.
+     * @return false if the item is sold out.
+     */
+    public boolean isAvailable(MenuItem item) {
+        return inventory.isAvailable(item);
+    }
+
+    /**
+     * Returns the session store.
+     *
+     * @return the session store.
+     */
+    public SessionStore getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Returns the recommendation engine, setting it up on first use with the precomputed table
+     * (if one is available) and the trending items of the history.
+     *
+     * @return the recommendation engine.
+     */
+    public RecommendationEngine getRecommendationEngine() {
+        RecommendationEngine engine = recommendationEngine;
+        if (engine == null) {
+            synchronized (this) {
+                engine = recommendationEngine;
+                if (engine == null) {
+                    engine = new RecommendationEngine(menu, orderHistory);
+                    // Serve recommendations precomputed by the batch job first, if a table is available.
+                    engine.setPrecomputedRecommendations(PrecomputedRecommendations.loadIfPresent(precomputedFile, menu, orderHistory));
+                    // Rank items the customer has not tried yet by what is trending across all customers.
+                    engine.setTrendingItems(TrendingItems.forHistory(orderHistory));
+                    recommendationEngine = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Returns the demand forecaster of this service's history, fitting it to the whole history on
+     * first use and keeping it current with the orders stored afterwards.
+     *
+     * @return the demand forecaster; without history if the history could not be read.
+     */
+    public DemandForecaster getDemandForecaster() {
+        DemandForecaster forecaster = demandForecaster;
+        if (forecaster == null) {
+            synchronized (this) {
+                forecaster = demandForecaster;
+                if (forecaster == null) {
+                    try {
+                        forecaster = DemandForecaster.bootstrap(orderHistory, Runtime.getRuntime().availableProcessors());
+                    } catch (IOException e) {
+                        System.out.println("Error reading order history: " + e.getMessage());
+                        forecaster = new DemandForecaster(orderHistory.getEventSource());
+                    }
+                    forecaster.subscribe(OrderEventBus.shared());
+                    demandForecaster = forecaster;
+                }
+            }
+        }
+        return forecaster;
+    }
+
+    /**
+     * Starts fitting the demand forecaster on a background thread, so a front-end can show
+     * forecasts without waiting for the pass over the history (see
+     * {@link #getDemandForecasterIfReady()}).
+     */
+    public void startDemandForecaster() {
+        if (demandForecaster == null) {
+            Thread thread = new Thread(this::getDemandForecaster, "demand-forecast");
+            thread.setDaemon(true); // do not keep the application alive
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns the demand forecaster if it has been fitted, without waiting for it.
+     *
+     * @return the forecaster, or {@code null} while it is still being fitted or was never started.
+     */
+    public DemandForecaster getDemandForecasterIfReady() {
+        return demandForecaster;
+    }
+
+    /**
+     * Returns the dietary filter index of the menu.
+     *
+     * @return the menu index.
+     */
+    public MenuIndex getMenuIndex() {
+        return getRecommendationEngine().getMenuIndex();
+    }
+
+    /**
+     * Starts a fresh session for a customer. The customer only gets a customer id once an order of
+     * theirs is stored, so names typed at a prompt are not kept in the customer dictionary.
+     *
+     * @param customerName the customer's name.
+     */
+    public void startSession(String customerName) {
+        sessions.start(customerName);
+    }
+
+    /**
+     * Returns the menu item with exactly this name.
+     *
+     * @param name the item name.
+     * @return the item, or {@code null} if the menu has no such item.
+     */
+    public MenuItem getItem(String name) {
+        return itemsByName.get(name);
+    }
+
+    /**
+     * Returns the menu item meant by what a user typed, forgiving case, unfinished names and small
+     * typos (see {@link FuzzyItemMatcher#bestMatch(String)}).
+     *
+     * @param input the text the user typed.
+     * @return the item, or {@code null} if no single item matches.
+     */
+    public MenuItem matchItem(String input) {
+        String name = itemMatcher.bestMatch(input);
+        return name == null ? null : itemsByName.get(name);
+    }
+
+    /**
+     * Returns the item names closest to what a user typed, for a "did you mean" message.
+     *
+     * @param input the text the user typed.
+     * @param limit the most names to return.
+     * @return the closest names, best first.
+     */
+    public List<String> suggestions(String input, int limit) {
+        return itemMatcher.suggestions(input, limit);
+    }
+
+    /**
+     * Returns the menu items with the given names, skipping names that are not on the menu.
+     *
+     * @param names the item names.
+     * @return the items, in the same order.
+     */
+    public List<MenuItem> toItems(Collection<String> names) {
+        List<MenuItem> items = new ArrayList<>(names.size());
+        for (String name : names) {
+            MenuItem item = itemsByName.get(name);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Adds up the calories of the named items; names that are not on the menu count as 0.
+     *
+     * @param names the item names.
+     * @return the total calories.
+     */
+    public double totalCalories(Collection<String> names) {
+        double sum = 0;
+        for (String name : names) {
+            MenuItem item = itemsByName.get(name);
+            if (item != null) {
+                sum += item.getCalories();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Places a finished order: takes its items out of the inventory, stores the order in the
+     * history and adds its items to the customer's session. If an item is sold out or the order
+     * cannot be written, nothing is changed: the items go back into the inventory.
+     *
+     * @param order the order to place.
+     * @return false if the order could not be placed because an item is sold out or writing failed.
+     */
+    public boolean placeOrder(Order order) {
+        if (!inventory.tryReserve(order.getItems())) {
+            return false;
+        }
+        if (!orderHistory.storeOrder(order)) {
+            inventory.release(order.getItems());
+            return false;
+        }
+        sessions.addItems(order.getCustomerName(), order.getItems());
+        return true;
+    }
+
+    /**
+     * Stores an order given by item names with an already known calorie total, stamped with the
+     * current time; {@link OrderHistory#storeRecords(List)} publishes it on the shared
+     * {@link OrderEventBus}. The items are taken out of the inventory first;
+     * they are not added to the session, see {@link #placeOrder(Order)}.
+     *
+     * @param customerName  the customer's name.
+     * @param itemNames     the ordered item names.
+     * @param totalCalories the total calories of the order.
+     * @return false if the order was not stored because an item is sold out or writing failed.
+     */
+    public boolean storeOrder(String customerName, List<String> itemNames, double totalCalories) {
+        List<MenuItem> items = toItems(itemNames);
+        if (!inventory.tryReserve(items)) {
+            return false;
+        }
+        HistoryRecord record = new HistoryRecord(customerName, HistoryRecord.formatTime(LocalDateTime.now()),
+                totalCalories, new ArrayList<>(itemNames));
+        try {
+            orderHistory.storeRecords(List.of(record));
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error writing order history: " + e.getMessage());
+            inventory.release(items);
+            return false;
+        }
+    }
+
+    /**
+     * Returns a customer's stored orders, oldest first.
+     *
+     * @param customerName the customer's name.
+     * @return the customer's records.
+     */
+    public List<HistoryRecord> customerRecords(String customerName) {
+        return orderHistory.findCustomerRecords(customerName);
+    }
+
+    /**
+     * Starts a lazy query over the stored orders (see {@link HistoryQuery}).
+     *
+     * @return a query that matches every record.
+     */
+    public HistoryQuery queryHistory() {
+        return orderHistory.query();
+    }
+
+    /**
+     * Recommends distinct orders within a calorie budget, counting the customer's session items.
+     *
+     * @param customerName    the customer's name.
+     * @param desiredCalories the calorie budget.
+     * @return the recommended orders, best first; empty if no item fits.
+     */
+    public List<List<MenuItem>> recommend(String customerName, int desiredCalories) {
+        return recommend(customerName, desiredCalories, null);
+    }
+
+    /**
+     * Recommends distinct orders within a calorie budget, using only the allowed items that are not
+     * sold out.
+     *
+     * @param customerName    the customer's name.
+     * @param desiredCalories the calorie budget.
+     * @param allowed         positions of the allowed items in the {@link #getMenuIndex() menu index},
+     *                        or {@code null} for every item.
+     * @return the recommended orders, best first; empty if no allowed item fits.
+     */
+    public List<List<MenuItem>> recommend(String customerName, int desiredCalories, BitSet allowed) {
+        return getRecommendationEngine().generateRecommendations(customerName, desiredCalories,
+                sessions.menuItems(customerName, menu), inStock(allowed));
+    }
+
+    /**
+     * Builds the table of fill suggestions for a customer and calorie goal.
+     *
+     * @param customerName the customer's name.
+     * @param calorieGoal  the calorie goal of the whole order.
+     * @return the fill table.
+     */
+    public BudgetFillTable buildFillTable(String customerName, int calorieGoal) {
+        return getRecommendationEngine().buildBudgetFillTable(customerName, calorieGoal,
+                sessions.menuItems(customerName, menu), inStock(null));
+    }
+
+    /**
+     * Narrows a set of allowed menu positions to the items that are not sold out.
+     *
+     * @param allowed the allowed positions, or {@code null} for every item.
+     * @return the allowed items in stock; {@code allowed} itself if nothing is sold out, so the
+     *         unfiltered (and precomputed) path is kept when every item is available.
+     */
+    private BitSet inStock(BitSet allowed) {
+        if (!inventory.hasSoldOutItems()) {
+            return allowed;
+        }
+        BitSet available = inventory.availableItems();
+        if (allowed != null) {
+            available.and(allowed);
+        }
+        return available;
+    }
+}
@@ -25,29 +25,27 @@ public class NutritionTrackerApp {
     private Menu menu;                           // Represents the menu of items.
     // OrderHistory handles persistent storage and retrieval of past orders.
     private OrderHistory orderHistory;           // Manages storing and retrieving order history.
-    // RecommendationEngine provides logic to generate order recommendations.
-    private RecommendationEngine recommendationEngine; // Provides order recommendation logic.
-    // sessionOrders holds all orders (items) placed during the current session.
-    private List<MenuItem> sessionOrders;        // Stores orders for the current session.
     // customerName stores the name of the current user.
     private String customerName;                 // Holds the customer's name (encapsulation).
+    // service is the core layer shared with the other front-ends: sessions, recommendations and item lookup.
+    private NutritionService service;            // Shared catalog, history, sessions and recommendations.
 
     /**
      * Constructs a NutritionTrackerApp instance with the given customer name.
      * <p>
-     * Dependency injection is demonstrated here: the customer's name is passed in
-     * and other components (Scanner, Menu, OrderHistory, RecommendationEngine) are instantiated internally.
+     * Dependency injection is demonstrated here: the customer's name is passed in, the Scanner is
+     * created internally, and the other components (Menu, OrderHistory, RecommendationEngine, SessionStore)
+     * come from the shared {@link NutritionService}.
      *
      * @param customerName the name of the customer.
      */
     public NutritionTrackerApp(String customerName) {
         this.customerName = customerName;
         this.scanner = new Scanner(System.in);         // Initialize the Scanner for input.
-        this.menu = new Menu();                          // Instantiate the Menu with available items.
-        this.orderHistory = new OrderHistory();          // Create an OrderHistory instance.
-        // Instantiate RecommendationEngine using the created Menu and OrderHistory.
-        this.recommendationEngine = new RecommendationEngine(menu, orderHistory);
-        this.sessionOrders = new ArrayList<>();          // Initialize session orders as an empty list.
+        this.service = NutritionService.shared();        // The warm catalog, history and engine of this process.
+        this.menu = service.getMenu();                   // The Menu with available items.
+        this.orderHistory = service.getOrderHistory();   // The (single file or sharded) OrderHistory.
+        service.startSession(customerName);              // Start with an empty session for this customer.
     }
 
     /**
@@ -112,7 +110,7 @@ public class NutritionTrackerApp {
         System.out.println("\nMcDonald's Menu:");
         // Loop through all items in the menu and print their names.
         for (MenuItem item : menu.getItems()) {
-            System.out.println("- " + item.getName());
+            System.out.println("- " + item.getName() + (service.isAvailable(item) ? "" : " (sold out)"));
         }
     }
 
@@ -133,16 +131,13 @@ public class NutritionTrackerApp {
             // Check if the user has finished adding items.
             if (input.equalsIgnoreCase("done")) break;
             // Retrieve the MenuItem object corresponding to the input name.
-            MenuItem item = menu.getItemByName(input);
+            MenuItem item = findItem(input);
             if (item != null) {
                 // If found, add the item to the current order.
                 order.addItem(item);
                 System.out.println(item.getName() + " added to your order.");
                 // Display the current order summary after addition.
                 printOrderSummary(order);
-            } else {
-                // Inform the user that the item name is invalid.
-                System.out.println("Invalid item name. Please try again.");
             }
         }
 
@@ -160,10 +155,10 @@ public class NutritionTrackerApp {
             editOrder(order);
         }
 
-        // Save the finalized order items to the session log.
-        sessionOrders.addAll(order.getItems());
-        // Persist the order data to a file.
-        orderHistory.storeOrder(order);
+        // Save the finalized order items to the session log and persist the order data to a file.
+        if (!service.placeOrder(order)) {
+            System.out.println("Sorry, an item in your order just sold out or the order could not be saved. The order was not placed.");
+        }
     }
 
     /**
@@ -194,7 +189,11 @@ public class NutritionTrackerApp {
         }
 
         // Generate a list of recommended orders via the RecommendationEngine.
-        List<List<MenuItem>> recommendations = recommendationEngine.generateRecommendations(customerName, desiredCalories, sessionOrders);
+        List<List<MenuItem>> recommendations = service.recommend(customerName, desiredCalories);
+        if (recommendations.isEmpty()) {
+            System.out.println("No menu item fits within " + desiredCalories + " calories.");
+            return;
+        }
         System.out.println("Recommended Orders:");
         // Iterate through and display each recommended order with its total calories.
         for (int i = 0; i < recommendations.size(); i++) {
@@ -209,7 +208,7 @@ public class NutritionTrackerApp {
             System.out.println((i + 1) + ". Total Calories: " + totalCals + " | Items: " + String.join(", ", names));
         }
 
-        System.out.print("Choose an option (1-3): ");
+        System.out.print("Choose an option (1-" + recommendations.size() + "): ");
         int option;
         try {
             option = Integer.parseInt(scanner.nextLine());
@@ -218,7 +217,7 @@ public class NutritionTrackerApp {
             return;
         }
 
-        if (option < 1 || option > 3) {
+        if (option < 1 || option > recommendations.size()) {
             System.out.println("Invalid option. Aborting recommendation.");
             return;
         }
@@ -234,8 +233,9 @@ public class NutritionTrackerApp {
         // Allow the user to modify the recommended order if desired.
         editOrder(recommendedOrder);
         // Update the session orders and persist the order.
-        sessionOrders.addAll(recommendedOrder.getItems());
-        orderHistory.storeOrder(recommendedOrder);
+        if (!service.placeOrder(recommendedOrder)) {
+            System.out.println("Sorry, an item in your order just sold out or the order could not be saved. The order was not placed.");
+        }
     }
 
     /**
@@ -275,6 +275,28 @@ public class NutritionTrackerApp {
         System.out.printf(rowFormat, "TOTAL", totalCalories, totalProtein, totalCarbs, totalSugars, totalFat);
     }
 
+    /**
+     * Finds the menu item meant by a typed name, forgiving case, unfinished names and small typos.
+     * <p>
+     * If no single item matches, the user is told so, with the closest item names if there are any.
+     *
+     * @param input the typed item name.
+     * @return the menu item, or {@code null} if there was no single match.
+     */
+    private MenuItem findItem(String input) {
+        MenuItem item = service.matchItem(input);
+        if (item == null) {
+            List<String> suggestions = service.suggestions(input, 3);
+            System.out.println(suggestions.isEmpty()
+                    ? "Invalid item name. Please try again."
+                    : "Invalid item name. Did you mean: " + String.join(", ", suggestions) + "?");
+        } else if (!service.isAvailable(item)) {
+            System.out.println(item.getName() + " is sold out. Please choose something else.");
+            return null;
+        }
+        return item;
+    }
+
     /**
      * Allows the user to interactively modify an order by adding or removing items.
      * <p>
@@ -303,12 +325,10 @@ public class NutritionTrackerApp {
                 System.out.print("Enter item name to add: ");
                 String newItemName = scanner.nextLine();
                 // Retrieve the MenuItem using its name.
-                MenuItem newItem = menu.getItemByName(newItemName);
+                MenuItem newItem = findItem(newItemName);
                 if (newItem != null) {
                     order.addItem(newItem);
                     System.out.println(newItem.getName() + " added.");
-                } else {
-                    System.out.println("Invalid item name.");
                 }
                 // Print updated order summary.
                 printOrderSummary(order);
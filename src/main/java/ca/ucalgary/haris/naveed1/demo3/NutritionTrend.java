@@ -0,0 +1,114 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code NutritionTrend} class holds a customer's orders as parallel time series: order time,
+ * calories, protein, carbs and fat per order, sorted by time.
+ * <p>
+ * The history only stores the total calories of an order, so the macros are added up from the
+ * menu's nutrition values of the ordered items. Items no longer on the menu count as zero.
+ * Orders whose time cannot be read are left out.
+ * <p>
+ * The series are plain {@code double[]} arrays so they can be handed to {@link Downsampler}.
+ */
+public class NutritionTrend {
+    // Indexes of the series in getSeries().
+    public static final int CALORIES = 0;
+    public static final int PROTEIN = 1;
+    public static final int CARBS = 2;
+    public static final int FAT = 3;
+
+    private final double[] times;
+    private final double[][] series;
+
+    private NutritionTrend(double[] times, double[][] series) {
+        this.times = times;
+        this.series = series;
+    }
+
+    /**
+     * Builds the trend of one customer from the order history.
+     *
+     * @param orderHistory the history to read.
+     * @param menu         the menu used to look up the macros of the ordered items.
+     * @param customerName the customer's name.
+     * @param zone         the time zone the stored local times are interpreted in.
+     * @return the customer's series.
+     */
+    public static NutritionTrend load(OrderHistory orderHistory, Menu menu, String customerName, ZoneId zone) {
+        List<HistoryRecord> records = orderHistory.findCustomerRecords(customerName);
+        List<double[]> rows = new ArrayList<>(records.size());
+        String lastTimeText = null;
+        double lastTime = 0;
+        for (HistoryRecord record : records) {
+            if (!record.getDateTime().equals(lastTimeText)) {
+                LocalDateTime time = HistoryRecord.parseTime(record.getDateTime());
+                lastTimeText = record.getDateTime();
+                lastTime = time == null ? Double.NaN : time.atZone(zone).toEpochSecond();
+            }
+            if (Double.isNaN(lastTime)) {
+                continue;
+            }
+            double protein = 0;
+            double carbs = 0;
+            double fat = 0;
+            for (String name : record.getItems()) {
+                MenuItem item = menu.getItemByName(name);
+                if (item != null) {
+                    protein += item.getProtein();
+                    carbs += item.getCarbs();
+                    fat += item.getFat();
+                }
+            }
+            rows.add(new double[]{lastTime, record.getTotalCalories(), protein, carbs, fat});
+        }
+        // Records are in file order, which is almost always time order; sort to be safe.
+        rows.sort((a, b) -> Double.compare(a[0], b[0]));
+
+        double[] times = new double[rows.size()];
+        double[][] series = new double[4][rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            double[] row = rows.get(i);
+            times[i] = row[0];
+            for (int s = 0; s < 4; s++) {
+                series[s][i] = row[s + 1];
+            }
+        }
+        return new NutritionTrend(times, series);
+    }
+
+    /**
+     * Returns the number of orders in the trend.
+     *
+     * @return the order count.
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Returns the order times in epoch seconds, ascending.
+     *
+     * @return the times (a copy).
+     */
+    public double[] getTimes() {
+        return Arrays.copyOf(times, times.length);
+    }
+
+    /**
+     * Returns one series.
+     *
+     * @param index {@link #CALORIES}, {@link #PROTEIN}, {@link #CARBS} or {@link #FAT}.
+     * @return the values per order (a copy).
+     */
+    public double[] getSeries(int index) {
+        return Arrays.copyOf(series[index], series[index].length);
+    }
+}
@@ -0,0 +1,370 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The {@code OrderEventBus} class hands every placed order to background consumers (aggregates,
+ * metrics, caches) without making the customer wait for them for more than a moment.
+ * <p>
+ * The bus is a ring buffer of a fixed power-of-two size. Publishing an order writes it into the
+ * next slot and moves the publish sequence forward; nothing else happens on the caller's thread.
+ * Each consumer has its own thread and its own sequence (the last event it has handled):
+ * <ul>
+ *   <li><b>Batching:</b> a consumer that fell behind gets every waiting event in one go, with
+ *   {@code endOfBatch} set on the last one, so it can flush once per batch instead of once per order.</li>
+ *   <li><b>Backpressure:</b> a slot is only reused after every consumer has handled it. If the
+ *   slowest consumer is a whole ring behind, {@link #publish(HistoryRecord)} waits for it instead of
+ *   overwriting events it has not seen, but only for up to the bus's maximum wait
+ *   ({@link #DEFAULT_MAX_WAIT_MILLIS} by default). Orders are published on the thread that stores
+ *   them, which can be the GUI's, so if the consumer is still stuck after that the event is dropped:
+ *   the order itself is already stored, only the consumers miss it. {@link #getDropped()} counts
+ *   the dropped events.</li>
+ *   <li><b>Lag:</b> {@link Subscription#getLag()} (or {@link #getLags()}) tells how many published
+ *   events a consumer has not handled yet.</li>
+ * </ul>
+ * Publishing is synchronized, so the bus has a single producer at a time even when the console, the
+ * GUI and the history all publish. Consumers read the slots without a lock: a slot cannot be
+ * reused while they are still behind it.
+ * <p>
+ * There is one shared bus per process (see {@link #shared()}); {@link OrderHistory#storeOrder(Order)}
+ * and {@link OrderHistory#storeRecords(List)} publish every order they store to it. Every event carries the source it came from, the
+ * {@link Location} id of the history or {@link #DEFAULT_SOURCE}, so consumers can keep their
+ * aggregates per location.
+ */
+public class OrderEventBus {
+    // Slots of the shared bus.
+    static final int DEFAULT_CAPACITY = 1024;
+    // Source of the orders that do not belong to a location.
+    public static final String DEFAULT_SOURCE = "default";
+    // Longest time publish() waits for room before it drops the event.
+    static final long DEFAULT_MAX_WAIT_MILLIS = 100;
+
+    // The bus the applications share; created on first use.
+    private static OrderEventBus shared;
+
+    /**
+     * Handles the events of one consumer, always on that consumer's own thread.
+     */
+    public interface EventHandler {
+        /**
+         * Called for every published order, in publish order.
+         *
+         * @param record     the stored order.
+         * @param timeMillis when the order was published, in epoch milliseconds.
+         * @param sequence   the event's sequence number (0 for the first event).
+         * @param endOfBatch whether this is the last event that is ready for now.
+         */
+        void onEvent(HistoryRecord record, long timeMillis, long sequence, boolean endOfBatch);
+
+        /**
+         * Called for every published order with the source it came from. Consumers that keep
+         * aggregates per location override this one; by default the source is ignored.
+         *
+         * @param record     the stored order.
+         * @param source     the location id of the order, or {@link #DEFAULT_SOURCE}.
+         * @param timeMillis when the order was published, in epoch milliseconds.
+         * @param sequence   the event's sequence number (0 for the first event).
+         * @param endOfBatch whether this is the last event that is ready for now.
+         */
+        default void onEvent(HistoryRecord record, String source, long timeMillis, long sequence, boolean endOfBatch) {
+            onEvent(record, timeMillis, sequence, endOfBatch);
+        }
+    }
+
+    private final int mask;
+    private final HistoryRecord[] records;
+    private final String[] sources;
+    private final long[] times;
+    private final long maxWaitMillis;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // Sequence of the last published event; -1 before the first one. Written under the lock.
+    private volatile long cursor = -1;
+    private boolean closed;
+    // Whether publish() is waiting for the slowest consumer; consumers only wake it then.
+    private boolean publisherWaiting;
+    // Events dropped because the slowest consumer stayed a whole ring behind. Written under the lock.
+    private volatile long dropped;
+    // Value of dropped at the last successful publish; a drop run is reported when it starts.
+    private long droppedReported;
+
+    /**
+     * Creates a bus that waits up to {@link #DEFAULT_MAX_WAIT_MILLIS} for room.
+     *
+     * @param capacity the number of slots, rounded up to a power of two.
+     */
+    public OrderEventBus(int capacity) {
+        this(capacity, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * Creates a bus.
+     *
+     * @param capacity      the number of slots, rounded up to a power of two.
+     * @param maxWaitMillis the longest time {@code publish} waits for the slowest consumer before it
+     *                      drops the event.
+     */
+    public OrderEventBus(int capacity, long maxWaitMillis) {
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        records = new HistoryRecord[size];
+        sources = new String[size];
+        times = new long[size];
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Returns the bus the applications share, creating it on first use.
+     *
+     * @return the shared bus.
+     */
+    public static synchronized OrderEventBus shared() {
+        if (shared == null) {
+            shared = new OrderEventBus(DEFAULT_CAPACITY);
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the capacity.
+     */
+    public int getCapacity() {
+        return records.length;
+    }
+
+    /**
+     * Returns the number of events dropped because a consumer stayed a whole ring behind.
+     *
+     * @return the dropped count.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Returns the sequence of the last published event.
+     *
+     * @return the sequence, or -1 if nothing was published yet.
+     */
+    public long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Adds a consumer and starts its thread. The consumer sees the events published from now on.
+     *
+     * @param name    a name for the consumer, used for its thread and in {@link #getLags()}.
+     * @param handler the handler of the events.
+     * @return the subscription, to read the consumer's lag.
+     */
+    public Subscription subscribe(String name, EventHandler handler) {
+        Subscription subscription;
+        synchronized (this) {
+            subscription = new Subscription(name, handler, cursor);
+            subscriptions.add(subscription);
+        }
+        Thread thread = new Thread(subscription::run, "order-events-" + name);
+        thread.setDaemon(true); // do not keep the application alive
+        thread.start();
+        return subscription;
+    }
+
+    /**
+     * Publishes an order that does not belong to a location to every consumer.
+     *
+     * @param record the stored order.
+     * @return the event's sequence, or -1 if the bus is closed, the event was dropped or the wait
+     *         was interrupted.
+     */
+    public long publish(HistoryRecord record) {
+        return publish(record, DEFAULT_SOURCE);
+    }
+
+    /**
+     * Publishes an order to every consumer.
+     * <p>
+     * Returns at once unless the slowest consumer is a whole ring behind; then it waits until that
+     * consumer has handled the oldest event, or drops the event if that takes longer than the
+     * bus's maximum wait.
+     *
+     * @param record the stored order.
+     * @param source the location id of the order, or {@link #DEFAULT_SOURCE}.
+     * @return the event's sequence, or -1 if the bus is closed, the event was dropped or the wait
+     *         was interrupted.
+     */
+    public synchronized long publish(HistoryRecord record, String source) {
+        long next = cursor + 1;
+        long deadline = System.nanoTime() + maxWaitMillis * 1_000_000;
+        // Backpressure: the slot of event next - capacity must have been handled by everyone.
+        while (!closed && next - records.length > minimumSequence()) {
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                // Only the first drop of a run is reported, so a stuck consumer does not flood the console.
+                if (dropped++ == droppedReported) {
+                    System.out.println("Error publishing order event: a consumer is a whole ring behind, dropping events");
+                }
+                return -1;
+            }
+            publisherWaiting = true;
+            try {
+                wait(remainingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.out.println("Error publishing order event: interrupted while waiting for consumers");
+                return -1;
+            } finally {
+                publisherWaiting = false;
+            }
+        }
+        if (closed) {
+            return -1;
+        }
+        int slot = (int) (next & mask);
+        records[slot] = record;
+        sources[slot] = source;
+        times[slot] = System.currentTimeMillis();
+        cursor = next;
+        droppedReported = dropped;
+        notifyAll(); // wake consumers waiting for events
+        return next;
+    }
+
+    /**
+     * Returns how many published events each consumer has not handled yet.
+     *
+     * @return consumer name to lag, in subscription order.
+     */
+    public Map<String, Long> getLags() {
+        Map<String, Long> lags = new LinkedHashMap<>();
+        for (Subscription subscription : subscriptions) {
+            lags.put(subscription.getName(), subscription.getLag());
+        }
+        return lags;
+    }
+
+    /**
+     * Stops the bus: nothing more can be published, and the consumers stop once they have handled
+     * the events already published.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Returns the lowest sequence handled by all consumers, or the cursor if there are none.
+     */
+    private long minimumSequence() {
+        long minimum = cursor;
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.sequence);
+        }
+        return minimum;
+    }
+
+    /**
+     * Waits until an event after {@code sequence} is published.
+     *
+     * @return the last published sequence, or -1 if the bus is closed and drained.
+     */
+    private synchronized long waitForEventsAfter(long sequence) throws InterruptedException {
+        while (cursor <= sequence) {
+            if (closed) {
+                return -1;
+            }
+            wait();
+        }
+        return cursor;
+    }
+
+    /**
+     * Records that a consumer has handled its events and wakes a publisher waiting for room.
+     */
+    private synchronized void handled() {
+        if (publisherWaiting) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * One consumer of the bus, with its handler, its thread's loop and its sequence.
+     */
+    public class Subscription {
+        private final String name;
+        private final EventHandler handler;
+        // Sequence of the last event this consumer has handled.
+        private volatile long sequence;
+
+        private Subscription(String name, EventHandler handler, long sequence) {
+            this.name = name;
+            this.handler = handler;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Returns the consumer's name.
+         *
+         * @return the name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the sequence of the last event the consumer has handled.
+         *
+         * @return the sequence.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Returns how many published events the consumer has not handled yet.
+         *
+         * @return the lag.
+         */
+        public long getLag() {
+            return cursor - sequence;
+        }
+
+        /**
+         * The consumer's thread: handles every ready event as one batch, then waits for more.
+         */
+        private void run() {
+            try {
+                while (true) {
+                    long available = waitForEventsAfter(sequence);
+                    if (available < 0) {
+                        return;
+                    }
+                    for (long s = sequence + 1; s <= available; s++) {
+                        int slot = (int) (s & mask);
+                        try {
+                            handler.onEvent(records[slot], sources[slot], times[slot], s, s == available);
+                        } catch (RuntimeException e) {
+                            System.out.println("Error in order event consumer " + name + ": " + e.getMessage());
+                        }
+                    }
+                    sequence = available;
+                    handled();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // A stopped consumer must not hold back the publisher.
+                subscriptions.remove(this);
+                handled();
+            }
+        }
+    }
+}
@@ -3,8 +3,9 @@
 package ca.ucalgary.haris.naveed1.demo3;
 
 import java.io.*;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * The {@code OrderHistory} class is responsible for storing and retrieving order history data from a file.
@@ -14,16 +15,81 @@ import java.util.*;
  */
 public class OrderHistory {
     // Constant for the order history file name (encapsulates configuration details).
-    private static final String ORDER_HISTORY_FILE = "order_history.txt";
-    // Formatter to present the order time in a human-friendly format.
-    // Example format: "March 3, 2025 at 4:43pm"
-    private DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMMM d, yyyy 'at' h:mma");
+    static final String ORDER_HISTORY_FILE = "order_history.txt";
+    // The file this instance reads and appends to; the default history file unless another one is given.
+    private final String historyFile;
+    // Crash-safe appender shared by every writer of the history file.
+    private final HistoryLog log;
+    // Id-keyed aggregates of the history file, kept current by the log.
+    private final HistoryIndex index;
+    // Source stored orders are published with: the location id, or the bus default.
+    private volatile String eventSource = OrderEventBus.DEFAULT_SOURCE;
 
     /**
      * Constructs an OrderHistory instance and ensures that the order history file exists.
      */
     public OrderHistory() {
+        this(ORDER_HISTORY_FILE);
+    }
+
+    /**
+     * Constructs an OrderHistory instance backed by a different file, for example a scratch file
+     * used by the load generator so that synthetic orders never mix with real ones.
+     *
+     * @param historyFile the path of the history file to use.
+     */
+    public OrderHistory(String historyFile) {
+        this(historyFile, historyFile);
+    }
+
+    /**
+     * Constructs an OrderHistory instance whose id dictionaries live at a different base path than
+     * the history file, so that several files (such as the shards of a {@link ShardedOrderHistory})
+     * share one set of customer and item ids.
+     *
+     * @param historyFile    the path of the history file to use.
+     * @param dictionaryBase the path the dictionary file names are derived from.
+     */
+    OrderHistory(String historyFile, String dictionaryBase) {
+        this.historyFile = historyFile;
         ensureFileExists();
+        // Opening the log runs crash recovery the first time this file is used in the process.
+        this.log = HistoryLog.forFile(historyFile);
+        this.index = HistoryIndex.forFile(historyFile, dictionaryBase);
+    }
+
+    /**
+     * Constructs an OrderHistory that keeps its records in several files inside a directory.
+     * <p>
+     * Only used by subclasses such as {@link ShardedOrderHistory}. This instance itself has no
+     * single file, log or index, so a subclass must override every method that uses them:
+     * {@link #storeOrder(Order)}, {@link #storeRecords(List)}, {@link #buildFrequencyMap(String)},
+     * {@link #buildAllFrequencyMaps()}, {@link #fillItemCounts(String, int[], int[])},
+     * {@link #getItemDictionary()}, {@link #getCustomerDictionary()},
+     * {@link #addAppendListener(HistoryLog.AppendListener)}, {@link #getHistoryFiles()} and
+     * {@link #getHistoryLength()}. The other methods only go through those.
+     *
+     * @param directory the directory holding the history files.
+     */
+    protected OrderHistory(File directory) {
+        this.historyFile = directory.getPath();
+        this.log = null;
+        this.index = null;
+    }
+
+    /**
+     * Opens the order history the applications should use.
+     * <p>
+     * If a sharded history has been set up in {@link ShardedOrderHistory#DEFAULT_DIRECTORY}, that one
+     * is opened; otherwise the single default history file is used.
+     *
+     * @return the order history.
+     */
+    public static OrderHistory openDefault() {
+        if (ShardedOrderHistory.exists(ShardedOrderHistory.DEFAULT_DIRECTORY)) {
+            return ShardedOrderHistory.open(ShardedOrderHistory.DEFAULT_DIRECTORY);
+        }
+        return new OrderHistory();
     }
 
     /**
@@ -32,7 +98,7 @@ public class OrderHistory {
      * This method encapsulates file management details by handling file existence and creation.
      */
     private void ensureFileExists() {
-        File file = new File(ORDER_HISTORY_FILE);
+        File file = new File(historyFile);
         if (!file.exists()) {
             try {
                 // Create a new file if it does not exist.
@@ -49,33 +115,48 @@ public class OrderHistory {
      * <p>
      * Assembles order data into a single record in the format:
      * {@code customerName|formattedDateTime|orderTotalCalories|item1,item2,...}
-     * and appends it to the order history file.
+     * and appends it to the order history file, framed with its length and checksum
+     * (see {@link HistoryRecord} and {@link HistoryLog}).
+     * <p>
+     * Once stored, the order is published on the shared {@link OrderEventBus}, whose consumers
+     * update their aggregates in the background.
      *
      * @param order the {@code Order} object containing the order details.
+     * @return true if the order was written, false if writing failed (the error is printed).
      */
-    public void storeOrder(Order order) {
+    public boolean storeOrder(Order order) {
         ensureFileExists();
-        // Format the order time using the specified formatter and convert AM/PM to lowercase.
-        String formattedDateTime = order.getOrderTime().format(formatter)
-                .replace("AM", "am")
-                .replace("PM", "pm");
-
-        // Build a comma-separated list of menu item names from the order.
-        List<String> itemNames = new ArrayList<>();
-        for (MenuItem item : order.getItems()) {
-            itemNames.add(item.getName());
-        }
-        String itemsStr = String.join(",", itemNames);
-
-        // Create the record string with customer name, formatted date/time, total calories, and items.
-        String record = order.getCustomerName() + "|" + formattedDateTime + "|" + order.getTotalCalories() + "|" + itemsStr;
-
-        // Append the record to the order history file using PrintWriter and BufferedWriter for efficiency.
-        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(ORDER_HISTORY_FILE, true)))) {
-            out.println(record);
+        // Build the record (customer name, formatted date/time, total calories and items) and
+        // append it as one framed line so a crash mid-write can be detected and repaired.
+        HistoryRecord record = HistoryRecord.of(order);
+        try {
+            log.append(record);
+            OrderEventBus.shared().publish(record, eventSource);
+            return true;
         } catch (IOException e) {
             // Inform the user if writing to the file fails.
             System.out.println("Error writing order history: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stores many records at once, for example from a batch import.
+     * <p>
+     * The records are appended with one write (see {@link HistoryLog#appendAll(List)}), which is far
+     * faster than calling {@link #storeOrder(Order)} once per order. Once written, every record is
+     * published on the shared {@link OrderEventBus} like a single stored order, so the order rates
+     * and the demand forecast count imported orders too.
+     *
+     * @param records the records to store, in order.
+     * @throws IOException if the records cannot be written.
+     */
+    public void storeRecords(List<HistoryRecord> records) throws IOException {
+        ensureFileExists();
+        log.appendAll(records);
+        OrderEventBus bus = OrderEventBus.shared();
+        for (HistoryRecord record : records) {
+            bus.publish(record, eventSource);
         }
     }
 
@@ -89,69 +170,180 @@ public class OrderHistory {
      * @param customerName the name of the customer whose order history is to be displayed.
      */
     public void printOrderHistory(String customerName) {
-        ensureFileExists();
         System.out.println("\nStored Order History:");
         boolean found = false;
-        // Read the file line by line.
-        try (BufferedReader br = new BufferedReader(new FileReader(ORDER_HISTORY_FILE))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                // Split the record string using the pipe '|' delimiter.
-                String[] parts = line.split("\\|");
-                // Verify that the record has 4 parts and matches the provided customer name.
-                if (parts.length == 4 && parts[0].equals(customerName)) {
-                    found = true;
-                    String dateTime = parts[1];
-                    String totalCalories = parts[2];
-                    String items = parts[3];
-                    // Print details of the order record.
-                    System.out.println("Date & Time: " + dateTime
-                            + ", Order Calories: " + totalCalories
-                            + ", Order: " + items);
-                }
+        // Records are printed as they are read instead of being collected first.
+        try (Stream<HistoryRecord> records = query().customer(customerName).named("printOrderHistory").stream()) {
+            Iterator<HistoryRecord> it = records.iterator();
+            while (it.hasNext()) {
+                HistoryRecord record = it.next();
+                found = true;
+                // Print details of the order record.
+                System.out.println("Date & Time: " + record.getDateTime()
+                        + ", Order Calories: " + record.getTotalCalories()
+                        + ", Order: " + String.join(",", record.getItems()));
             }
-            // If no matching records were found, notify the user.
-            if (!found) {
-                System.out.println("No order history found for " + customerName);
-            }
-        } catch (IOException e) {
-            // Print an error message if file reading fails.
-            System.out.println("Error reading order history: " + e.getMessage());
         }
+        // If no matching records were found, notify the user.
+        if (!found) {
+            System.out.println("No order history found for " + customerName);
+        }
+    }
+
+    /**
+     * Starts a lazy query over the records of this history.
+     *
+     * @return a query that matches every record; narrow it with its filters.
+     */
+    public HistoryQuery query() {
+        ensureFileExists();
+        return new HistoryQuery(this);
+    }
+
+    /**
+     * Returns the stored orders of one customer, in the order they were placed.
+     *
+     * @param customerName the customer's name.
+     * @return the customer's records.
+     */
+    public List<HistoryRecord> findCustomerRecords(String customerName) {
+        return query().customer(customerName).named("findCustomerRecords").list();
+    }
+
+    /**
+     * Scans the whole history and returns every record accepted by a filter.
+     * <p>
+     * Torn or corrupt lines are skipped.
+     *
+     * @param filter the condition a record must satisfy.
+     * @return the matching records, in file order.
+     */
+    public List<HistoryRecord> findRecords(Predicate<HistoryRecord> filter) {
+        return query().where(filter).named("findRecords").list();
     }
 
     /**
      * Builds a frequency map of items ordered by the user.
      * <p>
-     * Reads both the persistent order history and the current session's orders to determine
-     * how many times each menu item has been ordered, which can be used for recommendations.
+     * The counts come from the {@link HistoryIndex} of the history file, which keeps every customer's
+     * item counts in an off-heap table keyed by customer and item id, so no file scan is needed per lookup.
      *
      * @param customerName the name of the user.
      * @return a {@code Map} where keys are menu item names and values are the frequencies of orders.
      */
     public Map<String, Integer> buildFrequencyMap(String customerName) {
-        Map<String, Integer> frequency = new HashMap<>();
         ensureFileExists();
-        // Process the order history file.
-        try (BufferedReader br = new BufferedReader(new FileReader(ORDER_HISTORY_FILE))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                // Split each record into parts.
-                String[] parts = line.split("\\|");
-                // Only consider records that match the specified customer.
-                if (parts.length == 4 && parts[0].equals(customerName)) {
-                    // Split the ordered items by comma.
-                    String[] items = parts[3].split(",");
-                    // Count each occurrence of the menu item.
-                    for (String item : items) {
-                        frequency.put(item, frequency.getOrDefault(item, 0) + 1);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            // Inform if there is an error reading the order history.
-            System.out.println("Error reading order history for frequency map: " + e.getMessage());
-        }
-        return frequency;
+        return index.frequencyMap(customerName);
+    }
+
+    /**
+     * Builds the frequency maps of every customer found in the order history.
+     * <p>
+     * This is used by batch jobs (such as {@link RecommendationPrecomputer}) so that every customer
+     * is covered without one lookup per name.
+     *
+     * @return a {@code Map} from customer name to that customer's item frequency map.
+     */
+    public Map<String, Map<String, Integer>> buildAllFrequencyMaps() {
+        ensureFileExists();
+        return index.allFrequencyMaps();
+    }
+
+    /**
+     * Copies a customer's counts of the given items into {@code counts}, without allocating.
+     *
+     * @param customerName the name of the user.
+     * @param itemIds      item ids from {@link #getItemDictionary()}; negative ids get a count of 0.
+     * @param counts       receives the count of {@code itemIds[i]} at position {@code i}.
+     */
+    public void fillItemCounts(String customerName, int[] itemIds, int[] counts) {
+        index.fillCounts(customerName, itemIds, counts);
+    }
+
+    /**
+     * Returns the dictionary that maps item names to dense integer ids for this history.
+     *
+     * @return the item dictionary.
+     */
+    public IdDictionary getItemDictionary() {
+        return index.getItems();
+    }
+
+    /**
+     * Registers a listener for every record appended to this history from now on.
+     *
+     * @param listener the listener, called under the log's lock right after each append.
+     */
+    public void addAppendListener(HistoryLog.AppendListener listener) {
+        log.addAppendListener(listener);
+    }
+
+    /**
+     * Returns the dictionary that maps customer names to dense integer ids for this history.
+     *
+     * @return the customer dictionary.
+     */
+    public IdDictionary getCustomerDictionary() {
+        return index.getCustomers();
+    }
+
+    /**
+     * Returns the source this history's orders are published with on the {@link OrderEventBus}.
+     *
+     * @return the location id, or {@link OrderEventBus#DEFAULT_SOURCE}.
+     */
+    public String getEventSource() {
+        return eventSource;
+    }
+
+    /**
+     * Sets the source this history's orders are published with, so consumers of the bus can tell
+     * the locations apart.
+     *
+     * @param eventSource the location id.
+     */
+    public void setEventSource(String eventSource) {
+        this.eventSource = eventSource;
+    }
+
+    /**
+     * Returns the path of the history file used by this instance.
+     *
+     * @return the history file path.
+     */
+    public String getHistoryFile() {
+        return historyFile;
+    }
+
+    /**
+     * Returns every file holding records of this history.
+     *
+     * @return the history file.
+     */
+    public List<File> getHistoryFiles() {
+        return List.of(new File(historyFile));
+    }
+
+    /**
+     * Returns the files that can hold records of a customer.
+     *
+     * @param customerName the customer's name.
+     * @return the history file.
+     */
+    protected List<File> getHistoryFilesFor(String customerName) {
+        return getHistoryFiles();
+    }
+
+    /**
+     * Returns the size of the order history in bytes: the sealed {@link HistorySegments} at their
+     * uncompressed size plus the history file.
+     * <p>
+     * Precomputed data derived from the history records this value so it can tell
+     * whether the history has been replaced since it was built. Sealing the file does not change it.
+     *
+     * @return the current length of the history, or 0 if there is none.
+     */
+    public long getHistoryLength() {
+        return HistorySegments.forFile(historyFile).getSealedLength() + new File(historyFile).length();
     }
 }
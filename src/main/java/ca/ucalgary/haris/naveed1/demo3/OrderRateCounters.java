@@ -0,0 +1,276 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * The {@code OrderRateCounters} class counts the orders and items sold in the last minute, hour and
+ * day, per location and per item, so demand spikes (the lunch peak) can be watched while they happen.
+ * <p>
+ * Each count is a ring of time buckets, one ring per {@link Window}: the minute ring has 60 buckets
+ * of one second, the hour ring 60 buckets of one minute and the day ring 24 buckets of one hour. A
+ * bucket remembers which time slice it holds, so a bucket from a previous lap of the ring is simply
+ * reset when it is reused; there is no timer sweeping old buckets. Counting an order is one bucket
+ * update per ring, and reading a window adds up its buckets that are still inside the window.
+ * <p>
+ * The counters are an {@link OrderEventBus} consumer (see {@link #subscribe(OrderEventBus)}), so they
+ * are updated on the bus thread and never slow down placing an order. The shared counters
+ * ({@link #shared()}) follow the shared bus and are read by the GUI status bar and the
+ * {@link TrackerEvents.OrderRates} recording event.
+ */
+public class OrderRateCounters implements OrderEventBus.EventHandler {
+    // The counters the applications share; created on first use.
+    private static OrderRateCounters shared;
+
+    /**
+     * The windows the counters cover, with the size and number of their buckets.
+     */
+    public enum Window {
+        MINUTE(1_000L, 60),
+        HOUR(60_000L, 60),
+        DAY(3_600_000L, 24);
+
+        private final long bucketMillis;
+        private final int buckets;
+
+        Window(long bucketMillis, int buckets) {
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+        }
+    }
+
+    // Counters of each source (location id), created when its first order arrives.
+    private final Map<String, SourceCounters> sources = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the counters of the shared {@link OrderEventBus}, subscribing them on first use.
+     *
+     * @return the shared counters.
+     */
+    public static synchronized OrderRateCounters shared() {
+        if (shared == null) {
+            shared = new OrderRateCounters();
+            shared.subscribe(OrderEventBus.shared());
+            // Let recordings sample the rates; this costs nothing while nothing is recording.
+            OrderRateCounters counters = shared;
+            FlightRecorder.addPeriodicEvent(TrackerEvents.OrderRates.class, counters::emitRates);
+        }
+        return shared;
+    }
+
+    /**
+     * Starts counting the orders published on a bus from now on.
+     *
+     * @param bus the bus.
+     * @return the subscription, to read the consumer's lag.
+     */
+    public OrderEventBus.Subscription subscribe(OrderEventBus bus) {
+        return bus.subscribe("rates", this);
+    }
+
+    @Override
+    public void onEvent(HistoryRecord record, long timeMillis, long sequence, boolean endOfBatch) {
+        record(OrderEventBus.DEFAULT_SOURCE, record, timeMillis);
+    }
+
+    @Override
+    public void onEvent(HistoryRecord record, String source, long timeMillis, long sequence, boolean endOfBatch) {
+        record(source, record, timeMillis);
+    }
+
+    /**
+     * Counts one order and its items.
+     *
+     * @param source     the order's location id.
+     * @param record     the order.
+     * @param timeMillis when the order was placed, in epoch milliseconds.
+     */
+    public void record(String source, HistoryRecord record, long timeMillis) {
+        SourceCounters counters = sources.computeIfAbsent(source, s -> new SourceCounters());
+        counters.orders.add(timeMillis, 1);
+        for (String item : record.getItems()) {
+            counters.items.computeIfAbsent(item, i -> new Counter()).add(timeMillis, 1);
+        }
+    }
+
+    /**
+     * Returns the sources (location ids) that have had orders counted.
+     *
+     * @return the sources.
+     */
+    public List<String> getSources() {
+        return new ArrayList<>(sources.keySet());
+    }
+
+    /**
+     * Returns the number of orders of a location in a window ending now.
+     *
+     * @param source the location id, or {@code null} for every location.
+     * @param window the window.
+     * @return the order count.
+     */
+    public long orders(String source, Window window) {
+        return orders(source, window, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the number of times an item was sold at a location in a window ending now.
+     *
+     * @param source the location id, or {@code null} for every location.
+     * @param item   the item name.
+     * @param window the window.
+     * @return the item count.
+     */
+    public long items(String source, String item, Window window) {
+        return items(source, item, window, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the items sold most at a location in a window ending now.
+     *
+     * @param source the location id, or {@code null} for every location.
+     * @param window the window.
+     * @param n      the number of items.
+     * @return the item names, most sold first; items not sold in the window are left out.
+     */
+    public List<String> topItems(String source, Window window, int n) {
+        return topItems(source, window, n, System.currentTimeMillis());
+    }
+
+    long orders(String source, Window window, long now) {
+        long total = 0;
+        for (SourceCounters counters : select(source)) {
+            total += counters.orders.sum(window, now);
+        }
+        return total;
+    }
+
+    long items(String source, String item, Window window, long now) {
+        long total = 0;
+        for (SourceCounters counters : select(source)) {
+            Counter counter = counters.items.get(item);
+            if (counter != null) {
+                total += counter.sum(window, now);
+            }
+        }
+        return total;
+    }
+
+    List<String> topItems(String source, Window window, int n, long now) {
+        Map<String, Long> totals = new HashMap<>();
+        for (SourceCounters counters : select(source)) {
+            counters.items.forEach((item, counter) -> {
+                long count = counter.sum(window, now);
+                if (count > 0) {
+                    totals.merge(item, count, Long::sum);
+                }
+            });
+        }
+        List<String> names = new ArrayList<>(totals.keySet());
+        names.sort((a, b) -> {
+            int byCount = Long.compare(totals.get(b), totals.get(a));
+            return byCount != 0 ? byCount : a.compareTo(b);
+        });
+        return names.subList(0, Math.min(n, names.size()));
+    }
+
+    /**
+     * Emits one {@link TrackerEvents.OrderRates} event per location.
+     */
+    private void emitRates() {
+        long now = System.currentTimeMillis();
+        for (String source : getSources()) {
+            TrackerEvents.OrderRates event = new TrackerEvents.OrderRates();
+            event.location = source;
+            event.ordersLastMinute = orders(source, Window.MINUTE, now);
+            event.ordersLastHour = orders(source, Window.HOUR, now);
+            event.ordersLastDay = orders(source, Window.DAY, now);
+            List<String> top = topItems(source, Window.HOUR, 1, now);
+            event.topItem = top.isEmpty() ? null : top.get(0);
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the counters of one source, or of all of them for {@code null}.
+     */
+    private List<SourceCounters> select(String source) {
+        if (source == null) {
+            return new ArrayList<>(sources.values());
+        }
+        SourceCounters counters = sources.get(source);
+        return counters == null ? List.of() : List.of(counters);
+    }
+
+    /**
+     * The order counter and the item counters of one location.
+     */
+    private static class SourceCounters {
+        private final Counter orders = new Counter();
+        private final Map<String, Counter> items = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * One count with a ring of buckets for every window.
+     * <p>
+     * Bucket {@code slot} of a ring holds the count of time slice {@code slices[slot]} (the time
+     * divided by the bucket size). Updates come from the bus thread and reads from the GUI, so both
+     * are synchronized; neither ever waits for more than a few array writes.
+     */
+    private static class Counter {
+        private final long[][] counts = new long[Window.values().length][];
+        private final long[][] slices = new long[Window.values().length][];
+
+        Counter() {
+            for (Window window : Window.values()) {
+                counts[window.ordinal()] = new long[window.buckets];
+                slices[window.ordinal()] = new long[window.buckets];
+                // No bucket holds a real time slice yet.
+                Arrays.fill(slices[window.ordinal()], Long.MIN_VALUE);
+            }
+        }
+
+        /**
+         * Adds to the bucket of a time in every ring: one array write per window.
+         */
+        synchronized void add(long timeMillis, long amount) {
+            for (Window window : Window.values()) {
+                long slice = Math.floorDiv(timeMillis, window.bucketMillis);
+                int slot = (int) Math.floorMod(slice, (long) window.buckets);
+                long[] windowSlices = slices[window.ordinal()];
+                long[] windowCounts = counts[window.ordinal()];
+                if (windowSlices[slot] != slice) {
+                    // The bucket still holds an older lap of the ring; start it over.
+                    windowSlices[slot] = slice;
+                    windowCounts[slot] = 0;
+                }
+                windowCounts[slot] += amount;
+            }
+        }
+
+        /**
+         * Adds up the buckets of a window whose time slices end no later than now and are less
+         * than a full ring old.
+         */
+        synchronized long sum(Window window, long now) {
+            long current = Math.floorDiv(now, window.bucketMillis);
+            long[] windowSlices = slices[window.ordinal()];
+            long[] windowCounts = counts[window.ordinal()];
+            long total = 0;
+            for (int slot = 0; slot < window.buckets; slot++) {
+                long slice = windowSlices[slot];
+                if (slice <= current && slice > current - window.buckets) {
+                    total += windowCounts[slot];
+                }
+            }
+            return total;
+        }
+    }
+}
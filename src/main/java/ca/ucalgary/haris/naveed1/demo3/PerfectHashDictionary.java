@@ -0,0 +1,218 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@code PerfectHashDictionary} class maps a fixed set of names to ids by looking up their
+ * UTF-8 bytes directly, without creating a {@link String}.
+ * <p>
+ * It is a snapshot of an {@link IdDictionary} (usually the item names, which are few and rarely
+ * change) built as a perfect hash table in the "hash and displace" style: the names are first
+ * spread over buckets, and every bucket gets its own seed, chosen so that the names of the bucket
+ * land in table slots nobody else uses. A lookup is then one hash of the bytes, one seed read and
+ * one slot; there are no collisions to walk through. The bytes are compared with the name in the
+ * slot, so names that were not in the snapshot are reported as missing instead of returning the id
+ * of whatever name shares their slot.
+ * <p>
+ * The table is immutable, so one instance can be shared by many threads.
+ */
+public final class PerfectHashDictionary {
+    // Seed step; any odd constant with well-mixed bits works.
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+    // Names per bucket on average.
+    private static final int BUCKET_SIZE = 2;
+
+    private final int[] seeds;
+    private final byte[][] keys;
+    private final int[] ids;
+    private final int mask;
+
+    /**
+     * Builds the table of a list of names; the id of a name is its position in the list. If a name
+     * is listed twice, its first position is its id.
+     *
+     * @param names the names.
+     */
+    public PerfectHashDictionary(List<String> names) {
+        Set<String> seen = new HashSet<>();
+        List<byte[]> distinct = new ArrayList<>();
+        List<Integer> distinctIds = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (seen.add(names.get(i))) {
+                distinct.add(names.get(i).getBytes(StandardCharsets.UTF_8));
+                distinctIds.add(i);
+            }
+        }
+        int n = distinct.size();
+        byte[][] bytes = distinct.toArray(new byte[0][]);
+        long[] hashes = new long[n];
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hash(bytes[i], 0, bytes[i].length);
+        }
+        // Twice as many slots as names, so a seed that places a whole bucket is found quickly.
+        int size = Integer.highestOneBit(Math.max(2, n * 2 - 1)) << 1;
+        while (true) {
+            int[] builtSeeds = new int[Math.max(1, n / BUCKET_SIZE)];
+            byte[][] builtKeys = new byte[size][];
+            int[] builtIds = new int[size];
+            if (place(bytes, hashes, distinctIds, builtSeeds, builtKeys, builtIds, size - 1)) {
+                seeds = builtSeeds;
+                keys = builtKeys;
+                ids = builtIds;
+                mask = size - 1;
+                return;
+            }
+            // Very unlikely: no seed worked for some bucket, so try again with a larger table.
+            size <<= 1;
+        }
+    }
+
+    /**
+     * Builds the table of the names an {@link IdDictionary} holds right now.
+     *
+     * @param dictionary the dictionary.
+     * @return the table, with the dictionary's ids.
+     */
+    public static PerfectHashDictionary of(IdDictionary dictionary) {
+        int size = dictionary.size();
+        List<String> names = new ArrayList<>(size);
+        for (int id = 0; id < size; id++) {
+            names.add(dictionary.nameOf(id));
+        }
+        return new PerfectHashDictionary(names);
+    }
+
+    /**
+     * Returns the number of slots in the table.
+     *
+     * @return the table size.
+     */
+    public int getTableSize() {
+        return keys.length;
+    }
+
+    /**
+     * Looks up the id of the name whose UTF-8 bytes are {@code bytes[start, end)}.
+     *
+     * @param bytes the bytes.
+     * @param start the first byte of the name.
+     * @param end   the position just after the name.
+     * @return the id, or -1 if the name is not in the table.
+     */
+    public int lookup(byte[] bytes, int start, int end) {
+        long hash = hash(bytes, start, end);
+        int slot = slot(hash, seeds[bucket(hash, seeds.length)], mask);
+        byte[] key = keys[slot];
+        return key != null && Arrays.equals(key, 0, key.length, bytes, start, end) ? ids[slot] : -1;
+    }
+
+    /**
+     * Places every name, one bucket at a time from the largest bucket down.
+     *
+     * @return false if some bucket could not be placed with any seed tried.
+     */
+    private static boolean place(byte[][] bytes, long[] hashes, List<Integer> nameIds, int[] seeds, byte[][] keys,
+                                 int[] ids, int mask) {
+        int bucketCount = seeds.length;
+        // Group the names by bucket with a counting sort.
+        int[] starts = new int[bucketCount + 1];
+        for (long hash : hashes) {
+            starts[bucket(hash, bucketCount) + 1]++;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            starts[b + 1] += starts[b];
+        }
+        int[] members = new int[hashes.length];
+        int[] fill = Arrays.copyOf(starts, bucketCount);
+        for (int i = 0; i < hashes.length; i++) {
+            members[fill[bucket(hashes[i], bucketCount)]++] = i;
+        }
+        Integer[] order = new Integer[bucketCount];
+        for (int b = 0; b < bucketCount; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order, (a, b) -> (starts[b + 1] - starts[b]) - (starts[a + 1] - starts[a]));
+
+        int[] slots = new int[hashes.length];
+        for (int b : order) {
+            int count = starts[b + 1] - starts[b];
+            if (count == 0) {
+                break;
+            }
+            int seed = 0;
+            while (!tryPlace(hashes, members, starts[b], count, seed, keys, mask, slots)) {
+                if (++seed > 1 << 16) {
+                    return false;
+                }
+            }
+            seeds[b] = seed;
+            for (int k = 0; k < count; k++) {
+                int name = members[starts[b] + k];
+                keys[slots[k]] = bytes[name];
+                ids[slots[k]] = nameIds.get(name);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether a seed puts every name of a bucket in a free slot of its own, filling
+     * {@code slots} with those slots.
+     */
+    private static boolean tryPlace(long[] hashes, int[] members, int first, int count, int seed,
+                                    byte[][] keys, int mask, int[] slots) {
+        for (int k = 0; k < count; k++) {
+            int slot = slot(hashes[members[first + k]], seed, mask);
+            if (keys[slot] != null) {
+                return false;
+            }
+            for (int j = 0; j < k; j++) {
+                if (slots[j] == slot) {
+                    return false;
+                }
+            }
+            slots[k] = slot;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the bucket of a hash.
+     */
+    private static int bucket(long hash, int bucketCount) {
+        return (int) Long.remainderUnsigned(hash >>> 32, bucketCount);
+    }
+
+    /**
+     * Returns the slot of a hash under a bucket seed.
+     */
+    private static int slot(long hash, int seed, int mask) {
+        long h = hash + seed * SEED_STEP;
+        // Final mix of MurmurHash3, so nearby seeds give unrelated slots.
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of a byte range.
+     */
+    static long hash(byte[] bytes, int start, int end) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= bytes[i] & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+}
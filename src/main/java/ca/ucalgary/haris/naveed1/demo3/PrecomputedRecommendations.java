@@ -0,0 +1,290 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code PrecomputedRecommendations} class is a read-only lookup table of recommendations
+ * that were computed ahead of time by {@link RecommendationPrecomputer}.
+ * <p>
+ * The table is stored in a compact binary file. Menu items are written as one-byte indexes into
+ * the menu, so a whole customer entry is only a few dozen bytes. Entries are kept encoded in memory
+ * and only decoded into {@code MenuItem} lists when they are looked up.
+ * <p>
+ * File layout (all values big-endian, written with {@link DataOutputStream}):
+ * <pre>
+ * int    magic            0x52454353 ("RECS")
+ * short  version          2
+ * short  algorithm        {@link RecommendationEngine#ALGORITHM_VERSION} the entries were computed with
+ * short  itemCount        followed by itemCount UTF item names (menu order at build time)
+ * long   historyLength    length of the order history when the table was built
+ * short  budgetCount      followed by budgetCount int calorie budgets
+ * int    customerCount    followed by, per customer:
+ *          UTF   customer name
+ *          short entry length, followed by the encoded entry bytes
+ * </pre>
+ * An encoded entry holds, for each budget in order, the number of recommendations followed by
+ * each recommendation as an item count and that many item indexes (one byte each).
+ * <p>
+ * The table only describes the history it was built from, with the algorithm it was built with.
+ * A file whose history length or algorithm version differs from the current ones is rejected when
+ * loaded. Once loaded, the table listens for appended records and stops serving the entry of each
+ * customer who stores a new order, since that order changes their counts; everyone else keeps
+ * getting their precomputed entry.
+ */
+public class PrecomputedRecommendations implements HistoryLog.AppendListener {
+    // Default file name of the precomputed table, stored next to the order history file.
+    public static final String RECOMMENDATIONS_FILE = "recommendations.dat";
+
+    // Marks the start of a valid file and its format version.
+    static final int MAGIC = 0x52454353;
+    static final short VERSION = 2;
+
+    // Menu items indexed by the byte values stored in encoded entries.
+    private final List<MenuItem> items;
+    // Calorie budget -> position of that budget inside each encoded entry.
+    private final Map<Integer, Integer> budgetPositions;
+    // Customer name -> encoded entry bytes.
+    private final Map<String, byte[]> entries;
+    // Length of the order history the entries were computed from.
+    private final long historyLength;
+    // Customers who stored an order after the table was built; their entries are no longer served.
+    private final Set<String> staleCustomers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a lookup table from already decoded parts.
+     *
+     * @param items    the menu items referenced by index in the entries.
+     * @param budgets  the calorie budgets, in the order they appear in each entry.
+     * @param entries  the encoded entries keyed by customer name.
+     * @param historyLength the length of the history the entries were computed from.
+     */
+    private PrecomputedRecommendations(List<MenuItem> items, int[] budgets, Map<String, byte[]> entries,
+                                       long historyLength) {
+        this.items = items;
+        this.budgetPositions = new HashMap<>();
+        for (int i = 0; i < budgets.length; i++) {
+            budgetPositions.put(budgets[i], i);
+        }
+        this.entries = entries;
+        this.historyLength = historyLength;
+    }
+
+    /**
+     * Loads the default recommendations file if it exists and still matches the menu and history.
+     * <p>
+     * A missing, unreadable or stale file is not an error: the engine simply falls back to live
+     * computation, so {@code null} is returned in those cases.
+     *
+     * @param menu         the menu the recommendations must refer to.
+     * @param orderHistory the order history the table was built from.
+     * @return the loaded table, or {@code null} if there is nothing usable to load.
+     */
+    public static PrecomputedRecommendations loadIfPresent(Menu menu, OrderHistory orderHistory) {
+        return loadIfPresent(new File(RECOMMENDATIONS_FILE), menu, orderHistory);
+    }
+
+    /**
+     * Loads a recommendations file if it exists and still matches the menu and history, for
+     * histories (such as a location's) that keep their table somewhere else.
+     *
+     * @param file         the recommendations file.
+     * @param menu         the menu the recommendations must refer to.
+     * @param orderHistory the order history the table was built from.
+     * @return the loaded table, or {@code null} if there is nothing usable to load.
+     */
+    public static PrecomputedRecommendations loadIfPresent(File file, Menu menu, OrderHistory orderHistory) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return load(file, menu, orderHistory.getHistoryLength());
+        } catch (IOException e) {
+            System.out.println("Ignoring precomputed recommendations: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a recommendations file.
+     *
+     * @param file                 the file to read.
+     * @param menu                 the current menu; item names in the file must resolve against it.
+     * @param currentHistoryLength the current length of the history.
+     * @return the loaded table.
+     * @throws IOException if the file is malformed or no longer matches the menu, the history or
+     *                     the recommendation algorithm.
+     */
+    static PrecomputedRecommendations load(File file, Menu menu, long currentHistoryLength) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                throw new IOException("not a recommendations file");
+            }
+            if (in.readShort() != RecommendationEngine.ALGORITHM_VERSION) {
+                throw new IOException("table was built with an older recommendation algorithm");
+            }
+            // Resolve the stored item names against the current menu.
+            int itemCount = in.readShort();
+            List<MenuItem> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                String name = in.readUTF();
+                MenuItem item = menu.getItemByName(name);
+                if (item == null) {
+                    throw new IOException("menu no longer contains " + name);
+                }
+                items.add(item);
+            }
+            // Any other length means orders were added (or the file was replaced) since the build.
+            long historyLength = in.readLong();
+            if (currentHistoryLength != historyLength) {
+                throw new IOException("order history changed after the table was built");
+            }
+            int[] budgets = new int[in.readShort()];
+            for (int i = 0; i < budgets.length; i++) {
+                budgets[i] = in.readInt();
+            }
+            int customerCount = in.readInt();
+            Map<String, byte[]> entries = new HashMap<>(customerCount * 2);
+            for (int i = 0; i < customerCount; i++) {
+                String customer = in.readUTF();
+                byte[] entry = new byte[in.readUnsignedShort()];
+                in.readFully(entry);
+                entries.put(customer, entry);
+            }
+            return new PrecomputedRecommendations(items, budgets, entries, historyLength);
+        }
+    }
+
+    /**
+     * Writes a recommendations file.
+     *
+     * @param file          the file to write.
+     * @param items         the menu items; their positions are the indexes used in the entries.
+     * @param budgets       the calorie budgets the entries were computed for.
+     * @param historyLength the length of the history the entries were computed from.
+     * @param entries       the encoded entries keyed by customer name.
+     * @throws IOException if the file cannot be written.
+     */
+    static void write(File file, List<MenuItem> items, int[] budgets, long historyLength,
+                      Map<String, byte[]> entries) throws IOException {
+        // Write to a temporary file first so readers never see a half written table.
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(RecommendationEngine.ALGORITHM_VERSION);
+            out.writeShort(items.size());
+            for (MenuItem item : items) {
+                out.writeUTF(item.getName());
+            }
+            out.writeLong(historyLength);
+            out.writeShort(budgets.length);
+            for (int budget : budgets) {
+                out.writeInt(budget);
+            }
+            out.writeInt(entries.size());
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeShort(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("could not replace " + file);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("could not rename " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * Encodes the recommendations of one customer for every budget.
+     *
+     * @param perBudget   the recommendations for each budget, in budget order.
+     * @param itemIndexes a map from menu item to its index in the file's item list.
+     * @return the encoded entry.
+     */
+    static byte[] encode(List<List<List<MenuItem>>> perBudget, Map<MenuItem, Integer> itemIndexes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (List<List<MenuItem>> recommendations : perBudget) {
+            out.write(recommendations.size());
+            for (List<MenuItem> recommendation : recommendations) {
+                out.write(recommendation.size());
+                for (MenuItem item : recommendation) {
+                    out.write(itemIndexes.get(item));
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Looks up the precomputed recommendations of a customer for a calorie budget.
+     *
+     * @param customerName    the customer's name.
+     * @param desiredCalories the calorie budget.
+     * @return fresh, modifiable recommendation lists, or {@code null} if the customer or budget
+     *         was not precomputed, or the customer has ordered since the table was built.
+     */
+    public List<List<MenuItem>> lookup(String customerName, int desiredCalories) {
+        Integer position = budgetPositions.get(desiredCalories);
+        byte[] entry = entries.get(customerName);
+        if (position == null || entry == null || staleCustomers.contains(customerName)) {
+            return null;
+        }
+        int offset = 0;
+        // Skip over the encoded recommendations of the budgets before the requested one.
+        for (int b = 0; b < position; b++) {
+            int recommendationCount = entry[offset++] & 0xFF;
+            for (int r = 0; r < recommendationCount; r++) {
+                offset += (entry[offset] & 0xFF) + 1;
+            }
+        }
+        // Decode the requested budget.
+        int recommendationCount = entry[offset++] & 0xFF;
+        List<List<MenuItem>> recommendations = new ArrayList<>(recommendationCount);
+        for (int r = 0; r < recommendationCount; r++) {
+            int itemCount = entry[offset++] & 0xFF;
+            List<MenuItem> recommendation = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                recommendation.add(items.get(entry[offset++] & 0xFF));
+            }
+            recommendations.add(recommendation);
+        }
+        return recommendations;
+    }
+
+    /**
+     * Stops serving the entry of the customer whose order was just stored.
+     *
+     * @param record     the appended record.
+     * @param fileLength the length of the history file after the append.
+     */
+    @Override
+    public void recordAppended(HistoryRecord record, long fileLength) {
+        staleCustomers.add(record.getCustomerName());
+    }
+
+    /**
+     * Returns whether the table still describes the whole history, that is, no order has been
+     * added since it was built.
+     *
+     * @param currentHistoryLength the current length of the history.
+     * @return true if the table was built from a history of exactly that length.
+     */
+    public boolean isCurrent(long currentHistoryLength) {
+        return currentHistoryLength == historyLength;
+    }
+
+    /**
+     * Returns the number of customers in the table.
+     *
+     * @return the customer count.
+     */
+    public int size() {
+        return entries.size();
+    }
+}
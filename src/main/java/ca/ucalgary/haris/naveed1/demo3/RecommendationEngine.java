@@ -4,7 +4,7 @@
 // RecommendationEngine.java
 // This class generates personalized order recommendations based on user history and preferences.
 // It demonstrates dependency injection by receiving a Menu and OrderHistory in its constructor.
-// It encapsulates its recommendation logic in methods that use a greedy algorithm.
+// It encapsulates its recommendation logic in methods that use a beam search and a greedy algorithm.
 package ca.ucalgary.haris.naveed1.demo3;
 
 import java.util.*;
@@ -14,14 +14,30 @@ import java.util.*;
  * based on the customer's historical orders and current session data.
  * <p>
  * It uses dependency injection to receive a {@link Menu} and an {@link OrderHistory},
- * promoting loose coupling and enhancing testability. The class provides a greedy
- * algorithm to generate candidate recommendations under a calorie constraint.
+ * promoting loose coupling and enhancing testability. Recommendations are the best distinct
+ * baskets under a calorie constraint found by a {@link BeamSearchRecommender}; the class also
+ * provides a simple greedy algorithm that fills a candidate list up to the constraint.
  */
 public class RecommendationEngine {
     // Reference to the Menu object containing all available menu items.
     private Menu menu;
     // Reference to the OrderHistory which holds the persistent order data.
     private OrderHistory orderHistory;
+    // Optional table of recommendations computed ahead of time by RecommendationPrecomputer.
+    private volatile PrecomputedRecommendations precomputed;
+    // History item ids of the menu items, by menu position; -1 for items nobody has ordered yet.
+    private volatile int[] menuItemIds = new int[0];
+    // Optional tracker of items trending across all customers, used to rank items a customer has not tried.
+    private TrendingItems trendingItems;
+    // Search that turns item affinities into the top distinct baskets.
+    private BeamSearchRecommender beamSearch = new BeamSearchRecommender();
+    // Share of an item's affinity that comes from its popularity instead of the customer's own orders.
+    static final double EXPLORATION = 0.1;
+    // Version of the recommendation algorithm, stored in precomputed tables; bump it whenever a change
+    // here or in BeamSearchRecommender changes the results, so old tables are not served.
+    static final short ALGORITHM_VERSION = 2;
+    // Attribute and nutrient index of the menu, built on first use, for dietary filters.
+    private volatile MenuIndex menuIndex;
 
     /**
      * Constructs a {@code RecommendationEngine} with the specified {@code Menu} and {@code OrderHistory}.
@@ -36,6 +52,74 @@ public class RecommendationEngine {
         this.orderHistory = orderHistory;
     }
 
+    /**
+     * Sets the table of precomputed recommendations consulted before live computation.
+     * <p>
+     * The table is registered for every order stored in the history from now on, so a customer's
+     * entry stops being served as soon as that customer orders again. A table that no longer
+     * matches the history when it is set is not used at all.
+     *
+     * @param precomputed the precomputed recommendations, or {@code null} to always compute live.
+     */
+    public void setPrecomputedRecommendations(PrecomputedRecommendations precomputed) {
+        if (precomputed != null) {
+            orderHistory.addAppendListener(precomputed);
+            if (!precomputed.isCurrent(orderHistory.getHistoryLength())) {
+                // An order was stored before the table was listening, and we cannot tell whose it was.
+                precomputed = null;
+            }
+        }
+        this.precomputed = precomputed;
+    }
+
+    /**
+     * Sets the tracker used to rank new items (items the customer has never ordered).
+     * <p>
+     * Without a tracker, new items are ranked alphabetically. With one, the items trending right
+     * now come first, which gives customers without any history a sensible first suggestion.
+     *
+     * @param trendingItems the tracker, or {@code null} to rank new items alphabetically.
+     */
+    public void setTrendingItems(TrendingItems trendingItems) {
+        this.trendingItems = trendingItems;
+    }
+
+    /**
+     * Sets the beam search used to build recommendations, for example to change the number of
+     * recommendations (k), the beam width or the latency cap.
+     *
+     * @param beamSearch the configured recommender.
+     */
+    public void setBeamSearch(BeamSearchRecommender beamSearch) {
+        this.beamSearch = beamSearch;
+    }
+
+    /**
+     * Returns the menu this engine recommends from.
+     *
+     * @return the {@code Menu} given to the constructor.
+     */
+    public Menu getMenu() {
+        return menu;
+    }
+
+    /**
+     * Returns the attribute and nutrient index of the menu, building it on first use.
+     * <p>
+     * Callers build their dietary filters with it and pass the matches to
+     * {@link #generateRecommendations(String, int, List, BitSet)}.
+     *
+     * @return the index of this engine's menu.
+     */
+    public MenuIndex getMenuIndex() {
+        MenuIndex index = menuIndex;
+        if (index == null) {
+            index = new MenuIndex(menu);
+            menuIndex = index;
+        }
+        return index;
+    }
+
     /**
      * Generates a recommended order using a greedy algorithm.
      * <p>
@@ -60,70 +144,242 @@ public class RecommendationEngine {
     }
 
     /**
-     * Generates three variations of recommended orders based on the customer's historical ordering
-     * frequency and current session orders, combined with new items.
+     * Generates the top distinct recommended orders based on the customer's historical ordering
+     * frequency and current session orders.
+     * <p>
+     * It first reads the customer's item counts from the order history's frequency store
+     * and adds the current session orders. It then turns the counts into item affinities
+     * (blended with trending items, if a {@link TrendingItems} tracker is set) and lets the
+     * {@link BeamSearchRecommender} find the best distinct baskets under the calorie limit, scored
+     * by affinity and by how well they use the budget. The number of baskets, the beam width and
+     * the latency cap are set with {@link #setBeamSearch(BeamSearchRecommender)}.
      * <p>
-     * It first builds a frequency map from the order history and current session orders.
-     * It then divides the menu items into frequently ordered items and new items,
-     * sorts them appropriately, and creates three candidate lists:
-     * <ul>
-     *   <li>Candidate 1: Familiar items only.</li>
-     *   <li>Candidate 2: One new item (if available) followed by familiar items.</li>
-     *   <li>Candidate 3: New items first, then familiar items.</li>
-     * </ul>
-     * Finally, it applies the {@link #greedyRecommendation(List, int)} method to each candidate
-     * list to generate recommendations.
+     * If a {@link PrecomputedRecommendations} table has been set, the session is still empty and
+     * the customer has not stored an order since the table was built, the precomputed result for
+     * the customer and calorie budget is returned instead, and the live computation only runs on a miss.
      *
      * @param customerName   the customer's name used to filter historical orders.
      * @param desiredCalories the calorie limit for the recommendation.
      * @param sessionOrders  the list of {@code MenuItem} objects ordered in the current session.
-     * @return a list containing three recommended orders; each order is a list of {@code MenuItem} objects.
+     * @return the recommended orders, best first; each order is a list of {@code MenuItem} objects.
+     *         Empty if no menu item fits the calorie limit.
      */
     public List<List<MenuItem>> generateRecommendations(String customerName, int desiredCalories, List<MenuItem> sessionOrders) {
-        // Build a frequency map from order history for the given customer.
-        Map<String, Integer> frequency = orderHistory.buildFrequencyMap(customerName);
+        return generateRecommendations(customerName, desiredCalories, sessionOrders, null);
+    }
 
-        // Include current session orders to reflect recent user preferences.
-        for (MenuItem item : sessionOrders) {
-            String name = item.getName();
-            frequency.put(name, frequency.getOrDefault(name, 0) + 1); // Increase the count for each session order item.
+    /**
+     * Generates recommendations that only use the items allowed by a dietary filter.
+     * <p>
+     * The affinities are computed over the whole menu as usual, and then only the allowed items
+     * are handed to the beam search, so the search never looks at filtered-out items. Precomputed
+     * recommendations are not used, since they were computed without the filter.
+     *
+     * @param customerName    the customer's name used to filter historical orders.
+     * @param desiredCalories the calorie limit for the recommendation.
+     * @param sessionOrders   the list of {@code MenuItem} objects ordered in the current session.
+     * @param allowed         the allowed item positions, usually from a {@link MenuIndex.Query} on
+     *                        {@link #getMenuIndex()}; {@code null} allows every item.
+     * @return the recommended orders, best first. Empty if no allowed item fits the calorie limit.
+     */
+    public List<List<MenuItem>> generateRecommendations(String customerName, int desiredCalories,
+                                                        List<MenuItem> sessionOrders, BitSet allowed) {
+        TrackerEvents.Recommendation event = new TrackerEvents.Recommendation("recommend", customerName, desiredCalories);
+        event.begin();
+        List<List<MenuItem>> recommendations = null;
+        // Serve precomputed results first; they only reflect the stored history, so they are
+        // used only when nothing has been ordered in the current session and nothing is filtered out.
+        PrecomputedRecommendations table = precomputed;
+        if (table != null && sessionOrders.isEmpty() && allowed == null) {
+            recommendations = table.lookup(customerName, desiredCalories);
+            event.precomputed = recommendations != null;
+        }
+        if (recommendations == null) {
+            recommendations = generateRecommendations(customerCounts(customerName, sessionOrders), desiredCalories, allowed);
+            event.candidateItems = allowed == null ? menu.getItems().size() : allowed.cardinality();
         }
+        event.results = recommendations.size();
+        event.commit();
+        return recommendations;
+    }
 
-        // Separate menu items into those frequently ordered and new items.
-        List<MenuItem> frequentItems = new ArrayList<>();
-        List<MenuItem> newItems = new ArrayList<>();
-        for (MenuItem item : menu.getItems()) {
-            // If the item has been ordered before, add it to frequentItems; otherwise, to newItems.
-            if (frequency.getOrDefault(item.getName(), 0) > 0) {
-                frequentItems.add(item);
-            } else {
-                newItems.add(item);
+    /**
+     * Builds the table of "fill the remaining budget" suggestions for a customer.
+     * <p>
+     * The items are weighed with the same affinities as {@link #generateRecommendations(String, int, List)},
+     * so the live suggestions agree with the recommendation view. Building costs one pass over every
+     * budget up to the goal per menu item; after that each lookup only walks the items once, so the
+     * table should be kept and reused while the customer and goal stay the same.
+     *
+     * @param customerName  the customer's name used to filter historical orders.
+     * @param calorieGoal   the customer's calorie goal for the whole order.
+     * @param sessionOrders the list of {@code MenuItem} objects ordered in the current session.
+     * @return the table for all remaining budgets up to the goal.
+     */
+    public BudgetFillTable buildBudgetFillTable(String customerName, int calorieGoal, List<MenuItem> sessionOrders) {
+        return buildBudgetFillTable(customerName, calorieGoal, sessionOrders, null);
+    }
+
+    /**
+     * Builds the table of fill suggestions from the allowed items only, for example the items that
+     * are not sold out.
+     *
+     * @param customerName  the customer's name used to filter historical orders.
+     * @param calorieGoal   the customer's calorie goal for the whole order.
+     * @param sessionOrders the list of {@code MenuItem} objects ordered in the current session.
+     * @param allowed       the allowed menu positions, or {@code null} for every item.
+     * @return the table for all remaining budgets up to the goal.
+     */
+    public BudgetFillTable buildBudgetFillTable(String customerName, int calorieGoal, List<MenuItem> sessionOrders,
+                                                BitSet allowed) {
+        TrackerEvents.Recommendation event = new TrackerEvents.Recommendation("buildBudgetFillTable", customerName, calorieGoal);
+        event.begin();
+        double[] affinity = affinities(customerCounts(customerName, sessionOrders));
+        List<MenuItem> candidates = menu.getItems();
+        if (allowed != null) {
+            // Keep only the allowed items and their affinities, like the recommendation search does.
+            List<MenuItem> items = candidates;
+            candidates = new ArrayList<>(allowed.cardinality());
+            double[] candidateAffinity = new double[allowed.cardinality()];
+            for (int i = allowed.nextSetBit(0); i >= 0 && i < items.size(); i = allowed.nextSetBit(i + 1)) {
+                candidateAffinity[candidates.size()] = affinity[i];
+                candidates.add(items.get(i));
             }
+            affinity = Arrays.copyOf(candidateAffinity, candidates.size());
         }
+        BudgetFillTable table = BudgetFillTable.build(candidates, affinity, calorieGoal);
+        event.candidateItems = candidates.size();
+        event.results = table.getGoal() + 1;
+        event.commit();
+        return table;
+    }
 
-        // Sort the frequent items in descending order based on frequency.
-        frequentItems.sort((a, b) -> frequency.get(b.getName()) - frequency.get(a.getName()));
-        // Sort new items alphabetically by name.
-        newItems.sort(Comparator.comparing(MenuItem::getName));
+    /**
+     * Counts how often the customer ordered each menu item, in the history and in the current session.
+     *
+     * @param customerName  the customer's name.
+     * @param sessionOrders the items ordered in the current session.
+     * @return the counts, by position in the menu.
+     */
+    private int[] customerCounts(String customerName, List<MenuItem> sessionOrders) {
+        // Read the customer's count of every menu item straight from the history's frequency store.
+        List<MenuItem> items = menu.getItems();
+        int[] counts = new int[items.size()];
+        orderHistory.fillItemCounts(customerName, resolveMenuItemIds(items), counts);
 
-        // Create three candidate lists using different combinations of frequent and new items.
-        List<MenuItem> candidate1 = new ArrayList<>(frequentItems);
+        // Include current session orders to reflect recent user preferences.
+        for (MenuItem item : sessionOrders) {
+            for (int i = 0; i < counts.length; i++) {
+                if (items.get(i).getName().equals(item.getName())) {
+                    counts[i]++; // Increase the count for each session order item.
+                    break;
+                }
+            }
+        }
+        return counts;
+    }
 
-        List<MenuItem> candidate2 = new ArrayList<>();
-        if (!newItems.isEmpty()) {
-            candidate2.add(newItems.get(0)); // Start with one new item if available.
+    /**
+     * Returns the history item ids of the menu items, by menu position.
+     * <p>
+     * Ids are looked up once and cached; only items that had no id yet (never ordered) are looked
+     * up again, since they may have been ordered since. Two threads refreshing at the same time
+     * write the same values, so no locking is needed.
+     *
+     * @param items the menu items.
+     * @return the item ids, -1 for items that have never been ordered.
+     */
+    private int[] resolveMenuItemIds(List<MenuItem> items) {
+        int[] ids = menuItemIds;
+        if (ids.length != items.size()) {
+            ids = new int[items.size()];
+            Arrays.fill(ids, -1);
+            menuItemIds = ids;
+        }
+        IdDictionary dictionary = orderHistory.getItemDictionary();
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] < 0) {
+                ids[i] = dictionary.lookup(items.get(i).getName());
+            }
         }
-        candidate2.addAll(frequentItems);
+        return ids;
+    }
 
-        List<MenuItem> candidate3 = new ArrayList<>(newItems);
-        candidate3.addAll(frequentItems);
+    /**
+     * Generates the recommendations from an already built frequency map.
+     * <p>
+     * This is the part of {@link #generateRecommendations(String, int, List)} that does not touch
+     * the order history, so batch jobs can build all frequency maps in one pass and call it
+     * concurrently. The given map is only read, never modified.
+     *
+     * @param frequency       a map from menu item name to the number of times it was ordered.
+     * @param desiredCalories the calorie limit for the recommendation.
+     * @return the recommended orders, best first; each order is a list of {@code MenuItem} objects.
+     */
+    public List<List<MenuItem>> generateRecommendations(Map<String, Integer> frequency, int desiredCalories) {
+        List<MenuItem> items = menu.getItems();
+        int[] counts = new int[items.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = frequency.getOrDefault(items.get(i).getName(), 0);
+        }
+        return generateRecommendations(counts, desiredCalories, null);
+    }
+
+    /**
+     * Generates the top distinct recommendations from per-menu-item counts.
+     *
+     * @param counts          the number of times each menu item was ordered, by position in the menu.
+     * @param desiredCalories the calorie limit for the recommendation.
+     * @param allowed         the menu positions the search may use, or {@code null} for all.
+     * @return the recommended orders, best first.
+     */
+    private List<List<MenuItem>> generateRecommendations(int[] counts, int desiredCalories, BitSet allowed) {
+        List<MenuItem> items = menu.getItems();
+        double[] affinity = affinities(counts);
+        if (allowed == null) {
+            return beamSearch.recommend(items, affinity, desiredCalories);
+        }
+        // Narrow the candidates to the allowed items before searching.
+        List<MenuItem> candidates = new ArrayList<>(allowed.cardinality());
+        double[] candidateAffinity = new double[allowed.cardinality()];
+        for (int i = allowed.nextSetBit(0); i >= 0 && i < items.size(); i = allowed.nextSetBit(i + 1)) {
+            candidateAffinity[candidates.size()] = affinity[i];
+            candidates.add(items.get(i));
+        }
+        return beamSearch.recommend(candidates, candidateAffinity, desiredCalories);
+    }
 
-        // Apply the greedy recommendation algorithm to each candidate list.
-        List<List<MenuItem>> recommendations = new ArrayList<>();
-        recommendations.add(greedyRecommendation(candidate1, desiredCalories));
-        recommendations.add(greedyRecommendation(candidate2, desiredCalories));
-        recommendations.add(greedyRecommendation(candidate3, desiredCalories));
+    /**
+     * Turns per-menu-item counts into item affinities that add up to 1.
+     * <p>
+     * Each item's affinity is mostly its share of the customer's orders, blended with a small
+     * share ({@link #EXPLORATION}) of its popularity: what is trending if a {@link TrendingItems}
+     * tracker is set, otherwise an equal share for every item. This still lets untried items into
+     * the lower-ranked baskets. A customer without any orders gets the popularity alone.
+     *
+     * @param counts the number of times each menu item was ordered, by position in the menu.
+     * @return the affinities, by position in the menu.
+     */
+    private double[] affinities(int[] counts) {
+        List<MenuItem> items = menu.getItems();
+        double[] popularity = new double[items.size()];
+        double popularityTotal = 0;
+        for (int i = 0; i < popularity.length; i++) {
+            popularity[i] = trendingItems != null ? trendingItems.score(items.get(i).getName()) : 1;
+            popularityTotal += popularity[i];
+        }
+        long orderTotal = 0;
+        for (int count : counts) {
+            orderTotal += count;
+        }
 
-        return recommendations;
+        double[] affinity = new double[items.size()];
+        double ownShare = orderTotal > 0 ? 1 - EXPLORATION : 0;
+        for (int i = 0; i < affinity.length; i++) {
+            double own = orderTotal > 0 ? (double) counts[i] / orderTotal : 0;
+            double popular = popularityTotal > 0 ? popularity[i] / popularityTotal : 1.0 / affinity.length;
+            affinity[i] = ownShare * own + (1 - ownShare) * popular;
+        }
+        return affinity;
     }
 }
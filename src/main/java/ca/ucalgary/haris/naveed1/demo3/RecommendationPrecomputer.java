@@ -0,0 +1,182 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The {@code RecommendationPrecomputer} is a batch job that computes recommendations for every
+ * known customer ahead of time, so the kiosks can serve them instantly during the morning rush.
+ * <p>
+ * The job reads the order history once to build every customer's frequency map, then splits the
+ * customers across a {@link ForkJoinPool}. Each task computes the recommendations for a slice of
+ * customers over all configured calorie budgets and encodes them. The results are written to a
+ * {@link PrecomputedRecommendations} file, which the {@link RecommendationEngine} consults first.
+ * <p>
+ * Usage: {@code RecommendationPrecomputer [budget,budget,...] [parallelism]}
+ */
+public class RecommendationPrecomputer {
+    // Calorie budgets used when none are given on the command line.
+    static final int[] DEFAULT_BUDGETS = {500, 800, 1000, 1200, 1500, 2000};
+    // Number of customers a single task handles before it stops splitting.
+    private static final int SLICE_SIZE = 256;
+
+    private final RecommendationEngine engine;
+    private final OrderHistory orderHistory;
+    private final int[] budgets;
+
+    /**
+     * Creates a precomputer for the given engine and budgets.
+     *
+     * @param engine       the engine whose recommendation logic is precomputed.
+     * @param orderHistory the order history to read customers from.
+     * @param budgets      the calorie budgets to precompute.
+     */
+    public RecommendationPrecomputer(RecommendationEngine engine, OrderHistory orderHistory, int[] budgets) {
+        this.engine = engine;
+        this.orderHistory = orderHistory;
+        this.budgets = budgets.clone();
+    }
+
+    /**
+     * Computes the recommendations of every known customer and writes them to {@code file}.
+     *
+     * @param file        the output file.
+     * @param parallelism the number of worker threads of the fork-join pool.
+     * @return the number of customers written.
+     * @throws IOException if the file cannot be written.
+     */
+    public int run(File file, int parallelism) throws IOException {
+        List<MenuItem> items = engine.getMenu().getItems();
+        if (items.size() > 255) {
+            throw new IOException("menu has too many items for one-byte indexes");
+        }
+        // Remember the position of every menu item; positions are what the file stores.
+        Map<MenuItem, Integer> itemIndexes = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            itemIndexes.put(items.get(i), i);
+        }
+
+        // Read the history length before the scan so the table never claims to cover more than it read.
+        long historyLength = orderHistory.getHistoryLength();
+        Map<String, Map<String, Integer>> frequencies = orderHistory.buildAllFrequencyMaps();
+        String[] customers = frequencies.keySet().toArray(new String[0]);
+        byte[][] encoded = new byte[customers.length][];
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new SliceTask(customers, frequencies, itemIndexes, encoded, 0, customers.length));
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<String, byte[]> entries = new HashMap<>(customers.length * 2);
+        for (int i = 0; i < customers.length; i++) {
+            entries.put(customers[i], encoded[i]);
+        }
+        PrecomputedRecommendations.write(file, items, budgets, historyLength, entries);
+        return customers.length;
+    }
+
+    /**
+     * A fork-join task that precomputes a contiguous slice of the customer array.
+     * <p>
+     * Slices larger than {@link #SLICE_SIZE} are split in half and processed in parallel.
+     * Each task writes only to its own positions of the shared result array, so no locking is needed.
+     */
+    private class SliceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] customers;
+        // Tasks only run inside one pool and are never serialized.
+        private final transient Map<String, Map<String, Integer>> frequencies;
+        private final transient Map<MenuItem, Integer> itemIndexes;
+        private final byte[][] encoded;
+        private final int from;
+        private final int to;
+
+        SliceTask(String[] customers, Map<String, Map<String, Integer>> frequencies,
+                  Map<MenuItem, Integer> itemIndexes, byte[][] encoded, int from, int to) {
+            this.customers = customers;
+            this.frequencies = frequencies;
+            this.itemIndexes = itemIndexes;
+            this.encoded = encoded;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SLICE_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SliceTask(customers, frequencies, itemIndexes, encoded, from, middle),
+                        new SliceTask(customers, frequencies, itemIndexes, encoded, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                Map<String, Integer> frequency = frequencies.get(customers[i]);
+                List<List<List<MenuItem>>> perBudget = new ArrayList<>(budgets.length);
+                for (int budget : budgets) {
+                    perBudget.add(engine.generateRecommendations(frequency, budget));
+                }
+                encoded[i] = PrecomputedRecommendations.encode(perBudget, itemIndexes);
+            }
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of calorie budgets.
+     *
+     * @param text the list, for example {@code "500,1000,1500"}.
+     * @return the budgets.
+     * @throws NumberFormatException if an entry is not a number.
+     */
+    static int[] parseBudgets(String text) {
+        String[] parts = text.split(",");
+        int[] budgets = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            budgets[i] = Integer.parseInt(parts[i].trim());
+        }
+        return budgets;
+    }
+
+    /**
+     * Entry point of the batch job.
+     *
+     * @param args optional budgets list and parallelism.
+     */
+    public static void main(String[] args) {
+        int[] budgets = DEFAULT_BUDGETS;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        try {
+            if (args.length > 0) {
+                budgets = parseBudgets(args[0]);
+            }
+            if (args.length > 1) {
+                parallelism = Integer.parseInt(args[1]);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Usage: RecommendationPrecomputer [budget,budget,...] [parallelism]");
+            return;
+        }
+
+        Tracker.initializeMenu();
+        OrderHistory orderHistory = OrderHistory.openDefault();
+        RecommendationEngine engine = new RecommendationEngine(new Menu(), orderHistory);
+        engine.setTrendingItems(TrendingItems.forHistory(orderHistory));
+        RecommendationPrecomputer precomputer = new RecommendationPrecomputer(engine, orderHistory, budgets);
+        long start = System.nanoTime();
+        try {
+            int customers = precomputer.run(new File(PrecomputedRecommendations.RECOMMENDATIONS_FILE), parallelism);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Precomputed " + customers + " customers x " + budgets.length
+                    + " budgets in " + millis + " ms.");
+        } catch (IOException e) {
+            System.out.println("Error writing precomputed recommendations: " + e.getMessage());
+        }
+    }
+}
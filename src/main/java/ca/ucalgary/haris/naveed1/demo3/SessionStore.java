@@ -0,0 +1,269 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * The {@code SessionStore} class holds the items each customer has ordered in their current session.
+ * <p>
+ * Session items feed the recommendations next to the stored history. Earlier every front end kept
+ * its own list (or a map of lists per user) that was never emptied, which slowly leaks memory in a
+ * kiosk process that runs for weeks. This store bounds that memory:
+ * <ul>
+ *   <li>A session that has not been touched for the idle time-out is dropped.</li>
+ *   <li>When the store holds too many sessions, the least recently used one is dropped.</li>
+ *   <li>Items are kept as a growable {@code int[]} of item ids from the history's item
+ *   {@link IdDictionary} instead of a list of strings or menu item objects.</li>
+ * </ul>
+ * Sessions are spread over several stripes by customer name. Each stripe is an access-ordered
+ * {@link LinkedHashMap} with its own lock, so kiosks serving different customers rarely wait on
+ * each other, and eviction only ever looks at the least recently used end of one stripe.
+ * <p>
+ * There is one store per item dictionary in a process (see {@link #forItems(IdDictionary)}).
+ */
+public class SessionStore {
+    // Limits of the shared stores.
+    static final int DEFAULT_MAX_SESSIONS = 10_000;
+    static final long DEFAULT_IDLE_MILLIS = 30L * 60 * 1000;
+    private static final int DEFAULT_STRIPES = 16;
+
+    // One store per item dictionary.
+    private static final Map<IdDictionary, SessionStore> STORES = new IdentityHashMap<>();
+
+    private final IdDictionary itemIds;
+    private final long idleMillis;
+    private final LongSupplier clock;
+    private final Stripe[] stripes;
+
+    /**
+     * The items of one session and when it was last used.
+     */
+    private static final class Session {
+        int[] items = new int[8];
+        int size;
+        long lastAccess;
+    }
+
+    /**
+     * One lock-protected part of the store, evicting its least recently used session when full.
+     */
+    private static final class Stripe extends LinkedHashMap<String, Session> {
+        // Stripes are never serialized; LinkedHashMap just makes them Serializable.
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSessions;
+
+        Stripe(int maxSessions) {
+            super(16, 0.75f, true); // access order: the eldest entry is the least recently used
+            this.maxSessions = maxSessions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+            return size() > maxSessions;
+        }
+    }
+
+    /**
+     * Creates a session store.
+     *
+     * @param itemIds     the dictionary that maps item names to the ids stored in sessions.
+     * @param maxSessions the maximum number of sessions kept; the least recently used are dropped first.
+     * @param idleMillis  how long a session is kept without being used, in milliseconds.
+     * @param stripeCount the number of independently locked stripes (rounded up to a power of two).
+     * @param clock       the time source, in milliseconds.
+     */
+    SessionStore(IdDictionary itemIds, int maxSessions, long idleMillis, int stripeCount, LongSupplier clock) {
+        int count = 1;
+        while (count < stripeCount) {
+            count <<= 1;
+        }
+        this.itemIds = itemIds;
+        this.idleMillis = idleMillis;
+        this.clock = clock;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            // Spread the limit over the stripes, rounding up so the total is at least maxSessions.
+            stripes[i] = new Stripe(Math.max(1, (maxSessions + count - 1) / count));
+        }
+    }
+
+    /**
+     * Returns the shared session store for an item dictionary, creating it with the default limits.
+     *
+     * @param itemIds the item dictionary of the order history the sessions belong to.
+     * @return the store.
+     */
+    public static SessionStore forItems(IdDictionary itemIds) {
+        synchronized (STORES) {
+            return STORES.computeIfAbsent(itemIds, ids -> new SessionStore(ids, DEFAULT_MAX_SESSIONS,
+                    DEFAULT_IDLE_MILLIS, DEFAULT_STRIPES, System::currentTimeMillis));
+        }
+    }
+
+    /**
+     * Returns the stripe a customer's session lives in.
+     */
+    private Stripe stripeFor(String customerName) {
+        int h = customerName.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Drops sessions of a stripe that have been idle too long. Must hold the stripe's lock.
+     * <p>
+     * The stripe is in access order, so the scan stops at the first session that is still fresh.
+     */
+    private void expire(Stripe stripe, long now) {
+        Iterator<Session> it = stripe.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().lastAccess < idleMillis) {
+                return;
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * Starts a new, empty session for a customer, replacing any existing one.
+     *
+     * @param customerName the customer's name.
+     */
+    public void start(String customerName) {
+        Stripe stripe = stripeFor(customerName);
+        long now = clock.getAsLong();
+        synchronized (stripe) {
+            expire(stripe, now);
+            Session session = new Session();
+            session.lastAccess = now;
+            stripe.put(customerName, session);
+        }
+    }
+
+    /**
+     * Ends a customer's session and frees its memory.
+     *
+     * @param customerName the customer's name.
+     */
+    public void end(String customerName) {
+        Stripe stripe = stripeFor(customerName);
+        synchronized (stripe) {
+            stripe.remove(customerName);
+        }
+    }
+
+    /**
+     * Adds items to a customer's session, starting one if the customer has none.
+     *
+     * @param customerName the customer's name.
+     * @param itemNames    the names of the ordered items.
+     */
+    public void addItemNames(String customerName, Collection<String> itemNames) {
+        int[] ids = new int[itemNames.size()];
+        int i = 0;
+        for (String name : itemNames) {
+            ids[i++] = itemIds.idFor(name); // assigned outside the stripe lock; may write the dictionary file
+        }
+        Stripe stripe = stripeFor(customerName);
+        long now = clock.getAsLong();
+        synchronized (stripe) {
+            expire(stripe, now);
+            Session session = stripe.get(customerName);
+            if (session == null) {
+                session = new Session();
+                stripe.put(customerName, session);
+            }
+            if (session.size + ids.length > session.items.length) {
+                session.items = Arrays.copyOf(session.items, Math.max(session.items.length * 2, session.size + ids.length));
+            }
+            System.arraycopy(ids, 0, session.items, session.size, ids.length);
+            session.size += ids.length;
+            session.lastAccess = now;
+        }
+    }
+
+    /**
+     * Adds menu items to a customer's session, starting one if the customer has none.
+     *
+     * @param customerName the customer's name.
+     * @param items        the ordered menu items.
+     */
+    public void addItems(String customerName, List<MenuItem> items) {
+        List<String> names = new ArrayList<>(items.size());
+        for (MenuItem item : items) {
+            names.add(item.getName());
+        }
+        addItemNames(customerName, names);
+    }
+
+    /**
+     * Returns a copy of the item ids in a customer's session.
+     *
+     * @param customerName the customer's name.
+     * @return the item ids in the order they were added; empty if there is no live session.
+     */
+    public int[] itemIds(String customerName) {
+        Stripe stripe = stripeFor(customerName);
+        long now = clock.getAsLong();
+        synchronized (stripe) {
+            expire(stripe, now);
+            Session session = stripe.get(customerName);
+            if (session == null) {
+                return new int[0];
+            }
+            session.lastAccess = now;
+            return Arrays.copyOf(session.items, session.size);
+        }
+    }
+
+    /**
+     * Returns the names of the items in a customer's session.
+     *
+     * @param customerName the customer's name.
+     * @return the item names in the order they were added; empty if there is no live session.
+     */
+    public List<String> itemNames(String customerName) {
+        List<String> names = new ArrayList<>();
+        for (int id : itemIds(customerName)) {
+            names.add(itemIds.nameOf(id));
+        }
+        return names;
+    }
+
+    /**
+     * Returns the items in a customer's session as menu items.
+     * <p>
+     * Items that are no longer on the menu are left out.
+     *
+     * @param customerName the customer's name.
+     * @param menu         the menu to look the items up in.
+     * @return the menu items in the order they were added; empty if there is no live session.
+     */
+    public List<MenuItem> menuItems(String customerName, Menu menu) {
+        List<MenuItem> items = new ArrayList<>();
+        for (String name : itemNames(customerName)) {
+            MenuItem item = menu.getItemByName(name);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Returns the number of sessions currently held, including idle ones not yet dropped.
+     *
+     * @return the session count.
+     */
+    public int size() {
+        int total = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                total += stripe.size();
+            }
+        }
+        return total;
+    }
+}
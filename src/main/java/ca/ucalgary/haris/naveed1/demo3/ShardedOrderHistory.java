@@ -0,0 +1,577 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code ShardedOrderHistory} class spreads the order history over several shard files so
+ * that no single file becomes a throughput or size bottleneck.
+ * <p>
+ * Customers are hash-partitioned: every customer always lives in exactly one shard, chosen from a
+ * hash of the customer name. Writes are routed to that shard, and per-customer reads (history,
+ * frequency maps) only touch that shard. Scans over the whole history fan out to all shards in
+ * parallel and merge the results.
+ * <p>
+ * Layout of the shard directory:
+ * <pre>
+ * shards.txt                     number of shards
+ * rebalance.txt                  only while a rebalance is being switched in (see below)
+ * order_history.txt.customers    customer ids shared by all shards
+ * order_history.txt.items        item ids shared by all shards
+ * shard-0/order_history.txt      records of the customers that hash to shard 0
+ * shard-1/order_history.txt      ...
+ * </pre>
+ * The shard count is fixed once the directory exists. Changing it requires the offline rebalance
+ * tool, which rewrites every record into a new layout:
+ * {@code ShardedOrderHistory rebalance <directory> <newShardCount>}. An existing single history file
+ * can be split into shards with {@code ShardedOrderHistory import <directory> <shardCount> <file>}.
+ */
+public class ShardedOrderHistory extends OrderHistory {
+    // Directory the applications look in for a sharded history.
+    public static final String DEFAULT_DIRECTORY = "order_history_shards";
+    // File inside the directory that records the shard count.
+    private static final String SHARD_COUNT_FILE = "shards.txt";
+    // File inside the directory that records a rebalance that is being switched in.
+    private static final String REBALANCE_FILE = "rebalance.txt";
+
+    private final File directory;
+    private final OrderHistory[] shards;
+
+    /**
+     * Opens the shards of a directory.
+     *
+     * @param directory the shard directory.
+     * @param shardCount the number of shards.
+     */
+    private ShardedOrderHistory(File directory, int shardCount) {
+        super(directory);
+        this.directory = directory;
+        this.shards = new OrderHistory[shardCount];
+        String dictionaryBase = new File(directory, ORDER_HISTORY_FILE).getPath();
+        for (int i = 0; i < shardCount; i++) {
+            File shardDirectory = new File(directory, "shard-" + i);
+            shardDirectory.mkdirs();
+            shards[i] = new OrderHistory(new File(shardDirectory, ORDER_HISTORY_FILE).getPath(), dictionaryBase);
+        }
+    }
+
+    /**
+     * Tells whether a directory holds a sharded history.
+     *
+     * @param directory the directory path.
+     * @return {@code true} if the directory has a shard count file.
+     */
+    public static boolean exists(String directory) {
+        return new File(directory, SHARD_COUNT_FILE).exists();
+    }
+
+    /**
+     * Opens an existing sharded history.
+     *
+     * @param directory the shard directory.
+     * @return the sharded history.
+     * @throws IllegalStateException if the directory has no readable shard count.
+     */
+    public static ShardedOrderHistory open(String directory) {
+        finishRebalance(new File(directory));
+        return new ShardedOrderHistory(new File(directory), readShardCount(new File(directory)));
+    }
+
+    /**
+     * Creates a sharded history, or opens it if it already exists with the same shard count.
+     *
+     * @param directory  the shard directory.
+     * @param shardCount the number of shards.
+     * @return the sharded history.
+     * @throws IllegalStateException if the directory already uses a different shard count.
+     */
+    public static ShardedOrderHistory create(String directory, int shardCount) {
+        File dir = new File(directory);
+        finishRebalance(dir);
+        if (exists(directory)) {
+            int existing = readShardCount(dir);
+            if (existing != shardCount) {
+                throw new IllegalStateException(directory + " has " + existing
+                        + " shards; use the rebalance tool to change the shard count.");
+            }
+        } else {
+            dir.mkdirs();
+            writeShardCount(dir, shardCount);
+        }
+        return new ShardedOrderHistory(dir, shardCount);
+    }
+
+    /**
+     * Returns the shard index of a customer for a given shard count.
+     * <p>
+     * The name's hash code is mixed before taking the remainder so that similar names still spread
+     * evenly. {@link String#hashCode()} is defined by the language, so the mapping is the same in every
+     * JVM and across restarts.
+     *
+     * @param customerName the customer's name.
+     * @param shardCount   the number of shards.
+     * @return the shard index.
+     */
+    static int shardOf(String customerName, int shardCount) {
+        int h = customerName.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, shardCount);
+    }
+
+    /**
+     * Returns the shard that holds a customer's records.
+     *
+     * @param customerName the customer's name.
+     * @return the customer's shard.
+     */
+    public OrderHistory shardFor(String customerName) {
+        return shards[shardOf(customerName, shards.length)];
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the shard count.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Stores an order in the shard of its customer.
+     *
+     * @param order the order to store.
+     * @return true if the order was written.
+     */
+    @Override
+    public boolean storeOrder(Order order) {
+        return shardFor(order.getCustomerName()).storeOrder(order);
+    }
+
+    /**
+     * Stores many records at once, grouped by shard and written to the shards in parallel.
+     * <p>
+     * Records of one customer keep their order, since they all go to the same shard.
+     *
+     * @param records the records to store.
+     * @throws IOException if a shard cannot be written; other shards may already have their records.
+     */
+    @Override
+    public void storeRecords(List<HistoryRecord> records) throws IOException {
+        List<List<HistoryRecord>> perShard = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            perShard.add(new ArrayList<>());
+        }
+        for (HistoryRecord record : records) {
+            perShard.get(shardOf(record.getCustomerName(), shards.length)).add(record);
+        }
+        try {
+            IntStream.range(0, shards.length).parallel().forEach(i -> {
+                try {
+                    shards[i].storeRecords(perShard.get(i));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns a customer's records by reading only that customer's shard.
+     *
+     * @param customerName the customer's name.
+     * @return the customer's records.
+     */
+    @Override
+    public List<HistoryRecord> findCustomerRecords(String customerName) {
+        return shardFor(customerName).findCustomerRecords(customerName);
+    }
+
+    /**
+     * Scans every shard in parallel and merges the matching records.
+     * <p>
+     * Records of one shard stay in file order; the shards' results are concatenated in shard order.
+     *
+     * @param filter the condition a record must satisfy.
+     * @return the matching records from all shards.
+     */
+    @Override
+    public List<HistoryRecord> findRecords(Predicate<HistoryRecord> filter) {
+        List<HistoryRecord> records = new ArrayList<>();
+        Arrays.stream(shards).parallel()
+                .map(shard -> shard.findRecords(filter))
+                .forEachOrdered(records::addAll);
+        return records;
+    }
+
+    /**
+     * Builds a customer's frequency map from that customer's shard only.
+     *
+     * @param customerName the name of the user.
+     * @return the customer's item frequencies.
+     */
+    @Override
+    public Map<String, Integer> buildFrequencyMap(String customerName) {
+        return shardFor(customerName).buildFrequencyMap(customerName);
+    }
+
+    /**
+     * Builds the frequency maps of all customers, fanning out to the shards in parallel.
+     * <p>
+     * Every customer lives in one shard, so the per-shard maps can simply be merged.
+     *
+     * @return a map from customer name to that customer's frequency map.
+     */
+    @Override
+    public Map<String, Map<String, Integer>> buildAllFrequencyMaps() {
+        Map<String, Map<String, Integer>> frequencies = new HashMap<>();
+        Arrays.stream(shards).parallel()
+                .map(OrderHistory::buildAllFrequencyMaps)
+                .forEachOrdered(frequencies::putAll);
+        return frequencies;
+    }
+
+    /**
+     * Reads a customer's item counts from that customer's shard only.
+     *
+     * @param customerName the name of the user.
+     * @param itemIds      item ids from the shared item dictionary.
+     * @param counts       receives the count of {@code itemIds[i]} at position {@code i}.
+     */
+    @Override
+    public void fillItemCounts(String customerName, int[] itemIds, int[] counts) {
+        shardFor(customerName).fillItemCounts(customerName, itemIds, counts);
+    }
+
+    /**
+     * Sets the event source of every shard, since the shards publish the orders they store.
+     *
+     * @param eventSource the location id.
+     */
+    @Override
+    public void setEventSource(String eventSource) {
+        super.setEventSource(eventSource);
+        for (OrderHistory shard : shards) {
+            shard.setEventSource(eventSource);
+        }
+    }
+
+    /**
+     * Returns the item dictionary shared by all shards.
+     *
+     * @return the item dictionary.
+     */
+    @Override
+    public IdDictionary getItemDictionary() {
+        return shards[0].getItemDictionary();
+    }
+
+    /**
+     * Registers a listener on the log of every shard.
+     *
+     * @param listener the listener; it may be called from several shards at the same time.
+     */
+    @Override
+    public void addAppendListener(HistoryLog.AppendListener listener) {
+        for (OrderHistory shard : shards) {
+            shard.addAppendListener(listener);
+        }
+    }
+
+    /**
+     * Returns the customer dictionary shared by all shards.
+     *
+     * @return the customer dictionary.
+     */
+    @Override
+    public IdDictionary getCustomerDictionary() {
+        return shards[0].getCustomerDictionary();
+    }
+
+    /**
+     * Returns the files of all shards, in shard order.
+     *
+     * @return the shard files.
+     */
+    @Override
+    public List<File> getHistoryFiles() {
+        List<File> files = new ArrayList<>();
+        for (OrderHistory shard : shards) {
+            files.addAll(shard.getHistoryFiles());
+        }
+        return files;
+    }
+
+    /**
+     * Returns the file of the customer's shard, so a customer query reads only that shard.
+     *
+     * @param customerName the customer's name.
+     * @return the shard's files.
+     */
+    @Override
+    protected List<File> getHistoryFilesFor(String customerName) {
+        return shardFor(customerName).getHistoryFiles();
+    }
+
+    /**
+     * Returns the total size of all shard files.
+     *
+     * @return the combined length in bytes.
+     */
+    @Override
+    public long getHistoryLength() {
+        long total = 0;
+        for (OrderHistory shard : shards) {
+            total += shard.getHistoryLength();
+        }
+        return total;
+    }
+
+    /**
+     * Reads the shard count of a directory.
+     */
+    private static int readShardCount(File directory) {
+        try {
+            return Integer.parseInt(Files.readString(new File(directory, SHARD_COUNT_FILE).toPath()).trim());
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Cannot read shard count of " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the shard count of a directory, replacing the file in one rename.
+     */
+    private static void writeShardCount(File directory, int shardCount) {
+        try {
+            writeAtomically(new File(directory, SHARD_COUNT_FILE), Integer.toString(shardCount));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write shard count of " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites a set of history files into {@code newShardCount} shard files inside {@code target}.
+     * <p>
+     * Records are copied as framed lines; torn or corrupt lines are dropped and counted. The sealed
+     * {@link HistorySegments} of a source are copied before the source itself.
+     *
+     * @param sources       the history files to read.
+     * @param target        the directory to create the shard directories in.
+     * @param newShardCount the number of shards to write.
+     * @return the number of records copied and dropped, as {@code {copied, dropped}}.
+     * @throws IOException if a file cannot be read or written.
+     */
+    static long[] partition(List<File> sources, File target, int newShardCount) throws IOException {
+        BufferedWriter[] writers = new BufferedWriter[newShardCount];
+        long copied = 0;
+        long dropped = 0;
+        try {
+            for (int i = 0; i < newShardCount; i++) {
+                File shardDirectory = new File(target, "shard-" + i);
+                shardDirectory.mkdirs();
+                writers[i] = Files.newBufferedWriter(new File(shardDirectory, ORDER_HISTORY_FILE).toPath(), StandardCharsets.UTF_8);
+            }
+            for (File source : sources) {
+                for (HistorySegment segment : HistorySegments.forFile(source.getPath()).getSegments()) {
+                    for (int block = 0; block < segment.getBlockCount(); block++) {
+                        for (HistoryRecord record : segment.records(block)) {
+                            BufferedWriter writer = writers[shardOf(record.getCustomerName(), newShardCount)];
+                            writer.write(HistoryRecord.frame(record.toPayload()));
+                            writer.write(System.lineSeparator());
+                            copied++;
+                        }
+                    }
+                }
+                if (!source.exists()) {
+                    continue;
+                }
+                try (BufferedReader br = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        HistoryRecord record = HistoryRecord.parse(line);
+                        if (record == null) {
+                            dropped++;
+                            continue;
+                        }
+                        BufferedWriter writer = writers[shardOf(record.getCustomerName(), newShardCount)];
+                        writer.write(HistoryRecord.frame(record.toPayload()));
+                        writer.write(System.lineSeparator());
+                        copied++;
+                    }
+                }
+            }
+        } finally {
+            for (BufferedWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return new long[] {copied, dropped};
+    }
+
+    /**
+     * Offline rebalance: moves every record of a sharded history into a new number of shards.
+     * <p>
+     * The new layout is written into a staging directory first, so a rebalance interrupted while
+     * copying leaves the old layout untouched. The switch is then recorded in {@code rebalance.txt}
+     * before any directory is moved: the old shard directories are moved aside (into
+     * {@code .old-<timestamp>}), the new ones moved in and the new shard count written, and only then
+     * is {@code rebalance.txt} removed. If the switch is interrupted, the next {@link #open(String)} or
+     * {@link #create(String, int)} of the directory finishes it, so the history is never opened
+     * with the new shard directories and the old shard count or the other way round. The
+     * application must not be running.
+     *
+     * @param directory     the shard directory.
+     * @param newShardCount the new number of shards.
+     * @throws IOException if the files cannot be rewritten.
+     */
+    public static void rebalance(String directory, int newShardCount) throws IOException {
+        File dir = new File(directory);
+        finishRebalance(dir);
+        int oldShardCount = readShardCount(dir);
+        long[] counts = prepareRebalance(dir, newShardCount);
+        File old = finishRebalance(dir);
+        System.out.println("Rebalanced " + oldShardCount + " -> " + newShardCount + " shards: "
+                + counts[0] + " records copied, " + counts[1] + " corrupt lines dropped. Old shards kept in " + old);
+    }
+
+    /**
+     * First half of a rebalance: writes the new layout into a staging directory and records the
+     * switch in {@code rebalance.txt}. Nothing the application reads has changed yet.
+     *
+     * @return the number of records copied and dropped, as {@code {copied, dropped}}.
+     */
+    static long[] prepareRebalance(File dir, int newShardCount) throws IOException {
+        int oldShardCount = readShardCount(dir);
+        List<File> sources = new ArrayList<>();
+        for (int i = 0; i < oldShardCount; i++) {
+            sources.add(new File(new File(dir, "shard-" + i), ORDER_HISTORY_FILE));
+        }
+        File staging = new File(dir, ".rebalance-" + newShardCount);
+        long[] counts = partition(sources, staging, newShardCount);
+        for (int i = 0; i < newShardCount; i++) {
+            // The copies are complete on disk before the switch is recorded.
+            try (FileChannel channel = FileChannel.open(new File(new File(staging, "shard-" + i), ORDER_HISTORY_FILE).toPath(),
+                    StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+        writeAtomically(new File(dir, REBALANCE_FILE), oldShardCount + " " + newShardCount + " "
+                + staging.getName() + " .old-" + System.currentTimeMillis());
+        return counts;
+    }
+
+    /**
+     * Second half of a rebalance: switches in the layout recorded in {@code rebalance.txt}, if
+     * there is one. Every step checks whether it was already done, so the switch can be finished
+     * after being interrupted at any point.
+     *
+     * @return the directory the old shards were moved to, or {@code null} if there was no rebalance
+     *         to finish.
+     */
+    static File finishRebalance(File dir) {
+        File journal = new File(dir, REBALANCE_FILE);
+        if (!journal.exists()) {
+            return null;
+        }
+        try {
+            String[] fields = Files.readString(journal.toPath()).trim().split(" ");
+            int oldShardCount = Integer.parseInt(fields[0]);
+            int newShardCount = Integer.parseInt(fields[1]);
+            File staging = new File(dir, fields[2]);
+            File old = new File(dir, fields[3]);
+            old.mkdirs();
+            // Every old shard leaves before any new shard comes in, so a shard directory that is
+            // not in the old directory yet is still an old one.
+            for (int i = 0; i < oldShardCount; i++) {
+                File shard = new File(dir, "shard-" + i);
+                if (shard.exists() && !new File(old, "shard-" + i).exists()) {
+                    move(shard, new File(old, "shard-" + i));
+                }
+            }
+            for (int i = 0; i < newShardCount; i++) {
+                File staged = new File(staging, "shard-" + i);
+                if (staged.exists()) {
+                    move(staged, new File(dir, "shard-" + i));
+                }
+            }
+            staging.delete();
+            writeShardCount(dir, newShardCount);
+            Files.delete(journal.toPath());
+            return old;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Cannot finish the rebalance of " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a small file through a temporary file and a rename, so it is never seen half written.
+     */
+    private static void writeAtomically(File file, String content) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        Files.writeString(temporary.toPath(), content);
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Renames a file or directory, failing loudly if the rename does not happen.
+     */
+    private static void move(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException("Could not move " + from + " to " + to);
+        }
+    }
+
+    /**
+     * Command line tool for setting up and rebalancing sharded histories.
+     * <pre>
+     * ShardedOrderHistory import    &lt;directory&gt; &lt;shardCount&gt; [historyFile]
+     * ShardedOrderHistory rebalance &lt;directory&gt; &lt;newShardCount&gt;
+     * </pre>
+     *
+     * @param args the command and its arguments.
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length >= 3 && args[0].equals("import")) {
+                File dir = new File(args[1]);
+                int shardCount = Integer.parseInt(args[2]);
+                if (exists(args[1])) {
+                    System.out.println(args[1] + " already holds a sharded history.");
+                    return;
+                }
+                String source = args.length > 3 ? args[3] : ORDER_HISTORY_FILE;
+                long[] counts = partition(List.of(new File(source)), dir, shardCount);
+                writeShardCount(dir, shardCount);
+                System.out.println("Imported " + counts[0] + " records into " + shardCount + " shards ("
+                        + counts[1] + " corrupt lines dropped).");
+            } else if (args.length >= 3 && args[0].equals("rebalance")) {
+                rebalance(args[1], Integer.parseInt(args[2]));
+            } else {
+                System.out.println("Usage: ShardedOrderHistory import <directory> <shardCount> [historyFile]");
+                System.out.println("       ShardedOrderHistory rebalance <directory> <newShardCount>");
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * The {@code TrackerEvents} class holds the JDK Flight Recorder events of the tracker.
+ * <p>
+ * Each event measures one operation (its duration is recorded automatically between
+ * {@code begin()} and {@code commit()}) and carries fields that explain the time: bytes and lines
+ * read, records written, baskets evaluated. A recording started with
+ * <pre>
+ * java -XX:StartFlightRecording=filename=tracker.jfr ...
+ * </pre>
+ * shows, for a slow click, whether the time went into history I/O, the recommendation search or
+ * the UI handler itself:
+ * <pre>
+ * jfr print --categories "Nutrition Tracker" tracker.jfr
+ * </pre>
+ * When no recording is running, {@code commit()} returns at once, so the events cost next to nothing.
+ */
+public final class TrackerEvents {
+    // Category shown in JDK Mission Control and used with jfr print --categories.
+    private static final String CATEGORY = "Nutrition Tracker";
+
+    private TrackerEvents() {
+    }
+
+    /**
+     * A scan of an order history file, for example to list a customer's orders or to rebuild the index.
+     */
+    @Name("ca.ucalgary.haris.naveed1.demo3.HistoryRead")
+    @Label("History Read")
+    @Category({CATEGORY, "History"})
+    @Description("A scan of an order history file")
+    @StackTrace(false)
+    public static final class HistoryRead extends Event {
+        @Label("Operation")
+        public String operation;
+        @Label("History File")
+        public String historyFile;
+        @Label("Customer")
+        @Description("The customer the scan looks for, if any")
+        public String customer;
+        @Label("Bytes Read")
+        @DataAmount
+        public long bytesRead;
+        @Label("Lines Scanned")
+        public long linesScanned;
+        @Label("Lines Skipped")
+        @Description("Torn or corrupt lines that could not be parsed")
+        public long linesSkipped;
+        @Label("Records Matched")
+        public long recordsMatched;
+
+        public HistoryRead(String operation, String historyFile, String customer) {
+            this.operation = operation;
+            this.historyFile = historyFile;
+            this.customer = customer;
+        }
+    }
+
+    /**
+     * An append of one or more records to an order history file.
+     */
+    @Name("ca.ucalgary.haris.naveed1.demo3.HistoryWrite")
+    @Label("History Write")
+    @Category({CATEGORY, "History"})
+    @Description("An append of records to an order history file")
+    @StackTrace(false)
+    public static final class HistoryWrite extends Event {
+        @Label("History File")
+        public String historyFile;
+        @Label("Customer")
+        @Description("The customer of the record, for a single append")
+        public String customer;
+        @Label("Records")
+        public int records;
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytesWritten;
+
+        public HistoryWrite(String historyFile, String customer) {
+            this.historyFile = historyFile;
+            this.customer = customer;
+        }
+    }
+
+    /**
+     * One request for recommendations, from the customer's counts to the returned baskets.
+     */
+    @Name("ca.ucalgary.haris.naveed1.demo3.Recommendation")
+    @Label("Recommendation")
+    @Category({CATEGORY, "Recommendations"})
+    @Description("Generating recommendations or a fill table for a customer")
+    @StackTrace(false)
+    public static final class Recommendation extends Event {
+        @Label("Operation")
+        public String operation;
+        @Label("Customer")
+        public String customer;
+        @Label("Calories")
+        @Description("The calorie budget or goal")
+        public int calories;
+        @Label("Precomputed")
+        @Description("Whether the result came from the precomputed table")
+        public boolean precomputed;
+        @Label("Candidate Items")
+        public int candidateItems;
+        @Label("Results")
+        @Description("Baskets returned, or budgets covered by a fill table")
+        public int results;
+
+        public Recommendation(String operation, String customer, int calories) {
+            this.operation = operation;
+            this.customer = customer;
+            this.calories = calories;
+        }
+    }
+
+    /**
+     * One run of the beam search, nested inside a {@link Recommendation}.
+     */
+    @Name("ca.ucalgary.haris.naveed1.demo3.BeamSearch")
+    @Label("Beam Search")
+    @Category({CATEGORY, "Recommendations"})
+    @Description("The search for the best distinct baskets under a calorie budget")
+    @StackTrace(false)
+    public static final class BeamSearch extends Event {
+        @Label("Candidate Items")
+        public int candidateItems;
+        @Label("Baskets Evaluated")
+        public long basketsEvaluated;
+        @Label("Levels")
+        @Description("The number of items in the largest baskets tried")
+        public int levels;
+        @Label("Stopped Early")
+        @Description("Whether the latency cap ended the search")
+        public boolean stoppedEarly;
+    }
+
+    /**
+     * The order rates of one location, emitted every few seconds while a recording runs so the
+     * recording shows demand over time next to the operations it caused.
+     */
+    @Name("ca.ucalgary.haris.naveed1.demo3.OrderRates")
+    @Label("Order Rates")
+    @Category({CATEGORY, "Orders"})
+    @Description("Orders of the last minute, hour and day of one location, from OrderRateCounters")
+    @Period("10 s")
+    @StackTrace(false)
+    public static final class OrderRates extends Event {
+        @Label("Location")
+        public String location;
+        @Label("Orders Last Minute")
+        public long ordersLastMinute;
+        @Label("Orders Last Hour")
+        public long ordersLastHour;
+        @Label("Orders Last Day")
+        public long ordersLastDay;
+        @Label("Top Item Last Hour")
+        public String topItem;
+    }
+
+    /**
+     * One UI action handled by the {@link MainController}.
+     */
+    @Name("ca.ucalgary.haris.naveed1.demo3.UiAction")
+    @Label("UI Action")
+    @Category({CATEGORY, "User Interface"})
+    @Description("A button or menu action handled on the JavaFX thread")
+    @StackTrace(false)
+    public static final class UiAction extends Event {
+        @Label("Handler")
+        public String handler;
+        @Label("Customer")
+        public String customer;
+
+        public UiAction(String handler, String customer) {
+            this.handler = handler;
+            this.customer = customer;
+        }
+    }
+}
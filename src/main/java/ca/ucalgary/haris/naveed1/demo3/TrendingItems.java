@@ -0,0 +1,243 @@
+//Creators: Haris Naveed(30240785), Arash Ajdari(30237745), Shayan Shaikh(30241360)
+
+package ca.ucalgary.haris.naveed1.demo3;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The {@code TrendingItems} class tracks which menu items are ordered most right now, across all customers.
+ * <p>
+ * It is a Space-Saving heavy-hitters summary with time decay. At most {@code capacity} items are
+ * monitored, each with a counter and an error bound, so memory stays fixed no matter how many orders
+ * are counted. When an unmonitored item arrives and the summary is full, it takes over the slot of
+ * the item with the smallest counter and inherits that counter as its error. Any item whose decayed
+ * count exceeds 1/capacity of the total is guaranteed to be monitored.
+ * <p>
+ * Older orders count for less: an order placed one half-life ago weighs half as much as one placed
+ * now. This uses forward decay: an order at time {@code t} adds {@code 2^((t - landmark) / halfLife)},
+ * so counters never have to be decayed one by one as time passes; all counters share the same decay
+ * factor, which only matters when reporting estimates. When the weights grow too large the landmark
+ * is moved forward and every counter is rescaled once.
+ * <p>
+ * The tracker for an order history is created with {@link #forHistory(OrderHistory)}. It is filled
+ * from the stored records once, then kept current by listening to appends on the history's logs.
+ */
+public class TrendingItems implements HistoryLog.AppendListener {
+    // Number of items monitored by trackers created with forHistory.
+    static final int DEFAULT_CAPACITY = 64;
+    // Half-life of an order's weight for trackers created with forHistory.
+    static final long DEFAULT_HALF_LIFE_MILLIS = 6L * 60 * 60 * 1000;
+    // Rescale the counters once weights reach 2^RESCALE_EXPONENT, well before a double overflows.
+    private static final double RESCALE_EXPONENT = 64;
+
+    // One tracker per history, keyed by the absolute path of its file or directory.
+    private static final Map<String, TrendingItems> TRACKERS = new ConcurrentHashMap<>();
+
+    private final int capacity;
+    private final double halfLifeMillis;
+    // Monitored items; slots 0 .. size - 1 are in use.
+    private final String[] items;
+    private final double[] counts;
+    private final double[] errors;
+    // Item name -> slot, holding at most capacity entries.
+    private final Map<String, Integer> slots;
+    private int size;
+    // Time the weights are measured from; -1 until the first order is counted.
+    private long landmarkMillis = -1;
+
+    /**
+     * Creates an empty tracker.
+     *
+     * @param capacity       the number of items monitored.
+     * @param halfLifeMillis the time after which an order counts half as much, in milliseconds.
+     */
+    public TrendingItems(int capacity, long halfLifeMillis) {
+        if (capacity < 1 || halfLifeMillis < 1) {
+            throw new IllegalArgumentException("capacity and half-life must be positive");
+        }
+        this.capacity = capacity;
+        this.halfLifeMillis = halfLifeMillis;
+        this.items = new String[capacity];
+        this.counts = new double[capacity];
+        this.errors = new double[capacity];
+        this.slots = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Returns the shared tracker of an order history, creating it on first use.
+     * <p>
+     * A new tracker registers itself on the history's logs first and then counts every stored
+     * record with the time it was placed, so an order stored during that scan may be counted twice.
+     * Records whose time cannot be read are skipped.
+     *
+     * @param orderHistory the history to track.
+     * @return the tracker.
+     */
+    public static TrendingItems forHistory(OrderHistory orderHistory) {
+        String key = new File(orderHistory.getHistoryFile()).getAbsolutePath();
+        return TRACKERS.computeIfAbsent(key, k -> {
+            TrendingItems tracker = new TrendingItems(DEFAULT_CAPACITY, DEFAULT_HALF_LIFE_MILLIS);
+            orderHistory.addAppendListener(tracker);
+            ZoneId zone = ZoneId.systemDefault();
+            // The filter keeps nothing, so the scan never holds more than one record.
+            orderHistory.findRecords(record -> {
+                LocalDateTime time = HistoryRecord.parseTime(record.getDateTime());
+                if (time != null) {
+                    tracker.offer(record.getItems(), time.atZone(zone).toInstant().toEpochMilli());
+                }
+                return false;
+            });
+            return tracker;
+        });
+    }
+
+    /**
+     * Counts a record that has just been appended, at the current time.
+     *
+     * @param record     the appended record.
+     * @param fileLength the file length after the append (unused).
+     */
+    @Override
+    public void recordAppended(HistoryRecord record, long fileLength) {
+        offer(record.getItems(), System.currentTimeMillis());
+    }
+
+    /**
+     * Counts the items of one order.
+     *
+     * @param orderItems the ordered item names; an item ordered twice counts twice.
+     * @param timeMillis when the order was placed.
+     */
+    public synchronized void offer(List<String> orderItems, long timeMillis) {
+        if (landmarkMillis < 0) {
+            landmarkMillis = timeMillis;
+        }
+        double exponent = (timeMillis - landmarkMillis) / halfLifeMillis;
+        if (exponent > RESCALE_EXPONENT) {
+            rescale(timeMillis);
+            exponent = 0;
+        }
+        double weight = Math.pow(2, exponent);
+        for (String item : orderItems) {
+            offer(item, weight);
+        }
+    }
+
+    /**
+     * Adds a weight to one item (the Space-Saving update).
+     */
+    private void offer(String item, double weight) {
+        Integer slot = slots.get(item);
+        if (slot != null) {
+            counts[slot] += weight;
+            return;
+        }
+        if (size < capacity) {
+            items[size] = item;
+            counts[size] = weight;
+            errors[size] = 0;
+            slots.put(item, size);
+            size++;
+            return;
+        }
+        // Replace the item with the smallest counter; its counter becomes the newcomer's error bound.
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (counts[i] < counts[min]) {
+                min = i;
+            }
+        }
+        slots.remove(items[min]);
+        items[min] = item;
+        errors[min] = counts[min];
+        counts[min] += weight;
+        slots.put(item, min);
+    }
+
+    /**
+     * Moves the landmark to {@code timeMillis} and scales every counter to match.
+     */
+    private void rescale(long timeMillis) {
+        double factor = Math.pow(2, -(timeMillis - landmarkMillis) / halfLifeMillis);
+        for (int i = 0; i < size; i++) {
+            counts[i] *= factor;
+            errors[i] *= factor;
+        }
+        landmarkMillis = timeMillis;
+    }
+
+    /**
+     * Returns a score of how much an item is trending, for ranking items against each other.
+     * <p>
+     * Scores share an arbitrary scale that changes over time, so they are only meaningful compared
+     * with other scores taken at the same moment.
+     *
+     * @param item the item name.
+     * @return the item's decayed counter, 0 if the item is not monitored.
+     */
+    public synchronized double score(String item) {
+        Integer slot = slots.get(item);
+        return slot == null ? 0 : counts[slot];
+    }
+
+    /**
+     * Estimates how many orders of an item are "recent" at a given time: each order counts
+     * {@code 2^(-age / halfLife)}.
+     * <p>
+     * The estimate may overcount by at most the item's error bound, never undercount a monitored item.
+     *
+     * @param item       the item name.
+     * @param timeMillis the time to estimate at.
+     * @return the decayed count, 0 if the item is not monitored.
+     */
+    public synchronized double estimate(String item, long timeMillis) {
+        Integer slot = slots.get(item);
+        if (slot == null) {
+            return 0;
+        }
+        return counts[slot] * Math.pow(2, -(timeMillis - landmarkMillis) / halfLifeMillis);
+    }
+
+    /**
+     * Returns the most trending items, highest first.
+     *
+     * @param n the maximum number of items to return.
+     * @return up to {@code n} item names.
+     */
+    public synchronized List<String> top(int n) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(counts[b], counts[a]));
+        List<String> top = new ArrayList<>();
+        for (int i = 0; i < Math.min(n, size); i++) {
+            top.add(items[order[i]]);
+        }
+        return top;
+    }
+
+    /**
+     * Sorts items by how much they are trending, highest first. Items with equal scores
+     * (including items that are not monitored at all) are sorted by name.
+     *
+     * @param list the items to sort in place.
+     * @param name returns the item name of an element.
+     * @param <T>  the element type, for example {@link MenuItem} or {@code String}.
+     */
+    public <T> void sortByTrend(List<T> list, Function<T, String> name) {
+        Map<String, Double> scores = new HashMap<>();
+        synchronized (this) {
+            for (T element : list) {
+                scores.put(name.apply(element), score(name.apply(element)));
+            }
+        }
+        list.sort(Comparator.comparing((T element) -> scores.get(name.apply(element))).reversed()
+                .thenComparing(name));
+    }
+}
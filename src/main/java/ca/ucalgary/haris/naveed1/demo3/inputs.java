@@ -3,9 +3,8 @@
 package ca.ucalgary.haris.naveed1.demo3;
 
 import java.io.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * The {@code inputs} class provides a console-based user interface for McDonald's Nutrition Tracker.
@@ -13,38 +12,25 @@ import java.util.*;
  * It allows users to interactively display the menu, build and modify orders, view persistent order history,
  * and get order recommendations based on nutritional data.
  * <p>
- * Nutritional details for each menu item are obtained via the {@link Tracker} class.
+ * Menu items, order history, frequency maps and recommendations come from the shared
+ * {@link NutritionService}, so this front-end uses the same catalog and caches as the others.
  */
 public class inputs {
 
     // Scanner object for reading user input from the console.
     private static final Scanner scanner = new Scanner(System.in);
 
-    // Nutritional information maps from Tracker.
-    // Each map uses the menu item name as key and a List<Double> representing its nutrients.
-    // Nutrient order: Calories, Protein, Carbs, Sugars, Fat.
-    private static final Map<String, List<Double>> calories = Tracker.calories;
-    private static final Map<String, List<Double>> protein = Tracker.protein;
-    private static final Map<String, List<Double>> fat = Tracker.fat;
-    private static final Map<String, List<Double>> grams = Tracker.grams;
-    private static final Map<String, List<Double>> carbs = Tracker.carbs;
-
-    // In-memory user meal logs to accumulate orders during the session.
-    // Each user's orders are stored as a List of Strings keyed by userName.
-    private static final Map<String, List<String>> userMealLogs = new HashMap<>();
-
     // File name constant for storing order history persistently.
-    private static final String ORDER_HISTORY_FILE = "order_history.txt";
+    private static final String ORDER_HISTORY_FILE = OrderHistory.ORDER_HISTORY_FILE;
 
-    // Formatter to display date and time in a human-friendly format.
-    // Example format: "March 3, 2025 at 4:43pm"
-    private static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("MMMM d, yyyy 'at' h:mma");
+    // The core service shared with the other front-ends: menu, history, sessions and recommendations.
+    private static final NutritionService service;
 
     // Static block: executed once when the class is loaded.
-    // It initializes Tracker menu data and makes sure that the order history file exists.
+    // It makes sure that the order history file exists and opens the shared service.
     static {
-        Tracker.initializeMenu();      // Load the menu items and their nutritional info.
         ensureOrderHistoryFileExists();  // Create the order history file if it does not exist.
+        service = NutritionService.shared();
     }
 
     /**
@@ -62,7 +48,7 @@ public class inputs {
         String userName = customer.name;
 
         // Initialize the meal log for the current user.
-        userMealLogs.put(userName, new ArrayList<>());
+        service.startSession(userName);
 
         // Main loop to repeatedly prompt the user for an option.
         while (true) {
@@ -111,13 +97,13 @@ public class inputs {
     /**
      * Displays the McDonald's menu.
      * <p>
-     * Iterates through the menu items (keys in {@link Tracker#itemNutrition}) and prints each item.
+     * Iterates through the items of the shared menu and prints each item.
      */
     public static void displayMenu() {
         System.out.println("\nMcDonald's Menu:");
-        // Loop through each menu item in the Tracker's nutritional information.
-        for (String item : Tracker.itemNutrition.keySet()) {
-            System.out.println("- " + item);
+        // Loop through each menu item of the service's catalog.
+        for (MenuItem item : service.getMenu().getItems()) {
+            System.out.println("- " + item.getName() + (service.isAvailable(item) ? "" : " (sold out)"));
         }
     }
 
@@ -140,14 +126,13 @@ public class inputs {
             if (item.equalsIgnoreCase("done")) {
                 break;
             }
-            // Check if the item exists in the menu.
-            if (Tracker.itemNutrition.containsKey(item)) {
-                userOrder.add(item);
-                System.out.println(item + " added to your order.");
+            // Check if the item exists in the menu, forgiving case and small typos.
+            String matched = matchItemName(item);
+            if (matched != null) {
+                userOrder.add(matched);
+                System.out.println(matched + " added to your order.");
                 // Display the current order summary after adding the item.
                 printOrderSummary(userOrder);
-            } else {
-                System.out.println("Invalid item name. Please try again.");
             }
         }
 
@@ -163,11 +148,12 @@ public class inputs {
             }
             System.out.println("\nFinal Order Summary:");
             printOrderSummary(userOrder);
-            // Add the finalized order to the user's session log.
-            userMealLogs.get(userName).addAll(userOrder);
             // Calculate total calories and persist the order to file.
             double totalCalories = calculateTotalCalories(userOrder);
-            storeOrderToFile(userName, userOrder, totalCalories);
+            if (storeOrderToFile(userName, userOrder, totalCalories)) {
+                // Add the finalized order to the user's session log.
+                service.getSessions().addItemNames(userName, userOrder);
+            }
         } else {
             System.out.println("No items were added to the order.");
         }
@@ -193,31 +179,22 @@ public class inputs {
      * Stores a customer's order to the order history file.
      * <p>
      * The record format is: userName|formattedDateTime|orderTotalCalories|item1,item2,...
+     * The record is framed with its length and checksum by {@link HistoryLog}; it is stored through
+     * the shared {@link NutritionService}.
      *
      * @param userName          the name of the user.
      * @param orderItems        list of ordered item names.
      * @param orderTotalCalories the total calorie count of the order.
+     * @return true if the order was stored; false if an item sold out or the file could not be written.
      */
-    public static void storeOrderToFile(String userName, List<String> orderItems, double orderTotalCalories) {
+    public static boolean storeOrderToFile(String userName, List<String> orderItems, double orderTotalCalories) {
         ensureOrderHistoryFileExists();
-        // Get the current date and time.
-        LocalDateTime now = LocalDateTime.now();
-        // Format the date and time for human-friendly display.
-        String formattedDateTime = now.format(dateTimeFormatter)
-                .replace("AM", "am")
-                .replace("PM", "pm");
-        // Join the ordered items into a comma-separated string.
-        String items = String.join(",", orderItems);
-        // Create the record string.
-        String record = userName + "|" + formattedDateTime + "|" + orderTotalCalories + "|" + items;
-        // Write the record to the order history file.
-        try (FileWriter fw = new FileWriter(ORDER_HISTORY_FILE, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            out.println(record);
-        } catch (IOException e) {
-            System.out.println("Error writing order history to file: " + e.getMessage());
+        // The service takes the items out of stock, stamps the record with the current time and appends it.
+        boolean stored = service.storeOrder(userName, orderItems, orderTotalCalories);
+        if (!stored) {
+            System.out.println("The order was not placed.");
         }
+        return stored;
     }
 
     /**
@@ -232,98 +209,32 @@ public class inputs {
         ensureOrderHistoryFileExists();
         System.out.println("\nStored Order History:");
         boolean found = false;
-        // Read the file line by line.
-        try (BufferedReader br = new BufferedReader(new FileReader(ORDER_HISTORY_FILE))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                // Split the record by the pipe delimiter.
-                String[] parts = line.split("\\|");
-                if (parts.length == 4 && parts[0].equals(userName)) {
-                    found = true;
-                    String dateTime = parts[1];
-                    String orderTotal = parts[2];
-                    String items = parts[3];
-                    System.out.println("Date & Time: " + dateTime
-                            + ", Order Calories: " + orderTotal
-                            + ", Order: " + items);
-                }
-            }
-            if (!found) {
-                System.out.println("No stored order history found for " + userName);
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading order history file: " + e.getMessage());
-        }
-    }
-
-    /**
-     * Builds a frequency map of the user's orders by reading both the stored order history
-     * and the current session's orders.
-     * <p>
-     * The frequency map indicates how many times each menu item was ordered.
-     *
-     * @param userName the name of the user.
-     * @return a Map with menu item names as keys and their order frequency as values.
-     */
-    private static Map<String, Integer> buildFrequencyMap(String userName) {
-        Map<String, Integer> frequency = new HashMap<>();
-        // Build frequency map from file history.
-        ensureOrderHistoryFileExists();
-        try (BufferedReader br = new BufferedReader(new FileReader(ORDER_HISTORY_FILE))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length == 4 && parts[0].equals(userName)) {
-                    // Split the items in the order.
-                    String[] items = parts[3].split(",");
-                    for (String item : items) {
-                        frequency.put(item, frequency.getOrDefault(item, 0) + 1);
-                    }
-                }
+        // Only the user's own records are read (a single shard when the history is sharded),
+        // and each one is printed as soon as it is read.
+        try (Stream<HistoryRecord> records = service.queryHistory().customer(userName).stream()) {
+            Iterator<HistoryRecord> it = records.iterator();
+            while (it.hasNext()) {
+                HistoryRecord record = it.next();
+                found = true;
+                System.out.println("Date & Time: " + record.getDateTime()
+                        + ", Order Calories: " + record.getTotalCalories()
+                        + ", Order: " + String.join(",", record.getItems()));
             }
-        } catch (IOException e) {
-            System.out.println("Error reading order history for frequency map: " + e.getMessage());
         }
-        // Include orders from the current session.
-        List<String> sessionOrders = userMealLogs.get(userName);
-        if (sessionOrders != null) {
-            for (String item : sessionOrders) {
-                frequency.put(item, frequency.getOrDefault(item, 0) + 1);
-            }
+        if (!found) {
+            System.out.println("No stored order history found for " + userName);
         }
-        return frequency;
     }
 
     /**
      * Recommends an order based on the user's order frequency and desired calorie amount.
      * <p>
-     * It builds three candidate recommendation options:
-     * - Option 1: Familiar items only.
-     * - Option 2: One new item (if available) followed by familiar items.
-     * - Option 3: New items first, then familiar items.
-     * Then, it uses a greedy algorithm to fill each recommendation without exceeding the desired calories.
+     * The recommendations come from the shared {@link RecommendationEngine}, which counts both the
+     * stored order history and the current session's orders.
      *
      * @param userName the name of the user.
      */
     public static void recommendOrder(String userName) {
-        // Build the frequency map using historical and session orders.
-        Map<String, Integer> frequency = buildFrequencyMap(userName);
-
-        // Separate items into those ordered before (familiar) and new items.
-        List<String> frequentItems = new ArrayList<>();
-        List<String> newItems = new ArrayList<>();
-        for (String item : Tracker.itemNutrition.keySet()) {
-            if (frequency.getOrDefault(item, 0) > 0) {
-                frequentItems.add(item);
-            } else {
-                newItems.add(item);
-            }
-        }
-        // Sort familiar items by descending frequency.
-        frequentItems.sort((a, b) -> frequency.get(b) - frequency.get(a));
-        // Sort new items alphabetically.
-        Collections.sort(newItems);
-
         // Prompt for desired calorie amount.
         System.out.print("Enter desired calorie amount for your recommended order: ");
         int desiredCalories;
@@ -334,21 +245,15 @@ public class inputs {
             return;
         }
 
-        // Build three candidate lists for recommendations.
-        List<String> candidate1 = new ArrayList<>(frequentItems);
-        List<String> candidate2 = new ArrayList<>();
-        if (!newItems.isEmpty()) {
-            candidate2.add(newItems.get(0));
-        }
-        candidate2.addAll(frequentItems);
-        List<String> candidate3 = new ArrayList<>(newItems);
-        candidate3.addAll(frequentItems);
-
-        // Generate recommendations with the greedy algorithm.
+        // Generate the recommendations and turn them into item names.
         List<List<String>> recommendations = new ArrayList<>();
-        recommendations.add(greedyRecommendation(candidate1, desiredCalories));
-        recommendations.add(greedyRecommendation(candidate2, desiredCalories));
-        recommendations.add(greedyRecommendation(candidate3, desiredCalories));
+        for (List<MenuItem> rec : service.recommend(userName, desiredCalories)) {
+            recommendations.add(names(rec));
+        }
+        if (recommendations.isEmpty()) {
+            System.out.println("No menu item fits within " + desiredCalories + " calories.");
+            return;
+        }
 
         // Display recommendations.
         System.out.println("Recommended Orders:");
@@ -358,7 +263,7 @@ public class inputs {
             System.out.println((i + 1) + ". Total Calories: " + sum
                     + " | Items: " + String.join(", ", rec));
         }
-        System.out.print("Choose an option (1-3): ");
+        System.out.print("Choose an option (1-" + recommendations.size() + "): ");
         int option;
         try {
             option = Integer.parseInt(scanner.nextLine());
@@ -366,7 +271,7 @@ public class inputs {
             System.out.println("Invalid selection. Aborting recommendation.");
             return;
         }
-        if (option < 1 || option > 3) {
+        if (option < 1 || option > recommendations.size()) {
             System.out.println("Invalid option. Aborting recommendation.");
             return;
         }
@@ -382,30 +287,24 @@ public class inputs {
         System.out.println("Final Recommended Order:");
         printOrderSummary(chosenOrder);
 
-        // Add the finalized recommended order to session logs and store it persistently.
-        userMealLogs.get(userName).addAll(chosenOrder);
-        storeOrderToFile(userName, chosenOrder, totalOrderCalories);
+        // Store the finalized recommended order persistently and add it to the session logs.
+        if (storeOrderToFile(userName, chosenOrder, totalOrderCalories)) {
+            service.getSessions().addItemNames(userName, chosenOrder);
+        }
     }
 
     /**
      * Greedy algorithm to build a recommended order from a candidate list without exceeding the calorie limit.
+     * <p>
+     * Delegates to {@link RecommendationEngine#greedyRecommendation(List, int)}; names that are not
+     * on the menu are skipped.
      *
      * @param candidateList  List of candidate items.
      * @param desiredCalories The maximum allowed total calories.
      * @return A list of items forming the recommended order.
      */
     public static List<String> greedyRecommendation(List<String> candidateList, int desiredCalories) {
-        List<String> rec = new ArrayList<>();
-        double sum = 0;
-        // Add items one by one if the total calories remain within the limit.
-        for (String item : candidateList) {
-            double itemCal = Tracker.itemNutrition.get(item).get(0);
-            if (sum + itemCal <= desiredCalories) {
-                rec.add(item);
-                sum += itemCal;
-            }
-        }
-        return rec;
+        return names(service.getRecommendationEngine().greedyRecommendation(service.toItems(candidateList), desiredCalories));
     }
 
     /**
@@ -415,11 +314,18 @@ public class inputs {
      * @return The sum of calories.
      */
     public static double calculateTotalCalories(List<String> order) {
-        double sum = 0;
-        for (String item : order) {
-            sum += Tracker.itemNutrition.get(item).get(0);
+        return service.totalCalories(order);
+    }
+
+    /**
+     * Returns the names of menu items, in the same order.
+     */
+    private static List<String> names(List<MenuItem> items) {
+        List<String> names = new ArrayList<>(items.size());
+        for (MenuItem item : items) {
+            names.add(item.getName());
         }
-        return sum;
+        return names;
     }
 
     /**
@@ -437,19 +343,43 @@ public class inputs {
         String rowFormat = "%-20s %10.1f %10.1f %10.1f %10.1f %10.1f\n";
         System.out.printf(headerFormat, "Item", "Calories", "Protein", "Carbs", "Sugars", "Fat");
         double totalCalories = 0, totalProtein = 0, totalCarbs = 0, totalSugars = 0, totalFat = 0;
-        for (String item : order) {
-            List<Double> nutrition = Tracker.itemNutrition.get(item);
-            System.out.printf(rowFormat, item, nutrition.get(0), nutrition.get(1), nutrition.get(2), nutrition.get(3), nutrition.get(4));
-            totalCalories += nutrition.get(0);
-            totalProtein += nutrition.get(1);
-            totalCarbs += nutrition.get(2);
-            totalSugars += nutrition.get(3);
-            totalFat += nutrition.get(4);
+        for (MenuItem item : service.toItems(order)) {
+            System.out.printf(rowFormat, item.getName(), item.getCalories(), item.getProtein(), item.getCarbs(), item.getSugars(), item.getFat());
+            totalCalories += item.getCalories();
+            totalProtein += item.getProtein();
+            totalCarbs += item.getCarbs();
+            totalSugars += item.getSugars();
+            totalFat += item.getFat();
         }
         System.out.println("---------------------------------------------------------------");
         System.out.printf(rowFormat, "TOTAL", totalCalories, totalProtein, totalCarbs, totalSugars, totalFat);
     }
 
+    /**
+     * Finds the menu item name meant by what the user typed.
+     * <p>
+     * Case, unfinished names and small typos are forgiven (see {@link FuzzyItemMatcher}). If no single
+     * item matches, an error is printed, with the closest item names if there are any.
+     *
+     * @param input the text the user typed.
+     * @return the menu item name, or {@code null} if there was no single match.
+     */
+    private static String matchItemName(String input) {
+        MenuItem matched = service.matchItem(input);
+        if (matched == null) {
+            List<String> suggestions = service.suggestions(input, 3);
+            System.out.println(suggestions.isEmpty()
+                    ? "Invalid item name. Please try again."
+                    : "Invalid item name. Did you mean: " + String.join(", ", suggestions) + "?");
+            return null;
+        }
+        if (!service.isAvailable(matched)) {
+            System.out.println(matched.getName() + " is sold out. Please choose something else.");
+            return null;
+        }
+        return matched.getName();
+    }
+
     /**
      * Allows the user to interactively modify an order by adding or removing items.
      * <p>
@@ -475,12 +405,10 @@ public class inputs {
             // Option to add an item.
             if (choice == 1) {
                 System.out.print("Enter item name to add: ");
-                String newItem = scanner.nextLine();
-                if (Tracker.itemNutrition.containsKey(newItem)) {
+                String newItem = matchItemName(scanner.nextLine());
+                if (newItem != null) {
                     order.add(newItem);
                     System.out.println(newItem + " added.");
-                } else {
-                    System.out.println("Invalid item name.");
                 }
                 // Print the updated summary after addition.
                 printOrderSummary(order);
@@ -1,6 +1,7 @@
 module ca.ucalgary.haris.naveed1.demo3 {
     requires javafx.controls;
     requires javafx.fxml;
+    requires transitive jdk.jfr;
     requires org.junit.jupiter.api;
     requires junit;
 